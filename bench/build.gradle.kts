@@ -0,0 +1,25 @@
+plugins {
+    java
+    id("me.champeau.jmh") version "0.7.2"
+}
+
+repositories {
+    mavenCentral()
+}
+
+dependencies {
+    jmh(project(":lib"))
+    jmh(libs.jetbrains.annotations)
+}
+
+java {
+    toolchain.languageVersion = JavaLanguageVersion.of(8)
+}
+
+// ./gradlew :bench:jmh -PjmhIncludes=parseLine
+jmh {
+    jmhVersion = libs.versions.jmh
+    profilers = listOf("gc")
+    resultFormat = "JSON"
+    (project.findProperty("jmhIncludes") as String?)?.let { includes = listOf(it) }
+}
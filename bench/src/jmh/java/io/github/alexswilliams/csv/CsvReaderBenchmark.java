@@ -0,0 +1,103 @@
+package io.github.alexswilliams.csv;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Throughput of whole-input reads over each {@link Shape} of input.
+ * <p>
+ * Alongside the score, the {@link Throughput} counters report megabytes and rows per second, and the {@code gc}
+ * profiler reports {@code gc.alloc.rate.norm}: the bytes allocated per whole read, which divided by the row count is
+ * the allocation per row.  {@link ParseLineBenchmark} measures that per row directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class CsvReaderBenchmark {
+    @Param
+    public Shape shape;
+
+    private String contents;
+    private Path file;
+    private long size;
+
+    /**
+     * Counted per operation, so JMH reports them as rates.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+        public double megabytes;
+        public long rows;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+            rows = 0;
+        }
+
+        void add(final long bytes, final long rows) {
+            this.megabytes += bytes / 1e6;
+            this.rows += rows;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        contents = shape.generate();
+        final byte[] bytes = contents.getBytes(StandardCharsets.UTF_8);
+        size = bytes.length;
+        file = Files.createTempFile("csv-reader-benchmark-", ".csv");
+        Files.write(file, bytes);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public List<List<String>> readFile(final Throughput throughput) throws IOException, CsvException {
+        try (CsvReader csvReader = new CsvReader(new StringReader(contents))) {
+            final List<List<String>> rows = csvReader.readFile(true);
+            throughput.add(size, rows.size());
+            return rows;
+        }
+    }
+
+    @Benchmark
+    public List<List<String>> readFileMapped(final Throughput throughput) throws IOException, CsvException {
+        final List<List<String>> rows = CsvReader.readFile(file, true);
+        throughput.add(size, rows.size());
+        return rows;
+    }
+
+    @Benchmark
+    public long streamFile(final Throughput throughput) throws IOException, CsvException {
+        try (CsvReader csvReader = new CsvReader(new StringReader(contents))) {
+            final long rows = csvReader.streamFile(true).count();
+            throughput.add(size, rows);
+            return rows;
+        }
+    }
+
+    @Benchmark
+    public long streamFileParallel(final Throughput throughput) throws IOException, CsvException {
+        try (Stream<List<String>> stream = CsvReader.streamFile(file, true)) {
+            final long rows = stream.parallel().count();
+            throughput.add(size, rows);
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package io.github.alexswilliams.csv;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of one call to {@link CsvReader#parseLine()} over each {@link Shape} of input.
+ * Each operation is one row, so the score is rows per second and the {@code gc} profiler's
+ * {@code gc.alloc.rate.norm} is the bytes allocated per row.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ParseLineBenchmark {
+    @Param
+    public Shape shape;
+
+    private String contents;
+    private CsvReader csvReader;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        contents = shape.generate();
+        csvReader = new CsvReader(new StringReader(contents));
+    }
+
+    @Benchmark
+    public List<String> parseLine() throws IOException, CsvException {
+        List<String> row = csvReader.parseLine();
+        if (row == null) {
+            // starting over costs one allocation of a window per few hundred thousand rows
+            csvReader = new CsvReader(new StringReader(contents));
+            row = csvReader.parseLine();
+        }
+        return row;
+    }
+}
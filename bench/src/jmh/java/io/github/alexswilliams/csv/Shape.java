@@ -0,0 +1,83 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Random;
+
+/**
+ * The kinds of generated input that the benchmarks are run over.
+ * Each shape is generated to roughly the same size, so that throughputs can be compared between them.
+ */
+public enum Shape {
+    /**
+     * Four short unquoted fields per row.
+     */
+    NARROW {
+        @Override
+        void appendRow(@NotNull final StringBuilder sb, @NotNull final Random random, final int row) {
+            sb.append(row).append(',').append(random.nextInt(1000)).append(",GB,")
+                    .append(random.nextDouble()).append('\n');
+        }
+    },
+    /**
+     * A hundred unquoted fields per row, mostly numbers.
+     */
+    WIDE {
+        @Override
+        void appendRow(@NotNull final StringBuilder sb, @NotNull final Random random, final int row) {
+            sb.append(row);
+            for (int i = 1; i < 100; i++) {
+                sb.append(',');
+                if (i % 10 == 0) sb.append("text field ").append(i);
+                else sb.append(random.nextInt(100000));
+            }
+            sb.append('\n');
+        }
+    },
+    /**
+     * Every field quoted, with embedded commas and escaped quotes.
+     */
+    QUOTED {
+        @Override
+        void appendRow(@NotNull final StringBuilder sb, @NotNull final Random random, final int row) {
+            sb.append('"').append(row).append("\",\"Smith, \"\"Bob\"\"\",\"")
+                    .append(random.nextInt(1000)).append(" Some Street, Some Town\",\"a \"\"quoted\"\" note\"\n");
+        }
+    },
+    /**
+     * Quoted fields that span several lines, with CRLF line endings.
+     */
+    MULTILINE {
+        @Override
+        void appendRow(@NotNull final StringBuilder sb, @NotNull final Random random, final int row) {
+            sb.append(row).append(",\"first line\r\nsecond line ").append(random.nextInt(1000))
+                    .append("\r\nthird line\",end\r\n");
+        }
+    },
+    /**
+     * Fields of two-, three- and four-byte UTF-8 characters.
+     */
+    UTF8 {
+        @Override
+        void appendRow(@NotNull final StringBuilder sb, @NotNull final Random random, final int row) {
+            sb.append(row).append(",юникода ").append(random.nextInt(1000)).append(",aꜬbꜢd∛f,𐜢𐜢,ascii\n");
+        }
+    };
+
+    static final int TARGET_SIZE = 8 * 1024 * 1024;
+
+    abstract void appendRow(@NotNull StringBuilder sb, @NotNull Random random, int row);
+
+    /**
+     * @return about {@link #TARGET_SIZE} chars of this shape; the same every time
+     */
+    @NotNull
+    String generate() {
+        final Random random = new Random(25112016L);
+        final StringBuilder sb = new StringBuilder(TARGET_SIZE + 4096);
+        for (int row = 0; sb.length() < TARGET_SIZE; row++) {
+            appendRow(sb, random, row);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.alexswilliams.csv;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lexing a memory-mapped file with a {@link CsvCursor}, with and without its
+ * {@linkplain CsvCursor#enableStructuralIndex() structural index}, over each {@link Shape} of input.
+ * <p>
+ * No strings are made: each row's field lengths are summed, so the score is the lexer's own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class StructuralIndexBenchmark {
+    @Param
+    public Shape shape;
+
+    @Param({"false", "true"})
+    public boolean indexed;
+
+    private Path file;
+    private long size;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        final byte[] bytes = shape.generate().getBytes(StandardCharsets.UTF_8);
+        size = bytes.length;
+        file = Files.createTempFile("csv-reader-benchmark-", ".csv");
+        Files.write(file, bytes);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long lexFile(final CsvReaderBenchmark.Throughput throughput) throws IOException, CsvException {
+        try (CsvCursor cursor = CsvCursor.open(file)) {
+            if (indexed && !cursor.enableStructuralIndex()) {
+                throw new IllegalStateException("Not indexed: " + file);
+            }
+            long rows = 0L;
+            long chars = 0L;
+            while (cursor.next()) {
+                rows++;
+                for (int i = cursor.fieldCount() - 1; i >= 0; i--) {
+                    chars += cursor.fieldLength(i);
+                }
+            }
+            throughput.add(size, rows);
+            return chars;
+        }
+    }
+}
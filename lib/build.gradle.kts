@@ -7,10 +7,10 @@ repositories {
 }
 
 dependencies {
-    implementation(libs.apache.commons.text)
     implementation(libs.slf4j.api)
     implementation(libs.jetbrains.annotations)
 
+    testImplementation(libs.apache.commons.text)
     testImplementation(libs.junit.jupiter)
     testRuntimeOnly(libs.logback.classic)
 }
@@ -26,3 +26,49 @@ testing {
 java {
     toolchain.languageVersion = JavaLanguageVersion.of(8)
 }
+
+// Classes that need a later JDK are compiled separately and packaged as a multi-release jar.
+val java11: SourceSet by sourceSets.creating {
+    java.setSrcDirs(listOf("src/main/java11"))
+    compileClasspath += sourceSets.main.get().output
+}
+
+configurations[java11.implementationConfigurationName].extendsFrom(configurations.implementation.get())
+
+tasks.named<JavaCompile>(java11.compileJavaTaskName) {
+    javaCompiler = javaToolchains.compilerFor { languageVersion = JavaLanguageVersion.of(11) }
+    options.release = 11
+}
+
+// ... and tested on Java 11 against the packaged jar, so a class missing from META-INF/versions/11 fails the build.
+val java11Test by testing.suites.registering(JvmTestSuite::class) {
+    useJUnitJupiter(libs.versions.junit.jupiter)
+    dependencies {
+        implementation(files(tasks.jar))
+        implementation(libs.slf4j.api)
+        runtimeOnly(libs.logback.classic)
+    }
+    targets.all {
+        testTask.configure {
+            javaLauncher = javaToolchains.launcherFor { languageVersion = JavaLanguageVersion.of(11) }
+        }
+    }
+}
+
+tasks.named<JavaCompile>("compileJava11TestJava") {
+    javaCompiler = javaToolchains.compilerFor { languageVersion = JavaLanguageVersion.of(11) }
+    options.release = 11
+}
+
+tasks.check {
+    dependsOn(java11Test)
+}
+
+tasks.jar {
+    into("META-INF/versions/11") {
+        from(java11.output)
+    }
+    manifest {
+        attributes("Multi-Release" to "true")
+    }
+}
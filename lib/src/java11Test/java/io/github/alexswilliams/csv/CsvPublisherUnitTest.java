@@ -0,0 +1,169 @@
+package io.github.alexswilliams.csv;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class CsvPublisherUnitTest {
+    private static String rows(final int count) {
+        final StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i % 7 == 3) {
+                stringBuilder.append(i).append(",\"two\nlines, \"\"quoted\"\"\"\n");
+            } else if (i % 11 == 5) {
+                stringBuilder.append('\n');
+            } else {
+                stringBuilder.append(i).append(",юникода,𐜢\r\n");
+            }
+        }
+        return stringBuilder.toString();
+    }
+
+    private static Path write(final String contents) throws IOException {
+        final Path file = Files.createTempFile("csv-reader-", ".csv");
+        Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * Asks for one batch at a time, as each arrives, and records everything it is sent.
+     */
+    private static final class Collector implements Flow.Subscriber<List<List<String>>> {
+        final List<List<List<String>>> batches = new ArrayList<>();
+        final CompletableFuture<List<List<List<String>>>> result = new CompletableFuture<>();
+        private final long initial;
+        private final boolean more;
+        Flow.Subscription subscription;
+
+        Collector(final long initial, final boolean more) {
+            this.initial = initial;
+            this.more = more;
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initial);
+        }
+
+        @Override
+        public void onNext(final List<List<String>> batch) {
+            synchronized (batches) {
+                batches.add(batch);
+            }
+            if (more) {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(batches);
+        }
+
+        int received() {
+            synchronized (batches) {
+                return batches.size();
+            }
+        }
+    }
+
+    @Test
+    public void testEveryRowIsPublishedInBatches() throws Exception {
+        final String contents = rows(5000);
+        final List<List<String>> expected;
+        try (CsvReader csvReader = new CsvReader(new StringReader(contents))) {
+            expected = csvReader.readFile(false);
+        }
+        final Path file = write(contents);
+        try {
+            for (int chunkSize : new int[]{1, 7, 4096, CsvPublisher.DEFAULT_CHUNK_SIZE}) {
+                final Collector collector = new Collector(1, true);
+                new CsvPublisher(file, CsvDialect.DEFAULT, false, 100, chunkSize).subscribe(collector);
+                final List<List<List<String>>> batches = collector.result.get(30, TimeUnit.SECONDS);
+                final List<List<String>> rows = new ArrayList<>();
+                for (int i = 0; i < batches.size(); i++) {
+                    Assertions.assertEquals(i == batches.size() - 1 ? (expected.size() - 1) % 100 + 1 : 100,
+                            batches.get(i).size());
+                    rows.addAll(batches.get(i));
+                }
+                Assertions.assertEquals(expected, rows);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testOnlyWhatIsAskedForIsPublished() throws Exception {
+        final String contents = rows(10000);
+        final List<List<String>> expected;
+        try (CsvReader csvReader = new CsvReader(new StringReader(contents))) {
+            expected = csvReader.readFile(false);
+        }
+        final Path file = write(contents);
+        try {
+            final Collector collector = new Collector(3, false);
+            new CsvPublisher(file, CsvDialect.DEFAULT, false, 10, 64).subscribe(collector);
+            Assertions.assertThrows(TimeoutException.class, () -> collector.result.get(200, TimeUnit.MILLISECONDS));
+            Assertions.assertEquals(3, collector.received());
+            collector.subscription.request(2);
+            while (collector.received() < 5) {
+                Thread.sleep(1);
+            }
+            collector.subscription.cancel();
+            collector.subscription.request(5);
+            Assertions.assertThrows(TimeoutException.class, () -> collector.result.get(200, TimeUnit.MILLISECONDS));
+            Assertions.assertEquals(5, collector.received());
+            Assertions.assertEquals(expected.subList(40, 50), collector.batches.get(4));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testFailuresEndTheSubscription() throws Exception {
+        final Path file = write("a,b\nc,\"d\"e\nf,g\n");
+        try {
+            final Collector failing = new Collector(Long.MAX_VALUE, false);
+            new CsvPublisher(file, CsvDialect.RFC_4180, false, 1).subscribe(failing);
+            final ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+                    () -> failing.result.get(30, TimeUnit.SECONDS));
+            Assertions.assertTrue(e.getCause() instanceof CsvException);
+            Assertions.assertEquals(1, failing.received());
+
+            final Collector skipping = new Collector(Long.MAX_VALUE, false);
+            new CsvPublisher(file, CsvDialect.RFC_4180, true, 1).subscribe(skipping);
+            Assertions.assertEquals(3, skipping.result.get(30, TimeUnit.SECONDS).size());
+
+            final Collector illegal = new Collector(0, false);
+            new CsvPublisher(file).subscribe(illegal);
+            Assertions.assertTrue(Assertions.assertThrows(ExecutionException.class,
+                    () -> illegal.result.get(30, TimeUnit.SECONDS)).getCause() instanceof IllegalArgumentException);
+        } finally {
+            Files.delete(file);
+        }
+        final Collector missing = new Collector(1, true);
+        new CsvPublisher(file).subscribe(missing);
+        Assertions.assertTrue(Assertions.assertThrows(ExecutionException.class,
+                () -> missing.result.get(30, TimeUnit.SECONDS)).getCause() instanceof NoSuchFileException);
+    }
+}
@@ -0,0 +1,75 @@
+package io.github.alexswilliams.csv;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class JfrMetricsListenerUnitTest {
+    private static final String EVENT_NAME = "io.github.alexswilliams.csv.Read";
+
+    @Test
+    public void testFinishedReaderIsRecorded() throws IOException, CsvException {
+        final CsvMetricsListener listener = CsvMetricsListener.flightRecorder();
+        Assertions.assertEquals("io.github.alexswilliams.csv.JfrMetricsListener", listener.getClass().getName());
+
+        final Path dump = Files.createTempFile("csv-reader-", ".jfr");
+        try {
+            try (Recording recording = new Recording()) {
+                recording.enable(EVENT_NAME);
+                recording.start();
+                try (CsvReader csvReader = new CsvReader(new StringReader("id,name\n1,\"Smith, Bob\"\n2,bad\"quote\n"))) {
+                    csvReader.enableMetrics(listener);
+                    // lexing resumes after the bad quote, so "quote" is read as a row of its own
+                    Assertions.assertEquals(3, csvReader.readFile(true).size());
+                }
+                recording.stop();
+                recording.dump(dump);
+            }
+
+            final List<RecordedEvent> events = RecordingFile.readAllEvents(dump).stream()
+                    .filter(event -> event.getEventType().getName().equals(EVENT_NAME))
+                    .collect(Collectors.toList());
+            Assertions.assertEquals(1, events.size());
+            final RecordedEvent event = events.get(0);
+            Assertions.assertEquals(3L, event.getLong("rows"));
+            Assertions.assertEquals(2L + 2L + 1L, event.getLong("fields"));
+            Assertions.assertEquals(1L, event.getLong("quotedFields"));
+            Assertions.assertEquals(1L, event.getLong("errors"));
+            Assertions.assertEquals(0L, event.getLong("bytesRead"));
+            Assertions.assertTrue(event.getLong("elapsedTime") >= event.getLong("readTime"));
+            Assertions.assertTrue(event.getBoolean("finished"));
+        } finally {
+            Files.delete(dump);
+        }
+    }
+
+    @Test
+    public void testNothingIsRecordedWhenTheEventIsDisabled() throws IOException, CsvException {
+        final Path dump = Files.createTempFile("csv-reader-", ".jfr");
+        try {
+            try (Recording recording = new Recording()) {
+                recording.disable(EVENT_NAME);
+                recording.start();
+                try (CsvReader csvReader = new CsvReader(new StringReader("a\nb\n"))) {
+                    csvReader.enableMetrics(CsvMetricsListener.flightRecorder());
+                    Assertions.assertEquals(2, csvReader.readFile(true).size());
+                }
+                recording.stop();
+                recording.dump(dump);
+            }
+            Assertions.assertTrue(RecordingFile.readAllEvents(dump).stream()
+                    .noneMatch(event -> event.getEventType().getName().equals(EVENT_NAME)));
+        } finally {
+            Files.delete(dump);
+        }
+    }
+}
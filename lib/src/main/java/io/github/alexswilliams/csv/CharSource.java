@@ -0,0 +1,22 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * Whatever a {@link CsvLexer} fills its window from.
+ * The contract of {@link #read} is that of {@link java.io.Reader#read(char[], int, int)}.
+ */
+interface CharSource {
+    int read(@NotNull char[] buf, int off, int len) throws IOException;
+
+    /**
+     * True if the source delivers each undecoded byte of UTF-8 input as one char, leaving the lexer to decode the
+     * fields it cuts.  This is safe because none of the characters the lexer acts on can occur inside a multi-byte
+     * UTF-8 sequence, and it means that offsets within the window are byte offsets.
+     */
+    default boolean deliversUtf8Bytes() {
+        return false;
+    }
+}
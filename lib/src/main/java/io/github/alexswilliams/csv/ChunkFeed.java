@@ -0,0 +1,201 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A source that is fed in chunks as they arrive, for a {@link CsvLexer} that must never wait for input.
+ * <p>
+ * When the feed has nothing more to give but has not been {@linkplain #finish() finished}, it
+ * {@linkplain #read answers} {@link #UNDERFLOW}, and the lexer abandons the row in progress and
+ * {@linkplain #rewind(long) rewinds} the feed to the start of that row, to lex it again once more has been fed.  The
+ * feed keeps everything from the start of the row in progress for this, and drops the rest as chunks are added.
+ * So that a row split over many small chunks is not lexed again after every one of them, the lexer should only be
+ * tried again once the feed is {@link #ready()}: when what has arrived since looks as if it ends the row, going by a
+ * count of the quotes in it, or failing that once the row has doubled.
+ *
+ * @author Alex Williams
+ */
+final class ChunkFeed implements CharSource {
+    /**
+     * Returned by {@link #read} when nothing more has been fed yet.
+     */
+    static final int UNDERFLOW = -2;
+
+    private final boolean utf8;
+    private final int quote;
+    private final int escape;
+    private final boolean bareCarriageReturnEndsLine;
+    private char[] data;
+    /**
+     * The offset within the whole input of {@code data[0]}.
+     */
+    private long dataOffset = 0L;
+    private int readPos = 0;
+    private int end = 0;
+    private long released = 0L;
+    private int starvedWith = 0;
+    private boolean finished = false;
+
+    private boolean inQuotes = false;
+    private boolean escaped = false;
+    private boolean lineEnded = false;
+
+    /**
+     * @param utf8 true to be fed UTF-8 bytes, which are lexed undecoded; false to be fed chars
+     */
+    ChunkFeed(@NotNull final CsvDialect dialect, final boolean utf8, final int initialSize) {
+        this.utf8 = utf8;
+        this.quote = dialect.quote;
+        this.escape = dialect.escape;
+        this.bareCarriageReturnEndsLine = dialect.bareCarriageReturnEndsLine;
+        this.data = new char[initialSize];
+    }
+
+    @Override
+    public boolean deliversUtf8Bytes() {
+        return utf8;
+    }
+
+    @Override
+    public int read(@NotNull final char[] buf, final int off, final int len) {
+        if (readPos == end) {
+            return finished ? -1 : UNDERFLOW;
+        }
+        final int n = Math.min(len, end - readPos);
+        System.arraycopy(data, readPos, buf, off, n);
+        readPos += n;
+        return n;
+    }
+
+    /**
+     * Allows everything before {@code offset} to be dropped; the lexer will not rewind to before it.
+     */
+    void release(final long offset) {
+        released = offset;
+    }
+
+    /**
+     * Goes back to {@code offset}, to deliver everything from there again.
+     */
+    void rewind(final long offset) {
+        readPos = (int) (offset - dataOffset);
+        starvedWith = end - readPos;
+        inQuotes = false;
+        escaped = false;
+        lineEnded = false;
+        scan(readPos, end);
+        lineEnded = false;
+    }
+
+    /**
+     * @return true if the lexer is worth trying again: the input has been finished, a line break outside quotes has
+     * arrived since the row in progress was last abandoned, or the input has at least doubled since then
+     */
+    boolean ready() {
+        return finished || lineEnded || end - readPos > 2 * starvedWith;
+    }
+
+    /**
+     * Looks for a line break that is not inside quotes, counting quotes from the start of the row in progress.  This
+     * is only a guess, as it knows nothing of comments, but a wrong guess only delays the row.
+     */
+    private void scan(final int from, final int to) {
+        final char[] d = data;
+        for (int i = from; i < to && !lineEnded; i++) {
+            final char c = d[i];
+            if (escaped) {
+                escaped = false;
+            } else if (c == escape) {
+                escaped = true;
+            } else if (c == quote) {
+                inQuotes = !inQuotes;
+            } else if (!inQuotes && (c == '\n' || (c == '\r' && bareCarriageReturnEndsLine))) {
+                lineEnded = true;
+            }
+        }
+    }
+
+    void finish() {
+        finished = true;
+    }
+
+    boolean finished() {
+        return finished;
+    }
+
+    /**
+     * @throws IllegalStateException if the feed takes bytes, or has been finished
+     */
+    void append(@NotNull final char[] chars, final int off, final int len) {
+        if (utf8) {
+            throw new IllegalStateException("This feed takes bytes, not chars");
+        }
+        System.arraycopy(chars, off, reserve(len), end, len);
+        end += len;
+        scan(end - len, end);
+    }
+
+    /**
+     * @throws IllegalStateException if the feed takes chars, or has been finished
+     */
+    void append(@NotNull final byte[] bytes, final int off, final int len) {
+        if (!utf8) {
+            throw new IllegalStateException("This feed takes chars, not bytes");
+        }
+        final char[] d = reserve(len);
+        final int e = end;
+        for (int i = 0; i < len; i++) {
+            d[e + i] = (char) (bytes[off + i] & 0xFF);
+        }
+        end += len;
+        scan(e, end);
+    }
+
+    /**
+     * Appends the remaining bytes of a buffer, which are consumed.
+     *
+     * @throws IllegalStateException if the feed takes chars, or has been finished
+     */
+    void append(@NotNull final ByteBuffer bytes) {
+        if (!utf8) {
+            throw new IllegalStateException("This feed takes chars, not bytes");
+        }
+        final int len = bytes.remaining();
+        if (bytes.hasArray()) {
+            append(bytes.array(), bytes.arrayOffset() + bytes.position(), len);
+            bytes.position(bytes.limit());
+            return;
+        }
+        final char[] d = reserve(len);
+        final int e = end;
+        for (int i = 0; i < len; i++) {
+            d[e + i] = (char) (bytes.get() & 0xFF);
+        }
+        end += len;
+        scan(e, end);
+    }
+
+    /**
+     * Drops what has been released, and makes room for {@code len} more.
+     */
+    @NotNull
+    private char[] reserve(final int len) {
+        if (finished) {
+            throw new IllegalStateException("The input has already been finished");
+        }
+        final int dropped = (int) Math.min(released - dataOffset, readPos);
+        if (dropped > 0) {
+            System.arraycopy(data, dropped, data, 0, end - dropped);
+            dataOffset += dropped;
+            readPos -= dropped;
+            end -= dropped;
+        }
+        if (data.length - end < len) {
+            data = Arrays.copyOf(data, Math.max(end + len, data.length * 2));
+        }
+        return data;
+    }
+}
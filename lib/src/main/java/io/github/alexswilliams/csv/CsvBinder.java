@@ -0,0 +1,391 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds objects of one class from the rows of a {@link CsvCursor}, taking each constructor parameter or field from
+ * the header column of the same name, or of the name given by {@link CsvColumn}.
+ * <p>
+ * The class is examined once, and its constructor and fields are composed with the parsers of their types into a
+ * single {@link MethodHandle} that builds an object from the cursor's current row.  Each value is parsed straight from
+ * the cursor's buffer, as by {@link CsvCursor#intField(int)} and the like; no list of strings is built, and nothing is
+ * looked up reflectively per row.  Binders are made by {@link CsvCursor#bind(Class)}, which also
+ * {@linkplain CsvCursor#select(int...) projects} the rows onto the bound columns, so the others are never built.
+ * <p>
+ * A class is bound in the first of these ways that applies:
+ * <ul>
+ *     <li>a record, through its canonical constructor;</li>
+ *     <li>a class with a no-argument constructor, through its non-static, non-final fields, including private ones
+ *     and those of superclasses: fields without a column are left as the constructor set them, and may be of any
+ *     type;</li>
+ *     <li>otherwise, through the constructor with the most parameters, whose names must have been compiled in with
+ *     {@code javac -parameters} or be given by {@link CsvColumn}: every parameter needs a column.</li>
+ * </ul>
+ * Values may be {@code String}, {@code int}, {@code long}, {@code double}, {@code boolean}, their boxed types,
+ * {@link BigDecimal}, {@link LocalDate} in ISO form, or an enum by constant name.  An empty field is null for a
+ * reference type other than {@code String}, and an error for a primitive.
+ *
+ * @author Alex Williams
+ */
+public final class CsvBinder<T> {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final Map<Class<?>, MethodHandle> PARSERS = parsers();
+    private static final ClassValue<Plan> PLANS = new ClassValue<Plan>() {
+        @Override
+        protected Plan computeValue(@NotNull final Class<?> type) {
+            return plan(type);
+        }
+    };
+
+    private final Class<T> type;
+    private final int[] columns;
+    private final MethodHandle builder;
+
+    /**
+     * @throws IllegalArgumentException if the class cannot be bound, a constructor parameter has no column in the
+     *                                  header, or a field with a column cannot be parsed
+     */
+    CsvBinder(@NotNull final Class<T> type, @NotNull final CsvHeader header) {
+        final Plan plan = PLANS.get(type);
+        final List<Integer> bound = new ArrayList<>();
+        final List<Integer> columnList = new ArrayList<>();
+        for (int i = 0; i < plan.names.length; i++) {
+            final int column = header.indexOf(plan.names[i]);
+            if (column >= 0) {
+                if (plan.setters != null) {
+                    checkType(type, plan.types[i], plan.names[i]);
+                }
+                bound.add(i);
+                columnList.add(column);
+            } else if (plan.setters == null) {
+                throw new IllegalArgumentException("No column named \"" + plan.names[i] + "\" for a parameter of "
+                        + type.getName() + " in header " + header);
+            }
+        }
+        this.type = type;
+        this.columns = columnList.stream().mapToInt(Integer::intValue).toArray();
+
+        MethodHandle handle;
+        if (plan.setters == null) {
+            final MethodHandle[] parsers = new MethodHandle[bound.size()];
+            for (int slot = 0; slot < parsers.length; slot++) {
+                parsers[slot] = parserAt(plan.types[bound.get(slot)], slot);
+            }
+            handle = MethodHandles.filterArguments(plan.constructor, 0, parsers);
+            handle = MethodHandles.permuteArguments(handle, MethodType.methodType(type, CsvLexer.class),
+                    new int[parsers.length]);
+        } else {
+            handle = MethodHandles.dropArguments(MethodHandles.identity(type), 1, CsvLexer.class);
+            // folded last to first, so that the fields are set in column order
+            for (int slot = bound.size() - 1; slot >= 0; slot--) {
+                final int i = bound.get(slot);
+                handle = MethodHandles.foldArguments(handle,
+                        MethodHandles.filterArguments(plan.setters[i], 1, parserAt(plan.types[i], slot)));
+            }
+            handle = MethodHandles.foldArguments(handle, plan.constructor);
+        }
+        this.builder = handle.asType(MethodType.methodType(Object.class, CsvLexer.class));
+    }
+
+    /**
+     * @return the columns of the header bound, in the order of the fields of the rows they are projected onto
+     */
+    @NotNull
+    int[] columns() {
+        return columns;
+    }
+
+    /**
+     * Builds an object from the current row, whose fields are those of {@link #columns()}.
+     *
+     * @throws CsvException if a field cannot be parsed as the type it is bound to
+     */
+    @NotNull
+    T build(@NotNull final CsvLexer lexer) throws CsvException {
+        try {
+            @SuppressWarnings("unchecked") final T built = (T) (Object) builder.invokeExact(lexer);
+            return built;
+        } catch (CsvException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not build a " + type.getName(), e);
+        }
+    }
+
+    @NotNull
+    private static MethodHandle parserAt(@NotNull final Class<?> valueType, final int slot) {
+        final MethodHandle parser;
+        if (valueType.isEnum()) {
+            parser = MethodHandles.insertArguments(PARSERS.get(Enum.class), 0, constants(valueType))
+                    .asType(MethodType.methodType(valueType, CsvLexer.class, int.class));
+        } else {
+            parser = PARSERS.get(valueType);
+        }
+        return MethodHandles.insertArguments(parser, 1, slot);
+    }
+
+    @NotNull
+    private static Map<String, Object> constants(@NotNull final Class<?> enumType) {
+        final Map<String, Object> constants = new HashMap<>();
+        for (Object constant : enumType.getEnumConstants()) {
+            constants.put(((Enum<?>) constant).name(), constant);
+        }
+        return constants;
+    }
+
+    @NotNull
+    private static Map<Class<?>, MethodHandle> parsers() {
+        final Map<Class<?>, MethodHandle> parsers = new HashMap<>();
+        try {
+            parsers.put(String.class, parser("string", String.class));
+            parsers.put(int.class, LOOKUP.findStatic(FieldParsers.class, "parseInt", type(int.class)));
+            parsers.put(long.class, LOOKUP.findStatic(FieldParsers.class, "parseLong", type(long.class)));
+            parsers.put(double.class, LOOKUP.findStatic(FieldParsers.class, "parseDouble", type(double.class)));
+            parsers.put(boolean.class, LOOKUP.findStatic(FieldParsers.class, "parseBoolean", type(boolean.class)));
+            parsers.put(Integer.class, parser("boxedInt", Integer.class));
+            parsers.put(Long.class, parser("boxedLong", Long.class));
+            parsers.put(Double.class, parser("boxedDouble", Double.class));
+            parsers.put(Boolean.class, parser("boxedBoolean", Boolean.class));
+            parsers.put(BigDecimal.class, parser("bigDecimal", BigDecimal.class));
+            parsers.put(LocalDate.class, parser("date", LocalDate.class));
+            parsers.put(Enum.class, LOOKUP.findStatic(CsvBinder.class, "constant",
+                    MethodType.methodType(Object.class, Map.class, CsvLexer.class, int.class)));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+        return parsers;
+    }
+
+    @NotNull
+    private static MethodHandle parser(@NotNull final String name, @NotNull final Class<?> valueType)
+            throws ReflectiveOperationException {
+        return LOOKUP.findStatic(CsvBinder.class, name, type(valueType));
+    }
+
+    @NotNull
+    private static MethodType type(@NotNull final Class<?> valueType) {
+        return MethodType.methodType(valueType, CsvLexer.class, int.class);
+    }
+
+    private static boolean isEmpty(@NotNull final CsvLexer lexer, final int index) {
+        return lexer.fieldStarts[index] == lexer.fieldEnds[index];
+    }
+
+    @NotNull
+    private static String string(@NotNull final CsvLexer lexer, final int index) {
+        return lexer.fieldString(index);
+    }
+
+    @Nullable
+    private static Integer boxedInt(@NotNull final CsvLexer lexer, final int index) throws CsvException {
+        return isEmpty(lexer, index) ? null : FieldParsers.parseInt(lexer, index);
+    }
+
+    @Nullable
+    private static Long boxedLong(@NotNull final CsvLexer lexer, final int index) throws CsvException {
+        return isEmpty(lexer, index) ? null : FieldParsers.parseLong(lexer, index);
+    }
+
+    @Nullable
+    private static Double boxedDouble(@NotNull final CsvLexer lexer, final int index) throws CsvException {
+        return isEmpty(lexer, index) ? null : FieldParsers.parseDouble(lexer, index);
+    }
+
+    @Nullable
+    private static Boolean boxedBoolean(@NotNull final CsvLexer lexer, final int index) throws CsvException {
+        return isEmpty(lexer, index) ? null : FieldParsers.parseBoolean(lexer, index);
+    }
+
+    @Nullable
+    private static BigDecimal bigDecimal(@NotNull final CsvLexer lexer, final int index) throws CsvException {
+        if (isEmpty(lexer, index)) {
+            return null;
+        }
+        try {
+            return new BigDecimal(lexer.buf, lexer.fieldStarts[index], lexer.fieldEnds[index] - lexer.fieldStarts[index]);
+        } catch (NumberFormatException e) {
+            throw FieldParsers.cannotParse(lexer, index, "a decimal");
+        }
+    }
+
+    @Nullable
+    private static LocalDate date(@NotNull final CsvLexer lexer, final int index) throws CsvException {
+        return isEmpty(lexer, index) ? null : FieldParsers.parseDate(lexer, index, CsvDateFormat.ISO_LOCAL_DATE);
+    }
+
+    @Nullable
+    private static Object constant(@NotNull final Map<String, Object> constants, @NotNull final CsvLexer lexer,
+                                   final int index) throws CsvException {
+        if (isEmpty(lexer, index)) {
+            return null;
+        }
+        final Object constant = constants.get(lexer.fieldString(index));
+        if (constant == null) {
+            throw FieldParsers.cannotParse(lexer, index, "one of " + constants.keySet());
+        }
+        return constant;
+    }
+
+    /**
+     * How to build one class: a constructor, and the names and types of the values it or the setters take.
+     */
+    private static final class Plan {
+        final MethodHandle constructor;
+        final String[] names;
+        final Class<?>[] types;
+        /**
+         * One per name, or null if the values are the constructor's parameters.
+         */
+        @Nullable
+        final MethodHandle[] setters;
+
+        Plan(@NotNull final MethodHandle constructor, @NotNull final String[] names, @NotNull final Class<?>[] types,
+             @Nullable final MethodHandle[] setters) {
+            this.constructor = constructor;
+            this.names = names;
+            this.types = types;
+            this.setters = setters;
+        }
+    }
+
+    @NotNull
+    private static Plan plan(@NotNull final Class<?> type) {
+        if (Modifier.isAbstract(type.getModifiers()) || type.isPrimitive() || type.isArray() || type.isEnum()) {
+            throw new IllegalArgumentException("Cannot construct a " + type.getName());
+        }
+        try {
+            if (isRecord(type)) {
+                return constructorPlan(type, canonicalConstructor(type), recordComponentNames(type));
+            }
+            try {
+                return fieldPlan(type, type.getDeclaredConstructor());
+            } catch (NoSuchMethodException e) {
+                // bound through a constructor with parameters instead
+            }
+            Constructor<?> widest = null;
+            for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+                if (widest == null || constructor.getParameterCount() > widest.getParameterCount()) {
+                    widest = constructor;
+                }
+            }
+            if (widest == null) {
+                throw new IllegalArgumentException("Cannot construct a " + type.getName());
+            }
+            return constructorPlan(type, widest, null);
+        } catch (ReflectiveOperationException | SecurityException e) {
+            throw new IllegalArgumentException("Cannot bind rows to " + type.getName() + ": " + e, e);
+        }
+    }
+
+    @NotNull
+    private static Plan fieldPlan(@NotNull final Class<?> type, @NotNull final Constructor<?> constructor)
+            throws ReflectiveOperationException {
+        final List<String> names = new ArrayList<>();
+        final List<Class<?>> types = new ArrayList<>();
+        final List<MethodHandle> setters = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                final int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) || Modifier.isTransient(modifiers)
+                        || field.isSynthetic()) {
+                    continue;
+                }
+                final CsvColumn column = field.getAnnotation(CsvColumn.class);
+                field.setAccessible(true);
+                names.add(column != null ? column.value() : field.getName());
+                types.add(field.getType());
+                setters.add(LOOKUP.unreflectSetter(field).asType(MethodType.methodType(void.class, type,
+                        field.getType())));
+            }
+        }
+        constructor.setAccessible(true);
+        return new Plan(LOOKUP.unreflectConstructor(constructor), names.toArray(new String[0]),
+                types.toArray(new Class<?>[0]), setters.toArray(new MethodHandle[0]));
+    }
+
+    @NotNull
+    private static Plan constructorPlan(@NotNull final Class<?> type, @NotNull final Constructor<?> constructor,
+                                        @Nullable final String[] componentNames)
+            throws ReflectiveOperationException {
+        final Parameter[] parameters = constructor.getParameters();
+        final String[] names = new String[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            final CsvColumn column = parameters[i].getAnnotation(CsvColumn.class);
+            if (column != null) {
+                names[i] = column.value();
+            } else if (componentNames != null) {
+                names[i] = componentNames[i];
+            } else if (parameters[i].isNamePresent()) {
+                names[i] = parameters[i].getName();
+            } else {
+                throw new IllegalArgumentException("Parameter " + i + " of the constructor of " + type.getName()
+                        + " has no name: compile with -parameters, or annotate it with @CsvColumn");
+            }
+            checkType(type, parameters[i].getType(), names[i]);
+        }
+        constructor.setAccessible(true);
+        return new Plan(LOOKUP.unreflectConstructor(constructor), names, constructor.getParameterTypes(), null);
+    }
+
+    private static void checkType(@NotNull final Class<?> type, @NotNull final Class<?> valueType,
+                                  @NotNull final String name) {
+        if (!valueType.isEnum() && (valueType == Enum.class || !PARSERS.containsKey(valueType))) {
+            throw new IllegalArgumentException("Cannot bind " + name + " of " + type.getName() + ": a "
+                    + valueType.getName() + " cannot be parsed from a field");
+        }
+    }
+
+    // Records arrived in JDK 16, so they are looked into reflectively to build for JDK 8
+
+    private static boolean isRecord(@NotNull final Class<?> type) throws ReflectiveOperationException {
+        try {
+            return (Boolean) Class.class.getMethod("isRecord").invoke(type);
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    @NotNull
+    private static Object[] recordComponents(@NotNull final Class<?> type) throws ReflectiveOperationException {
+        return (Object[]) Class.class.getMethod("getRecordComponents").invoke(type);
+    }
+
+    @NotNull
+    private static String[] recordComponentNames(@NotNull final Class<?> type) throws ReflectiveOperationException {
+        final Object[] components = recordComponents(type);
+        final String[] names = new String[components.length];
+        for (int i = 0; i < components.length; i++) {
+            final Method getName = components[i].getClass().getMethod("getName");
+            names[i] = (String) getName.invoke(components[i]);
+        }
+        return names;
+    }
+
+    @NotNull
+    private static Constructor<?> canonicalConstructor(@NotNull final Class<?> type)
+            throws ReflectiveOperationException {
+        final Object[] components = recordComponents(type);
+        final Class<?>[] types = new Class<?>[components.length];
+        for (int i = 0; i < components.length; i++) {
+            final Method getType = components[i].getClass().getMethod("getType");
+            types[i] = (Class<?>) getType.invoke(components[i]);
+        }
+        return type.getDeclaredConstructor(types);
+    }
+}
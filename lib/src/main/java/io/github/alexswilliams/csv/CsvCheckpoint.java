@@ -0,0 +1,84 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A point between two records from which reading can be resumed: the offset of the next record, and the line it is
+ * on.  Taken by {@link CsvCursor#checkpoint()} or {@link CsvReader#checkpoint()}, and resumed from by
+ * {@link CsvCursor#open(java.nio.file.Path, CsvCheckpoint)} or {@link CsvReader#CsvReader(java.io.Reader,
+ * CsvCheckpoint)}.  The two numbers can be stored anywhere, and a checkpoint made again from them.
+ * <p>
+ * Offsets into files are in bytes, and offsets into a {@link java.io.Reader} are in chars; a checkpoint can only be
+ * resumed from on the same kind of input it was taken from.
+ *
+ * @author Alex Williams
+ */
+public final class CsvCheckpoint {
+    public static final int UNKNOWN_LINE = -1;
+
+    private final long offset;
+    private final int lineNum;
+    private final boolean byteOffset;
+
+    private CsvCheckpoint(final long offset, final int lineNum, final boolean byteOffset) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Negative offset " + offset);
+        }
+        if (lineNum < 1 && lineNum != UNKNOWN_LINE) {
+            throw new IllegalArgumentException("Line numbers start from 1: " + lineNum);
+        }
+        this.offset = offset;
+        this.lineNum = lineNum;
+        this.byteOffset = byteOffset;
+    }
+
+    /**
+     * @param lineNum the line of the record at {@code offset}, or {@link #UNKNOWN_LINE}
+     */
+    @NotNull
+    public static CsvCheckpoint ofBytes(final long offset, final int lineNum) {
+        return new CsvCheckpoint(offset, lineNum, true);
+    }
+
+    /**
+     * @param lineNum the line of the record at {@code offset}, or {@link #UNKNOWN_LINE}
+     */
+    @NotNull
+    public static CsvCheckpoint ofChars(final long offset, final int lineNum) {
+        return new CsvCheckpoint(offset, lineNum, false);
+    }
+
+    public long offset() {
+        return offset;
+    }
+
+    /**
+     * @return the line of the next record, or {@link #UNKNOWN_LINE} if lines were not being counted, as when a file is
+     * read in parallel
+     */
+    public int lineNum() {
+        return lineNum;
+    }
+
+    public boolean isByteOffset() {
+        return byteOffset;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CsvCheckpoint)) return false;
+        final CsvCheckpoint that = (CsvCheckpoint) o;
+        return offset == that.offset && lineNum == that.lineNum && byteOffset == that.byteOffset;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * Long.hashCode(offset) + lineNum) + (byteOffset ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return "CsvCheckpoint{" + (byteOffset ? "byte" : "char") + " offset " + offset + ", line " + lineNum + "}";
+    }
+}
@@ -0,0 +1,20 @@
+package io.github.alexswilliams.csv;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Names the header column that a field or constructor parameter is {@linkplain CsvBinder bound} to, when it is not
+ * the field's or parameter's own name.  On a record component, it applies to the canonical constructor's parameter.
+ *
+ * @author Alex Williams
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.PARAMETER})
+public @interface CsvColumn {
+    String value();
+}
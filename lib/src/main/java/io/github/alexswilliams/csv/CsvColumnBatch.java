@@ -0,0 +1,202 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A block of rows stored by column, in the manner of an Arrow record batch, filled by
+ * {@link CsvCursor#nextBatch(CsvColumnBatch)}.
+ * <p>
+ * Column {@code c} holds field {@code c} of each row, stored according to its {@link CsvColumnType}: numeric and
+ * boolean columns in primitive arrays, and string columns as one {@code char[]} with an offsets array, so that the
+ * value of row {@code r} is {@code data[offsets[r]]} up to {@code data[offsets[r + 1]]}.  A field that is empty or
+ * missing from a short row is recorded as null.  Fields beyond the last column are ignored.
+ * <p>
+ * All arrays are allocated once and reused by every batch read into them; only the shared {@code char[]} of a string
+ * column grows, and only when a batch's text does not fit.  Values are therefore only valid until the next batch.
+ *
+ * @author Alex Williams
+ */
+public final class CsvColumnBatch {
+    private final CsvColumnType[] types;
+    private final int capacity;
+    private final Object[] values;
+    private final boolean[][] nulls;
+    private final int[][] stringOffsets;
+    private int rowCount;
+
+    public CsvColumnBatch(final int capacity, @NotNull final CsvColumnType... types) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Batch capacity must be positive: " + capacity);
+        }
+        this.types = types.clone();
+        this.capacity = capacity;
+        this.values = new Object[types.length];
+        this.nulls = new boolean[types.length][capacity];
+        this.stringOffsets = new int[types.length][];
+        for (int c = 0; c < types.length; c++) {
+            switch (types[c]) {
+                case STRING:
+                    values[c] = new char[capacity * 16];
+                    stringOffsets[c] = new int[capacity + 1];
+                    break;
+                case INT:
+                    values[c] = new int[capacity];
+                    break;
+                case LONG:
+                    values[c] = new long[capacity];
+                    break;
+                case DOUBLE:
+                    values[c] = new double[capacity];
+                    break;
+                case BOOLEAN:
+                    values[c] = new boolean[capacity];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown column type " + types[c]);
+            }
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int columnCount() {
+        return types.length;
+    }
+
+    @NotNull
+    public CsvColumnType type(final int column) {
+        return types[column];
+    }
+
+    /**
+     * @return the number of rows in the batch; only that many elements of each column array are meaningful
+     */
+    public int rowCount() {
+        return rowCount;
+    }
+
+    public boolean isNull(final int column, final int row) {
+        checkRow(row);
+        return nulls[column][row];
+    }
+
+    @NotNull
+    public int[] intColumn(final int column) {
+        return (int[]) column(column, CsvColumnType.INT);
+    }
+
+    @NotNull
+    public long[] longColumn(final int column) {
+        return (long[]) column(column, CsvColumnType.LONG);
+    }
+
+    @NotNull
+    public double[] doubleColumn(final int column) {
+        return (double[]) column(column, CsvColumnType.DOUBLE);
+    }
+
+    @NotNull
+    public boolean[] booleanColumn(final int column) {
+        return (boolean[]) column(column, CsvColumnType.BOOLEAN);
+    }
+
+    /**
+     * @return the characters of every value in a string column, laid end to end
+     */
+    @NotNull
+    public char[] stringData(final int column) {
+        return (char[]) column(column, CsvColumnType.STRING);
+    }
+
+    /**
+     * @return the {@link #rowCount()} + 1 boundaries of the values of a string column within {@link #stringData(int)}
+     */
+    @NotNull
+    public int[] stringOffsets(final int column) {
+        column(column, CsvColumnType.STRING);
+        return stringOffsets[column];
+    }
+
+    /**
+     * @return one value of a string column as a new string
+     */
+    @NotNull
+    public String string(final int column, final int row) {
+        checkRow(row);
+        final int[] offsets = stringOffsets(column);
+        return new String(stringData(column), offsets[row], offsets[row + 1] - offsets[row]);
+    }
+
+    void clear() {
+        rowCount = 0;
+    }
+
+    boolean isFull() {
+        return rowCount == capacity;
+    }
+
+    /**
+     * Appends the lexer's current row.  If a field cannot be parsed the row is not added.
+     */
+    void add(@NotNull final CsvLexer lexer) throws CsvException {
+        final int row = rowCount;
+        for (int c = 0; c < types.length; c++) {
+            final boolean isNull = c >= lexer.fieldCount || lexer.fieldStarts[c] == lexer.fieldEnds[c];
+            nulls[c][row] = isNull;
+            switch (types[c]) {
+                case STRING:
+                    addString(c, row, lexer, isNull);
+                    break;
+                case INT:
+                    ((int[]) values[c])[row] = isNull ? 0 : FieldParsers.parseInt(lexer, c);
+                    break;
+                case LONG:
+                    ((long[]) values[c])[row] = isNull ? 0L : FieldParsers.parseLong(lexer, c);
+                    break;
+                case DOUBLE:
+                    ((double[]) values[c])[row] = isNull ? 0.0 : FieldParsers.parseDouble(lexer, c);
+                    break;
+                case BOOLEAN:
+                    ((boolean[]) values[c])[row] = !isNull && FieldParsers.parseBoolean(lexer, c);
+                    break;
+            }
+        }
+        rowCount++;
+    }
+
+    private void addString(final int column, final int row, @NotNull final CsvLexer lexer, final boolean isNull) {
+        final int[] offsets = stringOffsets[column];
+        final int from = row == 0 ? 0 : offsets[row];
+        offsets[row] = from;
+        if (isNull) {
+            offsets[row + 1] = from;
+            return;
+        }
+        final int length = lexer.fieldEnds[column] - lexer.fieldStarts[column];
+        char[] data = (char[]) values[column];
+        if (from + length > data.length) {
+            data = Arrays.copyOf(data, Math.max(from + length, data.length * 2));
+            values[column] = data;
+        }
+        System.arraycopy(lexer.buf, lexer.fieldStarts[column], data, from, length);
+        offsets[row + 1] = from + length;
+    }
+
+    @NotNull
+    private Object column(final int column, @NotNull final CsvColumnType type) {
+        if (types[column] != type) {
+            throw new IllegalArgumentException("Column " + column + " holds " + types[column] + ", not " + type);
+        }
+        return values[column];
+    }
+
+    private void checkRow(final int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("Row " + row + " of a batch of " + rowCount);
+        }
+    }
+}
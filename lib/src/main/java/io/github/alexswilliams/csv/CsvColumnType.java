@@ -0,0 +1,17 @@
+package io.github.alexswilliams.csv;
+
+/**
+ * How the values of one column of a {@link CsvColumnBatch} are stored.
+ *
+ * @author Alex Williams
+ */
+public enum CsvColumnType {
+    /**
+     * Characters of every row held in one shared {@code char[]}, delimited by an offsets array.
+     */
+    STRING,
+    INT,
+    LONG,
+    DOUBLE,
+    BOOLEAN
+}
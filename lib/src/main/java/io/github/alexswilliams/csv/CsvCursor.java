@@ -0,0 +1,507 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Steps through the rows of a CSV file one at a time without materialising them.
+ * <p>
+ * The fields of the current row are views onto the reader's own buffer: {@link #field(int)} returns a
+ * {@link CharSequence} that is reused for that column on every row, and nothing is copied until
+ * {@link #fieldString(int)} or {@link #row()} is called.  Views are only valid until the next call to {@link #next()}.
+ * Rows that are rejected by inspecting one or two fields therefore cost no allocation at all.
+ * <p>
+ * If {@link #next()} throws a {@link CsvException}, the bad row is abandoned and the cursor can carry on with the rows
+ * after it, as {@link CsvReader#readFile(boolean) readFile(true)} does.
+ * <p>
+ * The first row can be taken as a {@linkplain #readHeader() header}, and rows can be {@linkplain #select(String...)
+ * projected} onto the columns that are wanted, so that the other fields are passed over without being built.
+ *
+ * @author Alex Williams
+ */
+public final class CsvCursor implements Closeable {
+    private final CsvLexer lexer;
+    @Nullable
+    private final Closeable resource;
+    private FieldView[] views = new FieldView[0];
+    @Nullable
+    private CsvHeader header = null;
+
+    CsvCursor(@NotNull final CsvLexer lexer, @Nullable final Closeable resource) {
+        this.lexer = lexer;
+        this.resource = resource;
+    }
+
+    /**
+     * Opens a cursor over a UTF-8 file, which is memory-mapped as for {@link CsvReader#readFile(Path, boolean)}.
+     * A gzipped file, recognised by its first bytes, is inflated on other threads as the cursor reads it.
+     * The cursor must be closed to close the file.
+     */
+    @NotNull
+    public static CsvCursor open(@NotNull final Path path) throws IOException {
+        return open(path, CsvDialect.DEFAULT, CsvCheckpoint.ofBytes(0L, 1));
+    }
+
+    /**
+     * As {@link #open(Path)}, for a file in another dialect.
+     */
+    @NotNull
+    public static CsvCursor open(@NotNull final Path path, @NotNull final CsvDialect dialect) throws IOException {
+        return open(path, dialect, CsvCheckpoint.ofBytes(0L, 1));
+    }
+
+    @NotNull
+    public static CsvCursor open(@NotNull final Path path, @NotNull final CsvCheckpoint from) throws IOException {
+        return open(path, CsvDialect.DEFAULT, from);
+    }
+
+    /**
+     * As {@link #open(Path)}, resuming from a {@linkplain #checkpoint() checkpoint} taken from the same file.  The file
+     * is mapped from the checkpoint onwards, so nothing before it is read again.
+     *
+     * @throws IllegalArgumentException if the checkpoint was taken from a {@link java.io.Reader}, whose offsets are
+     *                                  chars
+     */
+    @NotNull
+    public static CsvCursor open(@NotNull final Path path, @NotNull final CsvDialect dialect,
+                                 @NotNull final CsvCheckpoint from) throws IOException {
+        if (!from.isByteOffset()) {
+            throw new IllegalArgumentException("A file cannot be resumed from a char offset: " + from);
+        }
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            if (GzipSource.isGzip(channel)) {
+                // the checkpoint is an offset into the inflated file, which can only be reached by inflating it
+                final GzipSource source = new GzipSource(channel, from.offset());
+                return new CsvCursor(new CsvLexer(source, dialect, from.offset(), from.lineNum(),
+                        CsvLexer.DEFAULT_WINDOW_SIZE), () -> {
+                    source.close();
+                    channel.close();
+                });
+            }
+            final MappedFileSource source = new MappedFileSource(channel, from.offset());
+            return new CsvCursor(new CsvLexer(source, dialect, from.offset(), from.lineNum(),
+                    CsvLexer.DEFAULT_WINDOW_SIZE), channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the next row as the names of the columns, for use by {@link #select(String...)}.
+     *
+     * @throws CsvException if there are no rows, or the header row cannot be lexed
+     */
+    @NotNull
+    public CsvHeader readHeader() throws IOException, CsvException {
+        if (!lexer.nextRow()) {
+            throw new CsvException("[ERROR] CSV (" + lexer.location() + "): No header row.");
+        }
+        header = new CsvHeader(lexer.rowAsList());
+        return header;
+    }
+
+    /**
+     * @return the header row, or null if {@link #readHeader()} has not been called
+     */
+    @Nullable
+    public CsvHeader header() {
+        return header;
+    }
+
+    /**
+     * Projects the rows that follow onto the named columns of the {@linkplain #readHeader() header}: field {@code i}
+     * of each row becomes the column named {@code names[i]}, and is empty if the row is too short to have it.  Fields
+     * of the other columns are lexed past without being built.
+     *
+     * @throws IllegalArgumentException if a name is not in the header, or is selected twice
+     * @throws IllegalStateException    if the header has not been read
+     */
+    public void select(@NotNull final String... names) {
+        if (header == null) {
+            throw new IllegalStateException("The header must be read before selecting columns by name");
+        }
+        select(header.indicesOf(names));
+    }
+
+    /**
+     * As {@link #select(String...)}, by zero-based column number.
+     */
+    public void select(@NotNull final int... columns) {
+        for (int column : columns) {
+            if (column < 0) throw new IllegalArgumentException("Negative column " + column);
+        }
+        lexer.project(columns.clone());
+    }
+
+    /**
+     * Undoes {@link #select(String...)}: the rows that follow have all of their fields.
+     */
+    public void selectAll() {
+        lexer.project(null);
+    }
+
+    /**
+     * Binds the columns of the {@linkplain #readHeader() header} to the constructor parameters or fields of a class,
+     * as described by {@link CsvBinder}, and {@linkplain #select(int...) projects} the rows that follow onto the bound
+     * columns.  The binder is for use with {@link #row(CsvBinder)} on this cursor, until columns are selected again.
+     *
+     * @throws IllegalArgumentException if the class cannot be bound, or a constructor parameter has no column
+     * @throws IllegalStateException    if the header has not been read
+     */
+    @NotNull
+    public <T> CsvBinder<T> bind(@NotNull final Class<T> type) {
+        if (header == null) {
+            throw new IllegalStateException("The header must be read before binding columns by name");
+        }
+        final CsvBinder<T> binder = new CsvBinder<>(type, header);
+        select(binder.columns());
+        return binder;
+    }
+
+    /**
+     * @return the current row as an object of the class a binder from {@link #bind(Class)} was made for; or null for a
+     * blank line
+     * @throws CsvException if a field cannot be parsed as the type of the parameter or field it is bound to
+     */
+    @Nullable
+    public <T> T row(@NotNull final CsvBinder<T> binder) throws CsvException {
+        return lexer.fieldCount == 0 ? null : binder.build(lexer);
+    }
+
+    /**
+     * As {@link CsvReader#intern(CsvStringCache, int...)}.
+     */
+    public void intern(@Nullable final CsvStringCache cache, @NotNull final int... columns) {
+        for (int column : columns) {
+            if (column < 0) throw new IllegalArgumentException("Negative column " + column);
+        }
+        for (int column : columns) {
+            lexer.cache(column, cache);
+        }
+    }
+
+    /**
+     * As {@link #intern(CsvStringCache, int...)}, by the names of columns in the {@linkplain #readHeader() header}.
+     *
+     * @throws IllegalArgumentException if a name is not in the header
+     * @throws IllegalStateException    if the header has not been read
+     */
+    public void intern(@Nullable final CsvStringCache cache, @NotNull final String... names) {
+        if (header == null) {
+            throw new IllegalStateException("The header must be read before interning columns by name");
+        }
+        intern(cache, header.indicesOf(names));
+    }
+
+    /**
+     * As {@link CsvReader#filter(int, Predicate)}.  Filtered columns need not be {@linkplain #select(int...) selected}.
+     */
+    public void filter(final int column, @Nullable final Predicate<? super CharSequence> predicate) {
+        if (column < 0) throw new IllegalArgumentException("Negative column " + column);
+        lexer.filter(column, predicate);
+    }
+
+    /**
+     * As {@link #filter(int, Predicate)}, by the name of a column in the {@linkplain #readHeader() header}.
+     *
+     * @throws IllegalArgumentException if the name is not in the header
+     * @throws IllegalStateException    if the header has not been read
+     */
+    public void filter(@NotNull final String name, @Nullable final Predicate<? super CharSequence> predicate) {
+        if (header == null) {
+            throw new IllegalStateException("The header must be read before filtering columns by name");
+        }
+        filter(header.indicesOf(name)[0], predicate);
+    }
+
+    /**
+     * As {@link CsvReader#enableMetrics(CsvMetricsListener)}.
+     */
+    @NotNull
+    public CsvMetrics enableMetrics(@NotNull final CsvMetricsListener listener) {
+        final CsvMetrics metrics = new CsvMetrics(listener);
+        lexer.metrics = metrics;
+        return metrics;
+    }
+
+    /**
+     * Reports malformed rows to a sink from now on, rather than {@link #next()} throwing for each one; the bad rows are
+     * skipped.
+     *
+     * @param errors the sink, or null to go back to throwing
+     */
+    public void setErrorSink(@Nullable final CsvErrorSink errors) {
+        lexer.errorSink = errors;
+    }
+
+    /**
+     * Finds where each run of ordinary characters ends from a bitmap of the dialect's special characters, made from
+     * each block of the file as it is read, eight bytes at a time, rather than by testing every character.  The rows
+     * are the same either way.  This only pays where fields run long between special characters, and is otherwise
+     * slower, so it is off unless asked for; see {@code bench/results/structural-index.md}.
+     *
+     * @return false if the cursor is not reading a memory-mapped file, which is then read as before
+     */
+    public boolean enableStructuralIndex() {
+        return lexer.indexStructure();
+    }
+
+    @NotNull
+    CsvLexer lexer() {
+        return lexer;
+    }
+
+    /**
+     * @return the remaining rows, as {@link FileRangeSpliterator} would give them
+     */
+    @NotNull
+    Spliterator<Result<List<String>>> results() {
+        return new AbstractCsvReaderSpliterator() {
+            @Override
+            public boolean tryAdvance(final Consumer<? super Result<List<String>>> action) {
+                try {
+                    if (!lexer.nextRow()) {
+                        return false;
+                    }
+                    action.accept(new Result.OK<>(lexer.rowAsList()));
+                    return true;
+                } catch (IOException e) {
+                    throw new CheckedLaterException(e);
+                } catch (CsvException e) {
+                    action.accept(new Result.Error<>(e, lexer.location()));
+                    return true;
+                }
+            }
+        };
+    }
+
+    /**
+     * Moves to the next row.
+     *
+     * @return false if there are no more rows
+     */
+    public boolean next() throws IOException, CsvException {
+        return lexer.nextRow();
+    }
+
+    /**
+     * Reads up to {@link CsvColumnBatch#capacity()} rows into a batch, replacing its previous contents.
+     * Blank lines are skipped.
+     * <p>
+     * If a row cannot be lexed, or one of its fields cannot be parsed as its column's type, a {@link CsvException} is
+     * thrown: the batch then holds the rows before the bad one, and the next call starts a new batch after it.
+     *
+     * @return the number of rows read, which is zero only at the end of the input
+     */
+    public int nextBatch(@NotNull final CsvColumnBatch batch) throws IOException, CsvException {
+        batch.clear();
+        while (!batch.isFull() && lexer.nextRow()) {
+            if (lexer.fieldCount > 0) {
+                batch.add(lexer);
+            }
+        }
+        return batch.rowCount();
+    }
+
+    /**
+     * @return the point after the current row, from which a new cursor could carry on; taken after {@link #next()}
+     * has returned false, this is the end of the input
+     */
+    @NotNull
+    public CsvCheckpoint checkpoint() {
+        return lexer.checkpoint();
+    }
+
+    /**
+     * @return the line on which the current row began, counting from 1; or {@link CsvCheckpoint#UNKNOWN_LINE} if lines
+     * are not being counted, as after resuming from a checkpoint without a line number
+     */
+    public int lineNumber() {
+        return lexer.rowLine();
+    }
+
+    /**
+     * @return the number of fields in the current row; zero for a blank line
+     */
+    public int fieldCount() {
+        return lexer.fieldCount;
+    }
+
+    /**
+     * @return the decoded value of a field in the current row, as a view that is only valid until the next row
+     */
+    @NotNull
+    public CharSequence field(final int index) {
+        checkIndex(index);
+        if (index >= views.length) {
+            final int oldLength = views.length;
+            views = Arrays.copyOf(views, Math.max(index + 1, oldLength * 2));
+            for (int i = oldLength; i < views.length; i++) {
+                views[i] = new FieldView(i);
+            }
+        }
+        return views[index];
+    }
+
+    public int fieldLength(final int index) {
+        checkIndex(index);
+        return lexer.fieldEnds[index] - lexer.fieldStarts[index];
+    }
+
+    /**
+     * @return the value of a field in the current row as a new string, or as a cached one if the column is
+     * {@linkplain #intern(CsvStringCache, int...) interned}
+     */
+    @NotNull
+    public String fieldString(final int index) {
+        checkIndex(index);
+        return lexer.fieldString(index);
+    }
+
+    /**
+     * Compares a field of the current row with a value, without copying the field.
+     */
+    public boolean fieldEquals(final int index, @NotNull final CharSequence value) {
+        checkIndex(index);
+        final int start = lexer.fieldStarts[index];
+        final int length = lexer.fieldEnds[index] - start;
+        if (value.length() != length) {
+            return false;
+        }
+        final char[] buf = lexer.buf;
+        for (int i = 0; i < length; i++) {
+            if (buf[start + i] != value.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Parses a field of the current row as an int, directly from the reader's buffer.
+     *
+     * @throws CsvException if the field is not an optionally-signed decimal int, giving the row and field number
+     */
+    public int intField(final int index) throws CsvException {
+        checkIndex(index);
+        return FieldParsers.parseInt(lexer, index);
+    }
+
+    /**
+     * As {@link #intField(int)}, for a long.
+     */
+    public long longField(final int index) throws CsvException {
+        checkIndex(index);
+        return FieldParsers.parseLong(lexer, index);
+    }
+
+    /**
+     * Parses a field of the current row as a double, accepting the same values as {@link Double#parseDouble} other
+     * than those with surrounding whitespace.  Plain decimal values are parsed without copying the field.
+     */
+    public double doubleField(final int index) throws CsvException {
+        checkIndex(index);
+        return FieldParsers.parseDouble(lexer, index);
+    }
+
+    /**
+     * Parses a field of the current row as {@code true} or {@code false}, ignoring case.
+     * Unlike {@link Boolean#parseBoolean}, any other value is an error.
+     */
+    public boolean booleanField(final int index) throws CsvException {
+        checkIndex(index);
+        return FieldParsers.parseBoolean(lexer, index);
+    }
+
+    /**
+     * Parses a field of the current row as a date in a fixed-width format, such as
+     * {@link CsvDateFormat#ISO_LOCAL_DATE}.
+     */
+    @NotNull
+    public LocalDate dateField(final int index, @NotNull final CsvDateFormat format) throws CsvException {
+        checkIndex(index);
+        return FieldParsers.parseDate(lexer, index, format);
+    }
+
+    /**
+     * @return the current row as {@link CsvReader#readFile(boolean)} would have returned it
+     */
+    @NotNull
+    public List<String> row() {
+        return lexer.rowAsList();
+    }
+
+    /**
+     * Closes the input, unless it belongs to the {@link CsvReader} this came from, and reports the metrics of a cursor
+     * closed before the end of its input.
+     */
+    @Override
+    public void close() throws IOException {
+        if (resource == null) {
+            return;
+        }
+        try {
+            resource.close();
+        } finally {
+            final CsvMetrics metrics = lexer.metrics;
+            if (metrics != null) metrics.closed();
+        }
+    }
+
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= lexer.fieldCount) {
+            throw new IndexOutOfBoundsException("Field " + index + " of a row of " + lexer.fieldCount);
+        }
+    }
+
+    /**
+     * The value of one column of whichever row is current.
+     */
+    private final class FieldView implements CharSequence {
+        private final int index;
+
+        FieldView(final int index) {
+            this.index = index;
+        }
+
+        @Override
+        public int length() {
+            return fieldLength(index);
+        }
+
+        @Override
+        public char charAt(final int i) {
+            if (i < 0 || i >= length()) {
+                throw new IndexOutOfBoundsException("Index " + i + " of a field of " + length());
+            }
+            return lexer.buf[lexer.fieldStarts[index] + i];
+        }
+
+        @NotNull
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            if (start < 0 || end > length() || start > end) {
+                throw new IndexOutOfBoundsException("Range " + start + "-" + end + " of a field of " + length());
+            }
+            return new String(lexer.buf, lexer.fieldStarts[index] + start, end - start);
+        }
+
+        @NotNull
+        @Override
+        public String toString() {
+            return fieldString(index);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A fixed-width date format, such as {@code yyyy-MM-dd} or {@code dd/MM/yyyy}, that can be parsed without building a
+ * string or a {@link java.time.format.DateTimeFormatter} parse context.
+ * The pattern must contain one each of {@code yyyy}, {@code MM} and {@code dd}; every other character is a literal
+ * that must appear as-is.
+ *
+ * @author Alex Williams
+ */
+public final class CsvDateFormat {
+    public static final CsvDateFormat ISO_LOCAL_DATE = ofPattern("yyyy-MM-dd");
+
+    private final String pattern;
+    private final int yearAt;
+    private final int monthAt;
+    private final int dayAt;
+
+    private CsvDateFormat(@NotNull final String pattern, final int yearAt, final int monthAt, final int dayAt) {
+        this.pattern = pattern;
+        this.yearAt = yearAt;
+        this.monthAt = monthAt;
+        this.dayAt = dayAt;
+    }
+
+    @NotNull
+    public static CsvDateFormat ofPattern(@NotNull final String pattern) {
+        final int yearAt = pattern.indexOf("yyyy");
+        final int monthAt = pattern.indexOf("MM");
+        final int dayAt = pattern.indexOf("dd");
+        if (yearAt < 0 || monthAt < 0 || dayAt < 0) {
+            throw new IllegalArgumentException("Date pattern must contain yyyy, MM and dd: " + pattern);
+        }
+        for (int i = 0; i < pattern.length(); i++) {
+            final char c = pattern.charAt(i);
+            final boolean inField = (i >= yearAt && i < yearAt + 4) || (i >= monthAt && i < monthAt + 2)
+                    || (i >= dayAt && i < dayAt + 2);
+            if (!inField && (c == 'y' || c == 'M' || c == 'd')) {
+                throw new IllegalArgumentException("Date pattern must contain yyyy, MM and dd once each: " + pattern);
+            }
+        }
+        return new CsvDateFormat(pattern, yearAt, monthAt, dayAt);
+    }
+
+    int length() {
+        return pattern.length();
+    }
+
+    /**
+     * @return whether the {@link #length()} characters from {@code start} have this format's literals and digits
+     */
+    boolean matches(@NotNull final char[] b, final int start) {
+        for (int i = 0; i < pattern.length(); i++) {
+            final char c = pattern.charAt(i);
+            final char actual = b[start + i];
+            if (c == 'y' || c == 'M' || c == 'd' ? actual < '0' || actual > '9' : actual != c) return false;
+        }
+        return true;
+    }
+
+    int year(@NotNull final char[] b, final int start) {
+        return digits(b, start + yearAt, 4);
+    }
+
+    int month(@NotNull final char[] b, final int start) {
+        return digits(b, start + monthAt, 2);
+    }
+
+    int day(@NotNull final char[] b, final int start) {
+        return digits(b, start + dayAt, 2);
+    }
+
+    private static int digits(@NotNull final char[] b, final int from, final int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            value = value * 10 + (b[i] - '0');
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
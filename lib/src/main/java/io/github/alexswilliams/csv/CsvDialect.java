@@ -0,0 +1,267 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The characters and rules that a CSV file is written with: its delimiter, quote and escape characters, comments,
+ * line endings and whitespace.
+ * <p>
+ * {@link #DEFAULT} is what the readers have always accepted, and is used when no dialect is given.  It is not quite
+ * RFC 4180: a {@code #} anywhere outside a quoted field, or even inside one, starts a comment that runs to the end of
+ * the line, and every carriage return is dropped, as are newlines inside quoted fields.  Any other dialect is made
+ * with a {@link #builder()}, which starts from {@link #RFC_4180}; in those, comments are whole lines beginning with
+ * the {@linkplain Builder#commentPrefix(char) comment prefix}, and quoted fields keep their line breaks.
+ * <p>
+ * A dialect is compiled once, when it is built, into the tables that the lexer scans with, so that a reader lexes
+ * any dialect as quickly as it does the default.  The special characters must all be ASCII, which lets files still be
+ * lexed as raw UTF-8 bytes.
+ *
+ * @author Alex Williams
+ */
+public final class CsvDialect {
+    /**
+     * Stands for a character that the dialect does not have, such as the comment prefix of a file without comments.
+     */
+    static final int NONE = -2;
+
+    public static final CsvDialect DEFAULT = new CsvDialect(',', '\"', NONE, '#', true, false, false);
+    public static final CsvDialect RFC_4180 = builder().build();
+    public static final CsvDialect TSV = builder().delimiter('\t').build();
+
+    final char delimiter;
+    final int quote;
+    /**
+     * An escape character other than the quote, or {@link #NONE}; an escape that is the quote is the {@code ""} of
+     * RFC 4180, which every dialect with quotes accepts.
+     */
+    final int escape;
+    final int comment;
+    /**
+     * Whether this is {@link #DEFAULT}, with its comments anywhere and dropped carriage returns.
+     */
+    final boolean legacy;
+    final boolean bareCarriageReturnEndsLine;
+    final boolean trimWhitespace;
+
+    /**
+     * The ASCII characters that end a run of ordinary characters in an unquoted field, and in a quoted one.
+     */
+    final boolean[] unquotedStops = new boolean[0x80];
+    final boolean[] quotedStops = new boolean[0x80];
+
+    private CsvDialect(final char delimiter, final int quote, final int escape, final int comment,
+                       final boolean legacy, final boolean bareCarriageReturnEndsLine, final boolean trimWhitespace) {
+        this.delimiter = delimiter;
+        this.quote = quote;
+        this.escape = escape == quote ? NONE : escape;
+        this.comment = comment;
+        this.legacy = legacy;
+        this.bareCarriageReturnEndsLine = bareCarriageReturnEndsLine;
+        this.trimWhitespace = trimWhitespace;
+
+        stop(unquotedStops, delimiter, '\n', '\r', quote, this.escape);
+        stop(quotedStops, '\n', '\r', quote, this.escape);
+        if (legacy) {
+            stop(unquotedStops, comment);
+            stop(quotedStops, comment);
+        }
+    }
+
+    private static void stop(@NotNull final boolean[] stops, @NotNull final int... chars) {
+        for (int c : chars) {
+            if (c != NONE) stops[c] = true;
+        }
+    }
+
+    /**
+     * Recreates a dialect from the fields of one, as saved alongside a {@link CsvIndex}.
+     *
+     * @throws IllegalArgumentException if they do not make a dialect
+     */
+    @NotNull
+    static CsvDialect of(final char delimiter, final int quote, final int escape, final int comment,
+                         final boolean legacy, final boolean bareCarriageReturnEndsLine,
+                         final boolean trimWhitespace) {
+        if (legacy) {
+            return DEFAULT;
+        }
+        final Builder builder = builder().delimiter(delimiter)
+                .bareCarriageReturnEndsLine(bareCarriageReturnEndsLine)
+                .trimWhitespace(trimWhitespace);
+        if (quote == NONE) builder.noQuote();
+        else builder.quote((char) quote);
+        if (escape != NONE) builder.escape((char) escape);
+        if (comment != NONE) builder.commentPrefix((char) comment);
+        return builder.build();
+    }
+
+    /**
+     * @return a builder that starts from {@link #RFC_4180}: comma-delimited, with double quotes that are escaped by
+     * doubling them, no comments, lines ended by {@code \n} or {@code \r\n}, and whitespace kept
+     */
+    @NotNull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public char delimiter() {
+        return delimiter;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CsvDialect)) return false;
+        final CsvDialect that = (CsvDialect) o;
+        return delimiter == that.delimiter && quote == that.quote && escape == that.escape && comment == that.comment
+                && legacy == that.legacy && bareCarriageReturnEndsLine == that.bareCarriageReturnEndsLine
+                && trimWhitespace == that.trimWhitespace;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = delimiter;
+        result = 31 * result + quote;
+        result = 31 * result + escape;
+        result = 31 * result + comment;
+        result = 31 * result + (legacy ? 1 : 0);
+        result = 31 * result + (bareCarriageReturnEndsLine ? 1 : 0);
+        result = 31 * result + (trimWhitespace ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        if (legacy) {
+            return "CsvDialect{DEFAULT}";
+        }
+        return "CsvDialect{delimiter=" + describe(delimiter) + ", quote=" + describe(quote)
+                + ", escape=" + describe(escape == NONE ? quote : escape) + ", comment=" + describe(comment)
+                + ", bareCarriageReturnEndsLine=" + bareCarriageReturnEndsLine
+                + ", trimWhitespace=" + trimWhitespace + '}';
+    }
+
+    @NotNull
+    private static String describe(final int c) {
+        if (c == NONE) return "none";
+        if (c == '\t') return "'\\t'";
+        return "'" + (char) c + "'";
+    }
+
+    /**
+     * Builds a {@link CsvDialect}.  Every setting is checked when the dialect is {@linkplain #build() built}.
+     */
+    public static final class Builder {
+        private char delimiter = ',';
+        private int quote = '\"';
+        private int escape = '\"';
+        private int comment = NONE;
+        private boolean bareCarriageReturnEndsLine = false;
+        private boolean trimWhitespace = false;
+
+        private Builder() {
+        }
+
+        @NotNull
+        public Builder delimiter(final char delimiter) {
+            this.delimiter = delimiter;
+            return this;
+        }
+
+        /**
+         * Sets the character that fields may be enclosed in, to contain delimiters and line breaks.  Unless another
+         * {@linkplain #escape(char) escape} is set, a quote inside a quoted field is written twice.
+         */
+        @NotNull
+        public Builder quote(final char quote) {
+            if (this.escape == this.quote) {
+                this.escape = quote;
+            }
+            this.quote = quote;
+            return this;
+        }
+
+        /**
+         * Makes quotes ordinary characters, for formats such as plain TSV that cannot quote fields.
+         */
+        @NotNull
+        public Builder noQuote() {
+            if (this.escape == this.quote) {
+                this.escape = NONE;
+            }
+            this.quote = NONE;
+            return this;
+        }
+
+        /**
+         * Sets a character that makes the character after it, in a quoted or an unquoted field, part of the value
+         * whatever it is; for example {@code \} for {@code a\,b}.  A doubled quote is still accepted inside quotes.
+         */
+        @NotNull
+        public Builder escape(final char escape) {
+            this.escape = escape;
+            return this;
+        }
+
+        /**
+         * Lines that begin with this character are skipped.  It is an ordinary character anywhere else.
+         */
+        @NotNull
+        public Builder commentPrefix(final char prefix) {
+            this.comment = prefix;
+            return this;
+        }
+
+        @NotNull
+        public Builder noComments() {
+            this.comment = NONE;
+            return this;
+        }
+
+        /**
+         * Whether a carriage return on its own ends a line, as in old Mac OS files.  Either way, {@code \r\n} ends a
+         * line, and line breaks within quoted fields are kept as they are.
+         */
+        @NotNull
+        public Builder bareCarriageReturnEndsLine(final boolean bareCarriageReturnEndsLine) {
+            this.bareCarriageReturnEndsLine = bareCarriageReturnEndsLine;
+            return this;
+        }
+
+        /**
+         * Whether spaces and tabs around a field are dropped: at either end of an unquoted field, and between the
+         * quotes of a quoted field and the delimiters either side.  Whitespace inside quotes is kept.
+         */
+        @NotNull
+        public Builder trimWhitespace(final boolean trimWhitespace) {
+            this.trimWhitespace = trimWhitespace;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException if a special character is not ASCII, is a line break, or is used for two
+         *                                  things
+         */
+        @NotNull
+        public CsvDialect build() {
+            checkSpecial("Delimiter", delimiter);
+            checkSpecial("Quote", quote);
+            checkSpecial("Escape", escape);
+            checkSpecial("Comment prefix", comment);
+            if (delimiter == quote || delimiter == escape || delimiter == comment
+                    || (quote != NONE && quote == comment) || (escape != NONE && escape == comment)) {
+                throw new IllegalArgumentException("The special characters of a dialect must differ: delimiter "
+                        + describe(delimiter) + ", quote " + describe(quote) + ", escape " + describe(escape)
+                        + ", comment " + describe(comment));
+            }
+            return new CsvDialect(delimiter, quote, escape, comment, false, bareCarriageReturnEndsLine,
+                    trimWhitespace);
+        }
+
+        private static void checkSpecial(@NotNull final String what, final int c) {
+            if (c != NONE && (c >= 0x80 || c == '\n' || c == '\r')) {
+                throw new IllegalArgumentException(what + " must be ASCII and not a line break: " + describe(c));
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The ways in which a row can be malformed.
+ *
+ * @author Alex Williams
+ */
+public enum CsvErrorCode {
+    UNEXPECTED_QUOTE("Unescaped quotation mark or leading character before quoted field."),
+    UNEXPECTED_CHARACTER_AFTER_QUOTED_FIELD("Unescaped quotation mark or trailing character after quoted field."),
+    UNTERMINATED_QUOTED_FIELD("Unterminated quoted field.");
+
+    /**
+     * As given in the message of the {@link CsvException} thrown when there is no {@link CsvErrorSink}.
+     */
+    @NotNull
+    public final String description;
+
+    CsvErrorCode(@NotNull final String description) {
+        this.description = description;
+    }
+}
@@ -0,0 +1,129 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+
+/**
+ * An {@link CsvErrorSink} that keeps the first errors in a compact form, counts all of them, and logs in aggregate.
+ * <p>
+ * Up to a fixed number of errors are kept, each as a few primitives; beyond that they are only counted.  Rather than
+ * one log line per error, a warning is logged for the 1st, 10th, 100th, and so on, error of each kind, so a file with
+ * millions of bad rows costs a handful of log lines.
+ *
+ * @author Alex Williams
+ */
+public final class CsvErrorLog implements CsvErrorSink {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CsvReader.class);
+    private static final CsvErrorCode[] CODES = CsvErrorCode.values();
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    private final byte[] codes;
+    private final int[] lines;
+    private final int[] fields;
+    private final long[] offsets;
+    private final long[] countsByCode = new long[CODES.length];
+    private int recorded = 0;
+    private long count = 0;
+
+    public CsvErrorLog() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity how many errors to keep the details of
+     */
+    public CsvErrorLog(final int capacity) {
+        this.codes = new byte[capacity];
+        this.lines = new int[capacity];
+        this.fields = new int[capacity];
+        this.offsets = new long[capacity];
+    }
+
+    @Override
+    public synchronized void onError(@NotNull final CsvErrorCode code, final int line, final int field,
+                                     final long offset) {
+        if (recorded < codes.length) {
+            codes[recorded] = (byte) code.ordinal();
+            lines[recorded] = line;
+            fields[recorded] = field;
+            offsets[recorded] = offset;
+            recorded++;
+        }
+        count++;
+        final long ofThisCode = ++countsByCode[code.ordinal()];
+        if (isPowerOfTen(ofThisCode) && LOGGER.isWarnEnabled()) {
+            LOGGER.warn("Skipped {} row(s) due to parsing error, the latest at line {}, field {}, offset {}: {}",
+                    ofThisCode, line, field, offset, code.description);
+        }
+    }
+
+    private static boolean isPowerOfTen(long n) {
+        while (n % 10 == 0) n /= 10;
+        return n == 1;
+    }
+
+    /**
+     * @return how many errors there have been, including those not kept
+     */
+    public synchronized long count() {
+        return count;
+    }
+
+    public synchronized long count(@NotNull final CsvErrorCode code) {
+        return countsByCode[code.ordinal()];
+    }
+
+    /**
+     * @return how many errors have been kept, which are numbered from zero in order of occurrence
+     */
+    public synchronized int recorded() {
+        return recorded;
+    }
+
+    @NotNull
+    public synchronized CsvErrorCode code(final int error) {
+        checkError(error);
+        return CODES[codes[error]];
+    }
+
+    /**
+     * @return the line of an error, or -1 if it is not known
+     */
+    public synchronized int line(final int error) {
+        checkError(error);
+        return lines[error];
+    }
+
+    public synchronized int field(final int error) {
+        checkError(error);
+        return fields[error];
+    }
+
+    public synchronized long offset(final int error) {
+        checkError(error);
+        return offsets[error];
+    }
+
+    /**
+     * Forgets all errors.
+     */
+    public synchronized void clear() {
+        recorded = 0;
+        count = 0;
+        Arrays.fill(countsByCode, 0L);
+    }
+
+    private void checkError(final int error) {
+        if (error < 0 || error >= recorded) {
+            throw new IndexOutOfBoundsException("Error " + error + " of " + recorded + " kept");
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "CsvErrorLog{count=" + count + ", byCode=" + Arrays.toString(countsByCode) + "}";
+    }
+}
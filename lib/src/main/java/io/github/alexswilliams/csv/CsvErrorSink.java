@@ -0,0 +1,25 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Receives malformed rows in place of a {@link CsvException} being thrown for each one.
+ * A row in error is skipped, and reading carries on after the character in error, just as when bad lines are skipped
+ * by {@link CsvReader#readFile(boolean) readFile(true)}; but no exception is created and nothing is logged.
+ * <p>
+ * A sink shared by a {@linkplain java.util.stream.Stream#parallel() parallel} stream is called from several threads.
+ *
+ * @author Alex Williams
+ * @see CsvErrorLog
+ */
+@FunctionalInterface
+public interface CsvErrorSink {
+    /**
+     * @param line   the line on which the error was found, counting from 1; or -1 if it is not known, as when a file
+     *               is read in parallel
+     * @param field  the field in which the error was found, counting from 1
+     * @param offset the offset of the character in error within the input: a byte offset when reading a file, or a
+     *               char offset when reading a {@link java.io.Reader}
+     */
+    void onError(@NotNull CsvErrorCode code, int line, int field, long offset);
+}
@@ -0,0 +1,63 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The column names from the header row of a CSV file, as read by {@link CsvCursor#readHeader()}.
+ * If a name appears more than once, it refers to its first column.
+ *
+ * @author Alex Williams
+ */
+public final class CsvHeader {
+    private final List<String> names;
+    private final Map<String, Integer> indices;
+
+    /**
+     * @param names an unmodifiable list
+     */
+    CsvHeader(@NotNull final List<String> names) {
+        this.names = names;
+        this.indices = new HashMap<>(names.size() * 2);
+        for (int i = 0; i < names.size(); i++) {
+            indices.putIfAbsent(names.get(i), i);
+        }
+    }
+
+    @NotNull
+    public List<String> names() {
+        return names;
+    }
+
+    /**
+     * @return the zero-based column of a name, or -1 if there is no such column
+     */
+    public int indexOf(@NotNull final String name) {
+        final Integer index = indices.get(name);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return the columns of some names, in the same order
+     * @throws IllegalArgumentException if any name is not in the header
+     */
+    @NotNull
+    public int[] indicesOf(@NotNull final String... names) {
+        final int[] result = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            result[i] = indexOf(names[i]);
+            if (result[i] < 0) {
+                throw new IllegalArgumentException("No column named \"" + names[i] + "\" in header " + this.names);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return names.toString();
+    }
+}
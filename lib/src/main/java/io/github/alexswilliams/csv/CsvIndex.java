@@ -0,0 +1,317 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A sparse index of the records of a UTF-8 file that does not change: the byte offset and line of every Nth row.
+ * Built in one pass by the same state machine as the readers, so quoted newlines are accounted for.
+ * <p>
+ * Rows are numbered from zero in the order {@link CsvReader#readFile(Path, boolean) readFile(path, true)} returns
+ * them: blank lines count as rows, and malformed rows do not.  With an index, a cursor can be
+ * {@linkplain #openAtRow(Path, long) opened at any row} or {@linkplain #openAtLine(Path, int) line} having read at
+ * most N rows to get there, and a file can be {@linkplain CsvReader#streamFile(Path, CsvIndex, boolean) read in
+ * parallel} split exactly at indexed rows, with line numbers known throughout.
+ * <p>
+ * The file's size and modification time are kept with the index; using an index with a file that no longer matches
+ * them is an error.
+ *
+ * @author Alex Williams
+ */
+public final class CsvIndex {
+    public static final int DEFAULT_INTERVAL = 1024;
+    private static final int MAGIC = 0x43535649; // "CSVI"
+    private static final int FORMAT_VERSION = 2;
+    private static final CsvErrorSink IGNORE_ERRORS = (code, line, field, offset) -> {
+    };
+
+    private final CsvDialect dialect;
+    private final int interval;
+    private final long rowCount;
+    private final long fileSize;
+    private final long lastModified;
+    private final long[] offsets;
+    private final int[] lines;
+
+    private CsvIndex(@NotNull final CsvDialect dialect, final int interval, final long rowCount, final long fileSize,
+                     final long lastModified, @NotNull final long[] offsets, @NotNull final int[] lines) {
+        this.dialect = dialect;
+        this.interval = interval;
+        this.rowCount = rowCount;
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+        this.offsets = offsets;
+        this.lines = lines;
+    }
+
+    @NotNull
+    public static CsvIndex build(@NotNull final Path file) throws IOException {
+        return build(file, CsvDialect.DEFAULT, DEFAULT_INTERVAL);
+    }
+
+    @NotNull
+    public static CsvIndex build(@NotNull final Path file, final int interval) throws IOException {
+        return build(file, CsvDialect.DEFAULT, interval);
+    }
+
+    /**
+     * @param dialect  the dialect the file is written in, which is kept with the index and used whenever it is read
+     * @param interval how many rows apart the indexed rows are
+     * @throws IllegalArgumentException if the file is gzipped, and so cannot be read from the middle
+     */
+    @NotNull
+    public static CsvIndex build(@NotNull final Path file, @NotNull final CsvDialect dialect, final int interval)
+            throws IOException {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Index interval must be positive: " + interval);
+        }
+        final long lastModified = Files.getLastModifiedTime(file).toMillis();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (GzipSource.isGzip(channel)) {
+                throw new IllegalArgumentException("A gzipped file cannot be indexed: " + file);
+            }
+            final long fileSize = channel.size();
+            final CsvLexer lexer = new CsvLexer(new MappedFileSource(channel, 0L), dialect);
+            lexer.logging = false;
+            lexer.errorSink = IGNORE_ERRORS;
+            lexer.project(new int[0]);
+
+            long[] offsets = new long[64];
+            int[] lines = new int[64];
+            int entries = 0;
+            long rows = 0;
+            while (lexer.nextRow()) {
+                if (rows % interval == 0) {
+                    if (entries == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, entries * 2);
+                        lines = Arrays.copyOf(lines, entries * 2);
+                    }
+                    final CsvCheckpoint row = lexer.rowCheckpoint();
+                    offsets[entries] = row.offset();
+                    lines[entries] = row.lineNum();
+                    entries++;
+                }
+                rows++;
+            }
+            return new CsvIndex(dialect, interval, rows, fileSize, lastModified,
+                    Arrays.copyOf(offsets, entries), Arrays.copyOf(lines, entries));
+        } catch (CsvException e) {
+            throw new IllegalStateException("Errors are not thrown while indexing", e);
+        }
+    }
+
+    /**
+     * @return where the index of a file is conventionally saved: alongside it, with {@code .idx} appended to its name
+     */
+    @NotNull
+    public static Path sidecarOf(@NotNull final Path file) {
+        return file.resolveSibling(file.getFileName() + ".idx");
+    }
+
+    public void save(@NotNull final Path indexFile) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeChar(dialect.delimiter);
+            out.writeInt(dialect.quote);
+            out.writeInt(dialect.escape);
+            out.writeInt(dialect.comment);
+            out.writeBoolean(dialect.legacy);
+            out.writeBoolean(dialect.bareCarriageReturnEndsLine);
+            out.writeBoolean(dialect.trimWhitespace);
+            out.writeInt(interval);
+            out.writeLong(rowCount);
+            out.writeLong(fileSize);
+            out.writeLong(lastModified);
+            out.writeInt(offsets.length);
+            for (int i = 0; i < offsets.length; i++) {
+                out.writeLong(offsets[i]);
+                out.writeInt(lines[i]);
+            }
+        }
+    }
+
+    @NotNull
+    public static CsvIndex load(@NotNull final Path indexFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not a CSV index: " + indexFile);
+            }
+            final CsvDialect dialect;
+            try {
+                dialect = CsvDialect.of(in.readChar(), in.readInt(), in.readInt(), in.readInt(),
+                        in.readBoolean(), in.readBoolean(), in.readBoolean());
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Corrupt CSV index: " + indexFile, e);
+            }
+            final int interval = in.readInt();
+            final long rowCount = in.readLong();
+            final long fileSize = in.readLong();
+            final long lastModified = in.readLong();
+            final int entries = in.readInt();
+            if (interval <= 0 || entries < 0 || entries != (rowCount + interval - 1) / interval) {
+                throw new IOException("Corrupt CSV index: " + indexFile);
+            }
+            final long[] offsets = new long[entries];
+            final int[] lines = new int[entries];
+            for (int i = 0; i < entries; i++) {
+                offsets[i] = in.readLong();
+                lines[i] = in.readInt();
+            }
+            return new CsvIndex(dialect, interval, rowCount, fileSize, lastModified, offsets, lines);
+        }
+    }
+
+    @NotNull
+    public CsvDialect dialect() {
+        return dialect;
+    }
+
+    public int interval() {
+        return interval;
+    }
+
+    public long rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return whether a file still has the size and modification time of the one this index was built from
+     */
+    public boolean isCurrent(@NotNull final Path file) throws IOException {
+        return Files.size(file) == fileSize && Files.getLastModifiedTime(file).toMillis() == lastModified;
+    }
+
+    /**
+     * Opens a cursor whose next row is the given row.
+     *
+     * @throws IndexOutOfBoundsException if there is no such row, other than just after the last row
+     */
+    @NotNull
+    public CsvCursor openAtRow(@NotNull final Path file, final long row) throws IOException {
+        if (row < 0 || row > rowCount) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + rowCount);
+        }
+        final int entry = (int) Math.min(row / interval, offsets.length - 1);
+        final CsvCursor cursor = openAtEntry(file, entry);
+        try {
+            for (long skipped = entry < 0 ? row : row - (long) entry * interval; skipped > 0; skipped--) {
+                cursor.next();
+            }
+            cursor.setErrorSink(null);
+            return cursor;
+        } catch (CsvException e) {
+            cursor.close();
+            throw new IllegalStateException("Errors are not thrown while seeking", e);
+        } catch (IOException | RuntimeException e) {
+            cursor.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a cursor whose next row is the first to begin on or after the given line.
+     */
+    @NotNull
+    public CsvCursor openAtLine(@NotNull final Path file, final int line) throws IOException {
+        int low = 0;
+        int high = lines.length - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (lines[mid] <= line) low = mid;
+            else high = mid - 1;
+        }
+        final CsvCursor cursor = openAtEntry(file, high < 0 ? -1 : low);
+        try {
+            while (cursor.checkpoint().lineNum() < line && cursor.next()) {
+                // the checkpoint between rows is where the next row begins
+            }
+            cursor.setErrorSink(null);
+            return cursor;
+        } catch (CsvException e) {
+            cursor.close();
+            throw new IllegalStateException("Errors are not thrown while seeking", e);
+        } catch (IOException | RuntimeException e) {
+            cursor.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return rows {@code [fromRow, toRow)}, numbered as by {@link #openAtRow(Path, long)}
+     */
+    @NotNull
+    public List<List<String>> readRows(@NotNull final Path file, final long fromRow, final long toRow)
+            throws IOException, CsvException {
+        if (toRow < fromRow || toRow > rowCount) {
+            throw new IndexOutOfBoundsException("Rows " + fromRow + "-" + toRow + " of " + rowCount);
+        }
+        final List<List<String>> rows = new ArrayList<>((int) Math.min(toRow - fromRow, 1 << 16));
+        try (CsvCursor cursor = openAtRow(file, fromRow)) {
+            cursor.setErrorSink(IGNORE_ERRORS);
+            for (long row = fromRow; row < toRow && cursor.next(); row++) {
+                rows.add(cursor.row());
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return the indexed row nearest to {@code offset} that begins strictly between {@code start} and {@code end},
+     * or null if there is none
+     */
+    @Nullable
+    CsvCheckpoint rowNear(final long offset, final long start, final long end) {
+        int low = 0;
+        int high = offsets.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (offsets[mid] < offset) low = mid + 1;
+            else high = mid;
+        }
+        CsvCheckpoint best = null;
+        for (int i = Math.max(0, low - 1); i <= Math.min(offsets.length - 1, low); i++) {
+            if (offsets[i] > start && offsets[i] < end
+                    && (best == null || Math.abs(offsets[i] - offset) < Math.abs(best.offset() - offset))) {
+                best = CsvCheckpoint.ofBytes(offsets[i], lines[i]);
+            }
+        }
+        return best;
+    }
+
+    void checkCurrent(@NotNull final FileChannel channel) throws IOException {
+        if (channel.size() != fileSize) {
+            throw new IllegalArgumentException("The file has changed since it was indexed: it was " + fileSize
+                    + " bytes, and is now " + channel.size());
+        }
+    }
+
+    /**
+     * @param entry an indexed row, or -1 for the start of the file
+     * @return a cursor at that row which skips malformed rows
+     */
+    @NotNull
+    private CsvCursor openAtEntry(@NotNull final Path file, final int entry) throws IOException {
+        if (!isCurrent(file)) {
+            throw new IllegalArgumentException("The file has changed since it was indexed: " + file);
+        }
+        final CsvCursor cursor = entry < 0
+                ? CsvCursor.open(file, dialect)
+                : CsvCursor.open(file, dialect, CsvCheckpoint.ofBytes(offsets[entry], lines[entry]));
+        cursor.setErrorSink(IGNORE_ERRORS);
+        return cursor;
+    }
+}
@@ -0,0 +1,742 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads many CSV files, or other sources, at once on a pool of threads, tagging each row with the source and line it
+ * came from.
+ * <p>
+ * {@link #stream(List)} merges the rows of every source into one stream, in no particular order between sources,
+ * although the rows of each source are in order.  Each thread parses a slice of a few rows from one source, hands
+ * them over, and puts the source to the back of the queue, so that sources take turns: a huge file gets no more of the
+ * threads' time than a small one, and cannot hold up the small ones behind it.  Rows that have been parsed but not yet
+ * taken from the stream count against one {@linkplain Builder#memoryBudget(long) memory budget} for the whole
+ * stream, and the threads wait when it is spent.
+ * <p>
+ * {@link #eachSource(List, Function)} instead gives each source a stream of its own, processed on one of the threads.
+ * <p>
+ * An ingest holds only its settings, and may be used for any number of streams, one after another or at once.
+ *
+ * @author Alex Williams
+ */
+public final class CsvIngest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CsvIngest.class);
+    public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+    public static final int DEFAULT_SLICE_ROWS = 1024;
+
+    private static final int ROW_SIZE = 64;
+    private static final int FIELD_SIZE = 48;
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final CsvDialect dialect;
+    private final boolean skipBadLines;
+    private final int threads;
+    private final boolean virtualThreads;
+    @Nullable
+    private final ExecutorService executor;
+    private final int maxOpenSources;
+    private final long memoryBudget;
+    private final int sliceRows;
+    @Nullable
+    private final CsvMetricsListener metrics;
+
+    private CsvIngest(@NotNull final Builder builder) {
+        this.dialect = builder.dialect;
+        this.skipBadLines = builder.skipBadLines;
+        this.threads = builder.threads;
+        this.virtualThreads = builder.virtualThreads;
+        this.executor = builder.executor;
+        this.maxOpenSources = builder.maxOpenSources == 0 ? 4 * builder.threads
+                : Math.max(builder.maxOpenSources, builder.threads);
+        this.memoryBudget = builder.memoryBudget;
+        this.sliceRows = builder.sliceRows;
+        this.metrics = builder.metrics;
+    }
+
+    @NotNull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * As {@link #stream(List)}, for UTF-8 files, which are memory-mapped or inflated as by
+     * {@link CsvCursor#open(Path)}.
+     */
+    @NotNull
+    public Stream<CsvRow> streamFiles(@NotNull final List<Path> paths) {
+        return stream(paths.stream().map(Source::of).collect(Collectors.toList()));
+    }
+
+    /**
+     * Reads every source at once, merging their rows into one stream.  Sources are opened in the order given, no more
+     * than {@linkplain Builder#maxOpenSources(int) a few} at a time, and read in turns of
+     * {@linkplain Builder#sliceRows(int) a slice} of rows each.
+     * <p>
+     * If a source cannot be read, or has a malformed row when bad lines are not being skipped, the stream throws once
+     * the rows read before it have been taken, and the other sources are abandoned.  The stream must be closed to stop
+     * the threads and close the sources if it is not read to the end.
+     */
+    @NotNull
+    public Stream<CsvRow> stream(@NotNull final List<Source> sources) {
+        final MergedRun run = new MergedRun(new ArrayList<>(sources));
+        run.start();
+        return StreamSupport.stream(run, false).onClose(run::close);
+    }
+
+    /**
+     * Reads every source at once, each as a stream of its own given to {@code action} on one of the threads; the
+     * streams are closed when {@code action} returns.  Up to {@linkplain Builder#threads(int) threads} sources are
+     * read at a time, and a thread that finishes one source moves on to the next one not yet started, so a huge file
+     * occupies one thread while the others carry on through the rest.  Nothing is buffered between the parser and
+     * {@code action}, so the memory budget does not apply.
+     *
+     * @return what {@code action} returned for each source, in the order of the sources
+     * @throws IOException  if a source cannot be read; the sources not yet started are abandoned
+     * @throws CsvException if a source has a malformed row, and bad lines are not being skipped
+     */
+    @NotNull
+    public <R> List<R> eachSource(@NotNull final List<Source> sources,
+                                  @NotNull final Function<? super Stream<CsvRow>, ? extends R> action)
+            throws IOException, CsvException {
+        final Object[] results = new Object[sources.size()];
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final ExecutorService pool = executor != null ? executor : newExecutor();
+        final List<Future<?>> workers = new ArrayList<>();
+        try {
+            for (int i = 0; i < Math.min(threads, sources.size()); i++) {
+                workers.add(pool.submit(() -> {
+                    int index;
+                    while (failure.get() == null && (index = next.getAndIncrement()) < sources.size()) {
+                        try (OpenSource open = new OpenSource(sources.get(index));
+                             Stream<CsvRow> rows = StreamSupport.stream(open, false)) {
+                            results[index] = action.apply(rows);
+                        } catch (Throwable e) {
+                            failure.compareAndSet(null, e);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, new InterruptedIOException("Interrupted waiting for sources to be read"));
+        } catch (ExecutionException e) {
+            failure.compareAndSet(null, e.getCause());
+        } finally {
+            if (pool != executor) {
+                pool.shutdownNow();
+            } else {
+                workers.forEach(worker -> worker.cancel(true));
+            }
+        }
+        final Throwable e = failure.get();
+        if (e != null) {
+            rethrow(e);
+        }
+        @SuppressWarnings("unchecked") final List<R> list = (List<R>) Arrays.asList(results);
+        return Collections.unmodifiableList(list);
+    }
+
+    private static void rethrow(@NotNull final Throwable e) throws IOException, CsvException {
+        final Throwable cause = e instanceof CheckedLaterException ? e.getCause() : e;
+        if (cause instanceof IOException) throw (IOException) cause;
+        if (cause instanceof CsvException) throw (CsvException) cause;
+        if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+        if (cause instanceof Error) throw (Error) cause;
+        throw new RuntimeException(cause);
+    }
+
+    @NotNull
+    private ExecutorService newExecutor() {
+        if (virtualThreads) {
+            try {
+                // Executors.newVirtualThreadPerTaskExecutor() from JDK 21, looked up so as to build for JDK 8
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                LOGGER.debug("Virtual threads are not available; using platform threads");
+            }
+        }
+        return Executors.newFixedThreadPool(threads, task -> {
+            final Thread thread = new Thread(task, "csv-ingest-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static long sizeOf(@NotNull final List<String> fields) {
+        long size = ROW_SIZE;
+        for (String field : fields) {
+            size += FIELD_SIZE + 2L * field.length();
+        }
+        return size;
+    }
+
+    /**
+     * Where the rows of one input come from, and what they are tagged with.
+     */
+    public static final class Source {
+        private final String name;
+        private final Opener opener;
+
+        private Source(@NotNull final String name, @NotNull final Opener opener) {
+            this.name = name;
+            this.opener = opener;
+        }
+
+        /**
+         * @return a source that reads a UTF-8 file as {@link CsvCursor#open(Path)} does, named by its path
+         */
+        @NotNull
+        public static Source of(@NotNull final Path path) {
+            return new Source(path.toString(), dialect -> CsvCursor.open(path, dialect));
+        }
+
+        /**
+         * @param reader opens the reader when the source's turn comes; it is closed once the source has been read
+         */
+        @NotNull
+        public static Source of(@NotNull final String name, @NotNull final ReaderOpener reader) {
+            return new Source(name, dialect -> {
+                final Reader opened = reader.open();
+                return new CsvCursor(new CsvLexer(opened::read, dialect, 0L, 1, CsvLexer.DEFAULT_WINDOW_SIZE),
+                        opened);
+            });
+        }
+
+        @NotNull
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    @FunctionalInterface
+    public interface ReaderOpener {
+        @NotNull
+        Reader open() throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Opener {
+        @NotNull
+        CsvCursor open(@NotNull CsvDialect dialect) throws IOException;
+    }
+
+    /**
+     * A source being read, whose rows can be taken one at a time by {@link #next()} or as a spliterator.
+     */
+    private final class OpenSource implements Spliterator<CsvRow>, Closeable {
+        private final String name;
+        private final CsvCursor cursor;
+
+        OpenSource(@NotNull final Source source) throws IOException {
+            this.name = source.name;
+            this.cursor = source.opener.open(dialect);
+            if (metrics != null) {
+                cursor.enableMetrics(metrics);
+            }
+        }
+
+        /**
+         * @return the next row, or null at the end of the source
+         * @throws CsvException if a row is malformed and bad lines are not being skipped
+         */
+        @Nullable
+        CsvRow next() throws IOException, CsvException {
+            while (true) {
+                try {
+                    if (!cursor.next()) {
+                        return null;
+                    }
+                    return new CsvRow(name, cursor.lineNumber(), cursor.row());
+                } catch (CsvException e) {
+                    if (!skipBadLines) {
+                        LOGGER.warn("Stopping in {} due to parsing error: {}", name, e.getMessage());
+                        throw new CsvException(name + ": " + e.getMessage());
+                    }
+                    LOGGER.warn("Skipping a row of {} due to parsing error: {}", name, e.getMessage());
+                }
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super CsvRow> action) {
+            try {
+                final CsvRow row = next();
+                if (row == null) {
+                    return false;
+                }
+                action.accept(row);
+                return true;
+            } catch (IOException | CsvException e) {
+                throw new CheckedLaterException(e);
+            }
+        }
+
+        @Override
+        public Spliterator<CsvRow> trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | IMMUTABLE | NONNULL;
+        }
+
+        @Override
+        public void close() throws IOException {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Some rows of one source, handed from a thread to the consumer of a merged stream; or the end of the stream, or
+     * the error that ends it.
+     */
+    private static final class Slice {
+        static final Slice END = new Slice(Collections.emptyList(), 0L, null);
+
+        final List<CsvRow> rows;
+        final long size;
+        @Nullable
+        final Exception error;
+
+        Slice(@NotNull final List<CsvRow> rows, final long size, @Nullable final Exception error) {
+            this.rows = rows;
+            this.size = size;
+            this.error = error;
+        }
+    }
+
+    /**
+     * The bytes of parsed rows that may be waiting to be taken from a merged stream.  A slice larger than the whole
+     * budget is let through when nothing else is waiting, so that it cannot wait forever.
+     */
+    private static final class Budget {
+        private final long limit;
+        private long used = 0L;
+        private boolean cancelled = false;
+
+        Budget(final long limit) {
+            this.limit = limit;
+        }
+
+        /**
+         * @return false if the budget was cancelled while waiting
+         */
+        synchronized boolean acquire(final long size) throws InterruptedException {
+            while (!cancelled && used > 0L && used + size > limit) {
+                wait();
+            }
+            used += size;
+            return !cancelled;
+        }
+
+        synchronized void release(final long size) {
+            if (size > 0L) {
+                used -= size;
+                notifyAll();
+            }
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * One call of {@link #stream(List)}: the threads that read the sources in turns, and the consumer's end of the
+     * queue of slices they fill.
+     */
+    private final class MergedRun implements Spliterator<CsvRow> {
+        private final List<Source> sources;
+        private final ExecutorService pool;
+        private final List<Future<?>> workers = new ArrayList<>();
+        private final BlockingQueue<Slice> slices = new LinkedBlockingQueue<>();
+        private final Budget budget = new Budget(memoryBudget);
+        /**
+         * Open sources waiting for their next turn; also guards the counts below and {@link #stopping}.
+         */
+        private final ArrayDeque<OpenSource> ready = new ArrayDeque<>();
+        private int nextSource = 0;
+        private int openSources = 0;
+        private int runningWorkers = 0;
+        private volatile boolean stopping = false;
+
+        private Slice current = new Slice(Collections.emptyList(), 0L, null);
+        private int currentPos = 0;
+
+        MergedRun(@NotNull final List<Source> sources) {
+            this.sources = sources;
+            this.pool = executor != null ? executor : newExecutor();
+        }
+
+        void start() {
+            final int workerCount = Math.min(threads, sources.size());
+            if (workerCount == 0) {
+                slices.add(Slice.END);
+                return;
+            }
+            synchronized (ready) {
+                runningWorkers = workerCount;
+            }
+            for (int i = 0; i < workerCount; i++) {
+                workers.add(pool.submit(this::work));
+            }
+        }
+
+        private void work() {
+            try {
+                OpenSource open;
+                while (!stopping && (open = take()) != null) {
+                    if (!readSlice(open)) {
+                        return;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                fail(e);
+            } finally {
+                synchronized (ready) {
+                    if (--runningWorkers == 0) {
+                        slices.add(Slice.END);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return a source that has not been read yet if another may be opened, or else the source whose turn it is;
+         * or null if there are none left to give this thread
+         */
+        @Nullable
+        private OpenSource take() throws IOException {
+            final Source source;
+            synchronized (ready) {
+                if (nextSource == sources.size() || openSources == maxOpenSources) {
+                    return ready.poll();
+                }
+                source = sources.get(nextSource++);
+                openSources++;
+            }
+            try {
+                return new OpenSource(source);
+            } catch (IOException | RuntimeException e) {
+                synchronized (ready) {
+                    openSources--;
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * Reads up to a slice of rows from a source and queues them, then queues the source for its next turn.
+         *
+         * @return false if the stream is stopping
+         */
+        private boolean readSlice(@NotNull final OpenSource open) {
+            final List<CsvRow> rows = new ArrayList<>(Math.min(sliceRows, DEFAULT_SLICE_ROWS));
+            long size = 0L;
+            boolean finished = false;
+            Exception error = null;
+            try {
+                while (rows.size() < sliceRows) {
+                    final CsvRow row = open.next();
+                    if (row == null) {
+                        finished = true;
+                        break;
+                    }
+                    rows.add(row);
+                    size += sizeOf(row.fields());
+                }
+            } catch (IOException | CsvException | RuntimeException e) {
+                error = e;
+            }
+
+            boolean handedOver = false;
+            try {
+                if (!rows.isEmpty() && budget.acquire(size)) {
+                    slices.add(new Slice(rows, size, null));
+                    handedOver = true;
+                }
+            } catch (InterruptedException e) {
+                if (!stopping && error == null) {
+                    error = new InterruptedIOException("Interrupted waiting for rows to be taken");
+                }
+            }
+            if (error != null) {
+                closeQuietly(open);
+                fail(error);
+                return false;
+            }
+            synchronized (ready) {
+                if (!stopping && !finished && (handedOver || rows.isEmpty())) {
+                    ready.add(open);
+                    return true;
+                }
+                openSources--;
+            }
+            closeQuietly(open);
+            return !stopping;
+        }
+
+        private void fail(@NotNull final Exception e) {
+            synchronized (ready) {
+                if (stopping) {
+                    return;
+                }
+                stopping = true;
+            }
+            slices.add(new Slice(Collections.emptyList(), 0L, e));
+            closeWaiting();
+        }
+
+        private void closeWaiting() {
+            final List<OpenSource> waiting;
+            synchronized (ready) {
+                waiting = new ArrayList<>(ready);
+                openSources -= ready.size();
+                ready.clear();
+            }
+            waiting.forEach(this::closeQuietly);
+            budget.cancel();
+        }
+
+        private void closeQuietly(@NotNull final OpenSource open) {
+            try {
+                open.close();
+            } catch (IOException e) {
+                LOGGER.warn("Could not close {}: {}", open.name, e.getMessage());
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super CsvRow> action) {
+            while (currentPos == current.rows.size()) {
+                if (current == Slice.END) {
+                    return false;
+                }
+                budget.release(current.size);
+                current = nextSlice();
+                currentPos = 0;
+                if (current.error != null) {
+                    final Exception error = current.error;
+                    current = Slice.END;
+                    close();
+                    if (error instanceof RuntimeException) {
+                        throw (RuntimeException) error;
+                    }
+                    throw new CheckedLaterException(error);
+                }
+                if (current == Slice.END) {
+                    shutdown();
+                }
+            }
+            action.accept(current.rows.get(currentPos++));
+            return true;
+        }
+
+        @NotNull
+        private Slice nextSlice() {
+            try {
+                return slices.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new CheckedLaterException(new InterruptedIOException("Interrupted waiting for rows"));
+            }
+        }
+
+        /**
+         * Stops the threads and closes every source still open.
+         */
+        void close() {
+            synchronized (ready) {
+                stopping = true;
+            }
+            closeWaiting();
+            shutdown();
+            workers.forEach(worker -> worker.cancel(true));
+        }
+
+        private void shutdown() {
+            if (pool != executor) {
+                pool.shutdownNow();
+            }
+        }
+
+        @Override
+        public Spliterator<CsvRow> trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return IMMUTABLE | NONNULL;
+        }
+    }
+
+    /**
+     * Builds a {@link CsvIngest}.  Every setting is checked when the ingest is {@linkplain #build() built}.
+     */
+    public static final class Builder {
+        private CsvDialect dialect = CsvDialect.DEFAULT;
+        private boolean skipBadLines = false;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private boolean virtualThreads = false;
+        @Nullable
+        private ExecutorService executor = null;
+        private int maxOpenSources = 0;
+        private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+        private int sliceRows = DEFAULT_SLICE_ROWS;
+        @Nullable
+        private CsvMetricsListener metrics = null;
+
+        private Builder() {
+        }
+
+        @NotNull
+        public Builder dialect(@NotNull final CsvDialect dialect) {
+            this.dialect = dialect;
+            return this;
+        }
+
+        /**
+         * Skips malformed rows, logging each, as {@link CsvReader#readFile(boolean) readFile(true)} does; otherwise the
+         * first one ends the ingest with a {@link CsvException} naming its source.
+         */
+        @NotNull
+        public Builder skipBadLines(final boolean skipBadLines) {
+            this.skipBadLines = skipBadLines;
+            return this;
+        }
+
+        /**
+         * Sets how many sources are parsed at once, each on its own thread; by default, one per processor.
+         */
+        @NotNull
+        public Builder threads(final int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Runs the parsing threads as virtual threads when the JDK has them, from JDK 21, and as platform threads
+         * otherwise.  There are still no more than {@linkplain #threads(int) threads} of them; being virtual only
+         * stops them holding a platform thread while they wait for I/O.
+         */
+        @NotNull
+        public Builder virtualThreads(final boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
+        /**
+         * Runs the parsing threads on an executor of the caller's, which is left running, rather than on threads of
+         * the ingest's own.  The executor must be able to run {@linkplain #threads(int) threads} tasks at once for them
+         * all to be parsing.
+         */
+        @NotNull
+        public Builder executor(@NotNull final ExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Sets how many sources a merged stream may have open at once, taking turns on the threads; by default, four
+         * per thread.  It is never fewer than the number of threads.
+         */
+        @NotNull
+        public Builder maxOpenSources(final int maxOpenSources) {
+            this.maxOpenSources = maxOpenSources;
+            return this;
+        }
+
+        /**
+         * Sets roughly how many bytes of heap the rows of a merged stream may occupy between being parsed and being
+         * taken from the stream, over all of its sources together.
+         */
+        @NotNull
+        public Builder memoryBudget(final long bytes) {
+            this.memoryBudget = bytes;
+            return this;
+        }
+
+        /**
+         * Sets how many rows of one source are read in each of its turns.
+         */
+        @NotNull
+        public Builder sliceRows(final int rows) {
+            this.sliceRows = rows;
+            return this;
+        }
+
+        /**
+         * Counts what each source reads, as {@link CsvReader#enableMetrics(CsvMetricsListener)} does; a
+         * {@link CsvMetricsAggregate} totals them.
+         */
+        @NotNull
+        public Builder metrics(@Nullable final CsvMetricsListener listener) {
+            this.metrics = listener;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException if a count or size is not positive
+         */
+        @NotNull
+        public CsvIngest build() {
+            if (threads < 1 || maxOpenSources < 0 || memoryBudget < 1 || sliceRows < 1) {
+                throw new IllegalArgumentException("Need at least one thread, source, byte and row: " + threads
+                        + " threads, " + maxOpenSources + " sources, " + memoryBudget + " bytes, " + sliceRows
+                        + " rows");
+            }
+            return new CsvIngest(this);
+        }
+    }
+}
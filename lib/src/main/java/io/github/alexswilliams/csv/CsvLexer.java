@@ -0,0 +1,1143 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Block-buffered implementation of the {@link CsvStates} machine.
+ * The source is read into a large {@code char[]} window, and fields are cut straight out of that window rather than
+ * being pushed through a {@link StringBuilder} one character at a time.
+ * <p>
+ * After {@link #nextRow()} returns true, the fields of the row are the ranges
+ * {@code [fieldStarts[i], fieldEnds[i])} of {@link #buf}; these stay valid until the next call.  Characters that the
+ * state machine discards (carriage returns, comments, newlines inside quoted fields, the enclosing quotes and the
+ * first quote of each {@code ""} escape) are squeezed out in place, so each range already holds the decoded value
+ * of its field.  An unquoted field with nothing discarded is never copied at all.
+ * <p>
+ * The special characters come from a {@link CsvDialect}, and the runs of ordinary characters between them are
+ * scanned using the dialect's precompiled tables of which characters stop a run.  The default dialect's quirks are
+ * kept behind its own flag; in any other dialect, line breaks inside quoted fields are kept, and comments are only
+ * ever whole lines.
+ * <p>
+ * A source that {@linkplain CharSource#deliversUtf8Bytes() delivers raw UTF-8 bytes} is lexed byte-for-byte, and
+ * only the fields that contain multi-byte sequences are decoded, again in place.  A memory-mapped file can also be
+ * {@linkplain #indexStructure() indexed} as it is read, so that the scans jump from one stop to the next.
+ * <p>
+ * With a {@linkplain #project(int[]) projection}, only the wanted columns are kept, in the order asked for; the
+ * other fields are scanned past without being written, decoded or recorded.
+ * <p>
+ * With {@linkplain #filter(int, Predicate) filters}, each filtered field is tested as soon as it has been cut, and a
+ * row that fails a test is scanned to its end in the same way as fields outside a projection, then dropped.
+ * <p>
+ * A {@link ChunkFeed} may run dry in the middle of a row, as it is fed.  The row is then abandoned and lexed again
+ * from its start once there is more input, so that the state machine carries on across chunks as if it had never
+ * stopped; {@link #nextRow()} returns false with {@link #starved} set.
+ *
+ * @author Alex Williams
+ */
+final class CsvLexer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CsvReader.class);
+    static final int DEFAULT_WINDOW_SIZE = 64 * 1024;
+    private static final int EOF = -1;
+    private static final char SEQUENCE_BREAK = '\uFFFF';
+
+    private final CharSource source;
+    @Nullable
+    private final ChunkFeed feed;
+    @Nullable
+    private final MappedFileSource mapped;
+    private final CsvDialect dialect;
+    private final char delimiter;
+    private final int quote;
+    private final int escape;
+    private final int commentAnywhere;
+    private final int commentPrefix;
+    private final boolean legacy;
+    private final boolean bareCarriageReturnEndsLine;
+    private final boolean trimWhitespace;
+    private final boolean[] unquotedStops;
+    private final boolean[] quotedStops;
+    private final boolean utf8;
+    private final boolean lineNumbersKnown;
+    private boolean endOfInput = false;
+    /**
+     * True when {@link #nextRow()} last returned false because a {@link ChunkFeed} ran dry, rather than at the end of
+     * the input.
+     */
+    boolean starved = false;
+
+    char[] buf;
+    private int pos = 0;
+    private int limit = 0;
+    @Nullable
+    private StructuralIndex index = null;
+    /**
+     * Candidates for the unquoted stops among the chars last read into the window, one bit each, when {@link #index}
+     * is set.  Every stop is marked, but so may be other chars, so each mark is checked against the stops.
+     */
+    private long[] marks = new long[0];
+    /**
+     * The position in the window of the char that the first bit of {@link #marks} stands for.  Any char before it is
+     * scanned one at a time.
+     */
+    private int marksStart = Integer.MAX_VALUE;
+    private long limitOffset;
+    private long rowStartOffset;
+    /**
+     * No record starting at or after this offset is lexed.
+     */
+    long endOffset = Long.MAX_VALUE;
+
+    private int rowStart = 0;
+    private int fieldStart = 0;
+    private int write = 0;
+
+    int fieldCount = 0;
+    int[] fieldStarts = new int[16];
+    int[] fieldEnds = new int[16];
+
+    private int column = 0;
+    @Nullable
+    private int[] slots = null;
+    private int slotCount = 0;
+    private boolean skipping = false;
+    @Nullable
+    private CsvStringCache[] columnCaches = null;
+    @Nullable
+    private CsvStringCache[] fieldCaches = null;
+    @Nullable
+    private Predicate<? super CharSequence>[] filters = null;
+    private boolean rejected = false;
+    private final FieldSlice slice = new FieldSlice();
+
+    int lineNum = 1;
+    private int rowLineNum = 1;
+    boolean logging = true;
+    private boolean quotedNewlineLogged = false;
+    @Nullable
+    CsvErrorSink errorSink = null;
+    @Nullable
+    CsvMetrics metrics = null;
+    private long rowQuotedFields;
+    private long rowMultilineFields;
+    private long rowCommentLines;
+
+    CsvLexer(@NotNull final CharSource source, @NotNull final CsvDialect dialect) {
+        this(source, dialect, 0L, 1, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param startOffset the offset within the whole input at which {@code source} begins; this must be the start of
+     *                    a record.  Line numbers are only known when lexing from the very start of the input; otherwise
+     *                    errors are located by the offset of the record they occur in.
+     */
+    CsvLexer(@NotNull final CharSource source, final long startOffset, final int windowSize) {
+        this(source, CsvDialect.DEFAULT, startOffset, startOffset == 0L ? 1 : CsvCheckpoint.UNKNOWN_LINE,
+                windowSize);
+    }
+
+    /**
+     * @param lineNum the line on which the record at {@code startOffset} begins, or
+     *                {@link CsvCheckpoint#UNKNOWN_LINE} to locate errors by offset instead
+     */
+    CsvLexer(@NotNull final CharSource source, @NotNull final CsvDialect dialect, final long startOffset,
+             final int lineNum, final int windowSize) {
+        this.source = source;
+        this.feed = source instanceof ChunkFeed ? (ChunkFeed) source : null;
+        this.mapped = source instanceof MappedFileSource ? (MappedFileSource) source : null;
+        this.dialect = dialect;
+        this.delimiter = dialect.delimiter;
+        this.quote = dialect.quote;
+        this.escape = dialect.escape;
+        this.commentAnywhere = dialect.legacy ? dialect.comment : CsvDialect.NONE;
+        this.commentPrefix = dialect.legacy ? CsvDialect.NONE : dialect.comment;
+        this.legacy = dialect.legacy;
+        this.bareCarriageReturnEndsLine = dialect.bareCarriageReturnEndsLine;
+        this.trimWhitespace = dialect.trimWhitespace;
+        this.unquotedStops = dialect.unquotedStops;
+        this.quotedStops = dialect.quotedStops;
+        this.utf8 = source.deliversUtf8Bytes();
+        this.lineNumbersKnown = lineNum != CsvCheckpoint.UNKNOWN_LINE;
+        this.lineNum = Math.max(1, lineNum);
+        this.rowLineNum = this.lineNum;
+        this.limitOffset = startOffset;
+        this.rowStartOffset = startOffset;
+        this.buf = new char[windowSize];
+    }
+
+    /**
+     * @return the offset within the whole input of the next character to be lexed; between rows, this is the start of
+     * the next record
+     */
+    long position() {
+        return limitOffset - (limit - pos);
+    }
+
+    /**
+     * @return where to resume from to lex the rows after the current one
+     */
+    @NotNull
+    CsvCheckpoint checkpoint() {
+        final int line = lineNumbersKnown ? lineNum : CsvCheckpoint.UNKNOWN_LINE;
+        return utf8 ? CsvCheckpoint.ofBytes(position(), line) : CsvCheckpoint.ofChars(position(), line);
+    }
+
+    /**
+     * @return where to resume from to lex the current row again
+     */
+    @NotNull
+    CsvCheckpoint rowCheckpoint() {
+        final int line = rowLine();
+        return utf8 ? CsvCheckpoint.ofBytes(rowStartOffset, line) : CsvCheckpoint.ofChars(rowStartOffset, line);
+    }
+
+    @NotNull
+    String location() {
+        return lineNumbersKnown ? "Line " + lineNum : "Offset " + rowStartOffset;
+    }
+
+    /**
+     * @return the line on which the current row began, or {@link CsvCheckpoint#UNKNOWN_LINE}
+     */
+    int rowLine() {
+        return lineNumbersKnown ? rowLineNum : CsvCheckpoint.UNKNOWN_LINE;
+    }
+
+    /**
+     * @return where the current row began, for errors found in its fields after it was lexed
+     */
+    @NotNull
+    String rowLocation() {
+        return lineNumbersKnown ? "Line " + rowLineNum : "Offset " + rowStartOffset;
+    }
+
+    /**
+     * Has each block read from now on marked by a {@link StructuralIndex} with where the scans may have to stop, eight
+     * bytes at a time, so that the scans jump from one mark to the next rather than test each char.
+     *
+     * @return false if the source is not a memory-mapped file, which cannot be indexed
+     */
+    boolean indexStructure() {
+        if (mapped == null) return false;
+        if (index == null) index = new StructuralIndex(dialect);
+        return true;
+    }
+
+    /**
+     * Restricts the fields of each row to some of its columns.
+     *
+     * @param columns the zero-based column of the input to take for each field of the row, or null for every column
+     */
+    void project(@Nullable final int[] columns) {
+        if (columns == null) {
+            slots = null;
+            slotCount = 0;
+            mapCaches();
+            return;
+        }
+        int width = 0;
+        for (int c : columns) width = Math.max(width, c + 1);
+        final int[] newSlots = new int[width];
+        Arrays.fill(newSlots, -1);
+        for (int i = 0; i < columns.length; i++) {
+            if (newSlots[columns[i]] >= 0) {
+                throw new IllegalArgumentException("Column " + columns[i] + " is projected more than once");
+            }
+            newSlots[columns[i]] = i;
+        }
+        if (columns.length > fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, columns.length);
+            fieldEnds = Arrays.copyOf(fieldEnds, columns.length);
+        }
+        slots = newSlots;
+        slotCount = columns.length;
+        mapCaches();
+    }
+
+    /**
+     * Makes the strings of a column come from a cache.
+     *
+     * @param column the zero-based column of the input, regardless of any projection
+     * @param cache  the cache, or null to stop caching the column
+     */
+    void cache(final int column, @Nullable final CsvStringCache cache) {
+        if (columnCaches == null || column >= columnCaches.length) {
+            if (cache == null) return;
+            columnCaches = columnCaches == null
+                    ? new CsvStringCache[column + 1]
+                    : Arrays.copyOf(columnCaches, Math.max(column + 1, columnCaches.length));
+        }
+        columnCaches[column] = cache;
+        mapCaches();
+    }
+
+    /**
+     * Drops the rows whose field in a column fails a test.  A row too short to have the column, or a blank line, is
+     * tested as if the field were empty.
+     *
+     * @param column    the zero-based column of the input, regardless of any projection
+     * @param predicate the test, which is given a view of the field that is only valid while it runs; or null to stop
+     *                  filtering on the column
+     */
+    @SuppressWarnings("unchecked")
+    void filter(final int column, @Nullable final Predicate<? super CharSequence> predicate) {
+        if (filters == null || column >= filters.length) {
+            if (predicate == null) return;
+            filters = filters == null
+                    ? (Predicate<? super CharSequence>[]) new Predicate<?>[column + 1]
+                    : Arrays.copyOf(filters, column + 1);
+        }
+        filters[column] = predicate;
+        for (Predicate<? super CharSequence> f : filters) {
+            if (f != null) return;
+        }
+        filters = null;
+    }
+
+    /**
+     * Works out which fields of a row come from a cached column, as this depends on the projection.
+     */
+    private void mapCaches() {
+        final CsvStringCache[] byColumn = columnCaches;
+        if (byColumn == null) {
+            fieldCaches = null;
+            return;
+        }
+        final int[] s = slots;
+        if (s == null) {
+            fieldCaches = byColumn;
+            return;
+        }
+        final CsvStringCache[] bySlot = new CsvStringCache[slotCount];
+        for (int column = 0; column < Math.min(s.length, byColumn.length); column++) {
+            if (s[column] >= 0) bySlot[s[column]] = byColumn[column];
+        }
+        fieldCaches = bySlot;
+    }
+
+    /**
+     * Lexes the next row into {@link #fieldStarts} / {@link #fieldEnds}.
+     * A blank line produces a row with no fields.  Under a projection, any other row has one field per projected
+     * column, and columns missing from a short row are empty.
+     *
+     * @return false if the end of the input, or {@link #endOffset}, was reached before any row began
+     */
+    boolean nextRow() throws IOException, CsvException {
+        return nextRow(CsvStates.START_OF_FIELD);
+    }
+
+    /**
+     * As {@link #nextRow()}, but supposing that the state machine is already in {@code initialState}: a position in
+     * the middle of a record can be lexed to find out whether that supposition is consistent with what follows.
+     */
+    boolean nextRow(@NotNull final CsvStates initialState) throws IOException, CsvException {
+        final ChunkFeed f = feed;
+        if (f == null) {
+            boolean row = lexRow(initialState);
+            while (row && rejected) {
+                row = lexRow(CsvStates.START_OF_FIELD);
+            }
+            return row;
+        }
+        f.release(position());
+        starved = false;
+        try {
+            boolean row = lexRow(initialState);
+            while (row && rejected) {
+                row = lexRow(CsvStates.START_OF_FIELD);
+            }
+            return row;
+        } catch (Underflow e) {
+            rewind(f);
+            return false;
+        }
+    }
+
+    private boolean lexRow(@NotNull final CsvStates initialState) throws IOException, CsvException {
+        CsvStates stateMachine = initialState;
+        rows:
+        while (true) {
+            if (position() >= endOffset) {
+                if (metrics != null) metrics.finished();
+                return false;
+            }
+            int multilineColumn = -1;
+            fieldCount = 0;
+            column = 0;
+            rejected = false;
+            rowStart = pos;
+            rowStartOffset = position();
+            rowLineNum = lineNum;
+            if (feed != null && metrics != null) {
+                rowQuotedFields = metrics.quotedFields;
+                rowMultilineFields = metrics.multilineFields;
+                rowCommentLines = metrics.commentLines;
+            }
+            if (slots != null) {
+                Arrays.fill(fieldStarts, 0, slotCount, pos);
+                Arrays.fill(fieldEnds, 0, slotCount, pos);
+            }
+            startField();
+
+            int fieldNum = 1;
+            boolean startOfLine = stateMachine == CsvStates.START_OF_FIELD;
+            boolean spaceAfterQuote = false;
+            do {
+                int next = read();
+                if (next == '\r' && legacy) {
+                    breakSequence();
+                    continue;
+                }
+                while (next == commentAnywhere) {
+                    if (metrics != null) metrics.commentLines++;
+                    breakSequence();
+                    skipRestOfLine();
+                    next = read();
+                }
+                if ((next == EOF) && startOfLine) {
+                    if (metrics != null) metrics.finished();
+                    return false;
+                }
+
+                switch (stateMachine) {
+                    case START_OF_FIELD:
+                        if (next == '\r' && !legacy) {
+                            // kept as the start of a field, in case it turns out not to end the line
+                            if (!skipping) {
+                                fieldStart = pos - 1;
+                                write = pos;
+                            }
+                            if (lineFeedFollows() || bareCarriageReturnEndsLine) {
+                                if (!skipping) write = fieldStart;
+                                next = '\n';
+                            } else {
+                                startOfLine = false;
+                                stateMachine = CsvStates.LEXING_UNQUOTED_FIELD;
+                                scanUnquoted();
+                                break;
+                            }
+                        }
+                        if ((next == EOF) || (next == '\n')) {
+                            lineNum++;
+                            if (!startOfLine) addField();
+                            return endRow();
+                        }
+                        if (startOfLine && next == commentPrefix) {
+                            if (metrics != null) metrics.commentLines++;
+                            skipCommentLine();
+                            continue rows;
+                        }
+                        startOfLine = false;
+
+                        if (next == delimiter) {
+                            addField();
+                            startField();
+                        } else if (next == quote) {
+                            if (metrics != null) metrics.quotedFields++;
+                            startField();
+                            stateMachine = CsvStates.LEXING_QUOTED_FIELD;
+                            scanQuoted();
+                        } else if (next == escape) {
+                            if (!skipping) {
+                                fieldStart = pos - 1;
+                                write = pos - 1;
+                            }
+                            stateMachine = CsvStates.LEXING_UNQUOTED_FIELD;
+                            readEscaped();
+                            scanUnquoted();
+                        } else if (trimWhitespace && isSpace(next)) {
+                            startField();
+                        } else {
+                            if (!skipping) {
+                                fieldStart = pos - 1;
+                                write = pos;
+                            }
+                            stateMachine = CsvStates.LEXING_UNQUOTED_FIELD;
+                            scanUnquoted();
+                        }
+                        break;
+
+                    case LEXING_UNQUOTED_FIELD:
+                        if (next == '\r' && !legacy) {
+                            if (!skipping) buf[write++] = '\r';
+                            if (lineFeedFollows() || bareCarriageReturnEndsLine) {
+                                if (!skipping) write--;
+                                next = '\n';
+                            } else {
+                                scanUnquoted();
+                                break;
+                            }
+                        }
+                        if ((next == EOF) || (next == '\n')) {
+                            lineNum++;
+                            if (trimWhitespace) trimField();
+                            addField();
+                            return endRow();
+                        }
+                        if (next == delimiter) {
+                            stateMachine = CsvStates.START_OF_FIELD;
+                            if (trimWhitespace) trimField();
+                            addField();
+                            startField();
+                            fieldNum++;
+                        } else if (next == quote) {
+                            reject(CsvErrorCode.UNEXPECTED_QUOTE, fieldNum, next);
+                            stateMachine = CsvStates.START_OF_FIELD;
+                            continue rows;
+                        } else if (next == escape) {
+                            readEscaped();
+                            scanUnquoted();
+                        } else {
+                            if (!skipping) buf[write++] = (char) next;
+                            scanUnquoted();
+                        }
+                        break;
+
+                    case LEXING_QUOTED_FIELD:
+                        if (next == EOF) {
+                            reject(CsvErrorCode.UNTERMINATED_QUOTED_FIELD, fieldNum, next);
+                            if (metrics != null) metrics.finished();
+                            return false;
+                        }
+                        if (next == '\n' || (next == '\r' && !legacy)) {
+                            final boolean lineBreak;
+                            if (legacy) {
+                                breakSequence();
+                                lineBreak = true;
+                            } else {
+                                if (!skipping) buf[write++] = (char) next;
+                                lineBreak = next == '\n' || (bareCarriageReturnEndsLine && peek() != '\n');
+                            }
+                            if (lineBreak) {
+                                lineNum++;
+                                if (metrics != null && multilineColumn != column) {
+                                    multilineColumn = column;
+                                    metrics.multilineFields++;
+                                }
+                                if (legacy && logging && !quotedNewlineLogged && LOGGER.isInfoEnabled()) {
+                                    quotedNewlineLogged = true;
+                                    LOGGER.info("CSV ({}, Field {}): Quoted field contains newline - was this "
+                                            + "intentional?  Further occurrences will not be logged.",
+                                            location(), fieldNum);
+                                }
+                            }
+
+                        } else if (next == quote) {
+                            stateMachine = CsvStates.ENDING_QUOTED_FIELD;
+                            spaceAfterQuote = false;
+                        } else if (next == escape) {
+                            readEscaped();
+                        } else {
+                            if (!skipping) buf[write++] = (char) next;
+                            scanQuoted();
+                        }
+                        break;
+
+                    case ENDING_QUOTED_FIELD:
+                        if (next == '\r' && !legacy && (lineFeedFollows() || bareCarriageReturnEndsLine)) {
+                            next = '\n';
+                        }
+                        if ((next == EOF) || (next == '\n')) {
+                            lineNum++;
+                            addField();
+                            return endRow();
+                        }
+                        if (next == delimiter) {
+                            stateMachine = CsvStates.START_OF_FIELD;
+                            addField();
+                            startField();
+                            fieldNum++;
+                        } else if (next == quote && !spaceAfterQuote) {
+                            if (!skipping) buf[write++] = (char) quote;
+                            stateMachine = CsvStates.LEXING_QUOTED_FIELD;
+                        } else if (trimWhitespace && isSpace(next)) {
+                            spaceAfterQuote = true;
+                        } else {
+                            reject(CsvErrorCode.UNEXPECTED_CHARACTER_AFTER_QUOTED_FIELD, fieldNum, next);
+                            stateMachine = CsvStates.START_OF_FIELD;
+                            continue rows;
+                        }
+                        break;
+                }
+            } while (true);
+        }
+    }
+
+    /**
+     * Forgets everything read since the start of the row in progress, after a {@link ChunkFeed} ran dry, so that the
+     * row is lexed again from its start.
+     */
+    private void rewind(@NotNull final ChunkFeed f) {
+        final long rewound = limitOffset - rowStartOffset;
+        final CsvMetrics m = metrics;
+        if (m != null) {
+            m.charsRead -= rewound;
+            if (utf8) m.bytesRead -= rewound;
+            m.quotedFields = rowQuotedFields;
+            m.multilineFields = rowMultilineFields;
+            m.commentLines = rowCommentLines;
+        }
+        pos = rowStart;
+        limit = rowStart;
+        write = rowStart;
+        fieldStart = rowStart;
+        limitOffset = rowStartOffset;
+        lineNum = rowLineNum;
+        fieldCount = 0;
+        f.rewind(rowStartOffset);
+        starved = true;
+    }
+
+    /**
+     * Abandons the row in progress.  Lexing resumes with the character after the one in error, as a new row.
+     * Without an {@link #errorSink}, this throws; with one, the error is reported to it instead, and the caller goes on
+     * to the next row without any exception being made.
+     */
+    private void reject(@NotNull final CsvErrorCode code, final int fieldNum, final int next)
+            throws IOException, CsvException {
+        final long offset = next == EOF ? position() : position() - 1;
+        if (next != EOF) skipRestOfCharacter(next);
+        if (metrics != null) metrics.errors[code.ordinal()]++;
+        final CsvErrorSink sink = errorSink;
+        if (sink == null) {
+            throw new CsvException("[ERROR] CSV (" + location() + ", Field " + fieldNum + "): "
+                    + code.description);
+        }
+        sink.onError(code, lineNumbersKnown ? lineNum : -1, fieldNum, offset);
+    }
+
+    /**
+     * Consumes the run of ordinary characters that follows, up to (but not including) the next character that the
+     * unquoted-field state has to act on.
+     */
+    private void scanUnquoted() {
+        final boolean[] stops = unquotedStops;
+        if (pos >= marksStart) {
+            int stop = nextMark(pos);
+            while (stop < limit && !stops[buf[stop]]) {
+                stop = nextMark(stop + 1);
+            }
+            takeUpTo(stop);
+            return;
+        }
+        final char[] b = buf;
+        final int l = limit;
+        int p = pos;
+        int w = write;
+        if (skipping) {
+            while (p < l) {
+                final char c = b[p];
+                if (c < 0x80 && stops[c]) break;
+                p++;
+            }
+        } else if (w == p) {
+            while (p < l) {
+                final char c = b[p];
+                if (c < 0x80 && stops[c]) break;
+                p++;
+            }
+            w = p;
+        } else {
+            while (p < l) {
+                final char c = b[p];
+                if (c < 0x80 && stops[c]) break;
+                b[w++] = c;
+                p++;
+            }
+        }
+        pos = p;
+        write = w;
+    }
+
+    /**
+     * As {@link #scanUnquoted()}, but for the body of a quoted field, where delimiters are ordinary characters.
+     */
+    private void scanQuoted() {
+        final boolean[] stops = quotedStops;
+        if (pos >= marksStart) {
+            // the marks are of the unquoted stops, which are the quoted ones and the delimiter
+            int stop = nextMark(pos);
+            while (stop < limit && !stops[buf[stop]]) {
+                stop = nextMark(stop + 1);
+            }
+            takeUpTo(stop);
+            return;
+        }
+        final char[] b = buf;
+        final int l = limit;
+        int p = pos;
+        int w = write;
+        if (skipping) {
+            while (p < l) {
+                final char c = b[p];
+                if (c < 0x80 && stops[c]) break;
+                p++;
+            }
+        } else if (w == p) {
+            while (p < l) {
+                final char c = b[p];
+                if (c < 0x80 && stops[c]) break;
+                p++;
+            }
+            w = p;
+        } else {
+            while (p < l) {
+                final char c = b[p];
+                if (c < 0x80 && stops[c]) break;
+                b[w++] = c;
+                p++;
+            }
+        }
+        pos = p;
+        write = w;
+    }
+
+    /**
+     * @param from a position at or after {@link #marksStart}
+     * @return the position of the first marked char at or after {@code from}, or {@link #limit} if there is none
+     */
+    private int nextMark(final int from) {
+        final long[] m = marks;
+        final int start = marksStart;
+        final int words = (limit - start + 63) >>> 6;
+        int word = (from - start) >>> 6;
+        if (word >= words) return limit;
+        long bits = m[word] & (-1L << (from - start));
+        while (bits == 0L) {
+            if (++word == words) return limit;
+            bits = m[word];
+        }
+        return start + (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * Takes the chars up to {@code stop} into the field, as the scans do one at a time.
+     */
+    private void takeUpTo(final int stop) {
+        if (!skipping) {
+            if (write != pos) System.arraycopy(buf, pos, buf, write, stop - pos);
+            write += stop - pos;
+        }
+        pos = stop;
+    }
+
+    /**
+     * Takes the character after an escape as part of the field, whatever it is.  An escape at the very end of the
+     * input stands for itself.
+     */
+    private void readEscaped() throws IOException {
+        if (!skipping) breakSequence();
+        final int next = read();
+        if (next == EOF) {
+            if (!skipping) buf[write++] = (char) escape;
+            return;
+        }
+        if (!skipping) buf[write++] = (char) next;
+        if (next == '\n') lineNum++;
+    }
+
+    /**
+     * Discards a comment line, outside the default dialect, along with its line terminator.
+     */
+    private void skipCommentLine() throws IOException {
+        while (true) {
+            while (pos < limit) {
+                final char c = buf[pos++];
+                if (c == '\n' || (c == '\r' && (lineFeedFollows() || bareCarriageReturnEndsLine))) {
+                    lineNum++;
+                    return;
+                }
+            }
+            if (!fill()) return;
+        }
+    }
+
+    /**
+     * Drops trailing whitespace from the unquoted field in progress.
+     */
+    private void trimField() {
+        if (skipping) return;
+        while (write > fieldStart && isSpace(buf[write - 1])) write--;
+    }
+
+    private boolean isSpace(final int c) {
+        return (c == ' ' || c == '\t') && c != delimiter;
+    }
+
+    /**
+     * @return the next character, which is left to be read, or {@link #EOF}
+     */
+    private int peek() throws IOException {
+        if (pos < limit || fill()) {
+            return buf[pos];
+        }
+        return EOF;
+    }
+
+    /**
+     * Consumes a line feed if one is next, as after a carriage return.  Nothing may be written to the field in
+     * progress afterwards until another character is read, as the window may have been refilled into the space that
+     * the field would have been written to.
+     */
+    private boolean lineFeedFollows() throws IOException {
+        if (peek() == '\n') {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Discards a comment in the default dialect: everything up to and including the next line terminator ({@code \n}, {@code \r} or
+     * {@code \r\n}), exactly as {@link java.io.BufferedReader#readLine()} would.
+     */
+    private void skipRestOfLine() throws IOException {
+        while (true) {
+            while (pos < limit) {
+                final char c = buf[pos++];
+                if (c == '\n') return;
+                if (c == '\r') {
+                    if (pos < limit || fill()) {
+                        if (buf[pos] == '\n') pos++;
+                    }
+                    return;
+                }
+            }
+            if (!fill()) return;
+        }
+    }
+
+    /**
+     * After an error, lexing resumes with the character after the one in error; with a source of UTF-8 bytes, that
+     * means after the remaining bytes of its sequence, and with a source of chars, after the low surrogate of a pair,
+     * so that both resume in the same place.
+     */
+    private void skipRestOfCharacter(final int lastRead) throws IOException {
+        if (!utf8) {
+            if (Character.isHighSurrogate((char) lastRead) && Character.isLowSurrogate((char) peek())) pos++;
+            return;
+        }
+        if (lastRead < 0x80) return;
+        while (limit - pos < 3 && fill()) {
+            // the whole sequence must be in the window to measure it
+        }
+        pos += sequenceLength(lastRead, buf, pos, limit) - 1;
+    }
+
+    /**
+     * With a source of UTF-8 bytes, a discarded character must still separate the bytes either side of it, or else
+     * bytes that were malformed in the input could be decoded as one character.  Discarding leaves at least one spare
+     * slot behind the write position, so a marker that cannot be a byte is left there.
+     */
+    private void breakSequence() {
+        if (utf8 && write > fieldStart && buf[write - 1] >= 0x80 && buf[write - 1] != SEQUENCE_BREAK) {
+            buf[write++] = SEQUENCE_BREAK;
+        }
+    }
+
+    private int read() throws IOException {
+        if (pos < limit || fill()) {
+            return buf[pos++];
+        }
+        return EOF;
+    }
+
+    private void startField() {
+        fieldStart = pos;
+        write = pos;
+        skipping = rejected || slots != null && (column >= slots.length || slots[column] < 0) && !isFiltered(column);
+    }
+
+    private boolean isFiltered(final int c) {
+        final Predicate<? super CharSequence>[] f = filters;
+        return f != null && c < f.length && f[c] != null;
+    }
+
+    /**
+     * Tests the field just cut against the filter on its column, if there is one, and rejects the row if it fails.
+     */
+    private boolean accepted(final int start, final int end) {
+        final Predicate<? super CharSequence> predicate = filters[column];
+        if (predicate == null) return true;
+        slice.set(buf, start, end);
+        if (predicate.test(slice)) return true;
+        rejected = true;
+        return false;
+    }
+
+    /**
+     * @return the fields of the current row as strings
+     */
+    @NotNull
+    List<String> rowAsList() {
+        if (fieldCount == 0) {
+            return Collections.emptyList();
+        }
+        final String[] result = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            result[i] = fieldString(i);
+        }
+        return Collections.unmodifiableList(Arrays.asList(result));
+    }
+
+    @NotNull
+    String fieldString(final int index) {
+        final CsvStringCache[] caches = fieldCaches;
+        final CsvStringCache cache = caches != null && index < caches.length ? caches[index] : null;
+        return cache != null
+                ? cache.get(buf, fieldStarts[index], fieldEnds[index] - fieldStarts[index])
+                : new String(buf, fieldStarts[index], fieldEnds[index] - fieldStarts[index]);
+    }
+
+    private void addField() {
+        if (skipping) {
+            column++;
+            return;
+        }
+        if (utf8) decodeUtf8InPlace();
+        if (metrics != null && write - fieldStart > metrics.maxFieldLength) {
+            metrics.maxFieldLength = write - fieldStart;
+        }
+        if (filters != null && column < filters.length && !accepted(fieldStart, write)) {
+            column++;
+            return;
+        }
+        final int slot = slots == null ? column : column < slots.length ? slots[column] : -1;
+        if (slot < 0) {
+            // only cut to be tested
+            column++;
+            return;
+        }
+        if (slot == fieldStarts.length) {
+            final int newLength = slot * 2;
+            fieldStarts = Arrays.copyOf(fieldStarts, newLength);
+            fieldEnds = Arrays.copyOf(fieldEnds, newLength);
+        }
+        fieldStarts[slot] = fieldStart;
+        fieldEnds[slot] = write;
+        column++;
+        if (slots == null) fieldCount = column;
+    }
+
+    private boolean endRow() {
+        if (filters != null && !rejected) {
+            // the columns the row is too short to have are empty
+            for (int c = column; c < filters.length && !rejected; c++) {
+                if (filters[c] != null && !filters[c].test("")) rejected = true;
+            }
+        }
+        if (slots != null && column > 0) {
+            fieldCount = slotCount;
+        }
+        final CsvMetrics m = metrics;
+        if (m != null) {
+            m.rows++;
+            m.fields += column;
+            m.maxRowLength = Math.max(m.maxRowLength, position() - rowStartOffset);
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the field in progress, where each char holds one byte of UTF-8, into UTF-16.  No UTF-8 sequence is
+     * shorter than the UTF-16 it decodes to, so this can be done in place.  Malformed input is replaced with U+FFFD,
+     * in the same places as {@link java.nio.charset.StandardCharsets#UTF_8} would put them.
+     */
+    private void decodeUtf8InPlace() {
+        final char[] b = buf;
+        final int end = write;
+        int r = fieldStart;
+        while (r < end && b[r] < 0x80) r++;
+        if (r == end) return;
+
+        int w = r;
+        while (r < end) {
+            final int b0 = b[r];
+            if (b0 == SEQUENCE_BREAK) {
+                r++;
+                continue;
+            }
+            final int length = sequenceLength(b0, b, r + 1, end);
+            if (b0 < 0x80) {
+                b[w++] = (char) b0;
+            } else if (length == 2 && b0 < 0xE0) {
+                b[w++] = (char) (((b0 & 0x1F) << 6) | (b[r + 1] & 0x3F));
+            } else if (length == 3 && b0 < 0xF0) {
+                final char c = (char) (((b0 & 0x0F) << 12) | ((b[r + 1] & 0x3F) << 6) | (b[r + 2] & 0x3F));
+                b[w++] = Character.isSurrogate(c) ? '\uFFFD' : c;
+            } else if (length == 4) {
+                final int codePoint = ((b0 & 0x07) << 18) | ((b[r + 1] & 0x3F) << 12)
+                        | ((b[r + 2] & 0x3F) << 6) | (b[r + 3] & 0x3F);
+                b[w++] = Character.highSurrogate(codePoint);
+                b[w++] = Character.lowSurrogate(codePoint);
+            } else {
+                b[w++] = '\uFFFD';
+            }
+            r += length;
+        }
+        write = w;
+    }
+
+    /**
+     * @param b0   the first byte of a UTF-8 sequence
+     * @param next the index in {@code b} of the byte after it
+     * @return how many bytes the decoder takes as one character, or as one replacement character if they are malformed
+     */
+    private static int sequenceLength(final int b0, @NotNull final char[] b, final int next, final int end) {
+        if (b0 >= 0xC2 && b0 <= 0xDF) {
+            return next < end && isContinuation(b[next]) ? 2 : 1;
+        }
+        if (b0 >= 0xE0 && b0 <= 0xEF) {
+            if (next >= end || b[next] < (b0 == 0xE0 ? 0xA0 : 0x80) || b[next] > 0xBF) return 1;
+            return next + 1 < end && isContinuation(b[next + 1]) ? 3 : 2;
+        }
+        if (b0 >= 0xF0 && b0 <= 0xF4) {
+            if (next >= end || b[next] < (b0 == 0xF0 ? 0x90 : 0x80) || b[next] > (b0 == 0xF4 ? 0x8F : 0xBF)) return 1;
+            if (next + 1 >= end || !isContinuation(b[next + 1])) return 2;
+            return next + 2 < end && isContinuation(b[next + 2]) ? 4 : 3;
+        }
+        return 1;
+    }
+
+    private static boolean isContinuation(final char c) {
+        return (c & 0xC0) == 0x80;
+    }
+
+    /**
+     * Reads more of the source into the window.  The row in progress is first moved to the front of the window, and
+     * any characters already discarded from the field in progress are dropped; the window only grows when a single
+     * row fills it.
+     *
+     * @return false if the source is exhausted
+     */
+    private boolean fill() throws IOException {
+        if (endOfInput) return false;
+        final int kept = write - rowStart;
+        final int pending = limit - pos;
+        if (rowStart > 0 || write < pos) {
+            System.arraycopy(buf, rowStart, buf, 0, kept);
+            System.arraycopy(buf, pos, buf, kept, pending);
+            final int recorded = slots == null ? fieldCount : slotCount;
+            for (int i = 0; i < recorded; i++) {
+                fieldStarts[i] -= rowStart;
+                fieldEnds[i] -= rowStart;
+            }
+            fieldStart -= rowStart;
+            rowStart = 0;
+            write = kept;
+            pos = kept;
+            limit = kept + pending;
+        }
+        if (limit == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        }
+
+        final CsvMetrics m = metrics;
+        final long readStart;
+        if (m != null) {
+            m.started();
+            readStart = System.nanoTime();
+        } else {
+            readStart = 0L;
+        }
+        final StructuralIndex ix = index;
+        int read;
+        if (ix != null && mapped != null) {
+            final int words = (buf.length - limit + 63) >>> 6;
+            if (marks.length < words) marks = new long[words];
+            read = mapped.read(buf, limit, buf.length - limit, ix, marks);
+            marksStart = limit;
+        } else {
+            do {
+                read = source.read(buf, limit, buf.length - limit);
+            } while (read == 0);
+        }
+        if (read == ChunkFeed.UNDERFLOW) {
+            throw Underflow.INSTANCE;
+        }
+        if (m != null) {
+            m.readNanos += System.nanoTime() - readStart;
+            if (read > 0) {
+                m.charsRead += read;
+                if (utf8) m.bytesRead += read;
+            }
+        }
+        if (read < 0) {
+            endOfInput = true;
+            return false;
+        }
+        limit += read;
+        limitOffset += read;
+        return true;
+    }
+
+    /**
+     * A reused view of a field, for the filters to test without a string being made.
+     */
+    private static final class FieldSlice implements CharSequence {
+        private char[] buf;
+        private int start;
+        private int end;
+
+        void set(@NotNull final char[] buf, final int start, final int end) {
+            this.buf = buf;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            if (index < 0 || index >= end - start) {
+                throw new IndexOutOfBoundsException("Index " + index + " of a field of " + (end - start));
+            }
+            return buf[start + index];
+        }
+
+        @NotNull
+        @Override
+        public CharSequence subSequence(final int from, final int to) {
+            if (from < 0 || to > end - start || from > to) {
+                throw new IndexOutOfBoundsException("Range " + from + "-" + to + " of a field of " + (end - start));
+            }
+            return new String(buf, start + from, to - from);
+        }
+
+        @NotNull
+        @Override
+        public String toString() {
+            return new String(buf, start, end - start);
+        }
+    }
+
+    /**
+     * Unwinds the lexer from wherever it was when a {@link ChunkFeed} ran dry.
+     */
+    private static final class Underflow extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        static final Underflow INSTANCE = new Underflow();
+
+        private Underflow() {
+            super(null, null, false, false);
+        }
+    }
+
+    enum CsvStates {
+        START_OF_FIELD,
+        LEXING_UNQUOTED_FIELD,
+        LEXING_QUOTED_FIELD,
+        ENDING_QUOTED_FIELD
+    }
+}
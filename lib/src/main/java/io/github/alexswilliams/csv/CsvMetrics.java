@@ -0,0 +1,208 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Counts what one reader has read, as enabled by {@link CsvReader#enableMetrics(CsvMetricsListener)}.
+ * <p>
+ * The counters are updated by the reading thread without synchronisation, so another thread sees approximately
+ * current values; a {@link #snapshot()} taken on the reading thread, or after it has finished, is exact.  When
+ * metrics are not enabled, nothing is counted at all.
+ *
+ * @author Alex Williams
+ */
+public final class CsvMetrics {
+    private static final CsvErrorCode[] CODES = CsvErrorCode.values();
+
+    private final CsvMetricsListener listener;
+    private boolean finished = false;
+    private boolean reported = false;
+    private long startNanos = 0L;
+
+    long bytesRead = 0L;
+    long charsRead = 0L;
+    long rows = 0L;
+    long fields = 0L;
+    long quotedFields = 0L;
+    long multilineFields = 0L;
+    long commentLines = 0L;
+    final long[] errors = new long[CODES.length];
+    long maxFieldLength = 0L;
+    long maxRowLength = 0L;
+    long readNanos = 0L;
+    long elapsedNanos = 0L;
+
+    CsvMetrics(@NotNull final CsvMetricsListener listener) {
+        this.listener = listener;
+    }
+
+    void started() {
+        if (startNanos == 0L) {
+            startNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Called when the reader reaches the end of its input.
+     */
+    void finished() {
+        if (finished) return;
+        finished = true;
+        report();
+    }
+
+    /**
+     * Called when the reader is closed, which may be before the end of its input, as when a stream of its rows is cut
+     * short.
+     */
+    void closed() {
+        report();
+    }
+
+    /**
+     * Tells the listener, only the first time.
+     */
+    private void report() {
+        if (reported) return;
+        reported = true;
+        elapsedNanos = startNanos == 0L ? 0L : System.nanoTime() - startNanos;
+        listener.onFinish(this);
+    }
+
+    /**
+     * Adds another reader's counts to these.
+     */
+    void add(@NotNull final CsvMetrics other) {
+        bytesRead += other.bytesRead;
+        charsRead += other.charsRead;
+        rows += other.rows;
+        fields += other.fields;
+        quotedFields += other.quotedFields;
+        multilineFields += other.multilineFields;
+        commentLines += other.commentLines;
+        for (int i = 0; i < errors.length; i++) {
+            errors[i] += other.errors[i];
+        }
+        maxFieldLength = Math.max(maxFieldLength, other.maxFieldLength);
+        maxRowLength = Math.max(maxRowLength, other.maxRowLength);
+        readNanos += other.readNanos;
+        elapsedNanos += other.elapsedNanos;
+    }
+
+    /**
+     * @return a copy of the counts so far, which does not change
+     */
+    @NotNull
+    public CsvMetrics snapshot() {
+        final CsvMetrics copy = new CsvMetrics(CsvMetricsListener.NONE);
+        copy.add(this);
+        copy.finished = finished;
+        return copy;
+    }
+
+    /**
+     * @return whether the reader has reached the end of its input
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return the bytes read from a file; zero when reading chars from a {@link java.io.Reader}
+     */
+    public long bytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return the chars read, or when reading a file, the bytes read
+     */
+    public long charsRead() {
+        return charsRead;
+    }
+
+    /**
+     * @return the rows read, including blank lines but not rows in error
+     */
+    public long rows() {
+        return rows;
+    }
+
+    /**
+     * @return the fields lexed, including those not kept by a {@linkplain CsvCursor#select(int...) projection}
+     */
+    public long fields() {
+        return fields;
+    }
+
+    public long quotedFields() {
+        return quotedFields;
+    }
+
+    /**
+     * @return the quoted fields that contained at least one newline
+     */
+    public long multilineFields() {
+        return multilineFields;
+    }
+
+    public long commentLines() {
+        return commentLines;
+    }
+
+    public long errors() {
+        long total = 0L;
+        for (long count : errors) total += count;
+        return total;
+    }
+
+    public long errors(@NotNull final CsvErrorCode code) {
+        return errors[code.ordinal()];
+    }
+
+    /**
+     * @return the length of the longest field kept, after decoding
+     */
+    public long maxFieldLength() {
+        return maxFieldLength;
+    }
+
+    /**
+     * @return the length in the input of the longest row, including its line terminator
+     */
+    public long maxRowLength() {
+        return maxRowLength;
+    }
+
+    /**
+     * @return the time spent waiting for the input
+     */
+    public long readNanos() {
+        return readNanos;
+    }
+
+    /**
+     * @return the time from first reading the input until reaching its end or being closed, or zero until then
+     */
+    public long elapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return the time spent other than waiting for input: lexing, plus whatever the caller did between rows
+     */
+    public long parseNanos() {
+        return Math.max(0L, elapsedNanos - readNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "CsvMetrics{bytesRead=" + bytesRead + ", charsRead=" + charsRead + ", rows=" + rows
+                + ", fields=" + fields + ", quotedFields=" + quotedFields + ", multilineFields=" + multilineFields
+                + ", commentLines=" + commentLines + ", errors=" + Arrays.toString(errors)
+                + ", maxFieldLength=" + maxFieldLength + ", maxRowLength=" + maxRowLength
+                + ", readNanos=" + readNanos + ", elapsedNanos=" + elapsedNanos + "}";
+    }
+}
@@ -0,0 +1,47 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Totals the metrics of every reader it listens to.  It may be shared by readers on different threads.
+ * Maximum lengths are the greatest of any reader, and times are summed.
+ *
+ * @author Alex Williams
+ */
+public final class CsvMetricsAggregate implements CsvMetricsListener {
+    private final CsvMetricsListener downstream;
+    private final CsvMetrics total = new CsvMetrics(CsvMetricsListener.NONE);
+    private long readers = 0L;
+
+    public CsvMetricsAggregate() {
+        this(CsvMetricsListener.NONE);
+    }
+
+    /**
+     * @param downstream told about each reader in turn, after it has been added to the total
+     */
+    public CsvMetricsAggregate(@NotNull final CsvMetricsListener downstream) {
+        this.downstream = downstream;
+    }
+
+    @Override
+    public void onFinish(@NotNull final CsvMetrics metrics) {
+        synchronized (this) {
+            total.add(metrics);
+            readers++;
+        }
+        downstream.onFinish(metrics);
+    }
+
+    /**
+     * @return the totals of all finished readers so far
+     */
+    @NotNull
+    public synchronized CsvMetrics snapshot() {
+        return total.snapshot();
+    }
+
+    public synchronized long readers() {
+        return readers;
+    }
+}
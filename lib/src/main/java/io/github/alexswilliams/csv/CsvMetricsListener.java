@@ -0,0 +1,37 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Told about each reader with {@linkplain CsvReader#enableMetrics(CsvMetricsListener) metrics enabled} as it reaches
+ * the end of its input, or as it is closed if that comes first; {@link CsvMetrics#isFinished()} tells which.
+ *
+ * @author Alex Williams
+ * @see CsvMetricsAggregate
+ */
+@FunctionalInterface
+public interface CsvMetricsListener {
+    CsvMetricsListener NONE = metrics -> {
+    };
+
+    /**
+     * Called once for each reader, on the thread that reads or closes it.  The metrics are final by then.
+     */
+    void onFinish(@NotNull CsvMetrics metrics);
+
+    /**
+     * @return a listener that records each reader as a {@code io.github.alexswilliams.csv.Read} event in any running
+     * Java Flight Recording
+     * @throws UnsupportedOperationException before Java 11, which is when JFR events became public API
+     */
+    @NotNull
+    static CsvMetricsListener flightRecorder() {
+        try {
+            return (CsvMetricsListener) Class.forName("io.github.alexswilliams.csv.JfrMetricsListener")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new UnsupportedOperationException("Flight recorder events need Java 11 or later", e);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Parses CSV that arrives in chunks, such as network frames or message payloads, rather than from a {@link
+ * java.io.Reader}.  Chunks of any size are {@linkplain #feed(byte[], int, int) fed} to the parser as they arrive, and
+ * each row is handed to a {@link RowHandler} as soon as its last chunk has been fed.
+ * <p>
+ * A chunk may end anywhere: in the middle of a field, a quoted field, a line break or, for bytes, a UTF-8 sequence.
+ * The parser keeps the part of the row that has arrived, and carries on from it with the next chunk, so only the row
+ * in progress is ever held, however much input there is.  The row in progress is only parsed again once a line break
+ * that could end it arrives, or failing that once it has doubled, so a long row spread over many small chunks is not
+ * parsed again with each one of them.
+ * <p>
+ * A parser either takes {@linkplain #forBytes(CsvDialect, RowHandler) UTF-8 bytes} or
+ * {@linkplain #forChars(CsvDialect, RowHandler) chars}, and is meant to be used by one thread at a time.
+ *
+ * @author Alex Williams
+ */
+public final class CsvPushParser {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CsvPushParser.class);
+    private static final int INITIAL_SIZE = 8 * 1024;
+
+    private final ChunkFeed feed;
+    private final CsvLexer lexer;
+    private final RowHandler handler;
+    private boolean skipBadLines = false;
+
+    private CsvPushParser(final boolean utf8, @NotNull final CsvDialect dialect, @NotNull final RowHandler handler) {
+        this.feed = new ChunkFeed(dialect, utf8, INITIAL_SIZE);
+        this.lexer = new CsvLexer(feed, dialect, 0L, 1, INITIAL_SIZE);
+        this.handler = handler;
+    }
+
+    /**
+     * @return a parser to be fed UTF-8 bytes
+     */
+    @NotNull
+    public static CsvPushParser forBytes(@NotNull final CsvDialect dialect, @NotNull final RowHandler handler) {
+        return new CsvPushParser(true, dialect, handler);
+    }
+
+    /**
+     * @return a parser to be fed chars
+     */
+    @NotNull
+    public static CsvPushParser forChars(@NotNull final CsvDialect dialect, @NotNull final RowHandler handler) {
+        return new CsvPushParser(false, dialect, handler);
+    }
+
+    /**
+     * Skips malformed rows, logging each, as {@link CsvReader#readFile(boolean) readFile(true)} does; otherwise the
+     * chunk in which a row turns out to be malformed throws a {@link CsvException}.
+     */
+    @NotNull
+    public CsvPushParser skipBadLines(final boolean skipBadLines) {
+        this.skipBadLines = skipBadLines;
+        return this;
+    }
+
+    /**
+     * Enables metrics, which are reported to {@code listener} once the parser is {@linkplain #finish() finished}.
+     */
+    @NotNull
+    public CsvPushParser enableMetrics(@NotNull final CsvMetricsListener listener) {
+        lexer.metrics = new CsvMetrics(listener);
+        return this;
+    }
+
+    /**
+     * Parses a chunk of UTF-8, handing over every row that it completes.
+     *
+     * @throws CsvException          if a row is malformed, and bad lines are not being skipped; the rest of the chunk
+     *                               is kept, and is parsed along with the next chunk
+     * @throws IllegalStateException if the parser takes chars, or has been finished
+     */
+    public void feed(@NotNull final byte[] chunk, final int off, final int len) throws CsvException {
+        feed.append(chunk, off, len);
+        parse();
+    }
+
+    /**
+     * As {@link #feed(byte[], int, int)}, for the whole of an array.
+     */
+    public void feed(@NotNull final byte[] chunk) throws CsvException {
+        feed(chunk, 0, chunk.length);
+    }
+
+    /**
+     * As {@link #feed(byte[], int, int)}, for the remaining bytes of a buffer, which are all consumed.
+     */
+    public void feed(@NotNull final ByteBuffer chunk) throws CsvException {
+        feed.append(chunk);
+        parse();
+    }
+
+    /**
+     * As {@link #feed(byte[], int, int)}, for a parser that takes chars.
+     *
+     * @throws IllegalStateException if the parser takes bytes, or has been finished
+     */
+    public void feed(@NotNull final char[] chunk, final int off, final int len) throws CsvException {
+        feed.append(chunk, off, len);
+        parse();
+    }
+
+    /**
+     * As {@link #feed(char[], int, int)}, for the whole of an array.
+     */
+    public void feed(@NotNull final char[] chunk) throws CsvException {
+        feed(chunk, 0, chunk.length);
+    }
+
+    /**
+     * Ends the input, handing over the last row if it had no line break after it.  Finishing a parser that is already
+     * finished does nothing.
+     *
+     * @throws CsvException if a row is malformed, such as by a quoted field that is never closed, and bad lines are
+     *                      not being skipped
+     */
+    public void finish() throws CsvException {
+        if (!feed.finished()) {
+            feed.finish();
+        }
+        parse();
+    }
+
+    /**
+     * Hands over every row that the input so far completes.  Nothing is parsed while the row in progress has been
+     * parsed as far as it goes and the input has not grown much since.
+     */
+    private void parse() throws CsvException {
+        if (lexer.starved && !feed.ready()) {
+            return;
+        }
+        while (true) {
+            final boolean row;
+            try {
+                row = lexer.nextRow();
+            } catch (CsvException e) {
+                if (!skipBadLines) {
+                    LOGGER.warn("Stopping at {} due to parsing error: {}", lexer.location(), e.getMessage());
+                    throw e;
+                }
+                LOGGER.warn("Skipping {} due to parsing error: {}", lexer.location(), e.getMessage());
+                continue;
+            } catch (IOException e) {
+                // a feed only ever reads from memory
+                throw new UncheckedIOException(e);
+            }
+            if (!row) {
+                return;
+            }
+            handler.onRow(lexer.rowAsList(), lexer.rowLine());
+        }
+    }
+
+    /**
+     * Receives the rows of a {@link CsvPushParser}, on the thread that fed it.
+     */
+    @FunctionalInterface
+    public interface RowHandler {
+        /**
+         * @param fields the fields of the row, which are empty for a blank line
+         * @param line   the line on which the row began
+         */
+        void onRow(@NotNull List<String> fields, int line);
+    }
+}
@@ -1,6 +1,5 @@
 package io.github.alexswilliams.csv;
 
-import org.apache.commons.text.StringEscapeUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
@@ -9,10 +8,12 @@ import org.slf4j.LoggerFactory;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
-import java.util.regex.Pattern;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -20,28 +21,142 @@ import java.util.stream.StreamSupport;
 /**
  * Conforms to <a href="https://tools.ietf.org/html/rfc4180">...</a>
  * Transforms a CSV file into a sequence of rows, each being a list of field values.
- * No distinction is made between header and record rows.
+ * Files in other dialects, such as TSV, can be read by giving a {@link CsvDialect}.
+ * No distinction is made between header and record rows; a {@link CsvCursor} can read a header and select columns by
+ * name.
+ * <p>
+ * Rows are lexed from a large block-buffered window over this reader, so the inherited {@link BufferedReader} read
+ * methods should not be interleaved with calls to {@link #readFile}, {@link #streamFile} or {@link #parseLine}.
  *
  * @author Alex Williams
  * @since 25-Nov-2016
  */
 public class CsvReader extends BufferedReader {
-    private static final Pattern QUOTE_MATCHER = Pattern.compile("\\A\"(.*)\"\\z");
     private static final Logger LOGGER = LoggerFactory.getLogger(CsvReader.class);
 
-    private final AtomicInteger lineNum = new AtomicInteger(1);
+    private final CsvLexer lexer;
 
     public CsvReader(@NotNull final Reader reader) {
+        this(reader, CsvDialect.DEFAULT, CsvCheckpoint.ofChars(0L, 1));
+    }
+
+    public CsvReader(@NotNull final Reader reader, @NotNull final CsvDialect dialect) {
+        this(reader, dialect, CsvCheckpoint.ofChars(0L, 1));
+    }
+
+    public CsvReader(@NotNull final Reader reader, @NotNull final CsvCheckpoint from) {
+        this(reader, CsvDialect.DEFAULT, from);
+    }
+
+    /**
+     * Resumes reading from a {@linkplain #checkpoint() checkpoint}.  The reader given must already be positioned at the
+     * checkpoint's offset, for instance by {@link Reader#skip(long) skipping} that many chars of the same input.
+     * Line numbers carry on from the checkpoint's.
+     *
+     * @param dialect the dialect the input is written in, which must be the same as when the checkpoint was taken
+     * @throws IllegalArgumentException if the checkpoint was taken from a file, whose offsets are bytes
+     */
+    public CsvReader(@NotNull final Reader reader, @NotNull final CsvDialect dialect,
+                     @NotNull final CsvCheckpoint from) {
         super(reader);
+        if (from.isByteOffset()) {
+            throw new IllegalArgumentException("A reader cannot resume from a byte offset: " + from);
+        }
+        this.lexer = new CsvLexer(this::read, dialect, from.offset(), from.lineNum(), CsvLexer.DEFAULT_WINDOW_SIZE);
     }
 
 
+    /**
+     * @return a cursor over the remaining rows of this reader, for reading them without materialising each one; the
+     * cursor and this reader share their position
+     */
+    @NotNull
+    public CsvCursor cursor() {
+        return new CsvCursor(lexer, null);
+    }
+
+    /**
+     * @return the point after the last row read, from which a new reader could carry on
+     */
+    @NotNull
+    public CsvCheckpoint checkpoint() {
+        return lexer.checkpoint();
+    }
+
+    /**
+     * Takes the values of some columns from a cache, so that repeated values are returned as the same {@link String}
+     * rather than each being copied out of the buffer; worthwhile for columns with few distinct values.  The columns
+     * are those of the input, whether or not the rows are projected.
+     *
+     * @param cache   the cache, which may be shared between columns; or null to stop caching the columns
+     * @param columns zero-based columns
+     */
+    public void intern(@Nullable final CsvStringCache cache, @NotNull final int... columns) {
+        for (int column : columns) {
+            if (column < 0) throw new IllegalArgumentException("Negative column " + column);
+        }
+        for (int column : columns) {
+            lexer.cache(column, cache);
+        }
+    }
+
+    /**
+     * Keeps only the rows whose field in a column passes a test, from the next row onwards.  The test is made as soon as
+     * the field has been lexed; a row that fails it has the rest of its fields lexed past without being built, and is
+     * never returned.  A row too short to have the column, or a blank line, is tested as if the field were empty.  Rows
+     * must pass the tests on every filtered column.
+     *
+     * @param column    a zero-based column of the input, whether or not the rows are projected
+     * @param predicate the test, which is given a view of the field that is only valid while the test runs; or null to
+     *                  stop filtering on the column
+     */
+    public void filter(final int column, @Nullable final Predicate<? super CharSequence> predicate) {
+        if (column < 0) throw new IllegalArgumentException("Negative column " + column);
+        lexer.filter(column, predicate);
+    }
+
+    /**
+     * Starts counting what this reader reads, from its next row onwards.
+     *
+     * @param listener told when the end of the input is reached, or when this reader is closed if that is sooner
+     * @return the counts, which are kept up to date as rows are read
+     */
+    @NotNull
+    public CsvMetrics enableMetrics(@NotNull final CsvMetricsListener listener) {
+        final CsvMetrics metrics = new CsvMetrics(listener);
+        lexer.metrics = metrics;
+        return metrics;
+    }
+
+    /**
+     * Closes the underlying reader, and reports the metrics of one closed before the end of its input.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            final CsvMetrics metrics = lexer.metrics;
+            if (metrics != null) metrics.closed();
+        }
+    }
+
     @NotNull
     public List<List<String>> readFile(final boolean skipBadLines) throws IOException, CsvException {
         return Collections.unmodifiableList(
                 streamFile(skipBadLines).collect(Collectors.toList()));
     }
 
+    /**
+     * Reads all rows, skipping malformed ones as {@link #readFile(boolean) readFile(true)} does, but reporting each to
+     * a sink rather than creating and logging an exception for it.
+     */
+    @NotNull
+    public List<List<String>> readFile(@NotNull final CsvErrorSink errors) throws IOException {
+        return Collections.unmodifiableList(
+                streamFile(errors).collect(Collectors.toList()));
+    }
+
     class CsvReaderSpliterator extends AbstractCsvReaderSpliterator {
         @Override
         public boolean tryAdvance(Consumer<? super Result<List<String>>> action) {
@@ -55,7 +170,7 @@ public class CsvReader extends BufferedReader {
             } catch (IOException e) {
                 throw new CheckedLaterException(e);
             } catch (CsvException e) {
-                action.accept(new Result.Error<>(e, lineNum.get()));
+                action.accept(new Result.Error<>(e, lexer.location()));
                 return true;
             }
         }
@@ -63,17 +178,239 @@ public class CsvReader extends BufferedReader {
 
     @NotNull
     public Stream<List<String>> streamFile(final boolean skipBadLines) throws IOException, CsvException {
-        final Stream<Result<List<String>>> items = StreamSupport.stream(new CsvReaderSpliterator(), false);
+        lexer.errorSink = null;
+        return unwrapResults(StreamSupport.stream(new CsvReaderSpliterator(), false), skipBadLines);
+    }
+
+    /**
+     * As {@link #readFile(CsvErrorSink)}, lazily.
+     */
+    @NotNull
+    public Stream<List<String>> streamFile(@NotNull final CsvErrorSink errors) throws IOException {
+        lexer.errorSink = errors;
+        return StreamSupport.stream(new CsvReaderSpliterator(), false).map(it -> it.ok().data);
+    }
+
+    /**
+     * Reads all rows of a UTF-8 file.
+     * The file is memory-mapped and lexed as raw bytes, decoding only the fields that contain multi-byte characters,
+     * rather than being decoded in full through a {@link Reader}.  The rows are the same as those of
+     * {@link #readFile(boolean)} over the decoded file.
+     * <p>
+     * A gzipped file, recognised by its first bytes, is inflated on another thread as it is lexed, with no
+     * {@link Reader} or {@link java.util.zip.GZIPInputStream} in between.  A BGZF file, made of independently
+     * compressed blocks, is inflated on several threads at once.
+     */
+    @NotNull
+    public static List<List<String>> readFile(@NotNull final Path path, final boolean skipBadLines)
+            throws IOException, CsvException {
+        return readFile(path, CsvDialect.DEFAULT, skipBadLines);
+    }
+
+    /**
+     * As {@link #readFile(Path, boolean)}, for a file in another dialect.
+     */
+    @NotNull
+    public static List<List<String>> readFile(@NotNull final Path path, @NotNull final CsvDialect dialect,
+                                              final boolean skipBadLines) throws IOException, CsvException {
+        try (Stream<List<String>> rows = streamFile(path, dialect, skipBadLines)) {
+            return Collections.unmodifiableList(rows.collect(Collectors.toList()));
+        }
+    }
 
+    /**
+     * Streams the rows of a UTF-8 file, memory-mapped as for {@link #readFile(Path, boolean)}.
+     * Unlike {@link #streamFile(boolean)}, the stream returned can usefully be made {@linkplain Stream#parallel()
+     * parallel}: the file is split into byte ranges at record boundaries and each range is lexed independently, while
+     * rows are still encountered in file order.  Errors in any range but the first are located by byte offset rather
+     * than by line number.  A gzipped file cannot be split, and is read in order whether or not the stream is
+     * parallel.
+     * <p>
+     * The stream must be closed to close the file.
+     */
+    @NotNull
+    public static Stream<List<String>> streamFile(@NotNull final Path path, final boolean skipBadLines)
+            throws IOException, CsvException {
+        return streamFile(path, CsvDialect.DEFAULT, skipBadLines);
+    }
+
+    /**
+     * As {@link #streamFile(Path, boolean)}, for a file in another dialect.
+     */
+    @NotNull
+    public static Stream<List<String>> streamFile(@NotNull final Path path, @NotNull final CsvDialect dialect,
+                                                  final boolean skipBadLines) throws IOException, CsvException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            if (GzipSource.isGzip(channel)) {
+                channel.close();
+                final CsvCursor cursor = CsvCursor.open(path, dialect);
+                return closingCursor(unwrapResults(StreamSupport.stream(cursor.results(), false), skipBadLines),
+                        cursor);
+            }
+            return closingChannel(streamFile(channel, dialect, skipBadLines), channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the rows of a UTF-8 file with a header row as objects of a class, with the header columns bound to its
+     * constructor parameters or fields as described by {@link CsvBinder}.  Blank lines are skipped.
+     *
+     * @throws CsvException             if a row cannot be lexed, or a field cannot be parsed as the type it is bound to
+     * @throws IllegalArgumentException if the class cannot be bound to the header
+     */
+    @NotNull
+    public static <T> List<T> readFile(@NotNull final Path path, @NotNull final Class<T> type)
+            throws IOException, CsvException {
+        return readFile(path, CsvDialect.DEFAULT, type);
+    }
+
+    /**
+     * As {@link #readFile(Path, Class)}, for a file in another dialect.
+     */
+    @NotNull
+    public static <T> List<T> readFile(@NotNull final Path path, @NotNull final CsvDialect dialect,
+                                       @NotNull final Class<T> type) throws IOException, CsvException {
+        try (CsvCursor cursor = CsvCursor.open(path, dialect)) {
+            cursor.readHeader();
+            final CsvBinder<T> binder = cursor.bind(type);
+            final List<T> rows = new ArrayList<>();
+            while (cursor.next()) {
+                final T row = cursor.row(binder);
+                if (row != null) {
+                    rows.add(row);
+                }
+            }
+            return Collections.unmodifiableList(rows);
+        }
+    }
+
+    /**
+     * As {@link #readFile(Path, boolean)}, reporting malformed rows to a sink as {@link #readFile(CsvErrorSink)} does.
+     * When the file is read in parallel, the sink is called from several threads, and line numbers are not known.
+     */
+    @NotNull
+    public static List<List<String>> readFile(@NotNull final Path path, @NotNull final CsvErrorSink errors)
+            throws IOException {
+        try (Stream<List<String>> rows = streamFile(path, errors)) {
+            return Collections.unmodifiableList(rows.collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * As {@link #streamFile(Path, boolean)}, reporting malformed rows to a sink as {@link #readFile(CsvErrorSink)}
+     * does.
+     */
+    @NotNull
+    public static Stream<List<String>> streamFile(@NotNull final Path path, @NotNull final CsvErrorSink errors)
+            throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            if (GzipSource.isGzip(channel)) {
+                channel.close();
+                final CsvCursor cursor = CsvCursor.open(path);
+                cursor.setErrorSink(errors);
+                return closingCursor(StreamSupport.stream(cursor.results(), false).map(it -> it.ok().data), cursor);
+            }
+            return closingChannel(streamFile(channel, errors), channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @NotNull
+    private static Stream<List<String>> closingCursor(@NotNull final Stream<List<String>> rows,
+                                                      @NotNull final CsvCursor cursor) {
+        return rows.onClose(() -> {
+            try {
+                cursor.close();
+            } catch (IOException e) {
+                throw new CheckedLaterException(e);
+            }
+        });
+    }
+
+    @NotNull
+    private static Stream<List<String>> closingChannel(@NotNull final Stream<List<String>> rows,
+                                                       @NotNull final FileChannel channel) {
+        return rows.onClose(() -> {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new CheckedLaterException(e);
+            }
+        });
+    }
+
+    /**
+     * As {@link #streamFile(Path, boolean)}, splitting the file for parallel reading at the rows of an index, which
+     * also lets errors in every range be located by line number.
+     *
+     * @throws IllegalArgumentException if the file is not the size it was when indexed
+     */
+    @NotNull
+    public static Stream<List<String>> streamFile(@NotNull final Path path, @NotNull final CsvIndex index,
+                                                  final boolean skipBadLines) throws IOException, CsvException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            index.checkCurrent(channel);
+            final FileRangeSpliterator spliterator = new FileRangeSpliterator(channel, index.dialect(), 0L, 1,
+                    channel.size(), FileRangeSpliterator.DEFAULT_MIN_SPLIT_SIZE,
+                    RecordBoundaries.DEFAULT_SPECULATION_LENGTH, null, index);
+            return closingChannel(unwrapResults(StreamSupport.stream(spliterator, false), skipBadLines), channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * As {@link #streamFile(Path, boolean)}, reading from the current size of an open channel, which is left open.
+     */
+    @NotNull
+    public static Stream<List<String>> streamFile(@NotNull final FileChannel channel, final boolean skipBadLines)
+            throws IOException, CsvException {
+        return streamFile(channel, CsvDialect.DEFAULT, skipBadLines);
+    }
+
+    /**
+     * As {@link #streamFile(FileChannel, boolean)}, for a file in another dialect.
+     */
+    @NotNull
+    public static Stream<List<String>> streamFile(@NotNull final FileChannel channel,
+                                                  @NotNull final CsvDialect dialect, final boolean skipBadLines)
+            throws IOException, CsvException {
+        final FileRangeSpliterator spliterator = new FileRangeSpliterator(channel, dialect, 0L, 1, channel.size(),
+                FileRangeSpliterator.DEFAULT_MIN_SPLIT_SIZE, RecordBoundaries.DEFAULT_SPECULATION_LENGTH, null, null);
+        return unwrapResults(StreamSupport.stream(spliterator, false), skipBadLines);
+    }
+
+    /**
+     * As {@link #streamFile(Path, CsvErrorSink)}, reading from the current size of an open channel, which is left open.
+     */
+    @NotNull
+    public static Stream<List<String>> streamFile(@NotNull final FileChannel channel,
+                                                  @NotNull final CsvErrorSink errors) throws IOException {
+        return StreamSupport.stream(new FileRangeSpliterator(channel, 0L, channel.size(), errors), false)
+                .map(it -> it.ok().data);
+    }
+
+    @NotNull
+    static Stream<List<String>> unwrapResults(@NotNull final Stream<Result<List<String>>> items,
+                                              final boolean skipBadLines) throws IOException, CsvException {
         try {
             return items.peek(it -> {
                         if (it instanceof Result.Error) {
                             if (skipBadLines) {
-                                LOGGER.warn("Skipping line {} due to parsing error: {}",
-                                        it.error().line, it.error().exception.getMessage());
+                                LOGGER.warn("Skipping {} due to parsing error: {}",
+                                        it.error().location, it.error().exception.getMessage());
                             } else {
-                                LOGGER.warn("Stopping at line {} due to parsing error: {}",
-                                        it.error().line, it.error().exception.getMessage());
+                                LOGGER.warn("Stopping at {} due to parsing error: {}",
+                                        it.error().location, it.error().exception.getMessage());
                                 throw new CheckedLaterException(it.error().exception);
                             }
                         }
@@ -94,123 +431,6 @@ public class CsvReader extends BufferedReader {
 
     @Nullable
     List<String> parseLine() throws IOException, CsvException {
-        final List<String> result = new LinkedList<>();
-        CsvStates stateMachine = CsvStates.START_OF_FIELD;
-
-        int fieldNum = 1;
-        boolean startOfLine = true;
-        final StringBuilder thisField = new StringBuilder();
-        do {
-            int nextRead = this.read();
-            char nextChar = (char) nextRead;
-            if (nextChar == '\r') {
-                continue;
-            }
-            while (nextChar == '#') {
-                this.readLine();
-                nextRead = this.read();
-                nextChar = (char) nextRead;
-            }
-            if ((nextRead == -1) && startOfLine) {
-                return null;
-            }
-
-            switch (stateMachine) {
-                case START_OF_FIELD:
-                    if ((nextRead == -1) || (nextChar == '\n')) {
-                        lineNum.getAndIncrement();
-                        result.add(thisField.toString());
-                        return startOfLine ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(result));
-                    }
-                    startOfLine = false;
-
-                    if (nextChar == ',') {
-                        result.add("");
-                    } else if (nextChar == '\"') {
-                        thisField.append('\"');
-                        stateMachine = CsvStates.LEXING_QUOTED_FIELD;
-                    } else {
-                        thisField.append(nextChar);
-                        stateMachine = CsvStates.LEXING_UNQUOTED_FIELD;
-                    }
-                    break;
-
-                case LEXING_UNQUOTED_FIELD:
-                    if ((nextRead == -1) || (nextChar == '\n')) {
-                        lineNum.getAndIncrement();
-                        result.add(StringEscapeUtils.unescapeCsv(thisField.toString()));
-                        return Collections.unmodifiableList(result);
-                    }
-                    if (nextChar == ',') {
-                        stateMachine = CsvStates.START_OF_FIELD;
-                        result.add(StringEscapeUtils.unescapeCsv(thisField.toString()));
-                        thisField.setLength(0);
-                        fieldNum++;
-                    } else if (nextChar == '\"') {
-                        LOGGER.error("CSV (Line {}, Field {}): Unescaped quotation mark or leading characters "
-                                + "before quoted field.\n", lineNum, fieldNum);
-                        throw new CsvException("[ERROR] CSV (Line " + lineNum + ", Field " + fieldNum
-                                + "): Unescaped quotation mark or leading character "
-                                + "before quoted field.");
-                    } else {
-                        thisField.append(nextChar);
-                    }
-                    break;
-
-                case LEXING_QUOTED_FIELD:
-                    if (nextRead == -1) {
-                        LOGGER.error("CSV (Line {}, Field {}): Unterminated quoted field.",
-                                lineNum, fieldNum);
-                        throw new CsvException("[ERROR] CSV (Line " + lineNum + ", Field " + fieldNum
-                                + "): Unterminated quoted field.");
-                    }
-                    if (nextChar == '\n') {
-                        lineNum.getAndIncrement();
-                        LOGGER.info("CSV (Line {}, Field {}): Quoted field contains newline - was this "
-                                + "intentional?", lineNum, fieldNum);
-
-                    } else if (nextChar == '\"') {
-                        thisField.append('\"');
-                        stateMachine = CsvStates.ENDING_QUOTED_FIELD;
-                    } else {
-                        thisField.append(nextChar);
-                    }
-                    break;
-
-                case ENDING_QUOTED_FIELD:
-                    if ((nextRead == -1) || (nextChar == '\n')) {
-                        lineNum.getAndIncrement();
-                        result.add(stripEnclosingQuotes(StringEscapeUtils.unescapeCsv(thisField.toString())));
-                        return Collections.unmodifiableList(result);
-                    }
-                    if (nextChar == ',') {
-                        stateMachine = CsvStates.START_OF_FIELD;
-                        result.add(stripEnclosingQuotes(StringEscapeUtils.unescapeCsv(thisField.toString())));
-                        thisField.setLength(0);
-                        fieldNum++;
-                    } else if (nextChar == '\"') {
-                        thisField.append('\"');
-                        stateMachine = CsvStates.LEXING_QUOTED_FIELD;
-                    } else {
-                        LOGGER.error("CSV (Line {}, Field {}): Unescaped quotation mark or trailing character "
-                                + "after quoted field.", lineNum, fieldNum);
-                        throw new CsvException("[ERROR] CSV (Line " + lineNum + ", Field " + fieldNum
-                                + "): Unescaped quotation mark or trailing character "
-                                + "after quoted field.");
-                    }
-                    break;
-            }
-        } while (true);
-    }
-
-    private static String stripEnclosingQuotes(@NotNull final CharSequence quotedString) {
-        return QUOTE_MATCHER.matcher(quotedString).replaceAll("$1");
-    }
-
-    private enum CsvStates {
-        START_OF_FIELD,
-        LEXING_UNQUOTED_FIELD,
-        LEXING_QUOTED_FIELD,
-        ENDING_QUOTED_FIELD
+        return lexer.nextRow() ? lexer.rowAsList() : null;
     }
 }
@@ -0,0 +1,63 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * A row read by {@link CsvIngest}, tagged with where it came from.
+ *
+ * @author Alex Williams
+ */
+public final class CsvRow {
+    private final String source;
+    private final int line;
+    private final List<String> fields;
+
+    CsvRow(@NotNull final String source, final int line, @NotNull final List<String> fields) {
+        this.source = source;
+        this.line = line;
+        this.fields = fields;
+    }
+
+    /**
+     * @return the {@linkplain CsvIngest.Source#name() name} of the source the row was read from
+     */
+    @NotNull
+    public String source() {
+        return source;
+    }
+
+    /**
+     * @return the line on which the row began, counting from 1
+     */
+    public int line() {
+        return line;
+    }
+
+    /**
+     * @return the fields of the row, as {@link CsvReader#readFile(boolean)} would have returned them
+     */
+    @NotNull
+    public List<String> fields() {
+        return fields;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CsvRow)) return false;
+        final CsvRow other = (CsvRow) o;
+        return line == other.line && source.equals(other.source) && fields.equals(other.fields);
+    }
+
+    @Override
+    public int hashCode() {
+        return (source.hashCode() * 31 + line) * 31 + fields.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return source + ":" + line + " " + fields;
+    }
+}
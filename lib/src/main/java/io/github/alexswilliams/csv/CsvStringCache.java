@@ -0,0 +1,155 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A bounded cache of field values, for columns that repeat a small set of values, such as a country or a status.
+ * Give one to {@link CsvReader#intern(CsvStringCache, int...)} or {@link CsvCursor#intern(CsvStringCache, int...)}.
+ * <p>
+ * A field is looked up by its characters in the reader's buffer, so a value that has been seen recently is returned as
+ * the same {@link String} instance as before without allocating anything; only a miss creates a string.  The cache
+ * holds a fixed number of entries in pairs of slots chosen by hash, and the less recently used of a pair is evicted to
+ * make room, so a column with more distinct values than the cache can hold costs a little lookup time but no more
+ * memory.  Values longer than a maximum length are never cached.
+ * <p>
+ * The {@linkplain #hits() hit} and {@linkplain #misses() miss} counts show whether a column is worth caching, and how
+ * big the cache needs to be.  A cache can be shared by several columns of one reader, but, like the reader, is not
+ * thread-safe.
+ *
+ * @author Alex Williams
+ */
+public final class CsvStringCache {
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final int DEFAULT_MAX_LENGTH = 64;
+
+    private final String[] entries;
+    private final int[] hashes;
+    private final int mask;
+    private final int maxLength;
+    private long hits = 0L;
+    private long misses = 0L;
+    private long evictions = 0L;
+
+    public CsvStringCache() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * @param capacity  how many values to hold, rounded up to a power of two no less than two
+     * @param maxLength the length of the longest value to cache
+     */
+    public CsvStringCache(final int capacity, final int maxLength) {
+        if (capacity <= 0 || capacity > 1 << 30 || maxLength < 0) {
+            throw new IllegalArgumentException("Bad cache size: " + capacity + " values of up to " + maxLength);
+        }
+        final int size = Math.max(2, Integer.highestOneBit(capacity - 1) << 1);
+        this.entries = new String[size];
+        this.hashes = new int[size];
+        this.mask = size - 2;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * @return a string with the given characters, which is a cached instance if the same characters have been seen
+     * recently
+     */
+    @NotNull
+    String get(@NotNull final char[] buf, final int start, final int length) {
+        if (length > maxLength) {
+            return new String(buf, start, length);
+        }
+        int hash = 0;
+        for (int i = start, end = start + length; i < end; i++) {
+            hash = 31 * hash + buf[i];
+        }
+        // the pair of slots for this hash; the first of them holds the more recently used value
+        final int first = (hash ^ (hash >>> 16)) & mask;
+        final String firstEntry = entries[first];
+        if (firstEntry != null && hashes[first] == hash && matches(firstEntry, buf, start, length)) {
+            hits++;
+            return firstEntry;
+        }
+        final String secondEntry = entries[first + 1];
+        if (secondEntry != null && hashes[first + 1] == hash && matches(secondEntry, buf, start, length)) {
+            hits++;
+            entries[first + 1] = firstEntry;
+            hashes[first + 1] = hashes[first];
+            entries[first] = secondEntry;
+            hashes[first] = hash;
+            return secondEntry;
+        }
+        misses++;
+        if (secondEntry != null) {
+            evictions++;
+        }
+        final String value = new String(buf, start, length);
+        entries[first + 1] = firstEntry;
+        hashes[first + 1] = hashes[first];
+        entries[first] = value;
+        hashes[first] = hash;
+        return value;
+    }
+
+    private static boolean matches(@NotNull final String entry, @NotNull final char[] buf, final int start,
+                                   final int length) {
+        if (entry.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (entry.charAt(i) != buf[start + i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return how many values fit in the cache
+     */
+    public int capacity() {
+        return entries.length;
+    }
+
+    public int maxLength() {
+        return maxLength;
+    }
+
+    /**
+     * @return how many values have been found in the cache
+     */
+    public long hits() {
+        return hits;
+    }
+
+    /**
+     * @return how many values no longer than the {@linkplain #maxLength() maximum length} were not found in the cache,
+     * and so were created and added to it
+     */
+    public long misses() {
+        return misses;
+    }
+
+    /**
+     * @return how many values have been evicted to make room for others; if this is close to the number of misses, the
+     * cache is too small for the column
+     */
+    public long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Empties the cache and resets its counts.
+     */
+    public void clear() {
+        Arrays.fill(entries, null);
+        hits = 0L;
+        misses = 0L;
+        evictions = 0L;
+    }
+
+    @Override
+    public String toString() {
+        return "CsvStringCache{capacity=" + entries.length + ", hits=" + hits + ", misses=" + misses
+                + ", evictions=" + evictions + '}';
+    }
+}
@@ -0,0 +1,549 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * Writes rows of CSV, the mirror of {@link CsvReader}: whatever is written is read back by a reader in the same
+ * dialect as exactly the same fields.
+ * <p>
+ * Rows are built up in one large buffer that is reused throughout, from strings, slices of char arrays, primitives, or
+ * the current row of a {@link CsvCursor}, whose fields are copied straight from the cursor's buffer.  Each field is
+ * copied into the buffer and scanned once; only a field that turns out to need quoting is written again, quoted.
+ * The rows finished so far are written out when the buffer is full, either to a {@link Writer} or, encoded as UTF-8
+ * without an encoder, to an {@link OutputStream} or {@link FileChannel}; the row in progress stays in the buffer, which
+ * grows if a row will not fit.
+ * <p>
+ * Rows are ended with {@code \n}.  Without a dialect, rows are written as {@link CsvDialect#DEFAULT}, as a reader
+ * without one reads them; that cannot hold a {@code #} or a line break, so values that might have them are best
+ * written and read as {@link CsvDialect#RFC_4180}, which can hold any value.  A dialect without quotes can only hold
+ * its special characters if it has an escape character.  Values that the dialect cannot hold
+ * are rejected with an {@link IllegalArgumentException}, and are not written; nor is the rest of a row given to
+ * {@link #writeRow(List)}, so that no row is written that was not asked for.
+ * <p>
+ * Like {@link java.io.BufferedWriter}, this is meant to be used by one thread at a time.
+ *
+ * @author Alex Williams
+ */
+public final class CsvWriter implements Closeable, Flushable {
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final char[] TRUE = "true".toCharArray();
+    private static final char[] FALSE = "false".toCharArray();
+
+    private final Output output;
+    private final char delimiter;
+    private final int quote;
+    private final int escape;
+    private final int commentPrefix;
+    private final int commentAnywhere;
+    private final boolean legacy;
+    private final boolean trimWhitespace;
+    /**
+     * The ASCII characters that cannot be written in an unquoted field as they are.
+     */
+    private final boolean[] special = new boolean[0x80];
+
+    private char[] buf;
+    private int pos = 0;
+    /**
+     * Where the row in progress starts in {@link #buf}.
+     */
+    private int rowStart = 0;
+    private char[] quoting = new char[64];
+    private int fieldCount = 0;
+    private boolean onlyFieldEmpty = false;
+
+    public CsvWriter(@NotNull final Writer writer) {
+        this(writer, CsvDialect.DEFAULT);
+    }
+
+    public CsvWriter(@NotNull final Writer writer, @NotNull final CsvDialect dialect) {
+        this(new WriterOutput(writer), dialect);
+    }
+
+    public CsvWriter(@NotNull final OutputStream out) {
+        this(out, CsvDialect.DEFAULT);
+    }
+
+    /**
+     * Writes UTF-8 to a stream, which is closed with this writer.
+     */
+    public CsvWriter(@NotNull final OutputStream out, @NotNull final CsvDialect dialect) {
+        this(new Utf8Output(out::write, out), dialect);
+    }
+
+    public CsvWriter(@NotNull final FileChannel channel) {
+        this(channel, CsvDialect.DEFAULT);
+    }
+
+    /**
+     * Writes UTF-8 to a channel from its current position.  As with {@link CsvReader#streamFile(FileChannel, boolean)},
+     * the channel is left open.
+     */
+    public CsvWriter(@NotNull final FileChannel channel, @NotNull final CsvDialect dialect) {
+        this(new Utf8Output((bytes, off, len) -> {
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes, off, len);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }, null), dialect);
+    }
+
+    private CsvWriter(@NotNull final Output output, @NotNull final CsvDialect dialect) {
+        this.output = output;
+        this.delimiter = dialect.delimiter;
+        this.quote = dialect.quote;
+        this.escape = dialect.escape;
+        this.commentPrefix = dialect.legacy ? CsvDialect.NONE : dialect.comment;
+        this.commentAnywhere = dialect.legacy ? dialect.comment : CsvDialect.NONE;
+        this.legacy = dialect.legacy;
+        this.trimWhitespace = dialect.trimWhitespace;
+        this.buf = new char[DEFAULT_BUFFER_SIZE];
+        for (int c : new int[]{delimiter, '\n', '\r', quote, escape, commentAnywhere}) {
+            if (c != CsvDialect.NONE) special[c] = true;
+        }
+    }
+
+    /**
+     * Writes a row of fields, each as by {@link #writeField(CharSequence)}; a null is written as an empty field.
+     *
+     * @throws IllegalArgumentException if the dialect cannot hold one of the values; none of the row is written
+     */
+    public void writeRow(@NotNull final List<? extends CharSequence> fields) throws IOException {
+        final int mark = pos - rowStart;
+        final int fieldsBefore = fieldCount;
+        final boolean onlyFieldEmptyBefore = onlyFieldEmpty;
+        try {
+            for (int i = 0; i < fields.size(); i++) {
+                writeField(fields.get(i));
+            }
+            endRow();
+        } catch (IllegalArgumentException e) {
+            reset(mark, fieldsBefore, onlyFieldEmptyBefore);
+            throw e;
+        }
+    }
+
+    /**
+     * As {@link #writeRow(List)}.
+     */
+    public void writeRow(@NotNull final CharSequence... fields) throws IOException {
+        final int mark = pos - rowStart;
+        final int fieldsBefore = fieldCount;
+        final boolean onlyFieldEmptyBefore = onlyFieldEmpty;
+        try {
+            for (CharSequence field : fields) {
+                writeField(field);
+            }
+            endRow();
+        } catch (IllegalArgumentException e) {
+            reset(mark, fieldsBefore, onlyFieldEmptyBefore);
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the current row of a cursor, copying its fields straight from the cursor's buffer.  A blank line is
+     * written as a blank line.
+     */
+    public void writeRow(@NotNull final CsvCursor cursor) throws IOException {
+        final CsvLexer lexer = cursor.lexer();
+        final int mark = pos - rowStart;
+        final int fieldsBefore = fieldCount;
+        final boolean onlyFieldEmptyBefore = onlyFieldEmpty;
+        try {
+            for (int i = 0; i < lexer.fieldCount; i++) {
+                writeField(lexer.buf, lexer.fieldStarts[i], lexer.fieldEnds[i] - lexer.fieldStarts[i]);
+            }
+            endRow();
+        } catch (IllegalArgumentException e) {
+            reset(mark, fieldsBefore, onlyFieldEmptyBefore);
+            throw e;
+        }
+    }
+
+    /**
+     * Writes each of some rows as by {@link #writeRow(List)}.
+     */
+    public void writeRows(@NotNull final Iterable<? extends List<? extends CharSequence>> rows) throws IOException {
+        for (List<? extends CharSequence> row : rows) {
+            writeRow(row);
+        }
+    }
+
+    /**
+     * Adds a field to the row in progress, quoting it only if it has to be.
+     *
+     * @param value the value, or null for an empty field
+     * @throws IllegalArgumentException if the dialect cannot hold the value
+     */
+    @NotNull
+    public CsvWriter writeField(@Nullable final CharSequence value) throws IOException {
+        if (value == null) {
+            return writeField(value, 0, 0);
+        }
+        return writeField(value, 0, value.length());
+    }
+
+    /**
+     * As {@link #writeField(CharSequence)}, for the chars of {@code value} from {@code start} to {@code end}.
+     */
+    @NotNull
+    public CsvWriter writeField(@Nullable final CharSequence value, final int start, final int end)
+            throws IOException {
+        final int length = end - start;
+        final int at = startField(length);
+        if (value instanceof String) {
+            ((String) value).getChars(start, end, buf, at);
+        } else if (value != null) {
+            final char[] b = buf;
+            for (int i = 0; i < length; i++) {
+                b[at + i] = value.charAt(start + i);
+            }
+        }
+        return endField(at, length);
+    }
+
+    /**
+     * As {@link #writeField(CharSequence)}, for {@code length} chars of an array.
+     */
+    @NotNull
+    public CsvWriter writeField(@NotNull final char[] chars, final int offset, final int length) throws IOException {
+        final int at = startField(length);
+        System.arraycopy(chars, offset, buf, at, length);
+        return endField(at, length);
+    }
+
+    /**
+     * Adds a field in the decimal form that {@link CsvCursor#longField(int)} reads, without creating a string.
+     */
+    @NotNull
+    public CsvWriter writeField(final long value) throws IOException {
+        final int at = startField(20);
+        int i = at + 20;
+        long remaining = value;
+        // generated negatively, as Long.toString does, so that Long.MIN_VALUE can be written
+        if (remaining > 0) remaining = -remaining;
+        do {
+            buf[--i] = (char) ('0' - remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        if (value < 0) buf[--i] = '-';
+        final int length = at + 20 - i;
+        System.arraycopy(buf, i, buf, at, length);
+        return endField(at, length);
+    }
+
+    /**
+     * As {@link #writeField(long)}.
+     */
+    @NotNull
+    public CsvWriter writeField(final int value) throws IOException {
+        return writeField((long) value);
+    }
+
+    /**
+     * Adds a field in the form of {@link Double#toString(double)}, which {@link CsvCursor#doubleField(int)} reads back
+     * as exactly the same value.
+     */
+    @NotNull
+    public CsvWriter writeField(final double value) throws IOException {
+        return writeField(Double.toString(value));
+    }
+
+    @NotNull
+    public CsvWriter writeField(final boolean value) throws IOException {
+        final char[] chars = value ? TRUE : FALSE;
+        return writeField(chars, 0, chars.length);
+    }
+
+    /**
+     * Ends the row in progress.  A row with no fields is written as a blank line, which is read back as a row with no
+     * fields.
+     *
+     * @throws IllegalArgumentException if the row's only field is empty, and the dialect has no quotes to write it
+     *                                  other than as a blank line; the row is dropped
+     */
+    public void endRow() throws IOException {
+        ensureCapacity(3);
+        if (fieldCount == 1 && onlyFieldEmpty) {
+            if (quote == CsvDialect.NONE) {
+                fieldCount = 0;
+                onlyFieldEmpty = false;
+                throw new IllegalArgumentException("A row of one empty field cannot be written without quotes");
+            }
+            buf[pos++] = (char) quote;
+            buf[pos++] = (char) quote;
+        }
+        buf[pos++] = '\n';
+        rowStart = pos;
+        fieldCount = 0;
+        onlyFieldEmpty = false;
+    }
+
+    /**
+     * Writes out the buffer and flushes the output.
+     */
+    @Override
+    public void flush() throws IOException {
+        drain();
+        output.flush();
+    }
+
+    /**
+     * Writes out the buffer and closes the output, other than a {@link FileChannel}.  A row in progress is not ended.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Takes the row in progress back to how it was before a row that was rejected part-way through.
+     *
+     * @param mark how far into the row in progress the rejected row started
+     */
+    private void reset(final int mark, final int fieldsBefore, final boolean onlyFieldEmptyBefore) {
+        pos = rowStart + mark;
+        fieldCount = fieldsBefore;
+        onlyFieldEmpty = onlyFieldEmptyBefore;
+    }
+
+    /**
+     * Makes room for a field of up to {@code length} chars, quoted, and writes the delimiter before it.
+     *
+     * @return where to copy the field's chars to
+     */
+    private int startField(final int length) throws IOException {
+        ensureCapacity(2 * length + 4);
+        if (fieldCount > 0) {
+            buf[pos++] = delimiter;
+        }
+        return pos;
+    }
+
+    /**
+     * Scans a field that has been copied to {@code at}, and quotes or escapes it if it has to be.
+     */
+    @NotNull
+    private CsvWriter endField(final int at, final int length) {
+        final char[] b = buf;
+        final int end = at + length;
+        boolean plain = true;
+        for (int i = at; i < end; i++) {
+            final char c = b[i];
+            if (c < 0x80 && special[c]) {
+                plain = false;
+                break;
+            }
+        }
+        if (plain && length > 0) {
+            plain = !(fieldCount == 0 && b[at] == commentPrefix)
+                    && !(trimWhitespace && (isSpace(b[at]) || isSpace(b[end - 1])));
+        }
+        if (!plain) {
+            try {
+                rewrite(at, length);
+            } catch (IllegalArgumentException e) {
+                pos = fieldCount > 0 ? at - 1 : at;
+                throw e;
+            }
+        } else {
+            pos = end;
+        }
+        onlyFieldEmpty = fieldCount == 0 && length == 0;
+        fieldCount++;
+        return this;
+    }
+
+    /**
+     * Writes a field again, quoted, or with each special character escaped in a dialect without quotes.
+     */
+    private void rewrite(final int at, final int length) {
+        if (quoting.length < length) {
+            quoting = new char[Math.max(length, quoting.length * 2)];
+        }
+        final char[] value = quoting;
+        System.arraycopy(buf, at, value, 0, length);
+        final char[] b = buf;
+        int p = at;
+        if (quote != CsvDialect.NONE) {
+            if (legacy) {
+                for (int i = 0; i < length; i++) {
+                    if (value[i] == '\n' || value[i] == '\r' || value[i] == commentAnywhere) {
+                        throw cannotWrite(value, length, "the default dialect, which drops line breaks and "
+                                + "comments even inside quotes; write in CsvDialect.RFC_4180 instead");
+                    }
+                }
+            }
+            b[p++] = (char) quote;
+            for (int i = 0; i < length; i++) {
+                final char c = value[i];
+                if (c == quote || c == escape) {
+                    b[p++] = c;
+                }
+                b[p++] = c;
+            }
+            b[p++] = (char) quote;
+        } else if (escape != CsvDialect.NONE) {
+            if (trimWhitespace && isSpace(value[length - 1])) {
+                throw cannotWrite(value, length, "a dialect without quotes that trims whitespace");
+            }
+            for (int i = 0; i < length; i++) {
+                final char c = value[i];
+                if ((c < 0x80 && special[c]) || (i == 0 && (c == commentPrefix || trimWhitespace && isSpace(c)))) {
+                    b[p++] = (char) escape;
+                }
+                b[p++] = c;
+            }
+        } else {
+            throw cannotWrite(value, length, "a dialect with neither quotes nor an escape character");
+        }
+        pos = p;
+    }
+
+    @NotNull
+    private static IllegalArgumentException cannotWrite(@NotNull final char[] value, final int length,
+                                                        @NotNull final String dialect) {
+        return new IllegalArgumentException("Cannot write \"" + new String(value, 0, length) + "\" in " + dialect);
+    }
+
+    private boolean isSpace(final char c) {
+        return (c == ' ' || c == '\t') && c != delimiter;
+    }
+
+    private void ensureCapacity(final int length) throws IOException {
+        if (buf.length - pos >= length) {
+            return;
+        }
+        // only finished rows are written out, so that a row can still be dropped, and a field is never split
+        if (rowStart > 0) {
+            output.write(buf, rowStart);
+        }
+        final int rowLength = pos - rowStart;
+        final char[] b = buf.length < rowLength + length ? new char[Math.max(rowLength + length, buf.length * 2)] : buf;
+        System.arraycopy(buf, rowStart, b, 0, rowLength);
+        buf = b;
+        rowStart = 0;
+        pos = rowLength;
+    }
+
+    private void drain() throws IOException {
+        if (pos > 0) {
+            output.write(buf, pos);
+            pos = 0;
+        }
+        rowStart = 0;
+    }
+
+    private interface Output extends Flushable, Closeable {
+        void write(@NotNull char[] chars, int length) throws IOException;
+    }
+
+    private static final class WriterOutput implements Output {
+        private final Writer writer;
+
+        WriterOutput(@NotNull final Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void write(@NotNull final char[] chars, final int length) throws IOException {
+            writer.write(chars, 0, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ByteSink {
+        void write(@NotNull byte[] bytes, int off, int len) throws IOException;
+    }
+
+    /**
+     * Encodes chars as UTF-8 into a reused array.  A surrogate without its other half is written as {@code ?}, as
+     * {@link java.nio.charset.StandardCharsets#UTF_8} would; fields are never split between writes, so neither is a
+     * well-formed pair.
+     */
+    private static final class Utf8Output implements Output {
+        private final ByteSink sink;
+        @Nullable
+        private final Closeable resource;
+        private byte[] bytes = new byte[0];
+
+        Utf8Output(@NotNull final ByteSink sink, @Nullable final Closeable resource) {
+            this.sink = sink;
+            this.resource = resource;
+        }
+
+        @Override
+        public void write(@NotNull final char[] chars, final int length) throws IOException {
+            if (bytes.length < 3 * length) {
+                bytes = new byte[3 * length];
+            }
+            final byte[] b = bytes;
+            int p = 0;
+            int i = 0;
+            while (i < length) {
+                // runs of ASCII are the common case
+                while (i < length && chars[i] < 0x80) {
+                    b[p++] = (byte) chars[i++];
+                }
+                if (i == length) break;
+                final char c = chars[i++];
+                if (c < 0x800) {
+                    b[p++] = (byte) (0xC0 | c >> 6);
+                    b[p++] = (byte) (0x80 | c & 0x3F);
+                } else if (Character.isHighSurrogate(c) && i < length && Character.isLowSurrogate(chars[i])) {
+                    final int cp = Character.toCodePoint(c, chars[i++]);
+                    b[p++] = (byte) (0xF0 | cp >> 18);
+                    b[p++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                    b[p++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                    b[p++] = (byte) (0x80 | cp & 0x3F);
+                } else if (Character.isSurrogate(c)) {
+                    b[p++] = '?';
+                } else {
+                    b[p++] = (byte) (0xE0 | c >> 12);
+                    b[p++] = (byte) (0x80 | c >> 6 & 0x3F);
+                    b[p++] = (byte) (0x80 | c & 0x3F);
+                }
+            }
+            sink.write(b, 0, p);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (resource instanceof Flushable) {
+                ((Flushable) resource).flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (resource != null) {
+                resource.close();
+            }
+        }
+    }
+}
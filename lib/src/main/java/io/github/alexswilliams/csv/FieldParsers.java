@@ -0,0 +1,177 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+/**
+ * Parses the fields of a lexer's current row straight out of its window, without creating a string per value.
+ * Only ASCII digits are accepted as digits.  A value that cannot be parsed is reported as a {@link CsvException}
+ * naming the row and field it came from.
+ */
+final class FieldParsers {
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    private FieldParsers() {
+    }
+
+    static int parseInt(@NotNull final CsvLexer lexer, final int index) throws CsvException {
+        final long value = parseLong(lexer, index, "an int");
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw cannotParse(lexer, index, "an int");
+        }
+        return (int) value;
+    }
+
+    static long parseLong(@NotNull final CsvLexer lexer, final int index) throws CsvException {
+        return parseLong(lexer, index, "a long");
+    }
+
+    private static long parseLong(@NotNull final CsvLexer lexer, final int index, @NotNull final String type)
+            throws CsvException {
+        final char[] b = lexer.buf;
+        int i = lexer.fieldStarts[index];
+        final int end = lexer.fieldEnds[index];
+        final boolean negative = i < end && b[i] == '-';
+        if (i < end && (b[i] == '-' || b[i] == '+')) i++;
+        if (i == end) {
+            throw cannotParse(lexer, index, type);
+        }
+
+        // accumulated negatively, as Long.parseLong does, so that Long.MIN_VALUE can be reached
+        long result = 0;
+        final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        final long multiplyLimit = limit / 10;
+        for (; i < end; i++) {
+            final int digit = b[i] - '0';
+            if (digit < 0 || digit > 9 || result < multiplyLimit) {
+                throw cannotParse(lexer, index, type);
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw cannotParse(lexer, index, type);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Decimal values of up to 15 significant digits with a small exponent are computed directly, which is exact
+     * because both parts are exactly representable as doubles.  Anything else, including {@code NaN} and
+     * {@code Infinity}, is left to {@link Double#parseDouble}.
+     */
+    static double parseDouble(@NotNull final CsvLexer lexer, final int index) throws CsvException {
+        final char[] b = lexer.buf;
+        final int start = lexer.fieldStarts[index];
+        final int end = lexer.fieldEnds[index];
+        int i = start;
+        final boolean negative = i < end && b[i] == '-';
+        if (i < end && (b[i] == '-' || b[i] == '+')) i++;
+
+        long mantissa = 0;
+        int significantDigits = 0;
+        int digits = 0;
+        int exponent = 0;
+        for (; i < end && b[i] >= '0' && b[i] <= '9'; i++, digits++) {
+            if (mantissa != 0 || b[i] != '0') {
+                if (++significantDigits > MAX_EXACT_DIGITS) return parseDoubleSlowly(lexer, index);
+                mantissa = mantissa * 10 + (b[i] - '0');
+            }
+        }
+        if (i < end && b[i] == '.') {
+            for (i++; i < end && b[i] >= '0' && b[i] <= '9'; i++, digits++) {
+                if (mantissa != 0 || b[i] != '0') {
+                    if (++significantDigits > MAX_EXACT_DIGITS) return parseDoubleSlowly(lexer, index);
+                    mantissa = mantissa * 10 + (b[i] - '0');
+                }
+                exponent--;
+            }
+        }
+        if (digits == 0) {
+            return parseDoubleSlowly(lexer, index);
+        }
+        if (i < end && (b[i] == 'e' || b[i] == 'E')) {
+            i++;
+            final boolean negativeExponent = i < end && b[i] == '-';
+            if (i < end && (b[i] == '-' || b[i] == '+')) i++;
+            if (i == end) {
+                throw cannotParse(lexer, index, "a double");
+            }
+            int explicitExponent = 0;
+            for (; i < end && b[i] >= '0' && b[i] <= '9'; i++) {
+                if (explicitExponent > 1000) return parseDoubleSlowly(lexer, index);
+                explicitExponent = explicitExponent * 10 + (b[i] - '0');
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (i != end || exponent < -22 || exponent > 22) {
+            return parseDoubleSlowly(lexer, index);
+        }
+        final double magnitude = exponent < 0
+                ? mantissa / POWERS_OF_TEN[-exponent]
+                : mantissa * POWERS_OF_TEN[exponent];
+        return negative ? -magnitude : magnitude;
+    }
+
+    private static double parseDoubleSlowly(@NotNull final CsvLexer lexer, final int index) throws CsvException {
+        final int start = lexer.fieldStarts[index];
+        final int end = lexer.fieldEnds[index];
+        if (start == end || lexer.buf[start] <= ' ' || lexer.buf[end - 1] <= ' ') {
+            throw cannotParse(lexer, index, "a double");
+        }
+        try {
+            return Double.parseDouble(new String(lexer.buf, start, end - start));
+        } catch (NumberFormatException e) {
+            throw cannotParse(lexer, index, "a double");
+        }
+    }
+
+    /**
+     * Accepts {@code true} and {@code false}, ignoring case.
+     */
+    static boolean parseBoolean(@NotNull final CsvLexer lexer, final int index) throws CsvException {
+        final char[] b = lexer.buf;
+        final int start = lexer.fieldStarts[index];
+        final int length = lexer.fieldEnds[index] - start;
+        if (length == 4 && matchesIgnoringCase(b, start, "true")) return true;
+        if (length == 5 && matchesIgnoringCase(b, start, "false")) return false;
+        throw cannotParse(lexer, index, "a boolean");
+    }
+
+    @NotNull
+    static LocalDate parseDate(@NotNull final CsvLexer lexer, final int index, @NotNull final CsvDateFormat format)
+            throws CsvException {
+        final char[] b = lexer.buf;
+        final int start = lexer.fieldStarts[index];
+        if (lexer.fieldEnds[index] - start != format.length() || !format.matches(b, start)) {
+            throw cannotParse(lexer, index, "a date of the form " + format);
+        }
+        try {
+            return LocalDate.of(format.year(b, start), format.month(b, start), format.day(b, start));
+        } catch (DateTimeException e) {
+            throw cannotParse(lexer, index, "a date of the form " + format);
+        }
+    }
+
+    private static boolean matchesIgnoringCase(@NotNull final char[] b, final int start,
+                                               @NotNull final String lowerCase) {
+        for (int i = 0; i < lowerCase.length(); i++) {
+            if ((b[start + i] | 0x20) != lowerCase.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    @NotNull
+    static CsvException cannotParse(@NotNull final CsvLexer lexer, final int index,
+                                            @NotNull final String type) {
+        final String value = new String(lexer.buf, lexer.fieldStarts[index],
+                lexer.fieldEnds[index] - lexer.fieldStarts[index]);
+        return new CsvException("[ERROR] CSV (" + lexer.rowLocation() + ", Field " + (index + 1)
+                + "): Cannot parse \"" + value + "\" as " + type + ".");
+    }
+}
@@ -0,0 +1,139 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Lexes the records of a UTF-8 file that start within a byte range.
+ * Until it is first advanced, the range can be split in two at a record boundary near its middle; the prefix is
+ * handed out, so encounter order is kept.  Sizes are estimated in bytes: the number of rows in a range is not known,
+ * so {@link Spliterator#SIZED} cannot be reported, but the estimate is enough for the fork-join framework to decide
+ * how far to split.
+ * <p>
+ * Given a {@link CsvIndex} of the file, ranges are split at indexed rows instead of at boundaries found by
+ * speculation, and since the line of each indexed row is known, errors are located by line in every range.
+ */
+final class FileRangeSpliterator extends AbstractCsvReaderSpliterator {
+    static final long DEFAULT_MIN_SPLIT_SIZE = 1024 * 1024;
+
+    private final FileChannel channel;
+    private final CsvDialect dialect;
+    private final long end;
+    private final long minSplitSize;
+    private final int speculationLength;
+    @Nullable
+    private final CsvErrorSink errorSink;
+    @Nullable
+    private final CsvIndex index;
+    private long start;
+    private int startLine;
+    @Nullable
+    private CsvLexer lexer = null;
+
+    FileRangeSpliterator(@NotNull final FileChannel channel, final long start, final long end,
+                         @Nullable final CsvErrorSink errorSink) {
+        this(channel, start, end, DEFAULT_MIN_SPLIT_SIZE, RecordBoundaries.DEFAULT_SPECULATION_LENGTH, errorSink);
+    }
+
+    FileRangeSpliterator(@NotNull final FileChannel channel, final long start, final long end,
+                         final long minSplitSize, final int speculationLength) {
+        this(channel, start, end, minSplitSize, speculationLength, null);
+    }
+
+    /**
+     * @param errorSink where to report malformed rows, if they are not to be returned as errors
+     */
+    FileRangeSpliterator(@NotNull final FileChannel channel, final long start, final long end,
+                         final long minSplitSize, final int speculationLength,
+                         @Nullable final CsvErrorSink errorSink) {
+        this(channel, CsvDialect.DEFAULT, start, start == 0L ? 1 : CsvCheckpoint.UNKNOWN_LINE, end, minSplitSize,
+                speculationLength, errorSink, null);
+    }
+
+    /**
+     * @param startLine the line on which the record at {@code start} begins, or {@link CsvCheckpoint#UNKNOWN_LINE}
+     * @param index     an index of the file to split at, if there is one, which must have been built with the same
+     *                  dialect
+     */
+    FileRangeSpliterator(@NotNull final FileChannel channel, @NotNull final CsvDialect dialect, final long start,
+                         final int startLine, final long end, final long minSplitSize, final int speculationLength,
+                         @Nullable final CsvErrorSink errorSink, @Nullable final CsvIndex index) {
+        this.channel = channel;
+        this.dialect = dialect;
+        this.start = start;
+        this.startLine = startLine;
+        this.end = end;
+        this.minSplitSize = minSplitSize;
+        this.speculationLength = speculationLength;
+        this.errorSink = errorSink;
+        this.index = index;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Result<List<String>>> action) {
+        try {
+            if (lexer == null) {
+                lexer = new CsvLexer(new MappedFileSource(channel, start), dialect, start, startLine,
+                        CsvLexer.DEFAULT_WINDOW_SIZE);
+                lexer.endOffset = end;
+                lexer.errorSink = errorSink;
+            }
+            if (!lexer.nextRow()) {
+                return false;
+            }
+            action.accept(new Result.OK<>(lexer.rowAsList()));
+            return true;
+        } catch (IOException e) {
+            throw new CheckedLaterException(e);
+        } catch (CsvException e) {
+            action.accept(new Result.Error<>(e, Objects.requireNonNull(lexer).location()));
+            return true;
+        }
+    }
+
+    @Override
+    @Nullable
+    public Spliterator<Result<List<String>>> trySplit() {
+        if (lexer != null || end - start < 2 * minSplitSize) {
+            return null;
+        }
+        final long mid = start + (end - start) / 2;
+        final long boundary;
+        final int boundaryLine;
+        if (index != null) {
+            final CsvCheckpoint row = index.rowNear(mid, start, end);
+            if (row == null) {
+                return null;
+            }
+            boundary = row.offset();
+            boundaryLine = row.lineNum();
+        } else {
+            try {
+                boundary = RecordBoundaries.find(channel, dialect, start, mid, end, speculationLength);
+            } catch (IOException e) {
+                throw new CheckedLaterException(e);
+            }
+            boundaryLine = CsvCheckpoint.UNKNOWN_LINE;
+        }
+        if (boundary <= start || boundary >= end) {
+            return null;
+        }
+        final FileRangeSpliterator prefix = new FileRangeSpliterator(channel, dialect, start, startLine,
+                boundary, minSplitSize, speculationLength, errorSink, index);
+        start = boundary;
+        startLine = boundaryLine;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return end - (lexer == null ? start : Math.min(end, lexer.position()));
+    }
+}
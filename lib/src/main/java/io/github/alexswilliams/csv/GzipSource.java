@@ -0,0 +1,384 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Delivers the inflated bytes of a gzipped UTF-8 file, one byte per char, as {@link MappedFileSource} does for a plain
+ * one.  Inflating is done ahead of the lexer on another thread, into a small ring of blocks that are allocated once
+ * and passed back and forth as in {@link ReadAheadReader}, so inflating and lexing run side by side.
+ * <p>
+ * A BGZF file, as written by {@code bgzip} and other block-compressing tools, is a series of gzip members of at most
+ * 64KiB each that record their own compressed length.  Members can then be found without inflating them, and are
+ * inflated by several threads at once; each block carries its own {@link Inflater}, so that is reused too.  Any other
+ * gzip file, including one of several members, is inflated on a single thread, as where one member ends is only known
+ * by inflating it.
+ * <p>
+ * Like the lexer it feeds, this is meant to be read by one thread at a time.
+ *
+ * @author Alex Williams
+ */
+final class GzipSource implements CharSource, Closeable {
+    private static final int MAX_MEMBER_SIZE = 64 * 1024;
+    private static final int HEADER_SIZE = 12;
+    private static final int FEXTRA = 4;
+    private static final Block END = new Block(0);
+
+    private final FileChannel channel;
+    private final BlockingQueue<Block> free;
+    private final BlockingQueue<Future<Block>> filled;
+    @Nullable
+    private final ExecutorService inflaters;
+    private final Thread producer;
+    private volatile boolean closed = false;
+    private long toSkip;
+
+    @Nullable
+    private Block current = null;
+    private int currentPos = 0;
+
+    /**
+     * @param channel a channel positioned at the start of a gzip file, which is left open on {@link #close()}
+     * @param skip    how many inflated bytes to skip, to start from a checkpoint
+     */
+    GzipSource(@NotNull final FileChannel channel, final long skip) throws IOException {
+        this.channel = channel;
+        this.toSkip = skip;
+        final boolean blocked = isBgzf(channel);
+        final int threads = blocked ? Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors() - 1)) : 0;
+        final int blockCount = 2 * threads + 2;
+        this.free = new ArrayBlockingQueue<>(blockCount);
+        // one spare place for the block that reports the end of the input or an error
+        this.filled = new ArrayBlockingQueue<>(blockCount + 1);
+        for (int i = 0; i < blockCount; i++) {
+            free.add(new Block(MAX_MEMBER_SIZE + 1));
+        }
+        if (blocked) {
+            final AtomicInteger threadCount = new AtomicInteger();
+            this.inflaters = Executors.newFixedThreadPool(threads, task -> {
+                final Thread thread = new Thread(task, "csv-inflate-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.producer = new Thread(this::produceMembers, "csv-inflate");
+        } else {
+            this.inflaters = null;
+            this.producer = new Thread(this::produceStream, "csv-inflate");
+        }
+        this.producer.setDaemon(true);
+        this.producer.start();
+    }
+
+    /**
+     * @return true if the file starts with the gzip magic number
+     */
+    static boolean isGzip(@NotNull final FileChannel channel) throws IOException {
+        final ByteBuffer magic = readAt(channel, 0L, 2);
+        return magic.remaining() == 2 && magic.get(0) == (byte) 0x1F && magic.get(1) == (byte) 0x8B;
+    }
+
+    /**
+     * @return true if the first member of a gzip file records its own length, in the {@code BC} extra field of BGZF
+     */
+    private static boolean isBgzf(@NotNull final FileChannel channel) throws IOException {
+        final ByteBuffer header = readAt(channel, 0L, HEADER_SIZE + 6);
+        return header.remaining() == HEADER_SIZE + 6 && (header.get(3) & FEXTRA) != 0
+                && header.get(12) == 'B' && header.get(13) == 'C' && header.get(14) == 2 && header.get(15) == 0;
+    }
+
+    @NotNull
+    private static ByteBuffer readAt(@NotNull final FileChannel channel, final long position, final int length)
+            throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) break;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Inflates the whole file on the producer thread, a block at a time.
+     */
+    private void produceStream() {
+        try {
+            final InputStream gzip = new GZIPInputStream(Channels.newInputStream(channel), MAX_MEMBER_SIZE);
+            while (!closed) {
+                final Block block = free.take();
+                if (closed) {
+                    return;
+                }
+                int length = 0;
+                while (length < block.bytes.length) {
+                    final int read = gzip.read(block.bytes, length, block.bytes.length - length);
+                    if (read < 0) break;
+                    length += read;
+                }
+                block.length = length;
+                if (length > 0) {
+                    filled.put(CompletableFuture.completedFuture(block));
+                }
+                if (length < block.bytes.length) {
+                    filled.put(CompletableFuture.completedFuture(END));
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            // nothing else holds the producer thread to interrupt it; stop as if closed
+        } catch (Throwable e) {
+            // whatever stopped the producer, the consumer must hear of it rather than wait forever
+            filled.add(CompletableFuture.completedFuture(new Block(e)));
+        }
+    }
+
+    /**
+     * Reads one BGZF member at a time on the producer thread, and has the inflater threads inflate them.  The futures
+     * are queued in file order, so the consumer takes the blocks in order however they finish.
+     */
+    private void produceMembers() {
+        try {
+            final InputStream in = new BufferedInputStream(Channels.newInputStream(channel), MAX_MEMBER_SIZE);
+            while (!closed) {
+                final Block block = free.take();
+                if (closed) {
+                    return;
+                }
+                if (!readMember(in, block)) {
+                    filled.put(CompletableFuture.completedFuture(END));
+                    return;
+                }
+                filled.put(inflaters.submit(block::inflate));
+            }
+        } catch (InterruptedException | RejectedExecutionException e) {
+            // closed while handing over a member, after the inflaters were shut down
+        } catch (Throwable e) {
+            filled.add(CompletableFuture.completedFuture(new Block(e)));
+        }
+    }
+
+    /**
+     * Reads the next member of a BGZF file into a block, without inflating it.
+     *
+     * @return false at the end of the file
+     */
+    private static boolean readMember(@NotNull final InputStream in, @NotNull final Block block) throws IOException {
+        final byte[] header = block.compressed;
+        final int read = readFully(in, header, 0, HEADER_SIZE);
+        if (read == 0) {
+            return false;
+        }
+        if (read < HEADER_SIZE) {
+            throw new EOFException("Truncated gzip member header");
+        }
+        if (header[0] != (byte) 0x1F || header[1] != (byte) 0x8B || header[2] != 8 || header[3] != FEXTRA) {
+            throw new ZipException("Not a BGZF member: every member of a BGZF file must record its size");
+        }
+        final int extraLength = unsignedShort(header, 10);
+        if (readFully(in, header, 0, extraLength) < extraLength) {
+            throw new EOFException("Truncated gzip member header");
+        }
+        int memberSize = -1;
+        for (int i = 0; i + 4 <= extraLength; i += 4 + unsignedShort(header, i + 2)) {
+            if (header[i] == 'B' && header[i + 1] == 'C' && unsignedShort(header, i + 2) == 2 && i + 6 <= extraLength) {
+                memberSize = unsignedShort(header, i + 4) + 1;
+            }
+        }
+        final int compressedLength = memberSize - HEADER_SIZE - extraLength - 8;
+        if (memberSize < 0 || compressedLength < 0) {
+            throw new ZipException("Not a BGZF member: no valid size recorded");
+        }
+        if (readFully(in, block.compressed, 0, compressedLength + 8) < compressedLength + 8) {
+            throw new EOFException("Truncated gzip member");
+        }
+        block.compressedLength = compressedLength;
+        block.expectedCrc = unsignedShort(block.compressed, compressedLength)
+                | unsignedShort(block.compressed, compressedLength + 2) << 16;
+        block.expectedLength = unsignedShort(block.compressed, compressedLength + 4)
+                | unsignedShort(block.compressed, compressedLength + 6) << 16;
+        if (block.expectedLength < 0 || block.expectedLength > MAX_MEMBER_SIZE) {
+            throw new ZipException("BGZF member too large: " + (block.expectedLength & 0xFFFFFFFFL) + " bytes");
+        }
+        return true;
+    }
+
+    private static int readFully(@NotNull final InputStream in, @NotNull final byte[] bytes, final int off,
+                                 final int len) throws IOException {
+        int total = 0;
+        while (total < len) {
+            final int read = in.read(bytes, off + total, len - total);
+            if (read < 0) break;
+            total += read;
+        }
+        return total;
+    }
+
+    private static int unsignedShort(@NotNull final byte[] bytes, final int at) {
+        return (bytes[at] & 0xFF) | (bytes[at + 1] & 0xFF) << 8;
+    }
+
+    @Override
+    public int read(@NotNull final char[] buf, final int off, final int len) throws IOException {
+        if (closed) {
+            throw new IOException("Source closed");
+        }
+        Block block = current;
+        while (block == null || (block.error == null && block != END && currentPos == block.length)) {
+            if (block != null) {
+                free.add(block);
+                current = null;
+            }
+            block = nextBlock();
+            current = block;
+            currentPos = 0;
+            if (toSkip > 0 && block.error == null) {
+                currentPos = (int) Math.min(toSkip, block.length);
+                toSkip -= currentPos;
+            }
+        }
+        final Throwable error = block.error;
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        if (error instanceof Error) {
+            throw (Error) error;
+        }
+        if (error != null) {
+            throw new IOException("Inflating failed", error);
+        }
+        if (block == END) {
+            return -1;
+        }
+        final int read = Math.min(len, block.length - currentPos);
+        final byte[] b = block.bytes;
+        final int from = currentPos;
+        for (int i = 0; i < read; i++) {
+            buf[off + i] = (char) (b[from + i] & 0xFF);
+        }
+        currentPos += read;
+        return read;
+    }
+
+    /**
+     * @return the next block in file order, or one that holds the error that stopped it from being inflated
+     */
+    @NotNull
+    private Block nextBlock() throws IOException {
+        try {
+            return filled.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for inflated input");
+        } catch (ExecutionException e) {
+            return new Block(e.getCause());
+        }
+    }
+
+    @Override
+    public boolean deliversUtf8Bytes() {
+        return true;
+    }
+
+    /**
+     * Stops inflating.  The channel is not closed: the producer is not interrupted, as that would close the channel
+     * were it reading from it, but finishes the block in hand and then stops.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // wakes a producer waiting for a free block; it never waits to queue one, as there is always room
+        free.offer(END);
+        if (inflaters != null) {
+            inflaters.shutdownNow();
+        }
+    }
+
+    private static final class Block {
+        final byte[] bytes;
+        int length;
+        @Nullable
+        final Throwable error;
+
+        // only for BGZF members
+        final byte[] compressed;
+        int compressedLength;
+        int expectedCrc;
+        int expectedLength;
+        @Nullable
+        private Inflater inflater = null;
+        private final CRC32 crc = new CRC32();
+
+        Block(final int size) {
+            this.bytes = new byte[size];
+            this.compressed = new byte[size];
+            this.error = null;
+        }
+
+        Block(@NotNull final Throwable error) {
+            this.bytes = new byte[0];
+            this.compressed = new byte[0];
+            this.error = error;
+        }
+
+        /**
+         * Inflates the member read into this block, and checks it against the length and CRC in its trailer.
+         */
+        @NotNull
+        Block inflate() throws IOException {
+            Inflater inflater = this.inflater;
+            if (inflater == null) {
+                inflater = new Inflater(true);
+                this.inflater = inflater;
+            } else {
+                inflater.reset();
+            }
+            inflater.setInput(compressed, 0, compressedLength);
+            int length = 0;
+            try {
+                while (!inflater.finished()) {
+                    final int inflated = inflater.inflate(bytes, length, bytes.length - length);
+                    if (inflated == 0 && !inflater.finished()) {
+                        throw new ZipException(length == bytes.length ? "BGZF member inflates to more than 64KiB"
+                                : "Truncated BGZF member");
+                    }
+                    length += inflated;
+                }
+            } catch (DataFormatException e) {
+                throw new ZipException("Corrupt BGZF member: " + e.getMessage());
+            }
+            crc.reset();
+            crc.update(bytes, 0, length);
+            if (length != expectedLength || (int) crc.getValue() != expectedCrc) {
+                throw new ZipException("BGZF member does not match its length or CRC");
+            }
+            this.length = length;
+            return this;
+        }
+    }
+}
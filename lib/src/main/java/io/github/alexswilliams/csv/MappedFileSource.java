@@ -0,0 +1,88 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Delivers the bytes of a UTF-8 file, from a given offset onwards, one byte per char.
+ * The file is memory-mapped a chunk at a time, so files larger than a single {@link MappedByteBuffer} can address
+ * are read too; as mappings are independent of the channel's position, any number of these may share one channel.
+ */
+final class MappedFileSource implements CharSource {
+    static final long DEFAULT_CHUNK_SIZE = 256L * 1024 * 1024;
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final long chunkSize;
+    private long position;
+    @Nullable
+    private MappedByteBuffer chunk = null;
+    private final byte[] bytes = new byte[BLOCK_SIZE];
+
+    MappedFileSource(@NotNull final FileChannel channel, final long position) throws IOException {
+        this(channel, position, DEFAULT_CHUNK_SIZE);
+    }
+
+    MappedFileSource(@NotNull final FileChannel channel, final long position, final long chunkSize)
+            throws IOException {
+        this(channel, position, chunkSize, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param end an offset at which to stop, as if the file ended there
+     */
+    MappedFileSource(@NotNull final FileChannel channel, final long position, final long chunkSize, final long end)
+            throws IOException {
+        this.channel = channel;
+        this.size = Math.min(end, channel.size());
+        this.chunkSize = chunkSize;
+        this.position = position;
+    }
+
+    @Override
+    public int read(@NotNull final char[] buf, final int off, final int len) throws IOException {
+        return read(buf, off, len, null, null);
+    }
+
+    /**
+     * As {@link #read(char[], int, int)}, also marking the chars read that end a run in an unquoted field, from the
+     * mapped bytes, as {@link StructuralIndex#markStops} does.
+     *
+     * @param marks room for a bit for each of {@code len} chars
+     */
+    int read(@NotNull final char[] buf, final int off, final int len, @Nullable final StructuralIndex index,
+             @Nullable final long[] marks) throws IOException {
+        MappedByteBuffer mapped = chunk;
+        if (mapped == null || !mapped.hasRemaining()) {
+            if (position >= size) {
+                return -1;
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(chunkSize, size - position));
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            chunk = mapped;
+        }
+
+        final int read = Math.min(Math.min(len, BLOCK_SIZE), mapped.remaining());
+        if (index != null && marks != null) {
+            index.markStops(mapped, mapped.position(), read, marks);
+        }
+        mapped.get(bytes, 0, read);
+        position += read;
+        final byte[] b = bytes;
+        for (int i = 0; i < read; i++) {
+            buf[off + i] = (char) (b[i] & 0xFF);
+        }
+        return read;
+    }
+
+    @Override
+    public boolean deliversUtf8Bytes() {
+        return true;
+    }
+}
@@ -0,0 +1,206 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads ahead of its consumer on a separate thread, so that slow storage and the parser do not stall each other.
+ * Wrap a slow reader in one of these before giving it to a {@link CsvReader}.
+ * <p>
+ * A producer thread fills a small ring of {@code char[]} blocks from the underlying reader, and the consumer drains
+ * them; the blocks are allocated once and passed back and forth, so the producer can only get as far ahead as the
+ * ring allows.  The time each side spends waiting for the other is counted: if the consumer waits most, reading is
+ * {@linkplain #consumerWaitNanos() I/O-bound}; if the producer waits most, it is
+ * {@linkplain #producerWaitNanos() parse-bound} and reading ahead further would gain nothing.
+ * <p>
+ * Whatever stops the producer, checked or not, is handed to the consumer, and thrown by every read from then on.
+ * <p>
+ * Like {@link java.io.BufferedReader}, this is meant to be read by one thread at a time.
+ *
+ * @author Alex Williams
+ */
+public final class ReadAheadReader extends Reader {
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    public static final int DEFAULT_BLOCK_COUNT = 4;
+    private static final long CLOSE_WAIT_MILLIS = 1000L;
+
+    private final Reader source;
+    private final BlockingQueue<Block> free;
+    private final BlockingQueue<Block> filled;
+    private final Thread producer;
+    private volatile boolean closed = false;
+
+    @Nullable
+    private Block current = null;
+    private int currentPos = 0;
+
+    private volatile long producerWaitNanos = 0L;
+    private volatile long consumerWaitNanos = 0L;
+    private volatile long blocksRead = 0L;
+
+    public ReadAheadReader(@NotNull final Reader source) {
+        this(source, DEFAULT_BLOCK_SIZE, DEFAULT_BLOCK_COUNT);
+    }
+
+    /**
+     * @param blockSize  the size of each block, in chars
+     * @param blockCount how many blocks the producer may fill before the consumer has to catch up; at least two
+     */
+    public ReadAheadReader(@NotNull final Reader source, final int blockSize, final int blockCount) {
+        if (blockSize <= 0 || blockCount < 2) {
+            throw new IllegalArgumentException("Need at least two blocks of at least one char: "
+                    + blockCount + " x " + blockSize);
+        }
+        this.source = source;
+        this.free = new ArrayBlockingQueue<>(blockCount);
+        // one spare place for the block that reports the end of the input or an error
+        this.filled = new ArrayBlockingQueue<>(blockCount + 1);
+        for (int i = 0; i < blockCount; i++) {
+            free.add(new Block(blockSize));
+        }
+        this.producer = new Thread(this::produce, "csv-read-ahead");
+        this.producer.setDaemon(true);
+        this.producer.start();
+    }
+
+    private void produce() {
+        try {
+            while (!closed) {
+                final long waitStart = System.nanoTime();
+                final Block block = free.take();
+                producerWaitNanos += System.nanoTime() - waitStart;
+
+                int read;
+                do {
+                    read = source.read(block.chars, 0, block.chars.length);
+                } while (read == 0);
+                block.length = read;
+                filled.put(block);
+                if (read < 0) {
+                    return;
+                }
+                blocksRead++;
+            }
+        } catch (InterruptedException e) {
+            // closed while waiting for the consumer
+        } catch (Throwable e) {
+            // anything else would leave the consumer waiting for a block that never comes
+            filled.add(new Block(e));
+        }
+    }
+
+    @Override
+    public int read(@NotNull final char[] buf, final int off, final int len) throws IOException {
+        if (closed) {
+            throw new IOException("Reader closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        Block block = current;
+        if (block == null || (block.error == null && currentPos == block.length)) {
+            if (block != null) {
+                free.add(block);
+            }
+            block = nextBlock();
+            current = block;
+            currentPos = 0;
+        }
+        final Throwable error = block.error;
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        if (error instanceof Error) {
+            throw (Error) error;
+        }
+        if (error != null) {
+            throw new IOException("Read-ahead failed", error);
+        }
+        if (block.length < 0) {
+            return -1;
+        }
+        final int read = Math.min(len, block.length - currentPos);
+        System.arraycopy(block.chars, currentPos, buf, off, read);
+        currentPos += read;
+        return read;
+    }
+
+    @NotNull
+    private Block nextBlock() throws IOException {
+        final long waitStart = System.nanoTime();
+        try {
+            return filled.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for read-ahead");
+        } finally {
+            consumerWaitNanos += System.nanoTime() - waitStart;
+        }
+    }
+
+    /**
+     * @return the total time the producer has spent waiting for the consumer to free a block; large when parsing is
+     * the bottleneck
+     */
+    public long producerWaitNanos() {
+        return producerWaitNanos;
+    }
+
+    /**
+     * @return the total time the consumer has spent waiting for the producer to fill a block; large when reading the
+     * underlying input is the bottleneck
+     */
+    public long consumerWaitNanos() {
+        return consumerWaitNanos;
+    }
+
+    /**
+     * @return the number of non-empty blocks read from the underlying reader so far
+     */
+    public long blocksRead() {
+        return blocksRead;
+    }
+
+    /**
+     * Stops the producer and closes the underlying reader.  A read already under way is waited for, for up to
+     * {@value #CLOSE_WAIT_MILLIS}ms, so that the reader is not closed under it; one that takes longer is cut short by
+     * closing the reader.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        producer.interrupt();
+        try {
+            producer.join(CLOSE_WAIT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        source.close();
+    }
+
+    private static final class Block {
+        final char[] chars;
+        int length;
+        @Nullable
+        final Throwable error;
+
+        Block(final int size) {
+            this.chars = new char[size];
+            this.error = null;
+        }
+
+        Block(@NotNull final Throwable error) {
+            this.chars = new char[0];
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package io.github.alexswilliams.csv;
+
+import io.github.alexswilliams.csv.CsvLexer.CsvStates;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Finds record boundaries part-way through a UTF-8 file without lexing it from the start.
+ * <p>
+ * A newline that does not end a comment finishes a record unless it is inside a quoted field.  Which of the two it is
+ * cannot be told from the bytes around it, so the rest of the file is lexed a little way supposing each in turn.  The
+ * lexer carries on after an error with the next character as a new row, so each of these readings is exactly what
+ * reading the file from its start would give if its supposition is right, errors and all; and on real data the wrong
+ * one soon runs into a quote in the wrong place and falls into step with the right one.  A record that both readings
+ * start is then a true record start, whichever supposition was right.  If there is no quote at all between the last
+ * known boundary and the newline then it cannot be quoted; and if the readings do not meet, the range is lexed from
+ * its last known boundary, just as it would be when read.
+ * <p>
+ * That last resort is usually avoided in a dialect with no special characters but the delimiter, quotes and line
+ * breaks.  There, so long as every quote since the last boundary is one that the lexer would accept, each newline is
+ * inside quotes exactly when an odd number of quotes precede it, and a {@link StructuralIndex} finds that out for 64
+ * bytes at a time, several times faster than lexing.
+ * <p>
+ * Only newlines are candidates, so a file whose lines are ended by carriage returns alone is not split.
+ */
+final class RecordBoundaries {
+    static final int DEFAULT_SPECULATION_LENGTH = 256 * 1024;
+    private static final int BLOCK_SIZE = 64 * 1024;
+    static final long NOT_FOUND = -1L;
+    static final long UNKNOWN = -2L;
+    private static final int EOF = -1;
+
+    private RecordBoundaries() {
+    }
+
+    /**
+     * @param rangeStart a known record boundary
+     * @param from       where to start looking for another
+     * @param rangeEnd   where to stop looking
+     * @return the offset of the first byte of a record starting in {@code [from, rangeEnd)}, or -1 if there is none
+     */
+    static long find(@NotNull final FileChannel channel, @NotNull final CsvDialect dialect, final long rangeStart,
+                     final long from, final long rangeEnd, final int speculationLength) throws IOException {
+        final long candidate = nextCandidate(channel, dialect.legacy ? dialect.comment : CsvDialect.NONE,
+                dialect.escape, from, rangeEnd);
+        if (candidate == NOT_FOUND) {
+            return NOT_FOUND;
+        }
+        if (dialect.quote == CsvDialect.NONE || !containsQuote(channel, (byte) dialect.quote, rangeStart, candidate)) {
+            return candidate;
+        }
+
+        final long agreed = agreedRecordStart(channel, dialect, candidate, speculationLength);
+        if (agreed != UNKNOWN) {
+            return agreed < rangeEnd ? agreed : NOT_FOUND;
+        }
+        return replay(channel, dialect, rangeStart, from, rangeEnd);
+    }
+
+    /**
+     * @param comment a character that starts a comment anywhere on a line, as in the default dialect, or
+     *                {@link CsvDialect#NONE}
+     * @param escape  an escape character, which might escape the newline, or {@link CsvDialect#NONE}
+     * @return the offset just past the first newline after {@code from} that ends a line containing no comment or
+     * escape character, or -1 if there is none before {@code rangeEnd}.  The line ended by the first newline is
+     * skipped, as its start has not been seen.
+     */
+    private static long nextCandidate(@NotNull final FileChannel channel, final int comment, final int escape,
+                                      final long from, final long rangeEnd) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+        final byte[] bytes = buffer.array();
+        boolean seenNewline = false;
+        boolean lineHasComment = false; // or an escape
+        long blockStart = from;
+        while (blockStart < rangeEnd) {
+            final int read = readAt(channel, buffer, blockStart, (int) Math.min(BLOCK_SIZE, rangeEnd - blockStart));
+            if (read <= 0) {
+                return NOT_FOUND;
+            }
+            for (int i = 0; i < read; i++) {
+                final int b = bytes[i] & 0xFF;
+                if (b == '\n') {
+                    if (seenNewline && !lineHasComment) {
+                        final long candidate = blockStart + i + 1;
+                        return candidate < rangeEnd ? candidate : NOT_FOUND;
+                    }
+                    seenNewline = true;
+                    lineHasComment = false;
+                } else if (b == comment || b == escape) {
+                    lineHasComment = true;
+                }
+            }
+            blockStart += read;
+        }
+        return NOT_FOUND;
+    }
+
+    private static boolean containsQuote(@NotNull final FileChannel channel, final byte quote, final long rangeStart,
+                                         final long end) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+        final byte[] bytes = buffer.array();
+        long blockEnd = end;
+        while (blockEnd > rangeStart) {
+            final long blockStart = Math.max(rangeStart, blockEnd - BLOCK_SIZE);
+            final int read = readAt(channel, buffer, blockStart, (int) (blockEnd - blockStart));
+            for (int i = read - 1; i >= 0; i--) {
+                if (bytes[i] == quote) return true;
+            }
+            blockEnd = blockStart;
+        }
+        return false;
+    }
+
+    /**
+     * Lexes on from the candidate supposing that it starts a record, and again supposing that it is inside a quoted
+     * field, until the two readings start the same record.  Neither reads more than {@code speculationLength} bytes
+     * past the candidate: a quoted field that is never closed would otherwise take the rest of the file with it.
+     *
+     * @return the first record start after {@code candidate} that both readings share, the size of the file if they
+     * only meet at its end, or {@link #UNKNOWN} if they do not meet within {@code speculationLength} bytes
+     */
+    private static long agreedRecordStart(@NotNull final FileChannel channel, @NotNull final CsvDialect dialect,
+                                          final long candidate, final int speculationLength) throws IOException {
+        final long windowEnd = Math.min(channel.size(), candidate + speculationLength);
+        final boolean endOfFile = windowEnd == channel.size();
+        final CsvLexer ifRecordStart = quietLexer(channel, dialect, candidate, windowEnd);
+        final CsvLexer ifQuoted = quietLexer(channel, dialect, candidate, windowEnd);
+        long recordStart = candidate;
+        long quoted = nextRecordStart(ifQuoted, CsvStates.LEXING_QUOTED_FIELD, windowEnd, endOfFile);
+        while (recordStart != quoted) {
+            if (recordStart == UNKNOWN || quoted == UNKNOWN) {
+                return UNKNOWN;
+            }
+            if (recordStart < quoted) {
+                recordStart = nextRecordStart(ifRecordStart, CsvStates.START_OF_FIELD, windowEnd, endOfFile);
+            } else {
+                quoted = nextRecordStart(ifQuoted, CsvStates.START_OF_FIELD, windowEnd, endOfFile);
+            }
+        }
+        return recordStart;
+    }
+
+    /**
+     * @return where the record after the next one starts, or {@link #UNKNOWN} if the next one runs up to the end of
+     * the window and the file goes on past it
+     */
+    private static long nextRecordStart(@NotNull final CsvLexer lexer, @NotNull final CsvStates state,
+                                        final long windowEnd, final boolean endOfFile) throws IOException {
+        try {
+            lexer.nextRow(state);
+        } catch (CsvException e) {
+            // the reader resumes straight after the error, and so must this
+        }
+        final long position = lexer.position();
+        return position < windowEnd || endOfFile ? position : UNKNOWN;
+    }
+
+    private static long replay(@NotNull final FileChannel channel, @NotNull final CsvDialect dialect,
+                               final long rangeStart, final long from, final long rangeEnd) throws IOException {
+        final long byParity = byParity(channel, dialect, rangeStart, from, rangeEnd);
+        if (byParity != UNKNOWN) {
+            return byParity;
+        }
+        final CsvLexer lexer = quietLexer(channel, dialect, rangeStart, Long.MAX_VALUE);
+        while (lexer.position() < from) {
+            try {
+                if (!lexer.nextRow()) return NOT_FOUND;
+            } catch (CsvException e) {
+                // the reader resumes straight after the error, and so must this
+            }
+        }
+        return lexer.position() < rangeEnd ? lexer.position() : NOT_FOUND;
+    }
+
+    /**
+     * Finds the first record start in {@code [from, rangeEnd)} as {@link #replay} does, but from the parity of the
+     * quotes since {@code rangeStart}, without lexing.  That parity only tells which newlines are quoted while every
+     * quote is one the lexer accepts: an opening quote straight after a delimiter, a line break, the quote that closed
+     * the field so far, or at the start of the range; a closing quote straight before a delimiter, a line break,
+     * another quote or the end of the file.  Any other quote is an error, which would throw the parity out.
+     *
+     * @return the start of the record, -1 if there is none, or {@link #UNKNOWN} if the dialect has other special
+     * characters, or there is a quote out of place before the record
+     */
+    static long byParity(@NotNull final FileChannel channel, @NotNull final CsvDialect dialect,
+                         final long rangeStart, final long from, final long rangeEnd) throws IOException {
+        final long size = channel.size();
+        if (dialect.legacy || dialect.quote == CsvDialect.NONE || dialect.escape != CsvDialect.NONE
+                || dialect.comment != CsvDialect.NONE || dialect.trimWhitespace || rangeEnd > size) {
+            return UNKNOWN;
+        }
+        if (from <= rangeStart) {
+            return rangeStart < rangeEnd ? rangeStart : NOT_FOUND;
+        }
+        final boolean bareCarriageReturns = dialect.bareCarriageReturnEndsLine;
+        final StructuralIndex index = new StructuralIndex(dialect);
+        // room for the two bytes looked at after the block, and for the index to read whole words past the last byte
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BLOCK_SIZE + StructuralIndex.BLOCK)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        long quotedBefore = 0L;
+        long fieldStartsBefore = 1L;
+        long blockStart = rangeStart;
+        while (blockStart < rangeEnd) {
+            final int read = readAt(channel, buffer, blockStart, (int) Math.min(BLOCK_SIZE + 2, size - blockStart));
+            if (read <= 0) {
+                return NOT_FOUND;
+            }
+            buffer.limit(buffer.capacity());
+            final int length = Math.min(read, BLOCK_SIZE);
+            for (int at = 0; at < length; at += StructuralIndex.BLOCK) {
+                final int count = Math.min(StructuralIndex.BLOCK, length - at);
+                index.scan(buffer, at, count);
+                final long quotes = index.quotes;
+                final long lineFeeds = index.lineFeeds;
+                final long carriageReturns = index.carriageReturns;
+                final int next = at + count < read ? buffer.get(at + count) & 0xFF : EOF;
+                final int afterNext = at + count + 1 < read ? buffer.get(at + count + 1) & 0xFF : EOF;
+
+                final long inQuotes = index.inQuotes(quotedBefore);
+                final long opening = quotes & inQuotes;
+                final long closing = quotes & ~inQuotes;
+                final long lineFeedNext = (lineFeeds >>> 1) | (next == '\n' ? 1L << (count - 1) : 0L);
+                final long lineBreaks = bareCarriageReturns ? lineFeeds | carriageReturns
+                        : lineFeeds | (carriageReturns & lineFeedNext);
+                final long fieldStarts = index.delimiters | lineFeeds | closing
+                        | (bareCarriageReturns ? carriageReturns : 0L);
+                final boolean fieldEndsNext = next == EOF || next == dialect.delimiter || next == '\n'
+                        || next == dialect.quote || (next == '\r' && (bareCarriageReturns || afterNext == '\n'));
+                final long fieldEnds = ((index.delimiters | lineBreaks | quotes) >>> 1)
+                        | (fieldEndsNext ? 1L << (count - 1) : 0L);
+                final long misplaced = (opening & ~((fieldStarts << 1) | fieldStartsBefore)) | (closing & ~fieldEnds);
+
+                final long blockOffset = blockStart + at;
+                long recordEnds = (lineFeeds | (bareCarriageReturns ? carriageReturns & ~lineFeedNext : 0L))
+                        & ~inQuotes;
+                final long firstEnd = from - 1 - blockOffset;
+                if (firstEnd >= StructuralIndex.BLOCK) {
+                    recordEnds = 0L;
+                } else if (firstEnd > 0) {
+                    recordEnds &= -1L << firstEnd;
+                }
+                if (recordEnds != 0L) {
+                    final int end = Long.numberOfTrailingZeros(recordEnds);
+                    if ((misplaced & (-1L >>> (63 - end))) != 0L) {
+                        return UNKNOWN;
+                    }
+                    final long recordStart = blockOffset + end + 1;
+                    return recordStart < rangeEnd ? recordStart : NOT_FOUND;
+                }
+                if (misplaced != 0L) {
+                    return UNKNOWN;
+                }
+                quotedBefore = inQuotes >> 63;
+                fieldStartsBefore = fieldStarts >>> 63;
+            }
+            blockStart += length;
+        }
+        return NOT_FOUND;
+    }
+
+    @NotNull
+    private static CsvLexer quietLexer(@NotNull final FileChannel channel, @NotNull final CsvDialect dialect,
+                                       final long position, final long end) throws IOException {
+        final CsvLexer lexer = new CsvLexer(
+                new MappedFileSource(channel, position, MappedFileSource.DEFAULT_CHUNK_SIZE, end), dialect, position,
+                position == 0L ? 1 : CsvCheckpoint.UNKNOWN_LINE, CsvLexer.DEFAULT_WINDOW_SIZE);
+        lexer.logging = false;
+        return lexer;
+    }
+
+    private static int readAt(@NotNull final FileChannel channel, @NotNull final ByteBuffer buffer,
+                              final long position, final int length) throws IOException {
+        buffer.clear();
+        buffer.limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) break;
+        }
+        return buffer.position();
+    }
+}
@@ -22,11 +22,11 @@ interface Result<T> {
 
     final class Error<T> implements Result<T> {
         Exception exception;
-        int line;
+        String location;
 
-        Error(Exception exception, int line) {
+        Error(Exception exception, String location) {
             this.exception = exception;
-            this.line = line;
+            this.location = location;
         }
     }
 }
@@ -0,0 +1,146 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Finds the characters that give a block of 64 bytes of CSV its structure, as one bit per byte in a {@code long} for
+ * each of quotes, delimiters, line feeds and carriage returns, using {@link Swar} operations on eight bytes at a time
+ * rather than looking at each byte.  Which of those characters are inside quotes is then a matter of arithmetic on
+ * the bitmaps: {@link #inQuotes(long)} works it out for the whole block at once with a prefix XOR of the quotes.
+ * <p>
+ * Bit {@code i} of each bitmap stands for byte {@code i} of the block.  The buffer must be little-endian.
+ * <p>
+ * For the lexer, {@link #markStops} marks every character that ends a run of ordinary characters in an unquoted
+ * field, all in one bitmap, so that the lexer can jump from one to the next rather than test the characters between.
+ * Where every such character comes before {@code '0'}, as in most dialects, it marks every byte before the highest of
+ * them other than a space instead, which is one comparison rather than one for each character; the lexer checks each
+ * mark, and there are few others in most files.
+ *
+ * @author Alex Williams
+ */
+final class StructuralIndex {
+    static final int BLOCK = 64;
+    private static final long LINE_FEED = Swar.broadcast('\n');
+    private static final long CARRIAGE_RETURN = Swar.broadcast('\r');
+    private static final long SPACE = Swar.broadcast(' ');
+
+    private final long delimiter;
+    private final long quote;
+    private final long quoteMask;
+    /**
+     * Each of the dialect's {@linkplain CsvDialect#unquotedStops unquoted stops}, broadcast.
+     */
+    private final long[] stops;
+    private final boolean[] stopBytes;
+    /**
+     * When every unquoted stop comes before {@code '0'}, and none is a space, a {@link Swar#lessThan} bound just above
+     * the highest; otherwise zero.
+     */
+    private final long below;
+
+    long quotes;
+    long delimiters;
+    long lineFeeds;
+    long carriageReturns;
+
+    /**
+     * @param dialect the dialect to index; without a quote character, no quotes are marked
+     */
+    StructuralIndex(@NotNull final CsvDialect dialect) {
+        this.delimiter = Swar.broadcast(dialect.delimiter);
+        this.quote = Swar.broadcast(dialect.quote);
+        this.quoteMask = dialect.quote == CsvDialect.NONE ? 0L : -1L;
+        this.stopBytes = dialect.unquotedStops;
+        int count = 0;
+        final long[] stops = new long[stopBytes.length];
+        for (int c = 0; c < stopBytes.length; c++) {
+            if (stopBytes[c]) stops[count++] = Swar.broadcast(c);
+        }
+        this.stops = Arrays.copyOf(stops, count);
+        int highest = 0;
+        for (int c = 0; c < stopBytes.length; c++) {
+            if (stopBytes[c]) highest = c;
+        }
+        this.below = highest < '0' && !stopBytes[' '] ? Swar.broadcast(0x80 - (highest + 1)) : 0L;
+    }
+
+    /**
+     * Indexes the block of {@code length} bytes at {@code at}.  Bytes beyond the block are never marked, but up to 64
+     * bytes from {@code at} are read, so the buffer must extend that far.
+     */
+    void scan(@NotNull final ByteBuffer bytes, final int at, final int length) {
+        long q = 0L;
+        long d = 0L;
+        long n = 0L;
+        long r = 0L;
+        for (int shift = 0; shift < BLOCK; shift += 8) {
+            final long word = bytes.getLong(at + shift);
+            q |= (long) Swar.movemask(Swar.equalBytes(word, quote)) << shift;
+            d |= (long) Swar.movemask(Swar.equalBytes(word, delimiter)) << shift;
+            n |= (long) Swar.movemask(Swar.equalBytes(word, LINE_FEED)) << shift;
+            r |= (long) Swar.movemask(Swar.equalBytes(word, CARRIAGE_RETURN)) << shift;
+        }
+        final long valid = length >= BLOCK ? -1L : (1L << length) - 1L;
+        quotes = q & valid & quoteMask;
+        delimiters = d & valid;
+        lineFeeds = n & valid;
+        carriageReturns = r & valid;
+    }
+
+    /**
+     * Marks the unquoted stops among the {@code length} bytes at {@code at}: byte {@code at + i} as bit {@code i % 64}
+     * of {@code marks[i / 64]}.  Other bytes may be marked too, but never one from {@code 0x80} up.  Every word that holds any of those bits is overwritten, with the bits past the last
+     * byte clear.  Blocks of 64 bytes are indexed eight bytes at a time, and any fewer than 64 bytes before the end of
+     * the buffer one at a time.
+     */
+    void markStops(@NotNull final ByteBuffer bytes, final int at, final int length, @NotNull final long[] marks) {
+        final long[] patterns = stops;
+        final int end = at + length;
+        final int lastWholeBlock = bytes.limit() - BLOCK;
+        int word = 0;
+        int i = at;
+        final long below = this.below;
+        if (below != 0L) {
+            for (; i < end && i <= lastWholeBlock; i += BLOCK) {
+                long m = 0L;
+                for (int shift = 0; shift < BLOCK; shift += 8) {
+                    final long w = bytes.getLong(i + shift);
+                    m |= (long) Swar.movemask(Swar.lessThan(w, below) & ~Swar.equalBytes(w, SPACE)) << shift;
+                }
+                marks[word++] = m;
+            }
+        } else {
+            for (; i < end && i <= lastWholeBlock; i += BLOCK) {
+                long m = 0L;
+                for (int shift = 0; shift < BLOCK; shift += 8) {
+                    m |= (long) Swar.movemask(Swar.equalAnyByte(bytes.getLong(i + shift), patterns)) << shift;
+                }
+                marks[word++] = m;
+            }
+        }
+        if (i < end) {
+            final boolean[] stopBytes = this.stopBytes;
+            long m = 0L;
+            for (int bit = 0; i < end; i++, bit++) {
+                final int b = bytes.get(i) & 0xFF;
+                if (b < 0x80 && stopBytes[b]) m |= 1L << bit;
+            }
+            marks[word] = m;
+        } else if (length % BLOCK != 0) {
+            // the last block was read whole, past the end
+            marks[word - 1] &= (1L << (length % BLOCK)) - 1L;
+        }
+    }
+
+    /**
+     * @param quotedBefore all ones if the byte before the block is inside quotes, otherwise zero
+     * @return the bytes of the block that are inside quotes, counting an opening quote as inside and a closing one as
+     * outside.  The top bit, extended to a whole word, is {@code quotedBefore} for the next block.
+     */
+    long inQuotes(final long quotedBefore) {
+        return Swar.prefixXor(quotes) ^ quotedBefore;
+    }
+}
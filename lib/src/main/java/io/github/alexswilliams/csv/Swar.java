@@ -0,0 +1,81 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * SIMD-within-a-register operations on the eight bytes of a {@code long}, for finding several characters at once in
+ * byte input without any per-byte branches.  Bytes are numbered from the least significant, as in a little-endian
+ * load.
+ *
+ * @author Alex Williams
+ */
+final class Swar {
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW_SEVEN_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+    private Swar() {
+    }
+
+    /**
+     * @return a word with every byte set to {@code b}
+     */
+    static long broadcast(final int b) {
+        return (b & 0xFFL) * ONES;
+    }
+
+    /**
+     * @param pattern a {@linkplain #broadcast(int) broadcast} byte
+     * @return the high bit of each byte of {@code word} that equals the byte of {@code pattern}, and no other bits.
+     * Unlike the better-known {@code (x - 0x01..) & ~x & 0x80..}, this is exact: no carry crosses from one byte to the
+     * next, so a match cannot be reported next to another one.
+     */
+    static long equalBytes(final long word, final long pattern) {
+        final long x = word ^ pattern;
+        return ~(((x & LOW_SEVEN_BITS) + LOW_SEVEN_BITS) | x | LOW_SEVEN_BITS);
+    }
+
+    /**
+     * @param patterns {@linkplain #broadcast(int) broadcast} bytes
+     * @return the high bit of each byte of {@code word} that equals the byte of any of {@code patterns}, as the OR of
+     * {@link #equalBytes} for each, but with the complement and the mask taken once for them all
+     */
+    static long equalAnyByte(final long word, @NotNull final long[] patterns) {
+        long none = -1L;
+        for (long pattern : patterns) {
+            final long x = word ^ pattern;
+            none &= ((x & LOW_SEVEN_BITS) + LOW_SEVEN_BITS) | x;
+        }
+        return ~(none | LOW_SEVEN_BITS);
+    }
+
+    /**
+     * @param bound a {@linkplain #broadcast(int) broadcast} byte of {@code 0x80 - n}, for some {@code n} from 1 to 128
+     * @return the high bit of each byte of {@code word} that is less than {@code n}, and no other bits
+     */
+    static long lessThan(final long word, final long bound) {
+        return ~(((word & LOW_SEVEN_BITS) + bound) | word | LOW_SEVEN_BITS);
+    }
+
+    /**
+     * @param highBits a word in which only the high bit of each byte may be set, as from {@link #equalBytes}
+     * @return those bits gathered into the low eight bits, byte {@code i} of the word becoming bit {@code i}
+     */
+    static int movemask(final long highBits) {
+        return (int) (((highBits >>> 7) * 0x0102040810204080L) >>> 56);
+    }
+
+    /**
+     * @return a word in which each bit is the XOR of that bit and every lower bit of {@code bits}.  Given the
+     * positions of the quotes in some input, this marks the positions that are inside quotes: from each opening quote
+     * up to, but not including, the quote that closes it.
+     */
+    static long prefixXor(long bits) {
+        bits ^= bits << 1;
+        bits ^= bits << 2;
+        bits ^= bits << 4;
+        bits ^= bits << 8;
+        bits ^= bits << 16;
+        bits ^= bits << 32;
+        return bits;
+    }
+}
@@ -0,0 +1,289 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the rows of a UTF-8 file, in batches, to {@link Flow.Subscriber}s.  Only available from Java 11.
+ * <p>
+ * Each subscriber reads the file for itself, through an {@link AsynchronousFileChannel}, and no thread ever waits for
+ * the file: a chunk is only read when the rows already read have run out, and rows are only parsed while the
+ * subscriber has asked for more.  A row split between chunks is picked up again where it was left once the next
+ * chunk arrives.  Each element is a batch of up to {@code batchRows} rows, so that a subscriber is signalled once
+ * for many rows; the last batch may be smaller.  A blank line is published as a row with no fields.
+ * <p>
+ * A malformed row, when bad lines are not being skipped, or a failure to read the file, ends the subscription with
+ * the {@link CsvException} or {@link IOException}, after the batches before it.  Cancelling closes the file, even in
+ * the middle of it.
+ *
+ * @author Alex Williams
+ */
+public final class CsvPublisher implements Flow.Publisher<List<List<String>>> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CsvPublisher.class);
+    public static final int DEFAULT_BATCH_ROWS = 256;
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private final Path file;
+    private final CsvDialect dialect;
+    private final boolean skipBadLines;
+    private final int batchRows;
+    private final int chunkSize;
+
+    public CsvPublisher(@NotNull final Path file) {
+        this(file, CsvDialect.DEFAULT, false, DEFAULT_BATCH_ROWS);
+    }
+
+    /**
+     * @param skipBadLines skip malformed rows, logging each, as {@link CsvReader#readFile(boolean) readFile(true)}
+     *                     does
+     * @throws IllegalArgumentException if {@code batchRows} is not positive
+     */
+    public CsvPublisher(@NotNull final Path file, @NotNull final CsvDialect dialect, final boolean skipBadLines,
+                        final int batchRows) {
+        this(file, dialect, skipBadLines, batchRows, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param chunkSize how many bytes to read from the file at a time
+     * @throws IllegalArgumentException if {@code batchRows} or {@code chunkSize} is not positive
+     */
+    public CsvPublisher(@NotNull final Path file, @NotNull final CsvDialect dialect, final boolean skipBadLines,
+                        final int batchRows, final int chunkSize) {
+        if (batchRows < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException("Need at least one row per batch and one byte per chunk: "
+                    + batchRows + " rows, " + chunkSize + " bytes");
+        }
+        this.file = file;
+        this.dialect = dialect;
+        this.skipBadLines = skipBadLines;
+        this.batchRows = batchRows;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void subscribe(@NotNull final Flow.Subscriber<? super List<List<String>>> subscriber) {
+        final AsynchronousFileChannel channel;
+        try {
+            channel = AsynchronousFileChannel.open(file, StandardOpenOption.READ);
+        } catch (IOException | RuntimeException e) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(final long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(e);
+            return;
+        }
+        final FileSubscription subscription = new FileSubscription(subscriber, channel);
+        subscriber.onSubscribe(subscription);
+    }
+
+    /**
+     * All of the parsing and signalling is done in {@link #drain()}, by one thread at a time: whichever thread asked
+     * for more rows, or completed a read, while no other thread was draining.
+     */
+    private final class FileSubscription implements Flow.Subscription, CompletionHandler<Integer, Void> {
+        private static final int NOTHING_ARRIVED = -2;
+
+        private final Flow.Subscriber<? super List<List<String>>> subscriber;
+        private final AsynchronousFileChannel channel;
+        private final ChunkFeed feed;
+        private final CsvLexer lexer;
+        private final ByteBuffer chunk;
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicLong requested = new AtomicLong();
+        private volatile boolean cancelled = false;
+        /**
+         * How many bytes the last read put in {@link #chunk}, -1 at the end of the file, until they are taken.
+         */
+        private volatile int arrived = NOTHING_ARRIVED;
+        @Nullable
+        private volatile Throwable readFailure = null;
+
+        private long emitted = 0L;
+        private long filePosition = 0L;
+        private boolean reading = false;
+        private boolean awaitingInput = false;
+        private boolean done = false;
+        private List<List<String>> batch = new ArrayList<>();
+
+        FileSubscription(@NotNull final Flow.Subscriber<? super List<List<String>>> subscriber,
+                         @NotNull final AsynchronousFileChannel channel) {
+            this.subscriber = subscriber;
+            this.channel = channel;
+            this.feed = new ChunkFeed(dialect, true, chunkSize);
+            this.lexer = new CsvLexer(feed, dialect, 0L, 1, CsvLexer.DEFAULT_WINDOW_SIZE);
+            this.chunk = ByteBuffer.allocate(chunkSize);
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                cancelled = true;
+                readFailure = new IllegalArgumentException("Must request a positive number of batches, not " + n);
+            } else {
+                requested.getAndAccumulate(n, (current, more) -> current + more < 0 ? Long.MAX_VALUE : current + more);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        @Override
+        public void completed(final Integer read, final Void attachment) {
+            arrived = read;
+            drain();
+        }
+
+        @Override
+        public void failed(final Throwable e, final Void attachment) {
+            if (!(e instanceof AsynchronousCloseException && cancelled)) {
+                readFailure = e;
+            }
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (!done) {
+                    step();
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void step() {
+            final Throwable failure = readFailure;
+            if (failure != null) {
+                // an illegal request is reported even after cancelling, as the rule says
+                finish();
+                subscriber.onError(failure);
+                return;
+            }
+            if (cancelled) {
+                finish();
+                return;
+            }
+            final int read = arrived;
+            if (read != NOTHING_ARRIVED) {
+                arrived = NOTHING_ARRIVED;
+                reading = false;
+                if (read < 0) {
+                    feed.finish();
+                } else {
+                    filePosition += read;
+                    chunk.flip();
+                    feed.append(chunk);
+                }
+            }
+            try {
+                while (emitted != requested.get()) {
+                    if (cancelled) {
+                        finish();
+                        return;
+                    }
+                    if (awaitingInput) {
+                        if (!feed.ready()) {
+                            if (!reading) {
+                                read();
+                            }
+                            return;
+                        }
+                        awaitingInput = false;
+                    }
+                    if (!nextRow()) {
+                        if (lexer.starved) {
+                            awaitingInput = true;
+                            continue;
+                        }
+                        if (!batch.isEmpty()) {
+                            emit();
+                        }
+                        finish();
+                        subscriber.onComplete();
+                        return;
+                    }
+                    batch.add(lexer.rowAsList());
+                    if (batch.size() == batchRows) {
+                        emit();
+                    }
+                }
+            } catch (IOException | CsvException | RuntimeException e) {
+                finish();
+                subscriber.onError(e);
+            }
+        }
+
+        /**
+         * @return as {@link CsvLexer#nextRow()}, skipping malformed rows if need be
+         */
+        private boolean nextRow() throws IOException, CsvException {
+            while (true) {
+                try {
+                    return lexer.nextRow();
+                } catch (CsvException e) {
+                    if (!skipBadLines) {
+                        LOGGER.warn("Stopping in {} due to parsing error: {}", file, e.getMessage());
+                        throw e;
+                    }
+                    LOGGER.warn("Skipping a row of {} due to parsing error: {}", file, e.getMessage());
+                }
+            }
+        }
+
+        private void emit() {
+            final List<List<String>> full = batch;
+            batch = new ArrayList<>();
+            emitted++;
+            subscriber.onNext(full);
+        }
+
+        private void read() {
+            reading = true;
+            chunk.clear();
+            try {
+                channel.read(chunk, filePosition, null, this);
+            } catch (RuntimeException e) {
+                reading = false;
+                readFailure = e;
+                wip.incrementAndGet();
+            }
+        }
+
+        private void finish() {
+            done = true;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.warn("Could not close {}: {}", file, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package io.github.alexswilliams.csv;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Records each finished or closed reader as a flight recorder event.  Created by {@link CsvMetricsListener#flightRecorder()}.
+ */
+final class JfrMetricsListener implements CsvMetricsListener {
+
+    @Override
+    public void onFinish(@NotNull final CsvMetrics metrics) {
+        final ReadEvent event = new ReadEvent();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.bytesRead = metrics.bytesRead();
+        event.charsRead = metrics.charsRead();
+        event.rows = metrics.rows();
+        event.fields = metrics.fields();
+        event.quotedFields = metrics.quotedFields();
+        event.multilineFields = metrics.multilineFields();
+        event.commentLines = metrics.commentLines();
+        event.errors = metrics.errors();
+        event.maxFieldLength = metrics.maxFieldLength();
+        event.maxRowLength = metrics.maxRowLength();
+        event.readTime = metrics.readNanos();
+        event.elapsedTime = metrics.elapsedNanos();
+        event.finished = metrics.isFinished();
+        event.commit();
+    }
+
+    @Name("io.github.alexswilliams.csv.Read")
+    @Label("CSV Read")
+    @Category({"CSV Reader"})
+    @Description("A CSV reader reached the end of its input, or was closed before then")
+    @StackTrace(false)
+    static final class ReadEvent extends Event {
+        @Label("Bytes Read")
+        @DataAmount
+        long bytesRead;
+        @Label("Chars Read")
+        long charsRead;
+        @Label("Rows")
+        long rows;
+        @Label("Fields")
+        long fields;
+        @Label("Quoted Fields")
+        long quotedFields;
+        @Label("Multi-line Fields")
+        long multilineFields;
+        @Label("Comment Lines")
+        long commentLines;
+        @Label("Errors")
+        long errors;
+        @Label("Longest Field")
+        long maxFieldLength;
+        @Label("Longest Row")
+        long maxRowLength;
+        @Label("Time Reading Input")
+        @Timespan
+        long readTime;
+        @Label("Elapsed Time")
+        @Timespan
+        long elapsedTime;
+        @Label("Reached End")
+        boolean finished;
+    }
+}
@@ -0,0 +1,172 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class ChunkFeedUnitTest {
+    private static final CsvDialect[] DIALECTS = {
+            CsvDialect.DEFAULT,
+            CsvDialect.RFC_4180,
+            CsvDialect.builder().delimiter(';').quote('\'').escape('\\').commentPrefix('#').build(),
+            CsvDialect.builder().bareCarriageReturnEndsLine(true).trimWhitespace(true).build(),
+    };
+
+    @NotNull
+    private static String generate(@NotNull final Random random) {
+        final String[] parts = {"a", "bc", ",", ";", "\"", "\"\"", "'", "\\", "#", " ", "\n", "\r", "\r\n", "é", "юникода",
+                "𐜢"};
+        final StringBuilder csv = new StringBuilder();
+        for (int i = random.nextInt(200); i > 0; i--) {
+            csv.append(parts[random.nextInt(parts.length)]);
+        }
+        return csv.toString();
+    }
+
+    /**
+     * Lexes the whole of the input at once, recording every row and error.
+     */
+    @NotNull
+    private static List<String> lexWhole(@NotNull final String csv, @NotNull final CsvDialect dialect,
+                                         final boolean bytes) throws IOException, CsvException {
+        final CsvLexer lexer = new CsvLexer(bytes ? new ByteSource(csv.getBytes(StandardCharsets.UTF_8))
+                : new StringReader(csv)::read, dialect);
+        final List<String> events = new ArrayList<>();
+        lexer.errorSink = (code, line, field, offset) -> events.add(code + "@" + line + ":" + field);
+        lexer.metrics = new CsvMetrics(CsvMetricsListener.NONE);
+        while (lexer.nextRow()) {
+            events.add(lexer.rowLine() + " " + lexer.rowAsList());
+        }
+        events.add(metricsOf(lexer.metrics));
+        return events;
+    }
+
+    /**
+     * As {@link #lexWhole}, but feeding the input a few chars or bytes at a time.
+     */
+    @NotNull
+    private static List<String> lexFed(@NotNull final String csv, @NotNull final CsvDialect dialect,
+                                       final boolean bytes, @NotNull final Random random)
+            throws IOException, CsvException {
+        final ChunkFeed feed = new ChunkFeed(dialect, bytes, 4);
+        final CsvLexer lexer = new CsvLexer(feed, dialect, 0L, 1, 8);
+        final List<String> events = new ArrayList<>();
+        lexer.errorSink = (code, line, field, offset) -> events.add(code + "@" + line + ":" + field);
+        lexer.metrics = new CsvMetrics(CsvMetricsListener.NONE);
+        final char[] chars = csv.toCharArray();
+        final byte[] utf8 = csv.getBytes(StandardCharsets.UTF_8);
+        final int length = bytes ? utf8.length : chars.length;
+        int fed = 0;
+        while (true) {
+            if (lexer.nextRow()) {
+                events.add(lexer.rowLine() + " " + lexer.rowAsList());
+                continue;
+            }
+            if (!lexer.starved) {
+                break;
+            }
+            do {
+                if (fed == length) {
+                    feed.finish();
+                    break;
+                }
+                final int n = Math.min(length - fed, 1 + random.nextInt(7));
+                if (!bytes) {
+                    feed.append(chars, fed, n);
+                } else if (random.nextBoolean()) {
+                    feed.append(utf8, fed, n);
+                } else {
+                    feed.append(ByteBuffer.wrap(utf8, fed, n));
+                }
+                fed += n;
+            } while (!feed.ready());
+        }
+        events.add(metricsOf(lexer.metrics));
+        return events;
+    }
+
+    private static final class ByteSource implements CharSource {
+        private final byte[] bytes;
+        private int pos = 0;
+
+        ByteSource(@NotNull final byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read(@NotNull final char[] buf, final int off, final int len) {
+            if (pos == bytes.length) {
+                return -1;
+            }
+            final int n = Math.min(len, bytes.length - pos);
+            for (int i = 0; i < n; i++) {
+                buf[off + i] = (char) (bytes[pos++] & 0xFF);
+            }
+            return n;
+        }
+
+        @Override
+        public boolean deliversUtf8Bytes() {
+            return true;
+        }
+    }
+
+    @NotNull
+    private static String metricsOf(@NotNull final CsvMetrics metrics) {
+        return metrics.rows() + " rows, " + metrics.fields() + " fields, " + metrics.quotedFields() + " quoted, "
+                + metrics.multilineFields() + " multiline, " + metrics.commentLines() + " comments, "
+                + metrics.errors() + " errors";
+    }
+
+    @Test
+    public void testRowsSplitBetweenChunksAreLexedAsIfWhole() throws IOException, CsvException {
+        final Random random = new Random(22L);
+        for (int round = 0; round < 300; round++) {
+            final String csv = generate(random);
+            for (CsvDialect dialect : DIALECTS) {
+                Assertions.assertEquals(lexWhole(csv, dialect, false), lexFed(csv, dialect, false, random),
+                        dialect + ": " + csv);
+                Assertions.assertEquals(lexWhole(csv, dialect, true), lexFed(csv, dialect, true, random),
+                        dialect + ": " + csv);
+            }
+        }
+    }
+
+    @Test
+    public void testCharsReadAreOnlyCountedOnce() throws IOException, CsvException {
+        final String csv = "a,\"b\nc\",d\n# no\n\"e\"\"f\",é\n";
+        final CsvDialect dialect = CsvDialect.builder().commentPrefix('#').build();
+        final ChunkFeed feed = new ChunkFeed(dialect, true, 4);
+        final CsvLexer lexer = new CsvLexer(feed, dialect, 0L, 1, 8);
+        lexer.metrics = new CsvMetrics(CsvMetricsListener.NONE);
+        final byte[] utf8 = csv.getBytes(StandardCharsets.UTF_8);
+        final List<List<String>> rows = new ArrayList<>();
+        for (byte b : utf8) {
+            feed.append(new byte[]{b}, 0, 1);
+            while (feed.ready() && lexer.nextRow()) {
+                rows.add(lexer.rowAsList());
+            }
+        }
+        feed.finish();
+        while (lexer.nextRow()) {
+            rows.add(lexer.rowAsList());
+        }
+        Assertions.assertFalse(lexer.starved);
+        Assertions.assertEquals(2, rows.size());
+        Assertions.assertEquals("e\"f", rows.get(1).get(0));
+        Assertions.assertEquals("é", rows.get(1).get(1));
+        Assertions.assertEquals((long) utf8.length, lexer.metrics.bytesRead());
+        Assertions.assertEquals(2L, lexer.metrics.quotedFields());
+        Assertions.assertEquals(1L, lexer.metrics.commentLines());
+        Assertions.assertThrows(IllegalStateException.class, () -> feed.append(new byte[1], 0, 1));
+        Assertions.assertThrows(IllegalStateException.class, () -> feed.append(new char[1], 0, 1));
+    }
+}
@@ -0,0 +1,158 @@
+package io.github.alexswilliams.csv;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class CsvBinderUnitTest {
+    private static final String TRADES = "id,unused,price,day,unit,ok,notional,venue\n"
+            + "1,x,12.5,2024-02-29,SECONDS,true,1000.25,LSE\n"
+            + "\n"
+            + "-2,\"y\",0,2023-01-01,,FALSE,,\"New, York\"\n";
+
+    static class Base {
+        private String venue = "none";
+
+        String venue() {
+            return venue;
+        }
+    }
+
+    static final class Trade extends Base {
+        private long id;
+        double price;
+        Integer quantity = 7;
+        LocalDate day;
+        TimeUnit unit;
+        @CsvColumn("ok")
+        boolean settled;
+        BigDecimal notional;
+        static int ignored;
+        transient String cached;
+    }
+
+    static final class Quote {
+        final int id;
+        final Double price;
+        final String venue;
+
+        Quote(@CsvColumn("id") final int id, @CsvColumn("price") final Double price,
+              @CsvColumn("venue") final String venue) {
+            this.id = id;
+            this.price = price;
+            this.venue = venue;
+        }
+    }
+
+    static final class Unbindable {
+        Object value;
+    }
+
+    static final class Tagged {
+        int id;
+        List<String> tags = new ArrayList<>(Collections.singletonList("default"));
+    }
+
+    @Test
+    public void testFieldsAreFilledFromTheirColumns() throws IOException, CsvException {
+        try (CsvCursor cursor = new CsvReader(new StringReader(TRADES)).cursor()) {
+            cursor.readHeader();
+            final CsvBinder<Trade> binder = cursor.bind(Trade.class);
+            Assertions.assertTrue(cursor.next());
+            final Trade first = cursor.row(binder);
+            Assertions.assertNotNull(first);
+            Assertions.assertEquals(1L, first.id);
+            Assertions.assertEquals(12.5, first.price);
+            Assertions.assertEquals(Integer.valueOf(7), first.quantity);
+            Assertions.assertEquals(LocalDate.of(2024, 2, 29), first.day);
+            Assertions.assertEquals(TimeUnit.SECONDS, first.unit);
+            Assertions.assertTrue(first.settled);
+            Assertions.assertEquals(new BigDecimal("1000.25"), first.notional);
+            Assertions.assertEquals("LSE", first.venue());
+            Assertions.assertNull(first.cached);
+
+            Assertions.assertTrue(cursor.next());
+            Assertions.assertNull(cursor.row(binder));
+
+            Assertions.assertTrue(cursor.next());
+            final Trade second = cursor.row(binder);
+            Assertions.assertNotNull(second);
+            Assertions.assertEquals(-2L, second.id);
+            Assertions.assertNull(second.unit);
+            Assertions.assertFalse(second.settled);
+            Assertions.assertNull(second.notional);
+            Assertions.assertEquals("New, York", second.venue());
+            Assertions.assertFalse(cursor.next());
+        }
+    }
+
+    @Test
+    public void testConstructorParametersAreBound() throws IOException, CsvException {
+        final Path file = Files.createTempFile("csv-reader-", ".csv");
+        try {
+            Files.write(file, TRADES.getBytes(StandardCharsets.UTF_8));
+            final List<Quote> quotes = CsvReader.readFile(file, Quote.class);
+            Assertions.assertEquals(2, quotes.size());
+            Assertions.assertEquals(1, quotes.get(0).id);
+            Assertions.assertEquals(Double.valueOf(12.5), quotes.get(0).price);
+            Assertions.assertEquals("LSE", quotes.get(0).venue);
+            Assertions.assertEquals(-2, quotes.get(1).id);
+            Assertions.assertEquals(Double.valueOf(0.0), quotes.get(1).price);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testFieldsWithoutAColumnNeedNoParser() throws IOException, CsvException {
+        try (CsvCursor cursor = new CsvReader(new StringReader("id,other\n3,x\n")).cursor()) {
+            cursor.readHeader();
+            final CsvBinder<Tagged> binder = cursor.bind(Tagged.class);
+            Assertions.assertTrue(cursor.next());
+            final Tagged tagged = cursor.row(binder);
+            Assertions.assertNotNull(tagged);
+            Assertions.assertEquals(3, tagged.id);
+            Assertions.assertEquals(Collections.singletonList("default"), tagged.tags);
+        }
+        try (CsvCursor cursor = new CsvReader(new StringReader("id,tags\n3,x\n")).cursor()) {
+            cursor.readHeader();
+            Assertions.assertThrows(IllegalArgumentException.class, () -> cursor.bind(Tagged.class));
+        }
+    }
+
+    @Test
+    public void testBadValuesAreErrors() throws IOException, CsvException {
+        try (CsvCursor cursor = new CsvReader(new StringReader("id,price,venue\n1,x,a\n2,3,b\n")).cursor()) {
+            cursor.readHeader();
+            final CsvBinder<Quote> binder = cursor.bind(Quote.class);
+            Assertions.assertTrue(cursor.next());
+            final CsvException e = Assertions.assertThrows(CsvException.class, () -> cursor.row(binder));
+            Assertions.assertEquals("[ERROR] CSV (Line 2, Field 2): Cannot parse \"x\" as a double.", e.getMessage());
+            Assertions.assertTrue(cursor.next());
+            Assertions.assertEquals("b", cursor.row(binder).venue);
+        }
+        try (CsvCursor cursor = new CsvReader(new StringReader("id,venue\n1,a\n")).cursor()) {
+            cursor.readHeader();
+            Assertions.assertThrows(IllegalArgumentException.class, () -> cursor.bind(Quote.class));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> cursor.bind(Runnable.class));
+        }
+        try (CsvCursor cursor = new CsvReader(new StringReader("id,value\n1,a\n")).cursor()) {
+            cursor.readHeader();
+            Assertions.assertThrows(IllegalArgumentException.class, () -> cursor.bind(Unbindable.class));
+        }
+        try (CsvCursor cursor = new CsvReader(new StringReader("id\n1\n")).cursor()) {
+            Assertions.assertThrows(IllegalStateException.class, () -> cursor.bind(Trade.class));
+        }
+    }
+}
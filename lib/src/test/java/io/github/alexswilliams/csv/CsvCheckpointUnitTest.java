@@ -0,0 +1,114 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class CsvCheckpointUnitTest {
+    private static final String CONTENTS = "id,name\r\n"
+            + "1,\"Smith,\nBob\"\n"
+            + "# comment\n"
+            + "2,юникода\n"
+            + "\n"
+            + "3,bad\"quote\n"
+            + "4,\"x\"\"y\"\n"
+            + "5,last";
+
+    /**
+     * Reads every remaining row, with any error in place of the row it was found in.
+     */
+    @NotNull
+    private static List<List<String>> rest(@NotNull final CsvCursor cursor) throws IOException {
+        final List<List<String>> rows = new ArrayList<>();
+        while (true) {
+            try {
+                if (!cursor.next()) return rows;
+                rows.add(cursor.row());
+            } catch (CsvException e) {
+                rows.add(Collections.singletonList(e.getMessage()));
+            }
+        }
+    }
+
+    @Test
+    public void testReaderResumesFromEveryRow() throws IOException, CsvException {
+        final List<List<String>> all = rest(new CsvReader(new StringReader(CONTENTS)).cursor());
+        final CsvCursor cursor = new CsvReader(new StringReader(CONTENTS)).cursor();
+        for (int done = 0; done <= all.size(); done++) {
+            final CsvCheckpoint checkpoint = cursor.checkpoint();
+            Assertions.assertFalse(checkpoint.isByteOffset());
+
+            final Reader positioned = new StringReader(CONTENTS);
+            Assertions.assertEquals(checkpoint.offset(), positioned.skip(checkpoint.offset()));
+            final List<List<String>> resumed = rest(new CsvReader(positioned, checkpoint).cursor());
+            Assertions.assertEquals(all.subList(done, all.size()), resumed, checkpoint.toString());
+
+            try {
+                cursor.next();
+            } catch (CsvException e) {
+                // resumed from below, at the same point
+            }
+        }
+    }
+
+    @Test
+    public void testFileResumesFromEveryRow() throws IOException, CsvException {
+        final Path file = Files.createTempFile("csv-reader-", ".csv");
+        Files.write(file, CONTENTS.getBytes(StandardCharsets.UTF_8));
+        try (CsvCursor cursor = CsvCursor.open(file)) {
+            final List<List<String>> all;
+            try (CsvCursor fromStart = CsvCursor.open(file)) {
+                all = rest(fromStart);
+            }
+            Assertions.assertEquals(rest(new CsvReader(new StringReader(CONTENTS)).cursor()), all);
+            for (int done = 0; done <= all.size(); done++) {
+                final CsvCheckpoint checkpoint = cursor.checkpoint();
+                Assertions.assertTrue(checkpoint.isByteOffset());
+                final CsvCheckpoint stored = CsvCheckpoint.ofBytes(checkpoint.offset(), checkpoint.lineNum());
+                Assertions.assertEquals(checkpoint, stored);
+                try (CsvCursor resumed = CsvCursor.open(file, stored)) {
+                    Assertions.assertEquals(all.subList(done, all.size()), rest(resumed), checkpoint.toString());
+                }
+                try {
+                    cursor.next();
+                } catch (CsvException e) {
+                    // resumed from below, at the same point
+                }
+            }
+            Assertions.assertEquals(CONTENTS.getBytes(StandardCharsets.UTF_8).length, cursor.checkpoint().offset());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testCheckpointsAreForOneKindOfInput() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new CsvReader(new StringReader(CONTENTS), CsvCheckpoint.ofBytes(0L, 1)));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> CsvCursor.open(Paths.get("unused"), CsvCheckpoint.ofChars(0L, 1)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CsvCheckpoint.ofChars(-1L, 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CsvCheckpoint.ofChars(0L, 0));
+    }
+
+    @Test
+    public void testUnknownLinesAreLocatedByOffset() throws IOException {
+        final Reader positioned = new StringReader("a\"b\n");
+        final CsvCursor cursor = new CsvReader(positioned, CsvCheckpoint.ofChars(100L, CsvCheckpoint.UNKNOWN_LINE))
+                .cursor();
+        final CsvException e = Assertions.assertThrows(CsvException.class, cursor::next);
+        Assertions.assertTrue(e.getMessage().startsWith("[ERROR] CSV (Offset 100, Field 1)"), e.getMessage());
+        Assertions.assertEquals(CsvCheckpoint.UNKNOWN_LINE, cursor.checkpoint().lineNum());
+    }
+}
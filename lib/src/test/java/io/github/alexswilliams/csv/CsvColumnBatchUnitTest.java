@@ -0,0 +1,79 @@
+package io.github.alexswilliams.csv;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+public class CsvColumnBatchUnitTest {
+    private static final CsvColumnType[] TYPES = {
+            CsvColumnType.STRING, CsvColumnType.INT, CsvColumnType.LONG, CsvColumnType.DOUBLE, CsvColumnType.BOOLEAN};
+
+    @Test
+    public void testRowsAreReadIntoColumns() throws IOException, CsvException {
+        final String contents = "alpha,1,10000000000,1.5,true\n"
+                + "\n"
+                + "\"be,ta\",2,-3,-0.25,false,ignored\n"
+                + ",3,,2e3\n"
+                + "юникода,4,4,4,TRUE\n"
+                + "epsilon,5,5,5.5,false\n";
+        final CsvColumnBatch batch = new CsvColumnBatch(3, TYPES);
+        try (CsvReader csvReader = new CsvReader(new StringReader(contents))) {
+            final CsvCursor cursor = csvReader.cursor();
+
+            Assertions.assertEquals(3, cursor.nextBatch(batch));
+            Assertions.assertArrayEquals(new int[]{1, 2, 3}, batch.intColumn(1));
+            Assertions.assertArrayEquals(new long[]{10000000000L, -3L, 0L}, batch.longColumn(2));
+            Assertions.assertArrayEquals(new double[]{1.5, -0.25, 2000.0}, batch.doubleColumn(3));
+            Assertions.assertEquals("alpha", batch.string(0, 0));
+            Assertions.assertEquals("be,ta", batch.string(0, 1));
+            Assertions.assertEquals("", batch.string(0, 2));
+            Assertions.assertArrayEquals(new int[]{0, 5, 10, 10}, batch.stringOffsets(0));
+            Assertions.assertFalse(batch.isNull(1, 2));
+            Assertions.assertTrue(batch.isNull(0, 2));
+            Assertions.assertTrue(batch.isNull(2, 2));
+            Assertions.assertTrue(batch.isNull(4, 2));
+            final int[] ints = batch.intColumn(1);
+
+            Assertions.assertEquals(2, cursor.nextBatch(batch));
+            Assertions.assertSame(ints, batch.intColumn(1));
+            Assertions.assertEquals(4, ints[0]);
+            Assertions.assertEquals("юникода", batch.string(0, 0));
+            Assertions.assertEquals("epsilon", batch.string(0, 1));
+            Assertions.assertTrue(batch.booleanColumn(4)[0]);
+            Assertions.assertThrows(IndexOutOfBoundsException.class, () -> batch.string(0, 2));
+
+            Assertions.assertEquals(0, cursor.nextBatch(batch));
+        }
+    }
+
+    @Test
+    public void testStringDataGrowsToFitABatch() throws IOException, CsvException {
+        final StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 100; j++) stringBuilder.append((char) ('a' + i));
+            stringBuilder.append('\n');
+        }
+        final CsvColumnBatch batch = new CsvColumnBatch(10, CsvColumnType.STRING);
+        try (CsvReader csvReader = new CsvReader(new StringReader(stringBuilder.toString()))) {
+            Assertions.assertEquals(10, csvReader.cursor().nextBatch(batch));
+        }
+        Assertions.assertEquals(1000, batch.stringOffsets(0)[10]);
+        Assertions.assertEquals('j', batch.string(0, 9).charAt(99));
+    }
+
+    @Test
+    public void testBadValueEndsTheBatch() throws IOException, CsvException {
+        final CsvColumnBatch batch = new CsvColumnBatch(10, CsvColumnType.INT);
+        try (CsvReader csvReader = new CsvReader(new StringReader("1\n2\nthree\n4\n"))) {
+            final CsvCursor cursor = csvReader.cursor();
+            final CsvException e = Assertions.assertThrows(CsvException.class, () -> cursor.nextBatch(batch));
+            Assertions.assertEquals("[ERROR] CSV (Line 3, Field 1): Cannot parse \"three\" as an int.", e.getMessage());
+            Assertions.assertEquals(2, batch.rowCount());
+            Assertions.assertEquals(1, cursor.nextBatch(batch));
+            Assertions.assertEquals(4, batch.intColumn(0)[0]);
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> batch.longColumn(0));
+    }
+}
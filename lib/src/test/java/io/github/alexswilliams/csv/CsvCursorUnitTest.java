@@ -0,0 +1,176 @@
+package io.github.alexswilliams.csv;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+public class CsvCursorUnitTest {
+    private static final String CONTENTS = "id,country,name\n"
+            + "1,GB,\"Smith, \"\"Bob\"\"\"\n"
+            + "\n"
+            + "2,FR,юникода\n"
+            + "# comment\n"
+            + "3,GB,\n";
+
+    @Test
+    public void testCursorMatchesReadFile() throws IOException, CsvException {
+        final List<List<String>> expected;
+        try (CsvReader csvReader = new CsvReader(new StringReader(CONTENTS))) {
+            expected = csvReader.readFile(false);
+        }
+
+        final List<List<String>> rows = new ArrayList<>();
+        try (CsvReader csvReader = new CsvReader(new StringReader(CONTENTS))) {
+            final CsvCursor cursor = csvReader.cursor();
+            while (cursor.next()) {
+                final List<String> row = new ArrayList<>();
+                for (int i = 0; i < cursor.fieldCount(); i++) {
+                    row.add(cursor.field(i).toString());
+                    Assertions.assertEquals(row.get(i).length(), cursor.fieldLength(i));
+                }
+                Assertions.assertEquals(cursor.row(), row);
+                rows.add(row);
+            }
+        }
+        Assertions.assertEquals(expected, rows);
+    }
+
+    @Test
+    public void testFieldViewsAreReusedAcrossRows() throws IOException, CsvException {
+        try (CsvReader csvReader = new CsvReader(new StringReader(CONTENTS))) {
+            final CsvCursor cursor = csvReader.cursor();
+            Assertions.assertTrue(cursor.next());
+            final CharSequence country = cursor.field(1);
+            Assertions.assertEquals("country", country.toString());
+
+            Assertions.assertTrue(cursor.next());
+            Assertions.assertSame(country, cursor.field(1));
+            Assertions.assertEquals("GB", country.toString());
+            Assertions.assertEquals('B', country.charAt(1));
+            Assertions.assertEquals("Bob", cursor.field(2).subSequence(8, 11).toString());
+            Assertions.assertEquals("Smith, \"Bob\"", cursor.fieldString(2));
+        }
+    }
+
+    @Test
+    public void testFieldEquals() throws IOException, CsvException {
+        int matches = 0;
+        try (CsvReader csvReader = new CsvReader(new StringReader(CONTENTS))) {
+            final CsvCursor cursor = csvReader.cursor();
+            while (cursor.next()) {
+                if (cursor.fieldCount() > 1 && cursor.fieldEquals(1, "GB")) matches++;
+            }
+            Assertions.assertThrows(IndexOutOfBoundsException.class, () -> cursor.field(0));
+        }
+        Assertions.assertEquals(2, matches);
+    }
+
+    @Test
+    public void testOpenFile() throws IOException, CsvException {
+        final Path file = Files.createTempFile("csv-reader-", ".csv");
+        try {
+            Files.write(file, CONTENTS.getBytes(StandardCharsets.UTF_8));
+            try (CsvCursor cursor = CsvCursor.open(file)) {
+                Assertions.assertTrue(cursor.next());
+                Assertions.assertTrue(cursor.next());
+                Assertions.assertTrue(cursor.next());
+                Assertions.assertEquals(0, cursor.fieldCount());
+                Assertions.assertTrue(cursor.next());
+                Assertions.assertTrue(cursor.fieldEquals(2, "юникода"));
+                Assertions.assertTrue(cursor.next());
+                Assertions.assertFalse(cursor.next());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testFilteredRowsAreDropped() throws IOException, CsvException {
+        final Random random = new Random(24L);
+        final String[] values = {"", "a", "ab", "b", "a,b", "a\nb", "\"a\"", "юникода"};
+        final StringWriter out = new StringWriter();
+        try (CsvWriter csvWriter = new CsvWriter(out, CsvDialect.RFC_4180)) {
+            for (int row = 0; row < 2000; row++) {
+                final List<String> fields = new ArrayList<>();
+                for (int field = random.nextInt(5); field > 0; field--) {
+                    fields.add(values[random.nextInt(values.length)]);
+                }
+                csvWriter.writeRow(fields);
+            }
+        }
+        final String csv = out.toString();
+        final List<List<String>> all;
+        try (CsvReader csvReader = new CsvReader(new StringReader(csv), CsvDialect.RFC_4180)) {
+            all = csvReader.readFile(false);
+        }
+        final Predicate<CharSequence> startsWithA = field -> field.length() > 0 && field.charAt(0) == 'a';
+        final Predicate<CharSequence> notB = field -> !"b".contentEquals(field);
+        final List<List<String>> expected = all.stream()
+                .filter(row -> startsWithA.test(row.size() > 1 ? row.get(1) : ""))
+                .filter(row -> notB.test(row.size() > 3 ? row.get(3) : ""))
+                .collect(Collectors.toList());
+
+        try (CsvReader csvReader = new CsvReader(new StringReader(csv), CsvDialect.RFC_4180)) {
+            csvReader.filter(1, startsWithA);
+            csvReader.filter(3, notB);
+            Assertions.assertEquals(expected, csvReader.readFile(false));
+        }
+
+        final Path file = Files.createTempFile("csv-reader-", ".csv");
+        try {
+            Files.write(file, csv.getBytes(StandardCharsets.UTF_8));
+            try (CsvCursor cursor = CsvCursor.open(file, CsvDialect.RFC_4180)) {
+                cursor.filter(1, startsWithA);
+                cursor.filter(3, notB);
+                cursor.filter(2, field -> false);
+                cursor.filter(2, null);
+                cursor.select(2, 0);
+                final List<List<String>> rows = new ArrayList<>();
+                while (cursor.next()) {
+                    rows.add(cursor.row());
+                }
+                Assertions.assertEquals(expected.stream()
+                                .map(row -> Arrays.asList(row.size() > 2 ? row.get(2) : "", row.get(0)))
+                                .collect(Collectors.toList()),
+                        rows);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testRejectedRowsAreNotTestedFurther() throws IOException, CsvException {
+        final AtomicInteger countryTests = new AtomicInteger();
+        final AtomicInteger nameTests = new AtomicInteger();
+        final List<String> names = new ArrayList<>();
+        try (CsvReader csvReader = new CsvReader(new StringReader(CONTENTS))) {
+            final CsvCursor cursor = csvReader.cursor();
+            cursor.readHeader();
+            cursor.filter("country", country -> countryTests.incrementAndGet() > 0 && "GB".contentEquals(country));
+            cursor.filter("name", name -> nameTests.incrementAndGet() > 0);
+            while (cursor.next()) {
+                names.add(cursor.fieldString(2));
+            }
+            Assertions.assertThrows(IllegalArgumentException.class, () -> cursor.filter("nothing", null));
+        }
+        Assertions.assertEquals(Arrays.asList("Smith, \"Bob\"", ""), names);
+        // the blank line is tested as empty fields; the FR row fails before its name is reached
+        Assertions.assertEquals(4, countryTests.get());
+        Assertions.assertEquals(2, nameTests.get());
+    }
+}
@@ -0,0 +1,264 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.Arrays.asList;
+
+public class CsvDialectUnitTest {
+    private static final CsvDialect PIPES = CsvDialect.builder().delimiter('|').escape('\\').build();
+    private static final CsvDialect COMMENTS = CsvDialect.builder().commentPrefix('#').build();
+    private static final CsvDialect OLD_MAC = CsvDialect.builder().bareCarriageReturnEndsLine(true).build();
+    private static final CsvDialect TRIMMED = CsvDialect.builder().trimWhitespace(true).build();
+    private static final CsvDialect UNQUOTED_TSV = CsvDialect.builder().delimiter('\t').noQuote().build();
+
+    private static class Assertion {
+        String displayName;
+        CsvDialect dialect;
+        String input;
+        List<List<String>> expectedOutput;
+
+        Assertion(String displayName, CsvDialect dialect, String input, List<List<String>> expectedOutput) {
+            this.displayName = displayName;
+            this.dialect = dialect;
+            this.input = input;
+            this.expectedOutput = expectedOutput;
+        }
+    }
+
+    private Stream<Assertion> scenarioAssertions() {
+        return Stream.of(
+                // RFC 4180
+                new Assertion("Comment character is data", CsvDialect.RFC_4180, "#a,b\n", asList(asList("#a", "b"))),
+                new Assertion("Quoted values can contain comment character", CsvDialect.RFC_4180, "\"cell # cell\"", asList(asList("cell # cell"))),
+                new Assertion("Values with LF are unescaped", CsvDialect.RFC_4180, "\"A\nB\"", asList(asList("A\nB"))),
+                new Assertion("Values with CRLF are unescaped", CsvDialect.RFC_4180, "\"A\r\nB\",C", asList(asList("A\r\nB", "C"))),
+                new Assertion("Comment character can start the next line of a multiline quoted value", CsvDialect.RFC_4180, "\"line 1\n# line 2\"", asList(asList("line 1\n# line 2"))),
+                new Assertion("CRLF ends a line", CsvDialect.RFC_4180, "a,b\r\nc\r\n", asList(asList("a", "b"), asList("c"))),
+                new Assertion("CRLF after a quoted field ends a line", CsvDialect.RFC_4180, "\"a\"\r\n\"b\"", asList(asList("a"), asList("b"))),
+                new Assertion("Blank CRLF line is an empty list", CsvDialect.RFC_4180, "a\r\n\r\nb", asList(asList("a"), asList(), asList("b"))),
+                new Assertion("Bare CR is data", CsvDialect.RFC_4180, "a\rb,\rc\r", asList(asList("a\rb", "\rc\r"))),
+                new Assertion("Doubled quotes are unescaped", CsvDialect.RFC_4180, "\"a \"\" b\"", asList(asList("a \" b"))),
+
+                // Other delimiters
+                new Assertion("TSV splits on tabs", CsvDialect.TSV, "a\tb,c\t\"d\te\"\n", asList(asList("a", "b,c", "d\te"))),
+                new Assertion("Quotes are data without quoting", UNQUOTED_TSV, "a\"b\t\"c\"\n", asList(asList("a\"b", "\"c\""))),
+
+                // Escapes
+                new Assertion("Escaped delimiter is data", PIPES, "a\\|b|c", asList(asList("a|b", "c"))),
+                new Assertion("Escape can start a field", PIPES, "\\|a|\\\\", asList(asList("|a", "\\"))),
+                new Assertion("Escaped quote inside quotes", PIPES, "\"x\\\"y\"|\"p\"\"q\"", asList(asList("x\"y", "p\"q"))),
+                new Assertion("Escaped newline is data", PIPES, "a\\\nb|c\nd", asList(asList("a\nb", "c"), asList("d"))),
+                new Assertion("Escape at end of input is itself", PIPES, "a\\", asList(asList("a\\"))),
+
+                // Comments
+                new Assertion("Comment lines are skipped", COMMENTS, "# one\na#b,c\n#two\r\n\"#\"\n", asList(asList("a#b", "c"), asList("#"))),
+                new Assertion("Whole document can be a comment", COMMENTS, "# only", asList()),
+                new Assertion("Comment character after a delimiter is data", COMMENTS, "a,#b", asList(asList("a", "#b"))),
+
+                // Line endings
+                new Assertion("Bare CR ends a line", OLD_MAC, "a\rb\r\nc\n\rd", asList(asList("a"), asList("b"), asList("c"), asList(), asList("d"))),
+                new Assertion("Bare CR in quotes is kept", OLD_MAC, "\"a\rb\"\r", asList(asList("a\rb"))),
+
+                // Whitespace
+                new Assertion("Whitespace around fields is trimmed", TRIMMED, " a ,\t\"b\"  , c\t\n", asList(asList("a", "b", "c"))),
+                new Assertion("Whitespace inside quotes is kept", TRIMMED, " \" b \" ", asList(asList(" b "))),
+                new Assertion("Whitespace inside unquoted values is kept", TRIMMED, "a b ,", asList(asList("a b", ""))),
+                new Assertion("A line of whitespace is one empty field", TRIMMED, "  \r\n", asList(asList(""))),
+
+                null
+        ).filter(Objects::nonNull);
+    }
+
+    @TestFactory
+    public Stream<DynamicTest> scenarios() {
+        return scenarioAssertions().map(it -> DynamicTest.dynamicTest(it.displayName, () -> {
+            final List<List<String>> output;
+            try (StringReader stringReader = new StringReader(it.input);
+                 CsvReader csvReader = new CsvReader(stringReader, it.dialect)) {
+                output = csvReader.readFile(false);
+            }
+            Assertions.assertEquals(it.expectedOutput, output);
+        }));
+    }
+
+    @TestFactory
+    public Stream<DynamicTest> scenariosFromMappedFile() {
+        return scenarioAssertions().map(it -> DynamicTest.dynamicTest(it.displayName, () -> {
+            final Path file = write(it.input);
+            try {
+                Assertions.assertEquals(it.expectedOutput, CsvReader.readFile(file, it.dialect, false));
+            } finally {
+                Files.delete(file);
+            }
+        }));
+    }
+
+    @Test
+    public void testErrors() throws IOException {
+        Assertions.assertEquals("[ERROR] CSV (Line 3, Field 1): "
+                        + CsvErrorCode.UNEXPECTED_CHARACTER_AFTER_QUOTED_FIELD.description,
+                firstError("# c\na\n\"x\" y\nb", COMMENTS));
+        Assertions.assertEquals("[ERROR] CSV (Line 1, Field 1): "
+                        + CsvErrorCode.UNEXPECTED_CHARACTER_AFTER_QUOTED_FIELD.description,
+                firstError("\"a\" \"\n", TRIMMED));
+        Assertions.assertEquals("[ERROR] CSV (Line 1, Field 1): "
+                        + CsvErrorCode.UNEXPECTED_CHARACTER_AFTER_QUOTED_FIELD.description,
+                firstError("\"a\"\rb", CsvDialect.RFC_4180));
+        Assertions.assertEquals("[ERROR] CSV (Line 4, Field 2): " + CsvErrorCode.UNEXPECTED_QUOTE.description,
+                firstError("\"a\nb\"\r\nc\r\nd,e\"", CsvDialect.RFC_4180));
+    }
+
+    @NotNull
+    private static String firstError(@NotNull final String contents, @NotNull final CsvDialect dialect)
+            throws IOException {
+        try (CsvReader csvReader = new CsvReader(new StringReader(contents), dialect)) {
+            final CsvCursor cursor = csvReader.cursor();
+            final CsvException e = Assertions.assertThrows(CsvException.class, () -> {
+                while (cursor.next()) {
+                    // until the error
+                }
+            });
+            return e.getMessage();
+        }
+    }
+
+    @Test
+    public void testInvalidDialects() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CsvDialect.builder().delimiter('\n').build());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CsvDialect.builder().delimiter('\"').build());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CsvDialect.builder().delimiter('§').build());
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> CsvDialect.builder().escape('#').commentPrefix('#').build());
+        Assertions.assertEquals(CsvDialect.RFC_4180, CsvDialect.builder().quote('\'').quote('\"').build());
+        Assertions.assertEquals(UNQUOTED_TSV, CsvDialect.builder().delimiter('\t').noQuote().build());
+        Assertions.assertNotEquals(CsvDialect.DEFAULT, CsvDialect.RFC_4180);
+    }
+
+    /**
+     * Every dialect must lex the same way whatever the window size and however the input arrives, and from bytes as
+     * from chars.
+     */
+    @Test
+    public void testWindowBoundariesDoNotMatter() throws IOException {
+        final CsvDialect[] dialects = {CsvDialect.RFC_4180, PIPES, COMMENTS, OLD_MAC, TRIMMED, UNQUOTED_TSV};
+        final char[] alphabet = {'a', ',', '|', '\t', '\"', '\\', '\n', '\r', '#', ' ', 'Ю', '\n'};
+        final Random random = new Random(16L);
+        for (int round = 0; round < 3000; round++) {
+            final CsvDialect dialect = dialects[round % dialects.length];
+            final StringBuilder stringBuilder = new StringBuilder();
+            final int length = random.nextInt(round % 100 == 0 ? 2000 : 40);
+            for (int i = 0; i < length; i++) stringBuilder.append(alphabet[random.nextInt(alphabet.length)]);
+            final String contents = stringBuilder.toString();
+
+            final List<String> expected = outcome(new CsvLexer(new StringReader(contents)::read, dialect, 0L, 1,
+                    CsvLexer.DEFAULT_WINDOW_SIZE));
+            final Random trickle = new Random(round);
+            final StringReader reader = new StringReader(contents);
+            Assertions.assertEquals(expected, outcome(new CsvLexer(
+                    (buf, off, len) -> reader.read(buf, off, Math.min(len, 1 + trickle.nextInt(5))),
+                    dialect, 0L, 1, 4)), contents);
+
+            final Path file = write(contents);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                Assertions.assertEquals(expected, outcome(new CsvLexer(new MappedFileSource(channel, 0L, 3),
+                        dialect, 0L, 1, 4)), contents);
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @NotNull
+    private static List<String> outcome(@NotNull final CsvLexer lexer) throws IOException {
+        final List<String> rows = new ArrayList<>();
+        while (true) {
+            try {
+                if (!lexer.nextRow()) return rows;
+                rows.add(lexer.rowAsList().toString());
+            } catch (CsvException e) {
+                rows.add(e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testParallelReadInADialect() throws IOException, CsvException {
+        final Random random = new Random(23L);
+        final StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            switch (random.nextInt(5)) {
+                case 0:
+                    stringBuilder.append(i).append("|\"multi\r\nline|\"|x\r\n");
+                    break;
+                case 1:
+                    stringBuilder.append(i).append("|escaped\\\nnewline|\\\"\n");
+                    break;
+                case 2:
+                    stringBuilder.append("#").append(i).append(",\"comment|\n");
+                    break;
+                case 3:
+                    stringBuilder.append(i).append("|юникода|\"\"\n");
+                    break;
+                default:
+                    stringBuilder.append(i).append("|bad\"quote\n");
+                    break;
+            }
+        }
+        final CsvDialect dialect = CsvDialect.builder().delimiter('|').escape('\\').commentPrefix('#').build();
+        final String contents = stringBuilder.toString();
+        final List<List<String>> expected;
+        try (CsvReader csvReader = new CsvReader(new StringReader(contents), dialect)) {
+            expected = csvReader.readFile(true);
+        }
+        final Path file = write(contents);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final FileRangeSpliterator spliterator = new FileRangeSpliterator(channel, dialect, 0L, 1,
+                    channel.size(), 4096, 1024, null, null);
+            final List<List<String>> rows = StreamSupport.stream(spliterator, true)
+                    .filter(it -> it instanceof Result.OK)
+                    .map(it -> it.ok().data)
+                    .collect(Collectors.toList());
+            Assertions.assertEquals(expected, rows);
+
+            final CsvIndex index = CsvIndex.build(file, dialect, 100);
+            final Path sidecar = CsvIndex.sidecarOf(file);
+            try {
+                index.save(sidecar);
+                final CsvIndex loaded = CsvIndex.load(sidecar);
+                Assertions.assertEquals(dialect, loaded.dialect());
+                Assertions.assertEquals(expected.size(), loaded.rowCount());
+                Assertions.assertEquals(expected.subList(1234, 1300), loaded.readRows(file, 1234, 1300));
+            } finally {
+                Files.delete(sidecar);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @NotNull
+    private static Path write(@NotNull final String contents) throws IOException {
+        final Path file = Files.createTempFile("csv-reader-", ".csv");
+        Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+public class CsvErrorLogUnitTest {
+    private static final String CONTENTS = "a,b,c\n"
+            + "d,e\"f,g\n"
+            + "\"h\"i,j\n"
+            + "k,l,m\n"
+            + "\"unterminated\n";
+
+    @NotNull
+    private static List<List<String>> readSkippingBadLines(@NotNull final String contents)
+            throws IOException, CsvException {
+        try (CsvReader csvReader = new CsvReader(new StringReader(contents))) {
+            return csvReader.readFile(true);
+        }
+    }
+
+    @Test
+    public void testErrorsAreRecordedInsteadOfThrown() throws IOException, CsvException {
+        final CsvErrorLog errors = new CsvErrorLog();
+        try (CsvReader csvReader = new CsvReader(new StringReader(CONTENTS))) {
+            Assertions.assertEquals(readSkippingBadLines(CONTENTS), csvReader.readFile(errors));
+        }
+        Assertions.assertEquals(3, errors.count());
+        Assertions.assertEquals(3, errors.recorded());
+
+        Assertions.assertEquals(CsvErrorCode.UNEXPECTED_QUOTE, errors.code(0));
+        Assertions.assertEquals(2, errors.line(0));
+        Assertions.assertEquals(2, errors.field(0));
+        Assertions.assertEquals(9L, errors.offset(0));
+
+        Assertions.assertEquals(CsvErrorCode.UNEXPECTED_CHARACTER_AFTER_QUOTED_FIELD, errors.code(1));
+        Assertions.assertEquals(3, errors.line(1));
+        Assertions.assertEquals(1, errors.field(1));
+        Assertions.assertEquals(17L, errors.offset(1));
+
+        Assertions.assertEquals(CsvErrorCode.UNTERMINATED_QUOTED_FIELD, errors.code(2));
+        Assertions.assertEquals(1, errors.count(CsvErrorCode.UNTERMINATED_QUOTED_FIELD));
+        Assertions.assertEquals((long) CONTENTS.length(), errors.offset(2));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> errors.code(3));
+    }
+
+    @Test
+    public void testOnlyTheFirstErrorsAreKept() throws IOException, CsvException {
+        final StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            stringBuilder.append("ok,").append(i).append("\nbad\"").append(i).append('\n');
+        }
+        final CsvErrorLog errors = new CsvErrorLog(10);
+        final CsvCursor cursor = new CsvReader(new StringReader(stringBuilder.toString())).cursor();
+        cursor.setErrorSink(errors);
+        int rows = 0;
+        while (cursor.next()) {
+            rows++;
+        }
+        Assertions.assertEquals(50 + 50, rows);
+        Assertions.assertEquals(50, errors.count());
+        Assertions.assertEquals(10, errors.recorded());
+        Assertions.assertEquals(20, errors.line(9));
+
+        cursor.setErrorSink(null);
+        errors.clear();
+        Assertions.assertEquals(0, errors.recorded());
+    }
+
+    @Test
+    public void testParallelReadReportsErrorsByOffset() throws IOException, CsvException {
+        final StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            stringBuilder.append(i % 7 == 0 ? "bad\"row," : "good,").append(i).append(",\"quoted\nvalue\"\n");
+        }
+        final String contents = stringBuilder.toString();
+        final Path file = Files.createTempFile("csv-reader-", ".csv");
+        Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final CsvErrorLog errors = new CsvErrorLog(5000);
+            final FileRangeSpliterator spliterator =
+                    new FileRangeSpliterator(channel, 0L, channel.size(), 256, 4096, errors);
+            final List<List<String>> rows = StreamSupport.stream(spliterator, true)
+                    .map(it -> it.ok().data)
+                    .collect(Collectors.toList());
+            Assertions.assertEquals(readSkippingBadLines(contents), rows);
+            Assertions.assertEquals((5000 + 6) / 7, errors.count());
+            for (int i = 0; i < errors.recorded(); i++) {
+                Assertions.assertEquals('"', contents.charAt((int) errors.offset(i)));
+            }
+        } finally {
+            Files.delete(file);
+        }
+        Assertions.assertThrows(IOException.class, () -> CsvReader.readFile(file, new CsvErrorLog()));
+    }
+}
@@ -0,0 +1,136 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class CsvHeaderUnitTest {
+    private static final String CONTENTS = "id,country,name,notes\n"
+            + "1,GB,\"Smith, \"\"Bob\"\"\",\"long\nnote\"\n"
+            + "\n"
+            + "2,FR\n"
+            + "3,юникода,Alice,ünïcödé,extra\n";
+
+    @Test
+    public void testHeaderMapsNamesToColumns() throws IOException, CsvException {
+        try (CsvReader csvReader = new CsvReader(new StringReader(CONTENTS))) {
+            final CsvCursor cursor = csvReader.cursor();
+            final CsvHeader header = cursor.readHeader();
+            Assertions.assertSame(header, cursor.header());
+            Assertions.assertEquals(Arrays.asList("id", "country", "name", "notes"), header.names());
+            Assertions.assertEquals(2, header.indexOf("name"));
+            Assertions.assertEquals(-1, header.indexOf("missing"));
+            Assertions.assertArrayEquals(new int[]{3, 0}, header.indicesOf("notes", "id"));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> header.indicesOf("id", "missing"));
+        }
+    }
+
+    @Test
+    public void testSelectedColumnsComeInTheOrderAskedFor() throws IOException, CsvException {
+        final List<List<String>> rows = new ArrayList<>();
+        try (CsvReader csvReader = new CsvReader(new StringReader(CONTENTS))) {
+            final CsvCursor cursor = csvReader.cursor();
+            cursor.readHeader();
+            cursor.select("name", "id");
+            while (cursor.next()) {
+                rows.add(cursor.row());
+            }
+        }
+        Assertions.assertEquals(Arrays.asList(
+                Arrays.asList("Smith, \"Bob\"", "1"),
+                Collections.emptyList(),
+                Arrays.asList("", "2"),
+                Arrays.asList("Alice", "3")), rows);
+    }
+
+    @Test
+    public void testSelectingFromAMappedFile() throws IOException, CsvException {
+        final Path file = Files.createTempFile("csv-reader-", ".csv");
+        Files.write(file, CONTENTS.getBytes(StandardCharsets.UTF_8));
+        try (CsvCursor cursor = CsvCursor.open(file)) {
+            Assertions.assertThrows(IllegalStateException.class, () -> cursor.select("id"));
+            cursor.readHeader();
+            cursor.select("notes", "country");
+            Assertions.assertTrue(cursor.next());
+            Assertions.assertEquals(Arrays.asList("longnote", "GB"), cursor.row());
+            Assertions.assertTrue(cursor.next());
+            Assertions.assertTrue(cursor.next());
+            Assertions.assertTrue(cursor.next());
+            Assertions.assertEquals(Arrays.asList("ünïcödé", "юникода"), cursor.row());
+            cursor.selectAll();
+            Assertions.assertFalse(cursor.next());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testErrorsInUnselectedColumnsAreStillReported() throws IOException, CsvException {
+        try (CsvReader csvReader = new CsvReader(new StringReader("a,b\"c,d\n1,2,3\n"))) {
+            final CsvCursor cursor = csvReader.cursor();
+            cursor.select(0);
+            final CsvException e = Assertions.assertThrows(CsvException.class, cursor::next);
+            Assertions.assertEquals("[ERROR] CSV (Line 1, Field 2): Unescaped quotation mark or leading character "
+                    + "before quoted field.", e.getMessage());
+            Assertions.assertThrows(IllegalArgumentException.class, () -> cursor.select(1, 1));
+        }
+    }
+
+    @NotNull
+    private static List<List<String>> project(@NotNull final CsvLexer lexer, @NotNull final int[] columns)
+            throws IOException {
+        lexer.project(columns);
+        final List<List<String>> rows = new ArrayList<>();
+        while (true) {
+            try {
+                if (!lexer.nextRow()) return rows;
+                rows.add(lexer.rowAsList());
+            } catch (CsvException e) {
+                rows.add(Collections.singletonList(e.getMessage()));
+            }
+        }
+    }
+
+    @Test
+    public void testProjectionMatchesPickingFromWholeRows() throws IOException {
+        final Random random = new Random(8L);
+        final String[] pieces = {"a", "bb", "\"q,\"\"x\"", "\"multi\nline\"", "юни", "", "\"\"", "x\r", "# c\n"};
+        for (int round = 0; round < 200; round++) {
+            final StringBuilder stringBuilder = new StringBuilder();
+            for (int row = 0; row < 20; row++) {
+                final int width = random.nextInt(6);
+                for (int i = 0; i < width; i++) {
+                    if (i > 0) stringBuilder.append(',');
+                    stringBuilder.append(pieces[random.nextInt(pieces.length)]);
+                }
+                stringBuilder.append(random.nextInt(10) == 0 ? "\"\n" : "\n");
+            }
+            final String contents = stringBuilder.toString();
+            final int[] columns = random.nextBoolean() ? new int[]{2, 0} : new int[]{4};
+
+            final List<List<String>> expected = new ArrayList<>();
+            for (List<String> row : project(new CsvLexer(new StringReader(contents)::read, 0L, 4), null)) {
+                if (row.isEmpty() || row.get(0).startsWith("[ERROR]")) {
+                    expected.add(row);
+                    continue;
+                }
+                final List<String> projected = new ArrayList<>();
+                for (int column : columns) projected.add(column < row.size() ? row.get(column) : "");
+                expected.add(projected);
+            }
+            Assertions.assertEquals(expected, project(new CsvLexer(new StringReader(contents)::read, 0L, 4), columns),
+                    contents);
+        }
+    }
+}
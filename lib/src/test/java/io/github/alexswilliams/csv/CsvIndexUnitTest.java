@@ -0,0 +1,186 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+public class CsvIndexUnitTest {
+
+    @NotNull
+    private static String rows(final int count, final long seed) {
+        final Random random = new Random(seed);
+        final StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            switch (random.nextInt(6)) {
+                case 0:
+                    stringBuilder.append(i).append(",\"multi\nline\",юникода\n");
+                    break;
+                case 1:
+                    stringBuilder.append("# comment\n");
+                    break;
+                case 2:
+                    stringBuilder.append(i).append(",bad\"row\n");
+                    break;
+                case 3:
+                    stringBuilder.append('\n');
+                    break;
+                default:
+                    stringBuilder.append(i).append(",plain\r\n");
+                    break;
+            }
+        }
+        return stringBuilder.toString();
+    }
+
+    @NotNull
+    private static Path write(@NotNull final String contents) throws IOException {
+        final Path file = Files.createTempFile("csv-reader-", ".csv");
+        Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @NotNull
+    private static List<List<String>> readSkippingBadLines(@NotNull final String contents)
+            throws IOException, CsvException {
+        try (CsvReader csvReader = new CsvReader(new StringReader(contents))) {
+            return csvReader.readFile(true);
+        }
+    }
+
+    @Test
+    public void testCursorsOpenAtEveryRow() throws IOException, CsvException {
+        final String contents = rows(300, 1L);
+        final List<List<String>> all = readSkippingBadLines(contents);
+        final Path file = write(contents);
+        try {
+            final CsvIndex index = CsvIndex.build(file, 7);
+            Assertions.assertEquals(all.size(), index.rowCount());
+            for (int row = 0; row <= all.size(); row++) {
+                try (CsvCursor cursor = index.openAtRow(file, row)) {
+                    cursor.setErrorSink((code, line, field, offset) -> {
+                    });
+                    if (row < all.size()) {
+                        Assertions.assertTrue(cursor.next());
+                        Assertions.assertEquals(all.get(row), cursor.row(), "Row " + row);
+                    } else {
+                        Assertions.assertFalse(cursor.next());
+                    }
+                }
+            }
+            Assertions.assertEquals(all.subList(100, 150), index.readRows(file, 100, 150));
+            Assertions.assertThrows(IndexOutOfBoundsException.class, () -> index.openAtRow(file, all.size() + 1));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testCursorsOpenAtLines() throws IOException, CsvException {
+        final String contents = "a\n\"b\nb\"\nc\n# comment\nd\n";
+        final Path file = write(contents);
+        try {
+            final CsvIndex index = CsvIndex.build(file, 2);
+            final String[] firstRowFromLine = {"a", "a", "bb", "c", "c", "d"};
+            for (int line = 0; line < firstRowFromLine.length; line++) {
+                try (CsvCursor cursor = index.openAtLine(file, line)) {
+                    Assertions.assertTrue(cursor.next());
+                    Assertions.assertEquals(firstRowFromLine[line], cursor.fieldString(0), "Line " + line);
+                }
+            }
+            try (CsvCursor cursor = index.openAtLine(file, 100)) {
+                Assertions.assertFalse(cursor.next());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testIndexIsSavedAndLoaded() throws IOException, CsvException {
+        final String contents = rows(500, 2L);
+        final Path file = write(contents);
+        final Path sidecar = CsvIndex.sidecarOf(file);
+        try {
+            final CsvIndex built = CsvIndex.build(file, 10);
+            built.save(sidecar);
+            Assertions.assertTrue(Files.size(sidecar) < 1024);
+            final CsvIndex loaded = CsvIndex.load(sidecar);
+            Assertions.assertEquals(built.rowCount(), loaded.rowCount());
+            Assertions.assertEquals(10, loaded.interval());
+            Assertions.assertTrue(loaded.isCurrent(file));
+            Assertions.assertEquals(built.readRows(file, 123, 200), loaded.readRows(file, 123, 200));
+
+            Files.write(file, "changed\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+            Assertions.assertFalse(loaded.isCurrent(file));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> loaded.openAtRow(file, 0));
+            Assertions.assertThrows(IOException.class, () -> CsvIndex.load(file));
+        } finally {
+            Files.delete(file);
+            Files.deleteIfExists(sidecar);
+        }
+    }
+
+    @Test
+    public void testParallelReadSplitsAtIndexedRowsWithLineNumbers() throws IOException, CsvException {
+        final String contents = rows(5000, 3L);
+        final List<String> expected = new ArrayList<>();
+        try (CsvReader csvReader = new CsvReader(new StringReader(contents))) {
+            final CsvCursor cursor = csvReader.cursor();
+            while (true) {
+                try {
+                    if (!cursor.next()) break;
+                    expected.add(cursor.row().toString());
+                } catch (CsvException e) {
+                    expected.add(e.getMessage());
+                }
+            }
+        }
+        final Path file = write(contents);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final CsvIndex index = CsvIndex.build(file, 16);
+            final FileRangeSpliterator spliterator =
+                    new FileRangeSpliterator(channel, index.dialect(), 0L, 1, channel.size(), 256, 1, null, index);
+            final List<String> rows = StreamSupport.stream(spliterator, true)
+                    .map(it -> it instanceof Result.OK
+                            ? it.ok().data.toString()
+                            : it.error().exception.getMessage())
+                    .collect(Collectors.toList());
+            Assertions.assertEquals(expected, rows);
+
+            try (java.util.stream.Stream<List<String>> stream = CsvReader.streamFile(file, index, true)) {
+                Assertions.assertEquals(readSkippingBadLines(contents), stream.parallel().collect(Collectors.toList()));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException, CsvException {
+        final Path file = write("");
+        try {
+            final CsvIndex index = CsvIndex.build(file);
+            Assertions.assertEquals(0L, index.rowCount());
+            Assertions.assertEquals(Collections.emptyList(), index.readRows(file, 0, 0));
+            try (CsvCursor cursor = index.openAtLine(file, 5)) {
+                Assertions.assertFalse(cursor.next());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
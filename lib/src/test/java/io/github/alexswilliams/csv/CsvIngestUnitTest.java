@@ -0,0 +1,155 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class CsvIngestUnitTest {
+    @NotNull
+    private static String rows(final String prefix, final int count) {
+        final StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i % 7 == 3) {
+                stringBuilder.append(prefix).append(',').append(i).append(",\"two\nlines\"\n");
+            } else {
+                stringBuilder.append(prefix).append(',').append(i).append(",юникода\r\n");
+            }
+        }
+        return stringBuilder.toString();
+    }
+
+    @NotNull
+    private static List<CsvRow> expected(final String name, final String contents) throws IOException, CsvException {
+        final List<CsvRow> rows = new ArrayList<>();
+        try (CsvCursor cursor = new CsvReader(new StringReader(contents)).cursor()) {
+            while (cursor.next()) {
+                rows.add(new CsvRow(name, cursor.lineNumber(), cursor.row()));
+            }
+        }
+        return rows;
+    }
+
+    @Test
+    public void testRowsOfEveryFileAreMergedAndTagged() throws IOException, CsvException {
+        final List<Path> files = new ArrayList<>();
+        final List<CsvRow> expected = new ArrayList<>();
+        try {
+            for (int i = 0; i < 12; i++) {
+                final String contents = rows("f" + i, i == 0 ? 20000 : 50 * i);
+                final Path file = Files.createTempFile("csv-reader-", ".csv");
+                Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+                files.add(file);
+                expected.addAll(expected(file.toString(), contents));
+            }
+            final CsvIngest ingest = CsvIngest.builder().threads(3).maxOpenSources(4).sliceRows(100)
+                    .memoryBudget(20000).build();
+            final List<CsvRow> rows;
+            try (Stream<CsvRow> stream = ingest.streamFiles(files)) {
+                rows = stream.collect(Collectors.toList());
+            }
+            final Comparator<CsvRow> order = Comparator.comparing(CsvRow::source).thenComparingInt(CsvRow::line);
+            expected.sort(order);
+            final List<CsvRow> sorted = new ArrayList<>(rows);
+            sorted.sort(order);
+            Assertions.assertEquals(expected, sorted);
+
+            for (Path file : files) {
+                final List<Integer> lines = rows.stream().filter(it -> it.source().equals(file.toString()))
+                        .map(CsvRow::line).collect(Collectors.toList());
+                final List<Integer> inOrder = new ArrayList<>(lines);
+                inOrder.sort(Comparator.naturalOrder());
+                Assertions.assertEquals(inOrder, lines);
+            }
+        } finally {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testSmallSourcesAreNotHeldUpByAHugeOne() {
+        final CsvIngest ingest = CsvIngest.builder().threads(1).maxOpenSources(2).sliceRows(10).build();
+        final List<CsvRow> rows;
+        try (Stream<CsvRow> stream = ingest.stream(Arrays.asList(
+                CsvIngest.Source.of("huge", () -> new StringReader(rows("h", 100000))),
+                CsvIngest.Source.of("small", () -> new StringReader(rows("s", 30)))))) {
+            rows = stream.collect(Collectors.toList());
+        }
+        int lastSmall = -1;
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).source().equals("small")) lastSmall = i;
+        }
+        Assertions.assertEquals(100030, rows.size());
+        Assertions.assertTrue(lastSmall < 100, "Small source finished at row " + lastSmall);
+    }
+
+    @Test
+    public void testEachSourceHasItsOwnStream() throws IOException, CsvException {
+        final List<CsvIngest.Source> sources = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            final String contents = rows("r" + i, 10 * i);
+            sources.add(CsvIngest.Source.of("r" + i, () -> new StringReader(contents)));
+        }
+        final CsvIngest ingest = CsvIngest.builder().threads(4).virtualThreads(true).build();
+        final List<Long> counts = ingest.eachSource(sources, rows -> rows.filter(it -> it.fields().size() == 3).count());
+        for (int i = 0; i < 20; i++) {
+            Assertions.assertEquals(10L * i, (long) counts.get(i));
+        }
+        Assertions.assertEquals(Arrays.asList("r1", "r2"), ingest.eachSource(sources.subList(1, 3),
+                rows -> rows.findFirst().map(it -> it.fields().get(0)).orElse("")));
+    }
+
+    @Test
+    public void testMalformedRowsStopOrAreSkipped() throws IOException, CsvException {
+        final String malformed = "a,b\n\"c\"d,e\nf,g\n";
+        final List<CsvIngest.Source> sources = Arrays.asList(
+                CsvIngest.Source.of("good", () -> new StringReader(rows("g", 5000))),
+                CsvIngest.Source.of("bad", () -> new StringReader(malformed)));
+
+        final CsvIngest strict = CsvIngest.builder().threads(2).sliceRows(10).build();
+        try (Stream<CsvRow> stream = strict.stream(sources)) {
+            final RuntimeException e = Assertions.assertThrows(RuntimeException.class, () -> stream.forEach(it -> {
+            }));
+            Assertions.assertTrue(e.getCause() instanceof CsvException);
+            Assertions.assertTrue(e.getCause().getMessage().startsWith("bad: "), e.getCause().getMessage());
+        }
+        Assertions.assertThrows(CsvException.class, () -> strict.eachSource(sources, Stream::count));
+
+        final CsvIngest lenient = CsvIngest.builder().threads(2).skipBadLines(true).build();
+        try (Stream<CsvRow> stream = lenient.stream(sources)) {
+            final List<List<String>> bad = stream.filter(it -> it.source().equals("bad")).map(CsvRow::fields)
+                    .collect(Collectors.toList());
+            Assertions.assertEquals(new CsvReader(new StringReader(malformed)).readFile(true), bad);
+        }
+    }
+
+    @Test
+    public void testClosingEarlyStopsReading() {
+        final List<CsvIngest.Source> sources = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            sources.add(CsvIngest.Source.of("s" + i, () -> new StringReader(rows("s", 100000))));
+        }
+        final CsvIngest ingest = CsvIngest.builder().threads(4).memoryBudget(1000).build();
+        for (int i = 0; i < 10; i++) {
+            try (Stream<CsvRow> stream = ingest.stream(sources)) {
+                Assertions.assertEquals(5000L, stream.limit(5000).count());
+            }
+        }
+        try (Stream<CsvRow> stream = ingest.stream(new ArrayList<>())) {
+            Assertions.assertEquals(0L, stream.count());
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package io.github.alexswilliams.csv;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class CsvMetricsUnitTest {
+    private static final String CONTENTS = "id,name\r\n"
+            + "# a comment\n"
+            + "1,\"Smith, Bob\"\n"
+            + "2,\"two\nline\nfield\",\"and\nanother\"\n"
+            + "\n"
+            + "3,bad\"quote\n"
+            + "4,юникода\n";
+
+    @Test
+    public void testReaderIsCounted() throws IOException, CsvException {
+        final AtomicReference<CsvMetrics> finished = new AtomicReference<>();
+        final CsvMetrics metrics;
+        try (CsvReader csvReader = new CsvReader(new StringReader(CONTENTS))) {
+            metrics = csvReader.enableMetrics(finished::set);
+            // lexing resumes after the bad quote, so "quote" is read as a row of its own
+            Assertions.assertEquals(6, csvReader.readFile(true).size());
+        }
+        Assertions.assertSame(metrics, finished.get());
+        Assertions.assertTrue(metrics.isFinished());
+        Assertions.assertEquals(0L, metrics.bytesRead());
+        Assertions.assertEquals(CONTENTS.length(), metrics.charsRead());
+        Assertions.assertEquals(6L, metrics.rows());
+        Assertions.assertEquals(2L + 2L + 3L + 0L + 1L + 2L, metrics.fields());
+        Assertions.assertEquals(3L, metrics.quotedFields());
+        Assertions.assertEquals(2L, metrics.multilineFields());
+        Assertions.assertEquals(1L, metrics.commentLines());
+        Assertions.assertEquals(1L, metrics.errors());
+        Assertions.assertEquals(1L, metrics.errors(CsvErrorCode.UNEXPECTED_QUOTE));
+        // newlines in quoted fields are dropped
+        Assertions.assertEquals("twolinefield".length(), metrics.maxFieldLength());
+        Assertions.assertEquals("2,\"two\nline\nfield\",\"and\nanother\"\n".length(), metrics.maxRowLength());
+        Assertions.assertTrue(metrics.elapsedNanos() >= metrics.readNanos());
+    }
+
+    @Test
+    public void testReadersAreAggregated() throws IOException, CsvException {
+        final Path file = Files.createTempFile("csv-reader-", ".csv");
+        Files.write(file, CONTENTS.getBytes(StandardCharsets.UTF_8));
+        final CsvMetricsAggregate aggregate = new CsvMetricsAggregate();
+        try {
+            for (int i = 0; i < 3; i++) {
+                try (CsvCursor cursor = CsvCursor.open(file)) {
+                    cursor.setErrorSink(new CsvErrorLog());
+                    final CsvMetrics metrics = cursor.enableMetrics(aggregate);
+                    while (cursor.next()) {
+                        Assertions.assertFalse(metrics.isFinished());
+                    }
+                    Assertions.assertEquals(Files.size(file), metrics.bytesRead());
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+        final CsvMetrics total = aggregate.snapshot();
+        Assertions.assertEquals(3L, aggregate.readers());
+        Assertions.assertEquals(18L, total.rows());
+        Assertions.assertEquals(3L, total.errors());
+        Assertions.assertEquals(3L * CONTENTS.getBytes(StandardCharsets.UTF_8).length, total.bytesRead());
+        Assertions.assertEquals("2,\"two\nline\nfield\",\"and\nanother\"\n".length(), total.maxRowLength());
+    }
+
+    @Test
+    public void testReadersClosedEarlyAreReported() throws IOException, CsvException {
+        final List<CsvMetrics> reported = new ArrayList<>();
+        try (CsvReader csvReader = new CsvReader(new StringReader(CONTENTS))) {
+            csvReader.enableMetrics(reported::add);
+            Assertions.assertEquals(Arrays.asList("id", "name"), csvReader.streamFile(false).findFirst().orElse(null));
+            Assertions.assertTrue(reported.isEmpty());
+        }
+        Assertions.assertEquals(1, reported.size());
+        Assertions.assertFalse(reported.get(0).isFinished());
+        Assertions.assertTrue(reported.get(0).rows() >= 1L);
+
+        // one that reaches the end is not reported again when closed
+        try (CsvReader csvReader = new CsvReader(new StringReader(CONTENTS))) {
+            csvReader.enableMetrics(reported::add);
+            csvReader.readFile(true);
+        }
+        Assertions.assertEquals(2, reported.size());
+        Assertions.assertTrue(reported.get(1).isFinished());
+    }
+
+    @Test
+    public void testCursorsClosedEarlyAreAggregated() throws IOException, CsvException {
+        final Path file = Files.createTempFile("csv-reader-", ".csv");
+        Files.write(file, CONTENTS.getBytes(StandardCharsets.UTF_8));
+        final CsvMetricsAggregate aggregate = new CsvMetricsAggregate();
+        try {
+            for (int i = 0; i < 3; i++) {
+                try (CsvCursor cursor = CsvCursor.open(file)) {
+                    final CsvMetrics metrics = cursor.enableMetrics(aggregate);
+                    Assertions.assertTrue(cursor.next());
+                    Assertions.assertTrue(cursor.next());
+                    Assertions.assertFalse(metrics.isFinished());
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+        Assertions.assertEquals(3L, aggregate.readers());
+        Assertions.assertEquals(6L, aggregate.snapshot().rows());
+    }
+
+    @Test
+    public void testSnapshotsDoNotChange() throws IOException, CsvException {
+        try (CsvReader csvReader = new CsvReader(new StringReader("a\nb\nc\n"))) {
+            final CsvCursor cursor = csvReader.cursor();
+            final CsvMetrics metrics = cursor.enableMetrics(CsvMetricsListener.NONE);
+            Assertions.assertTrue(cursor.next());
+            final CsvMetrics snapshot = metrics.snapshot();
+            Assertions.assertTrue(cursor.next());
+            Assertions.assertEquals(1L, snapshot.rows());
+            Assertions.assertEquals(2L, metrics.rows());
+        }
+    }
+
+    @Test
+    public void testFlightRecorderListenerIsAvailableFromJava11() throws IOException, CsvException {
+        final CsvMetricsListener listener;
+        try {
+            listener = CsvMetricsListener.flightRecorder();
+        } catch (UnsupportedOperationException e) {
+            Assertions.assertTrue(System.getProperty("java.specification.version").startsWith("1."));
+            return;
+        }
+        try (CsvReader csvReader = new CsvReader(new StringReader(CONTENTS))) {
+            csvReader.enableMetrics(listener);
+            csvReader.readFile(true);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class CsvPushParserUnitTest {
+    private static final String CSV = "id,name,notes\r\n"
+            + "1,\"Smith, John\",\"said \"\"hi\"\"\nand left\"\n"
+            + "\n"
+            + "2,юникода,𐜢\n"
+            + "3,last,no line break";
+
+    @NotNull
+    private static List<String> expected(@NotNull final String csv) throws IOException, CsvException {
+        final List<String> rows = new ArrayList<>();
+        try (CsvCursor cursor = new CsvReader(new StringReader(csv), CsvDialect.RFC_4180).cursor()) {
+            while (cursor.next()) {
+                rows.add(cursor.lineNumber() + " " + cursor.row());
+            }
+        }
+        return rows;
+    }
+
+    @Test
+    public void testRowsAreTheSameHoweverTheInputIsSplit() throws IOException, CsvException {
+        final List<String> expected = expected(CSV);
+        final byte[] bytes = CSV.getBytes(StandardCharsets.UTF_8);
+        final char[] chars = CSV.toCharArray();
+        final Random random = new Random(23L);
+        for (int round = 0; round < 500; round++) {
+            final List<String> rows = new ArrayList<>();
+            final boolean utf8 = round % 2 == 0;
+            final CsvPushParser parser = utf8
+                    ? CsvPushParser.forBytes(CsvDialect.RFC_4180, (fields, line) -> rows.add(line + " " + fields))
+                    : CsvPushParser.forChars(CsvDialect.RFC_4180, (fields, line) -> rows.add(line + " " + fields));
+            final int length = utf8 ? bytes.length : chars.length;
+            int fed = 0;
+            while (fed < length) {
+                final int n = Math.min(length - fed, round < 100 ? 1 : random.nextInt(20));
+                if (!utf8) {
+                    parser.feed(chars, fed, n);
+                } else if (round % 4 == 0) {
+                    parser.feed(Arrays.copyOfRange(bytes, fed, fed + n));
+                } else {
+                    final ByteBuffer buffer = ByteBuffer.allocateDirect(n);
+                    buffer.put(bytes, fed, n).flip();
+                    parser.feed(buffer);
+                    Assertions.assertFalse(buffer.hasRemaining());
+                }
+                fed += n;
+            }
+            Assertions.assertEquals(expected.subList(0, 4), rows);
+            parser.finish();
+            parser.finish();
+            Assertions.assertEquals(expected, rows);
+        }
+    }
+
+    @Test
+    public void testRowsAreHandedOverAsSoonAsTheyEnd() throws CsvException {
+        final List<List<String>> rows = new ArrayList<>();
+        final CsvPushParser parser = CsvPushParser.forBytes(CsvDialect.RFC_4180, (fields, line) -> rows.add(fields));
+        final byte[] bytes = "a,\"b\nc\"\nd\n".getBytes(StandardCharsets.UTF_8);
+        parser.feed(bytes, 0, 5);
+        Assertions.assertEquals(Collections.emptyList(), rows);
+        parser.feed(bytes, 5, 3);
+        Assertions.assertEquals(Collections.singletonList(Arrays.asList("a", "b\nc")), rows);
+        parser.feed(bytes, 8, 2);
+        Assertions.assertEquals(Arrays.asList(Arrays.asList("a", "b\nc"), Collections.singletonList("d")), rows);
+
+        // the two bytes of é arrive separately
+        final byte[] accented = "é\n".getBytes(StandardCharsets.UTF_8);
+        parser.feed(accented, 0, 1);
+        parser.feed(accented, 1, 2);
+        Assertions.assertEquals(Collections.singletonList("é"), rows.get(2));
+    }
+
+    @Test
+    public void testBadRowsThrowOrAreSkipped() throws CsvException {
+        final char[] chars = "a\n\"b\"c\nd\n\"e".toCharArray();
+        final List<List<String>> rows = new ArrayList<>();
+        final CsvPushParser parser = CsvPushParser.forChars(CsvDialect.RFC_4180, (fields, line) -> rows.add(fields));
+        Assertions.assertThrows(CsvException.class, () -> parser.feed(chars, 0, 9));
+        Assertions.assertEquals(1, rows.size());
+        parser.feed(chars, 9, 2);
+        Assertions.assertEquals(Arrays.asList(Collections.singletonList("a"), Collections.emptyList(),
+                Collections.singletonList("d")), rows);
+        Assertions.assertThrows(CsvException.class, parser::finish);
+        Assertions.assertThrows(IllegalStateException.class, () -> parser.feed(chars));
+        Assertions.assertThrows(IllegalStateException.class, () -> parser.feed(new byte[1]));
+
+        rows.clear();
+        final CsvPushParser skipping = CsvPushParser.forChars(CsvDialect.RFC_4180, (fields, line) -> rows.add(fields))
+                .skipBadLines(true);
+        skipping.feed(chars);
+        skipping.finish();
+        Assertions.assertEquals(3, rows.size());
+    }
+}
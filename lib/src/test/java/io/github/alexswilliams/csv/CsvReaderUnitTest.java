@@ -9,6 +9,9 @@ import org.junit.jupiter.api.TestFactory;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Stream;
 
@@ -32,19 +35,14 @@ public class CsvReaderUnitTest {
         }
     }
 
-    @SafeVarargs
-    private final <T> List<T> list(T... elements) {
-        return asList(elements);
-    }
-
     @TestFactory
     public Stream<DynamicTest> regressions() {
         return Stream.of(
-                new Assertion("A name can have a quoted substring", "\"bob \"\"wonderful\"\" smith\"", list(list("bob \"wonderful\" smith"))),
+                new Assertion("A name can have a quoted substring", "\"bob \"\"wonderful\"\" smith\"", asList(asList("bob \"wonderful\" smith"))),
                 new Assertion("A mix of quotes and commas", "0,0,N,\"\"\"AAAAAAAAAA\"\": BB BB BB 'ABCDEFG QWEIR', 1234-5678\"\n",
-                        list(list("0", "0", "N", "\"AAAAAAAAAA\": BB BB BB 'ABCDEFG QWEIR', 1234-5678"))),
+                        asList(asList("0", "0", "N", "\"AAAAAAAAAA\": BB BB BB 'ABCDEFG QWEIR', 1234-5678"))),
                 new Assertion("Long input", "333333333,xxxxx,xxxxx@yyy,AAAA,XXXXX,XXX,false,false,false,X,W,XXX,N,aaaaaaaaa,11-XXX-XX,11-XXX-XX,1,1,XXX,1,11/11/1111,11/11/1111,11/11/1111,11/11/1111,0,0,N,\"\"\"NNNNNNNNNNNN AMBNDJ\"\": AMAMAMMAMAMA 'QPQPQPQPQP', 1234-5678\"\n",
-                        list(list("333333333", "xxxxx", "xxxxx@yyy", "AAAA", "XXXXX", "XXX", "false", "false", "false", "X", "W", "XXX", "N", "aaaaaaaaa", "11-XXX-XX", "11-XXX-XX", "1", "1", "XXX", "1", "11/11/1111", "11/11/1111", "11/11/1111", "11/11/1111", "0", "0", "N", "\"NNNNNNNNNNNN AMBNDJ\": AMAMAMMAMAMA 'QPQPQPQPQP', 1234-5678")))
+                        asList(asList("333333333", "xxxxx", "xxxxx@yyy", "AAAA", "XXXXX", "XXX", "false", "false", "false", "X", "W", "XXX", "N", "aaaaaaaaa", "11-XXX-XX", "11-XXX-XX", "1", "1", "XXX", "1", "11/11/1111", "11/11/1111", "11/11/1111", "11/11/1111", "0", "0", "N", "\"NNNNNNNNNNNN AMBNDJ\": AMAMAMMAMAMA 'QPQPQPQPQP', 1234-5678")))
 
 
         ).map(it -> DynamicTest.dynamicTest(it.displayName, () -> {
@@ -56,94 +54,98 @@ public class CsvReaderUnitTest {
         }));
     }
 
-    @TestFactory
-    public Stream<DynamicTest> scenarios() {
+    private Stream<Assertion> scenarioAssertions() {
         return Stream.of(
                 // Single-line Base cases
-                new Assertion("Empty string returns []", "", list()),
-                new Assertion("Single value returned as-is", "Cell 1", list(list("Cell 1"))),
-                new Assertion("Multiple values returned as-is", "Cell 1,Cell 2", list(list("Cell 1", "Cell 2"))),
+                new Assertion("Empty string returns []", "", asList()),
+                new Assertion("Single value returned as-is", "Cell 1", asList(asList("Cell 1"))),
+                new Assertion("Multiple values returned as-is", "Cell 1,Cell 2", asList(asList("Cell 1", "Cell 2"))),
 
                 // UTF-8
-                new Assertion("UTF-8 value is returned as-is", "Юнікод", list(list("Юнікод"))),
-                new Assertion("UTF-8 runes containing 0x2c (comma) do not need quoting", "x\u042cx", list(list("xЬx"))),
-                new Assertion("UTF-8 runes containing 0x22 (\") do not need quoting", "x\u0422x", list(list("xТx"))),
-                new Assertion("UTF-8 runes containing 0x0a (\\n) do not need quoting", "x\u040ax", list(list("xЊx"))),
-                new Assertion("UTF-8 runes containing 0x0d (\\r) do not need quoting", "x\u040dx", list(list("xЍx"))),
-                new Assertion("UTF-8 rounded quotation marks (“”) do not act as 0x22", "“Cell 1,Cell 2”", list(list("“Cell 1", "Cell 2”"))),
+                new Assertion("UTF-8 value is returned as-is", "Юнікод", asList(asList("Юнікод"))),
+                new Assertion("UTF-8 runes containing 0x2c (comma) do not need quoting", "x\u042cx", asList(asList("xЬx"))),
+                new Assertion("UTF-8 runes containing 0x22 (\") do not need quoting", "x\u0422x", asList(asList("xТx"))),
+                new Assertion("UTF-8 runes containing 0x0a (\\n) do not need quoting", "x\u040ax", asList(asList("xЊx"))),
+                new Assertion("UTF-8 runes containing 0x0d (\\r) do not need quoting", "x\u040dx", asList(asList("xЍx"))),
+                new Assertion("UTF-8 rounded quotation marks (“”) do not act as 0x22", "“Cell 1,Cell 2”", asList(asList("“Cell 1", "Cell 2”"))),
 
                 // Spaces
-                new Assertion("No space trimming is applied after comma", "Cell 1, Cell 2", list(list("Cell 1", " Cell 2"))),
-                new Assertion("No space trimming is applied before comma", "Cell 1 ,Cell 2", list(list("Cell 1 ", "Cell 2"))),
-                new Assertion("No space trimming is applied at start", " Cell 1,Cell 2", list(list(" Cell 1", "Cell 2"))),
-                new Assertion("No space trimming is applied at end", "Cell 1,Cell 2 ", list(list("Cell 1", "Cell 2 "))),
+                new Assertion("No space trimming is applied after comma", "Cell 1, Cell 2", asList(asList("Cell 1", " Cell 2"))),
+                new Assertion("No space trimming is applied before comma", "Cell 1 ,Cell 2", asList(asList("Cell 1 ", "Cell 2"))),
+                new Assertion("No space trimming is applied at start", " Cell 1,Cell 2", asList(asList(" Cell 1", "Cell 2"))),
+                new Assertion("No space trimming is applied at end", "Cell 1,Cell 2 ", asList(asList("Cell 1", "Cell 2 "))),
 
                 // Blank cells
-                new Assertion("Empty cell at start is included in line", ",Cell 2", list(list("", "Cell 2"))),
-                new Assertion("Empty cell at end is included in line", "Cell 1,", list(list("Cell 1", ""))),
-                new Assertion("Empty cell in middle is included in line", "Cell 1,,Cell 3", list(list("Cell 1", "", "Cell 3"))),
+                new Assertion("Empty cell at start is included in line", ",Cell 2", asList(asList("", "Cell 2"))),
+                new Assertion("Empty cell at end is included in line", "Cell 1,", asList(asList("Cell 1", ""))),
+                new Assertion("Empty cell in middle is included in line", "Cell 1,,Cell 3", asList(asList("Cell 1", "", "Cell 3"))),
 
                 // Blank lines
-                new Assertion("Just '\\n' returns [[]]", "\n", list(list())),
-                new Assertion("Just '\\r\\n' returns [[]]", "\r\n", list(list())),
-                new Assertion("Blank trailing line is omitted (LF)", "Cell 1\n", list(list("Cell 1"))),
-                new Assertion("Blank trailing line is omitted (CRLF)", "Cell 1\r\n", list(list("Cell 1"))),
-                new Assertion("Blank leading line is included (LF)", "\nCell 1", list(list(), list("Cell 1"))),
-                new Assertion("Blank leading line is included (CRLF)", "\r\nCell 1", list(list(), list("Cell 1"))),
-                new Assertion("Blank middle line is an empty list (LF)", "Cell 1\n\nCell 2", list(list("Cell 1"), list(), list("Cell 2"))),
-                new Assertion("Blank middle line is an empty list (CRLF)", "Cell 1\r\n\r\nCell 2", list(list("Cell 1"), list(), list("Cell 2"))),
+                new Assertion("Just '\\n' returns [[]]", "\n", asList(asList())),
+                new Assertion("Just '\\r\\n' returns [[]]", "\r\n", asList(asList())),
+                new Assertion("Blank trailing line is omitted (LF)", "Cell 1\n", asList(asList("Cell 1"))),
+                new Assertion("Blank trailing line is omitted (CRLF)", "Cell 1\r\n", asList(asList("Cell 1"))),
+                new Assertion("Blank leading line is included (LF)", "\nCell 1", asList(asList(), asList("Cell 1"))),
+                new Assertion("Blank leading line is included (CRLF)", "\r\nCell 1", asList(asList(), asList("Cell 1"))),
+                new Assertion("Blank middle line is an empty list (LF)", "Cell 1\n\nCell 2", asList(asList("Cell 1"), asList(), asList("Cell 2"))),
+                new Assertion("Blank middle line is an empty list (CRLF)", "Cell 1\r\n\r\nCell 2", asList(asList("Cell 1"), asList(), asList("Cell 2"))),
 
                 // Simple Quoting
-                new Assertion("Quoted values are unquoted (single)", "\"Cell 1\"", list(list("Cell 1"))),
-                new Assertion("Quoted values are unquoted (multiple)", "\"Cell 1\",\"Cell 2\"", list(list("Cell 1", "Cell 2"))),
-                new Assertion("Quoted values are unquoted (mixed 1)", "\"Cell 1\",Cell 2", list(list("Cell 1", "Cell 2"))),
-                new Assertion("Quoted values are unquoted (mixed 2)", "Cell 1,\"Cell 2\"", list(list("Cell 1", "Cell 2"))),
+                new Assertion("Quoted values are unquoted (single)", "\"Cell 1\"", asList(asList("Cell 1"))),
+                new Assertion("Quoted values are unquoted (multiple)", "\"Cell 1\",\"Cell 2\"", asList(asList("Cell 1", "Cell 2"))),
+                new Assertion("Quoted values are unquoted (mixed 1)", "\"Cell 1\",Cell 2", asList(asList("Cell 1", "Cell 2"))),
+                new Assertion("Quoted values are unquoted (mixed 2)", "Cell 1,\"Cell 2\"", asList(asList("Cell 1", "Cell 2"))),
 
                 // Single-line Comma Quoting
-                new Assertion("Values with commas are de-quoted (Alone)", "\"Cell 1A,1B\"", list(list("Cell 1A,1B"))),
-                new Assertion("Values with commas are de-quoted (Leading)", "\"Cell 1A,1B\",Cell 2", list(list("Cell 1A,1B", "Cell 2"))),
-                new Assertion("Values with commas are de-quoted (Trailing)", "Cell 0,\"Cell 1A,1B\"", list(list("Cell 0", "Cell 1A,1B"))),
-                new Assertion("Values with commas are de-quoted (Mixes)", "Cell 0,\"Cell 1A,1B\",Cell 2", list(list("Cell 0", "Cell 1A,1B", "Cell 2"))),
-                new Assertion("Values starting with commas are de-quoted", "\",Cell\"", list(list(",Cell"))),
-                new Assertion("Values ending with commas are de-quoted", "\"Cell,\"", list(list("Cell,"))),
+                new Assertion("Values with commas are de-quoted (Alone)", "\"Cell 1A,1B\"", asList(asList("Cell 1A,1B"))),
+                new Assertion("Values with commas are de-quoted (Leading)", "\"Cell 1A,1B\",Cell 2", asList(asList("Cell 1A,1B", "Cell 2"))),
+                new Assertion("Values with commas are de-quoted (Trailing)", "Cell 0,\"Cell 1A,1B\"", asList(asList("Cell 0", "Cell 1A,1B"))),
+                new Assertion("Values with commas are de-quoted (Mixes)", "Cell 0,\"Cell 1A,1B\",Cell 2", asList(asList("Cell 0", "Cell 1A,1B", "Cell 2"))),
+                new Assertion("Values starting with commas are de-quoted", "\",Cell\"", asList(asList(",Cell"))),
+                new Assertion("Values ending with commas are de-quoted", "\"Cell,\"", asList(asList("Cell,"))),
 
                 // Single-line " Escaping
-                new Assertion("Quoted values escaping quotes are unescaped", "\"A \"\" B\"", list(list("A \" B"))),
-                new Assertion("Quoted values starting with escaped quotes are unescaped", "\"\"\" B\"", list(list("\" B"))),
-                new Assertion("Quoted values ending with escaped quotes are unescaped", "\"A \"\"\"", list(list("A \""))),
-                new Assertion("A value can contain quoted text", "\"Bob \"\"The Cheese\"\" Windsor\"", list(list("Bob \"The Cheese\" Windsor"))),
-                new Assertion("A value can be just one escaped quote", "\"\"\"\"", list(list("\""))),
-                // bug: new Assertion("A value can be just two escaped quotes", "\"\"\"\"\"\"", list(list("\"\""))),
-                // bug: new Assertion("Quotes values that wrap their values in quotes are unescaped", "\"\"\"Cell\"\"\"", list(list("\"Cell\""))),
+                new Assertion("Quoted values escaping quotes are unescaped", "\"A \"\" B\"", asList(asList("A \" B"))),
+                new Assertion("Quoted values starting with escaped quotes are unescaped", "\"\"\" B\"", asList(asList("\" B"))),
+                new Assertion("Quoted values ending with escaped quotes are unescaped", "\"A \"\"\"", asList(asList("A \""))),
+                new Assertion("A value can contain quoted text", "\"Bob \"\"The Cheese\"\" Windsor\"", asList(asList("Bob \"The Cheese\" Windsor"))),
+                new Assertion("A value can be just one escaped quote", "\"\"\"\"", asList(asList("\""))),
+                new Assertion("A value can be just two escaped quotes", "\"\"\"\"\"\"", asList(asList("\"\""))),
+                new Assertion("Quotes values that wrap their values in quotes are unescaped", "\"\"\"Cell\"\"\"", asList(asList("\"Cell\""))),
 
                 // Multi-line Escaping
                 /* all bugs:
-                new Assertion("Values with LF are unescaped", "\"A\nB\"", list(list("A\nB"))),
-                new Assertion("Values with CRLF are unescaped", "\"A\r\nB\"", list(list("A\r\nB"))),
-                new Assertion("Quoted LF can be the first field", "\"A\nB\",C", list(list("A\nB", "C"))),
-                new Assertion("Quoted LF can be the last field", "X,\"A\nB\"", list(list("X", "A\nB"))),
-                new Assertion("Quoted LF can be a middle field", "X,\"A\nB\",C", list(list("X", "A\nB", "C"))),
-                new Assertion("Quoted CRLF can be the first field", "\"A\r\nB\",C", list(list("A\r\nB", "C"))),
-                new Assertion("Quoted CRLF can be the last field", "X,\"A\r\nB\"", list(list("X", "A\r\nB"))),
-                new Assertion("Quoted CRLF can be a middle field", "X,\"A\r\nB\",C", list(list("X", "A\r\nB", "C"))),
-                new Assertion("LF can start the field", "\"\r\nB\"", list(list("\r\nB"))),
-                new Assertion("LF can end the field", "\"A\r\n\"", list(list("A\r\n"))), */
+                new Assertion("Values with LF are unescaped", "\"A\nB\"", asList(asList("A\nB"))),
+                new Assertion("Values with CRLF are unescaped", "\"A\r\nB\"", asList(asList("A\r\nB"))),
+                new Assertion("Quoted LF can be the first field", "\"A\nB\",C", asList(asList("A\nB", "C"))),
+                new Assertion("Quoted LF can be the last field", "X,\"A\nB\"", asList(asList("X", "A\nB"))),
+                new Assertion("Quoted LF can be a middle field", "X,\"A\nB\",C", asList(asList("X", "A\nB", "C"))),
+                new Assertion("Quoted CRLF can be the first field", "\"A\r\nB\",C", asList(asList("A\r\nB", "C"))),
+                new Assertion("Quoted CRLF can be the last field", "X,\"A\r\nB\"", asList(asList("X", "A\r\nB"))),
+                new Assertion("Quoted CRLF can be a middle field", "X,\"A\r\nB\",C", asList(asList("X", "A\r\nB", "C"))),
+                new Assertion("LF can start the field", "\"\r\nB\"", asList(asList("\r\nB"))),
+                new Assertion("LF can end the field", "\"A\r\n\"", asList(asList("A\r\n"))), */
 
                 // Comments
-                new Assertion("The whole document can be a comment", "#", list()),
-                new Assertion("The whole document can be a comment (plus newline)", "#\n", list()),
-                new Assertion("Commas after comment do not create new fields (doc start)", "#, a, b", list()),
-                new Assertion("Commas after comment do not create new fields (line start)", "cell 1\n#, a, b", list(list("cell 1"))),
-                new Assertion("Whitespace before comment is significant", "cell 1 # a, b", list(list("cell 1 "))),
-                new Assertion("Whitespace before comment and after comma creates a blank field", "cell 1, # a, b", list(list("cell 1", " "))),
-                // bug: new Assertion("Quoted values can contain comment character at start", "\"# cell\"", list(list("# cell"))),
-                // bug: new Assertion("Quoted values can contain comment character at end", "\"cell #\"", list(list("cell #"))),
-                // bug: new Assertion("Quoted values can contain comment character in middle", "\"cell # cell\"", list(list("cell # cell"))),
-                // bug: new Assertion("Comment character can start the next line of a multiline quoted value", "\"line 1\n# line 2\"", list(list("line 1\n# line 2"))),
-                // bug: new Assertion("Comment character cab appear on the next line of a multiline quoted value", "\"line 1\nline 2 #\"", list(list("line 1\nline 2 #"))),
+                new Assertion("The whole document can be a comment", "#", asList()),
+                new Assertion("The whole document can be a comment (plus newline)", "#\n", asList()),
+                new Assertion("Commas after comment do not create new fields (doc start)", "#, a, b", asList()),
+                new Assertion("Commas after comment do not create new fields (line start)", "cell 1\n#, a, b", asList(asList("cell 1"))),
+                new Assertion("Whitespace before comment is significant", "cell 1 # a, b", asList(asList("cell 1 "))),
+                new Assertion("Whitespace before comment and after comma creates a blank field", "cell 1, # a, b", asList(asList("cell 1", " "))),
+                // bug: new Assertion("Quoted values can contain comment character at start", "\"# cell\"", asList(asList("# cell"))),
+                // bug: new Assertion("Quoted values can contain comment character at end", "\"cell #\"", asList(asList("cell #"))),
+                // bug: new Assertion("Quoted values can contain comment character in middle", "\"cell # cell\"", asList(asList("cell # cell"))),
+                // bug: new Assertion("Comment character can start the next line of a multiline quoted value", "\"line 1\n# line 2\"", asList(asList("line 1\n# line 2"))),
+                // bug: new Assertion("Comment character cab appear on the next line of a multiline quoted value", "\"line 1\nline 2 #\"", asList(asList("line 1\nline 2 #"))),
 
                 null
-        ).filter(Objects::nonNull).map(it -> DynamicTest.dynamicTest(it.displayName, () -> {
+        ).filter(Objects::nonNull);
+    }
+
+    @TestFactory
+    public Stream<DynamicTest> scenarios() {
+        return scenarioAssertions().map(it -> DynamicTest.dynamicTest(it.displayName, () -> {
             final List<List<String>> output;
             try (StringReader stringReader = new StringReader(it.input); CsvReader csvReader = new CsvReader(stringReader)) {
                 output = csvReader.readFile(false);
@@ -152,6 +154,19 @@ public class CsvReaderUnitTest {
         }));
     }
 
+    @TestFactory
+    public Stream<DynamicTest> scenariosFromMappedFile() {
+        return scenarioAssertions().map(it -> DynamicTest.dynamicTest(it.displayName, () -> {
+            final Path file = Files.createTempFile("csv-reader-", ".csv");
+            try {
+                Files.write(file, it.input.getBytes(StandardCharsets.UTF_8));
+                Assertions.assertEquals(it.expectedOutput, CsvReader.readFile(file, false));
+            } finally {
+                Files.delete(file);
+            }
+        }));
+    }
+
     @Test
     public void testReadFile() throws IOException, CsvException {
         final StringBuilder stringBuilder = initStrings();
@@ -284,7 +299,7 @@ public class CsvReaderUnitTest {
             Assertions.assertNotNull(line14, "List was null");
             Assertions.assertEquals(line14.size(), 2, "Wrong number of elements");
             Assertions.assertNotNull(line14.get(0), "String was null");
-            Assertions.assertEquals(line14.get(0), "aꜬbꜢd\uD801\uDF22e∛f", "Quoted unicode characters caused problems.");
+            Assertions.assertEquals(line14.get(0), "\"aꜬbꜢd\uD801\uDF22e∛f\"", "Quoted unicode characters caused problems.");
 
             final List<String> line15 = csvReader.parseLine();
             Assertions.assertNotNull(line15, "List was null");
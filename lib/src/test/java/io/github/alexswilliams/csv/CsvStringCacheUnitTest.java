@@ -0,0 +1,109 @@
+package io.github.alexswilliams.csv;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Random;
+
+public class CsvStringCacheUnitTest {
+
+    @Test
+    public void testRepeatedValuesAreTheSameInstance() throws IOException, CsvException {
+        final CsvStringCache cache = new CsvStringCache();
+        try (CsvReader csvReader = new CsvReader(new StringReader("1,GB,x\n2,FR,x\n3,GB,x\n4,\"GB\",x\n"))) {
+            csvReader.intern(cache, 1);
+            final List<List<String>> rows = csvReader.readFile(false);
+            Assertions.assertSame(rows.get(0).get(1), rows.get(2).get(1));
+            Assertions.assertSame(rows.get(0).get(1), rows.get(3).get(1));
+            Assertions.assertNotSame(rows.get(0).get(2), rows.get(1).get(2));
+            Assertions.assertEquals("FR", rows.get(1).get(1));
+        }
+        Assertions.assertEquals(2L, cache.hits());
+        Assertions.assertEquals(2L, cache.misses());
+        Assertions.assertEquals(0L, cache.evictions());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedOfAPairIsEvicted() {
+        final CsvStringCache cache = new CsvStringCache(2, 8);
+        Assertions.assertEquals(2, cache.capacity());
+        final char[] buf = "abc".toCharArray();
+        final String a = cache.get(buf, 0, 1);
+        final String b = cache.get(buf, 1, 1);
+        Assertions.assertSame(a, cache.get(buf, 0, 1));
+        final String c = cache.get(buf, 2, 1);
+        Assertions.assertEquals(1L, cache.evictions());
+        Assertions.assertSame(a, cache.get(buf, 0, 1));
+        Assertions.assertSame(c, cache.get(buf, 2, 1));
+        Assertions.assertNotSame(b, cache.get(buf, 1, 1));
+        Assertions.assertEquals(3L, cache.hits());
+        Assertions.assertEquals(4L, cache.misses());
+
+        cache.clear();
+        Assertions.assertEquals(0L, cache.hits());
+        Assertions.assertNotSame(a, cache.get(buf, 0, 1));
+    }
+
+    @Test
+    public void testLongValuesAreNotCached() {
+        final CsvStringCache cache = new CsvStringCache(16, 2);
+        final char[] buf = "abcabc".toCharArray();
+        Assertions.assertNotSame(cache.get(buf, 0, 3), cache.get(buf, 3, 3));
+        Assertions.assertEquals(0L, cache.hits() + cache.misses());
+        Assertions.assertEquals("", cache.get(buf, 0, 0));
+        Assertions.assertSame(cache.get(buf, 0, 0), cache.get(buf, 3, 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new CsvStringCache(0, 2));
+    }
+
+    @Test
+    public void testCachedColumnsFollowProjection() throws IOException, CsvException {
+        final CsvStringCache cache = new CsvStringCache();
+        try (CsvReader csvReader = new CsvReader(new StringReader("id,country,status\n1,GB,OK\n2,GB,FAIL\n"))) {
+            final CsvCursor cursor = csvReader.cursor();
+            cursor.readHeader();
+            cursor.intern(cache, "status");
+            cursor.select("status", "id");
+            Assertions.assertTrue(cursor.next());
+            final String status = cursor.fieldString(0);
+            Assertions.assertEquals("OK", status);
+            Assertions.assertSame(status, cursor.fieldString(0));
+            Assertions.assertNotSame(cursor.fieldString(1), cursor.fieldString(1));
+            Assertions.assertTrue(cursor.next());
+            Assertions.assertEquals("FAIL", cursor.row().get(0));
+            Assertions.assertSame(cursor.row().get(0), cursor.fieldString(0));
+
+            cursor.intern(null, "status");
+            Assertions.assertNotSame(cursor.fieldString(0), cursor.fieldString(0));
+        }
+    }
+
+    @Test
+    public void testCachedRowsAreUnchanged() throws IOException, CsvException {
+        final Random random = new Random(1L);
+        final String[] values = {"", "a", "GB", "FR", "é", "multi\nline", "x,y", "z\"z"};
+        final StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            for (int c = 0; c < 3; c++) {
+                if (c > 0) stringBuilder.append(',');
+                final String value = values[random.nextInt(values.length)];
+                stringBuilder.append('"').append(value.replace("\"", "\"\"")).append('"');
+            }
+            stringBuilder.append('\n');
+        }
+        final String csv = stringBuilder.toString();
+        final List<List<String>> expected;
+        try (CsvReader csvReader = new CsvReader(new StringReader(csv))) {
+            expected = csvReader.readFile(false);
+        }
+        final CsvStringCache cache = new CsvStringCache(4, 3);
+        try (CsvReader csvReader = new CsvReader(new StringReader(csv))) {
+            csvReader.intern(cache, 0, 2, 7);
+            Assertions.assertEquals(expected, csvReader.readFile(false));
+        }
+        Assertions.assertTrue(cache.hits() > 0);
+        Assertions.assertTrue(cache.evictions() > 0);
+    }
+}
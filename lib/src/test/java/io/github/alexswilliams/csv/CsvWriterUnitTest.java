@@ -0,0 +1,215 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class CsvWriterUnitTest {
+    private static final CsvDialect[] DIALECTS = {
+            CsvDialect.DEFAULT,
+            CsvDialect.RFC_4180,
+            CsvDialect.TSV,
+            CsvDialect.builder().delimiter(';').quote('\'').escape('\\').build(),
+            CsvDialect.builder().commentPrefix('#').trimWhitespace(true).build(),
+            CsvDialect.builder().bareCarriageReturnEndsLine(true).build(),
+            CsvDialect.builder().delimiter('\t').noQuote().escape('\\').commentPrefix('#').build(),
+    };
+
+    @NotNull
+    private static List<List<String>> generate(@NotNull final Random random, final boolean anything) {
+        final String[] parts = anything
+                ? new String[]{"", "a", " ", "\t", ",", ";", "\"", "'", "\\", "#", "\n", "\r", "\r\n", "юникода", "𐜢"}
+                : new String[]{"", "a", " ", ",", "\"", "юникода", "𐜢"};
+        final List<List<String>> rows = new ArrayList<>();
+        for (int row = 0; row < 200; row++) {
+            final List<String> fields = new ArrayList<>();
+            for (int field = random.nextInt(5); field > 0; field--) {
+                final StringBuilder stringBuilder = new StringBuilder();
+                for (int part = random.nextInt(4); part > 0; part--) {
+                    stringBuilder.append(parts[random.nextInt(parts.length)]);
+                }
+                fields.add(stringBuilder.toString());
+            }
+            rows.add(fields);
+        }
+        return rows;
+    }
+
+    @NotNull
+    private static List<List<String>> read(@NotNull final String csv, @NotNull final CsvDialect dialect)
+            throws IOException, CsvException {
+        try (CsvReader csvReader = new CsvReader(new StringReader(csv), dialect)) {
+            return csvReader.readFile(false);
+        }
+    }
+
+    @Test
+    public void testEveryValueRoundTrips() throws IOException, CsvException {
+        final Random random = new Random(21L);
+        for (int round = 0; round < 50; round++) {
+            for (CsvDialect dialect : DIALECTS) {
+                final List<List<String>> rows = generate(random, true);
+                final StringWriter out = new StringWriter();
+                int written = 0;
+                final List<List<String>> expected = new ArrayList<>();
+                try (CsvWriter csvWriter = new CsvWriter(out, dialect)) {
+                    for (List<String> row : rows) {
+                        try {
+                            csvWriter.writeRow(row);
+                            expected.add(row);
+                        } catch (IllegalArgumentException e) {
+                            if (dialect == CsvDialect.DEFAULT) {
+                                // a comment or line break in some field; none of the row was written
+                                Assertions.assertTrue(row.stream().anyMatch(field -> field.contains("#")
+                                        || field.contains("\n") || field.contains("\r")), row.toString());
+                            } else {
+                                // a row of one empty field without quotes, which was dropped
+                                Assertions.assertEquals(dialect.quote, CsvDialect.NONE);
+                                csvWriter.endRow();
+                                expected.add(Collections.emptyList());
+                            }
+                        }
+                        written++;
+                    }
+                }
+                Assertions.assertEquals(rows.size(), written);
+                Assertions.assertEquals(expected, read(out.toString(), dialect), dialect + ": " + out);
+            }
+        }
+    }
+
+    @Test
+    public void testOnlyFieldsThatNeedItAreQuoted() throws IOException {
+        final StringWriter out = new StringWriter();
+        try (CsvWriter csvWriter = new CsvWriter(out, CsvDialect.RFC_4180)) {
+            csvWriter.writeRow("a", "b c", "", "d,e", "f\"g", "h\ni");
+            csvWriter.writeRow("");
+            csvWriter.writeRow();
+            csvWriter.writeField(Long.MIN_VALUE).writeField(0).writeField(-42).writeField(1.5e-7)
+                    .writeField(true).writeField("xyz", 1, 2).endRow();
+        }
+        Assertions.assertEquals("a,b c,,\"d,e\",\"f\"\"g\",\"h\ni\"\n\"\"\n\n-9223372036854775808,0,-42,1.5E-7,true,y\n",
+                out.toString());
+    }
+
+    @Test
+    public void testDefaultDialectRejectsWhatItCannotHold() throws IOException, CsvException {
+        final StringWriter out = new StringWriter();
+        try (CsvWriter csvWriter = new CsvWriter(out, CsvDialect.DEFAULT)) {
+            csvWriter.writeField("a");
+            Assertions.assertThrows(IllegalArgumentException.class, () -> csvWriter.writeField("#1"));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> csvWriter.writeField("b\nc"));
+            csvWriter.writeField("d,\"e\"").endRow();
+            final Random random = new Random(22L);
+            for (List<String> row : generate(random, false)) {
+                csvWriter.writeRow(row);
+            }
+        }
+        final List<List<String>> rows = read(out.toString(), CsvDialect.DEFAULT);
+        Assertions.assertEquals(Arrays.asList("a", "d,\"e\""), rows.get(0));
+        Assertions.assertEquals(generate(new Random(22L), false), rows.subList(1, rows.size()));
+    }
+
+    @Test
+    public void testDefaultWriterIsReadByDefaultReader() throws IOException, CsvException {
+        final List<List<String>> rows = generate(new Random(21L), false);
+        final StringWriter out = new StringWriter();
+        try (CsvWriter csvWriter = new CsvWriter(out)) {
+            csvWriter.writeRows(rows);
+            // a reader without a dialect would take these as a comment and drop the carriage return
+            Assertions.assertThrows(IllegalArgumentException.class, () -> csvWriter.writeRow("a", "#b"));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> csvWriter.writeRow("a", "b\rc"));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> csvWriter.writeRow("a", "\"b#c\r\""));
+        }
+        try (CsvReader csvReader = new CsvReader(new StringReader(out.toString()))) {
+            Assertions.assertEquals(rows, csvReader.readFile(false));
+        }
+    }
+
+    @Test
+    public void testRejectedRowIsDroppedWhole() throws IOException, CsvException {
+        final String longField = String.join("", Collections.nCopies(CsvWriter.DEFAULT_BUFFER_SIZE, "x"));
+        final StringWriter out = new StringWriter();
+        try (CsvWriter csvWriter = new CsvWriter(out, CsvDialect.DEFAULT)) {
+            csvWriter.writeRow("z");
+            Assertions.assertThrows(IllegalArgumentException.class, () -> csvWriter.writeRow("a", "#"));
+            csvWriter.writeRow("b");
+            Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> csvWriter.writeRow(Arrays.asList("c", "d", "e\nf")));
+            // the rows before are written out to make room for this one, which must still be dropped
+            Assertions.assertThrows(IllegalArgumentException.class, () -> csvWriter.writeRow(longField, "#"));
+            csvWriter.writeField("g");
+            Assertions.assertThrows(IllegalArgumentException.class, () -> csvWriter.writeRow("h", "#"));
+            csvWriter.writeRow("i");
+        }
+        Assertions.assertEquals("z\nb\ng,i\n", out.toString());
+        Assertions.assertEquals(Arrays.asList(Collections.singletonList("z"), Collections.singletonList("b"),
+                Arrays.asList("g", "i")), read(out.toString(), CsvDialect.DEFAULT));
+    }
+
+    @Test
+    public void testBytesAreUtf8() throws IOException {
+        final List<List<String>> rows = generate(new Random(23L), true);
+        final StringWriter chars = new StringWriter();
+        try (CsvWriter csvWriter = new CsvWriter(chars, CsvDialect.RFC_4180)) {
+            csvWriter.writeRows(rows);
+        }
+        final byte[] expected = chars.toString().getBytes(StandardCharsets.UTF_8);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (CsvWriter csvWriter = new CsvWriter(bytes, CsvDialect.RFC_4180)) {
+            csvWriter.writeRows(rows);
+        }
+        Assertions.assertArrayEquals(expected, bytes.toByteArray());
+
+        final Path file = Files.createTempFile("csv-reader-", ".csv");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            try (CsvWriter csvWriter = new CsvWriter(channel, CsvDialect.RFC_4180)) {
+                csvWriter.writeRows(rows);
+            }
+            Assertions.assertTrue(channel.isOpen());
+            Assertions.assertArrayEquals(expected, Files.readAllBytes(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testCursorRowsAreCopiedOut() throws IOException, CsvException {
+        final StringBuilder longField = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            longField.append(i % 10 == 0 ? "\"\"" : "x");
+        }
+        final String csv = "a,\"b,c\",юникода\n\n\"" + longField + "\",𐜢\n";
+        final Path file = Files.createTempFile("csv-reader-", ".csv");
+        try {
+            Files.write(file, csv.getBytes(StandardCharsets.UTF_8));
+            final StringWriter out = new StringWriter();
+            try (CsvCursor cursor = CsvCursor.open(file);
+                 CsvWriter csvWriter = new CsvWriter(out)) {
+                while (cursor.next()) {
+                    csvWriter.writeRow(cursor);
+                }
+            }
+            Assertions.assertEquals(read(csv, CsvDialect.RFC_4180), read(out.toString(), CsvDialect.RFC_4180));
+            Assertions.assertEquals(csv, out.toString());
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.util.Random;
+
+public class FieldParsersUnitTest {
+
+    @NotNull
+    private static CsvCursor cursorAtFirstRow(@NotNull final String contents) throws IOException, CsvException {
+        final CsvCursor cursor = new CsvReader(new StringReader(contents)).cursor();
+        Assertions.assertTrue(cursor.next());
+        return cursor;
+    }
+
+    @Test
+    public void testIntegers() throws IOException, CsvException {
+        final CsvCursor cursor = cursorAtFirstRow("0,-17,+42,2147483647,-2147483648,9223372036854775807,"
+                + "-9223372036854775808,\"123\"\n");
+        Assertions.assertEquals(0, cursor.intField(0));
+        Assertions.assertEquals(-17, cursor.intField(1));
+        Assertions.assertEquals(42, cursor.intField(2));
+        Assertions.assertEquals(Integer.MAX_VALUE, cursor.intField(3));
+        Assertions.assertEquals(Integer.MIN_VALUE, cursor.intField(4));
+        Assertions.assertEquals(Long.MAX_VALUE, cursor.longField(5));
+        Assertions.assertEquals(Long.MIN_VALUE, cursor.longField(6));
+        Assertions.assertEquals(123, cursor.intField(7));
+        Assertions.assertThrows(CsvException.class, () -> cursor.intField(5));
+    }
+
+    @Test
+    public void testMalformedValuesGiveTheirLocation() throws IOException, CsvException {
+        final CsvCursor cursor = new CsvReader(new StringReader("a,b\n\"multi\nline\",12x,,-,1.5.2,yes\n")).cursor();
+        Assertions.assertTrue(cursor.next());
+        Assertions.assertTrue(cursor.next());
+        final CsvException e = Assertions.assertThrows(CsvException.class, () -> cursor.intField(1));
+        Assertions.assertEquals("[ERROR] CSV (Line 2, Field 2): Cannot parse \"12x\" as an int.", e.getMessage());
+        Assertions.assertThrows(CsvException.class, () -> cursor.longField(2));
+        Assertions.assertThrows(CsvException.class, () -> cursor.longField(3));
+        Assertions.assertThrows(CsvException.class, () -> cursor.doubleField(2));
+        Assertions.assertThrows(CsvException.class, () -> cursor.doubleField(4));
+        Assertions.assertThrows(CsvException.class, () -> cursor.booleanField(5));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> cursor.intField(6));
+    }
+
+    @Test
+    public void testDoubles() throws IOException, CsvException {
+        final CsvCursor cursor = cursorAtFirstRow("1.5,-0.1,.25,3.,1e3,2.5E-7,123456789012345678901234,NaN,-Infinity,"
+                + "0.1e-400, 1.0\n");
+        Assertions.assertEquals(1.5, cursor.doubleField(0));
+        Assertions.assertEquals(-0.1, cursor.doubleField(1));
+        Assertions.assertEquals(0.25, cursor.doubleField(2));
+        Assertions.assertEquals(3.0, cursor.doubleField(3));
+        Assertions.assertEquals(1000.0, cursor.doubleField(4));
+        Assertions.assertEquals(2.5E-7, cursor.doubleField(5));
+        Assertions.assertEquals(123456789012345678901234.0, cursor.doubleField(6));
+        Assertions.assertTrue(Double.isNaN(cursor.doubleField(7)));
+        Assertions.assertEquals(Double.NEGATIVE_INFINITY, cursor.doubleField(8));
+        Assertions.assertEquals(0.0, cursor.doubleField(9));
+        Assertions.assertThrows(CsvException.class, () -> cursor.doubleField(10));
+    }
+
+    @Test
+    public void testDoublesAreCorrectlyRounded() throws IOException, CsvException {
+        final Random random = new Random(6L);
+        final StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            if (i > 0) stringBuilder.append(',');
+            stringBuilder.append(random.nextBoolean() ? "-" : "")
+                    .append(random.nextInt(100000))
+                    .append('.')
+                    .append(random.nextInt(1000000000));
+            if (random.nextBoolean()) {
+                stringBuilder.append('e').append(random.nextInt(40) - 20);
+            }
+        }
+        final CsvCursor cursor = cursorAtFirstRow(stringBuilder.toString());
+        for (int i = 0; i < cursor.fieldCount(); i++) {
+            Assertions.assertEquals(Double.parseDouble(cursor.fieldString(i)), cursor.doubleField(i));
+        }
+    }
+
+    @Test
+    public void testBooleans() throws IOException, CsvException {
+        final CsvCursor cursor = cursorAtFirstRow("true,FALSE,True,t\n");
+        Assertions.assertTrue(cursor.booleanField(0));
+        Assertions.assertFalse(cursor.booleanField(1));
+        Assertions.assertTrue(cursor.booleanField(2));
+        Assertions.assertThrows(CsvException.class, () -> cursor.booleanField(3));
+    }
+
+    @Test
+    public void testDates() throws IOException, CsvException {
+        final CsvDateFormat british = CsvDateFormat.ofPattern("dd/MM/yyyy");
+        final CsvCursor cursor = cursorAtFirstRow("2016-11-25,25/11/2016,2016-02-30,2016/11/25,2016-1-25\n");
+        Assertions.assertEquals(LocalDate.of(2016, 11, 25), cursor.dateField(0, CsvDateFormat.ISO_LOCAL_DATE));
+        Assertions.assertEquals(LocalDate.of(2016, 11, 25), cursor.dateField(1, british));
+        Assertions.assertThrows(CsvException.class, () -> cursor.dateField(0, british));
+        Assertions.assertThrows(CsvException.class, () -> cursor.dateField(2, CsvDateFormat.ISO_LOCAL_DATE));
+        Assertions.assertThrows(CsvException.class, () -> cursor.dateField(3, CsvDateFormat.ISO_LOCAL_DATE));
+        Assertions.assertThrows(CsvException.class, () -> cursor.dateField(4, CsvDateFormat.ISO_LOCAL_DATE));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CsvDateFormat.ofPattern("yyyy-MM"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CsvDateFormat.ofPattern("yyyy-MM-dd d"));
+    }
+}
@@ -0,0 +1,283 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class FileRangeSpliteratorUnitTest {
+
+    @NotNull
+    private static String mixedInput(final int rows, final long seed) {
+        final Random random = new Random(seed);
+        final StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            switch (random.nextInt(8)) {
+                case 0:
+                    stringBuilder.append("plain,").append(i).append(",row\n");
+                    break;
+                case 1:
+                    stringBuilder.append("\"quoted, with comma\",\"and \"\"escapes\"\"\",").append(i).append('\n');
+                    break;
+                case 2:
+                    stringBuilder.append("\"multi\nline\r\nfield\",").append(i).append("\r\n");
+                    break;
+                case 3:
+                    stringBuilder.append("юникода,aꜬbꜢd𐜢e∛f,").append(i).append('\n');
+                    break;
+                case 4:
+                    stringBuilder.append("# comment, with \" odd ,\"'\"\" characters\n");
+                    break;
+                case 5:
+                    stringBuilder.append('\n');
+                    break;
+                case 6:
+                    stringBuilder.append("\"").append(i).append("\",\"\"\"\"\n");
+                    break;
+                default:
+                    stringBuilder.append(",,").append(i).append(",\n");
+                    break;
+            }
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Mostly well-formed rows, with now and then a stray quote, a quote never closed, an escape, a comment character or
+     * space around a quoted field: something to upset one dialect or another.
+     */
+    @NotNull
+    private static String malformedInput(final int rows, final long seed) {
+        final Random random = new Random(seed);
+        final StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            final int fields = 1 + random.nextInt(4);
+            for (int f = 0; f < fields; f++) {
+                if (f > 0) stringBuilder.append(',');
+                final int kind = random.nextInt(200);
+                if (kind < 120) {
+                    stringBuilder.append("v").append(i);
+                } else if (kind < 160) {
+                    stringBuilder.append("\"q, \"\"").append(i).append(random.nextBoolean() ? "\"\"\n\"" : "\"\"\"");
+                } else if (kind < 170) {
+                    stringBuilder.append(" \"").append(i).append("\" ");
+                } else if (kind < 180) {
+                    stringBuilder.append("юн𐜢").append(i);
+                } else if (kind < 185) {
+                    stringBuilder.append("x\"").append(i);
+                } else if (kind < 190) {
+                    stringBuilder.append("\\").append(random.nextBoolean() ? "\n" : ",");
+                } else if (kind < 195) {
+                    stringBuilder.append("#").append(i);
+                } else if (kind < 198) {
+                    stringBuilder.append("\"q\"x");
+                } else {
+                    stringBuilder.append("\"oops");
+                }
+            }
+            stringBuilder.append(random.nextInt(4) == 0 ? "\r\n" : "\n");
+        }
+        return stringBuilder.toString();
+    }
+
+    @NotNull
+    private static Path write(@NotNull final String contents) throws IOException {
+        final Path file = Files.createTempFile("csv-reader-", ".csv");
+        Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @NotNull
+    private static List<List<String>> readSequentially(@NotNull final String contents) throws IOException, CsvException {
+        try (CsvReader csvReader = new CsvReader(new StringReader(contents))) {
+            return csvReader.readFile(true);
+        }
+    }
+
+    @NotNull
+    private static List<List<String>> readInParallel(@NotNull final FileChannel channel, final long minSplitSize,
+                                                     final int speculationLength) throws IOException, CsvException {
+        final Spliterator<Result<List<String>>> spliterator =
+                new FileRangeSpliterator(channel, 0L, channel.size(), minSplitSize, speculationLength);
+        return CsvReader.unwrapResults(StreamSupport.stream(spliterator, true), true)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Splits the file as finely as the spliterator allows, however many processors there are, and reads the ranges in
+     * order, keeping each error in its place.  Errors are located by line in the first range and by offset in the
+     * others, so only the rest of each message is kept.
+     */
+    @NotNull
+    private static List<String> readWithErrors(@NotNull final FileChannel channel, @NotNull final CsvDialect dialect,
+                                               final long minSplitSize, final int speculationLength)
+            throws IOException {
+        final List<Spliterator<Result<List<String>>>> ranges = new ArrayList<>();
+        splitInto(new FileRangeSpliterator(channel, dialect, 0L, 1, channel.size(), minSplitSize, speculationLength,
+                null, null), ranges);
+        final List<String> results = new ArrayList<>();
+        for (Spliterator<Result<List<String>>> range : ranges) {
+            range.forEachRemaining(result -> results.add(result instanceof Result.OK
+                    ? result.ok().data.toString()
+                    : result.error().exception.getMessage().replaceFirst("^.*, (Field \\d+)", "$1")));
+        }
+        return results;
+    }
+
+    private static void splitInto(@NotNull final Spliterator<Result<List<String>>> spliterator,
+                                  @NotNull final List<Spliterator<Result<List<String>>>> ranges) {
+        final Spliterator<Result<List<String>>> prefix = spliterator.trySplit();
+        if (prefix != null) {
+            splitInto(prefix, ranges);
+            splitInto(spliterator, ranges);
+        } else {
+            ranges.add(spliterator);
+        }
+    }
+
+    @Test
+    public void testParallelReadMatchesSequentialRead() throws IOException, CsvException {
+        final String contents = mixedInput(5000, 1L);
+        final Path file = write(contents);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Assertions.assertEquals(readSequentially(contents), readInParallel(channel, 256, 4096));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testUndecidedSplitFallsBackToReplay() throws IOException, CsvException {
+        final String contents = mixedInput(2000, 2L);
+        final Path file = write(contents);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Assertions.assertEquals(readSequentially(contents), readInParallel(channel, 256, 1));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testSplitInsideLongQuotedField() throws IOException, CsvException {
+        final StringBuilder stringBuilder = new StringBuilder("a,b\n\"");
+        for (int i = 0; i < 2000; i++) {
+            stringBuilder.append("line ").append(i).append(", still quoted\n");
+        }
+        stringBuilder.append("\",end\nc,d\n");
+        final String contents = stringBuilder.toString();
+        final Path file = write(contents);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final List<List<String>> expected = readSequentially(contents);
+            Assertions.assertEquals(3, expected.size());
+            Assertions.assertEquals(expected, readInParallel(channel, 256, 1024));
+            Assertions.assertEquals(expected, readInParallel(channel, 256, 1));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testQuotedHeaderDoesNotSlowSplitting() throws IOException {
+        // a quote before the split point means speculating, and the quoted supposition then finds no closing quote
+        final Path file = Files.createTempFile("csv-reader-", ".csv");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                writer.write("\"id\",\"name\",\"value\"\n");
+                for (int i = 0; i < 1_000_000; i++) {
+                    writer.write(i + ",name " + i + "," + i * 7L + "\n");
+                }
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                final List<Spliterator<Result<List<String>>>> ranges = Assertions.assertTimeoutPreemptively(
+                        Duration.ofSeconds(8), () -> {
+                            final List<Spliterator<Result<List<String>>>> split = new ArrayList<>();
+                            splitInto(new FileRangeSpliterator(channel, 0L, channel.size(), 64 * 1024, 4096), split);
+                            return split;
+                        });
+                Assertions.assertTrue(ranges.size() > 100, "Only split into " + ranges.size());
+
+                final long[] row = {-1L};
+                for (Spliterator<Result<List<String>>> range : ranges) {
+                    range.forEachRemaining(result -> {
+                        final long i = row[0]++;
+                        Assertions.assertEquals(i < 0 ? Arrays.asList("id", "name", "value")
+                                : Arrays.asList(Long.toString(i), "name " + i, Long.toString(i * 7L)), result.ok().data);
+                    });
+                }
+                Assertions.assertEquals(1_000_000L, row[0]);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testSplitReadMatchesWholeReadErrorsIncluded() throws IOException {
+        final CsvDialect[] dialects = {CsvDialect.DEFAULT, CsvDialect.RFC_4180,
+                CsvDialect.builder().escape('\\').build(), CsvDialect.builder().trimWhitespace(true).build()};
+        for (long seed = 0; seed < 6; seed++) {
+            final Path file = write(malformedInput(800, seed));
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                for (CsvDialect dialect : dialects) {
+                    final List<String> expected = readWithErrors(channel, dialect, channel.size(), 0);
+                    for (int speculationLength : new int[]{1024 * 1024, 256, 1}) {
+                        Assertions.assertEquals(expected, readWithErrors(channel, dialect, 128, speculationLength),
+                                "Seed " + seed + ", dialect " + dialect + ", speculating " + speculationLength);
+                    }
+                }
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testSplitsAreMadeAtRecordBoundaries() throws IOException {
+        final String contents = mixedInput(5000, 3L);
+        final Path file = write(contents);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final FileRangeSpliterator suffix = new FileRangeSpliterator(channel, 0L, channel.size(), 256, 4096);
+            final long sizeBefore = suffix.estimateSize();
+            final Spliterator<Result<List<String>>> prefix = suffix.trySplit();
+            Assertions.assertNotNull(prefix, "A large range was not split");
+            Assertions.assertEquals(sizeBefore, prefix.estimateSize() + suffix.estimateSize());
+            Assertions.assertEquals(prefix.characteristics() & Spliterator.ORDERED, Spliterator.ORDERED);
+
+            final long prefixRows = StreamSupport.stream(prefix, false).count();
+            final long suffixRows = StreamSupport.stream(suffix, false).count();
+            Assertions.assertEquals(prefixRows + suffixRows, (long) readSequentially(contents).size());
+        } catch (CsvException e) {
+            Assertions.fail(e.getMessage());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testStreamFileByPath() throws IOException, CsvException {
+        final String contents = mixedInput(500, 4L);
+        final Path file = write(contents);
+        try (Stream<List<String>> rows = CsvReader.streamFile(file, true)) {
+            Assertions.assertEquals(readSequentially(contents), rows.parallel().collect(Collectors.toList()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+public class GzipSourceUnitTest {
+    private static final String CONTENTS = contents();
+
+    @NotNull
+    private static String contents() {
+        final Random random = new Random(18L);
+        final StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    stringBuilder.append(i).append(",\"multi\nline, quoted\",юникода\n");
+                    break;
+                case 1:
+                    stringBuilder.append(i).append(",\"\"\"\",𐜢e∛f\r\n");
+                    break;
+                case 2:
+                    stringBuilder.append('\n');
+                    break;
+                default:
+                    stringBuilder.append(i).append(",plain,").append(random.nextLong()).append('\n');
+                    break;
+            }
+        }
+        return stringBuilder.toString();
+    }
+
+    @NotNull
+    private static List<List<String>> expected() throws IOException, CsvException {
+        try (CsvReader csvReader = new CsvReader(new StringReader(CONTENTS))) {
+            return csvReader.readFile(false);
+        }
+    }
+
+    @Test
+    public void testGzipIsInflatedTransparently() throws IOException, CsvException {
+        final Path file = write(gzip(CONTENTS.getBytes(StandardCharsets.UTF_8)));
+        try {
+            Assertions.assertEquals(expected(), CsvReader.readFile(file, false));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> CsvIndex.build(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testEveryMemberIsRead() throws IOException, CsvException {
+        final byte[] bytes = CONTENTS.getBytes(StandardCharsets.UTF_8);
+        final ByteArrayOutputStream members = new ByteArrayOutputStream();
+        for (int from = 0; from < bytes.length; from += 100000) {
+            members.write(gzip(Arrays.copyOfRange(bytes, from, Math.min(bytes.length, from + 100000))));
+        }
+        final Path file = write(members.toByteArray());
+        try {
+            Assertions.assertEquals(expected(), CsvReader.readFile(file, false));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testBgzfMembersAreInflatedInOrder() throws IOException, CsvException {
+        final Path file = write(bgzf(CONTENTS.getBytes(StandardCharsets.UTF_8), 30011));
+        try {
+            Assertions.assertEquals(expected(), CsvReader.readFile(file, false));
+            try (Stream<List<String>> rows = CsvReader.streamFile(file, false)) {
+                Assertions.assertEquals(expected(), rows.parallel().collect(Collectors.toList()));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testCorruptMemberIsAnError() throws IOException {
+        final byte[] bytes = bgzf(CONTENTS.getBytes(StandardCharsets.UTF_8), 60000);
+        bytes[bytes.length / 2] ^= 0x10;
+        final Path file = write(bytes);
+        try (CsvCursor cursor = CsvCursor.open(file)) {
+            cursor.setErrorSink((code, line, field, offset) -> {
+            });
+            Assertions.assertThrows(IOException.class, () -> {
+                while (cursor.next()) {
+                    // until the corrupt member
+                }
+            });
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testUncheckedErrorsReachTheConsumer() throws IOException {
+        for (byte[] bytes : Arrays.asList(gzip(CONTENTS.getBytes(StandardCharsets.UTF_8)),
+                bgzf(CONTENTS.getBytes(StandardCharsets.UTF_8), 30011))) {
+            final Path file = write(bytes);
+            try (FileChannel channel = new HookedChannel(FileChannel.open(file)) {
+                @Override
+                void beforeRead() {
+                    throw new IllegalStateException("not a file after all");
+                }
+            }; GzipSource source = new GzipSource(channel, 0L)) {
+                // the consumer used to wait forever for the dead producer
+                final IllegalStateException e = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10),
+                        () -> Assertions.assertThrows(IllegalStateException.class,
+                                () -> source.read(new char[10], 0, 10)));
+                Assertions.assertEquals("not a file after all", e.getMessage());
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testClosingMidReadLeavesTheChannelOpen() throws IOException, InterruptedException {
+        for (byte[] bytes : Arrays.asList(gzip(CONTENTS.getBytes(StandardCharsets.UTF_8)),
+                bgzf(CONTENTS.getBytes(StandardCharsets.UTF_8), 30011))) {
+            final Path file = write(bytes);
+            final CountDownLatch reading = new CountDownLatch(1);
+            final CountDownLatch resume = new CountDownLatch(1);
+            final CountDownLatch read = new CountDownLatch(1);
+            try (FileChannel channel = FileChannel.open(file)) {
+                final GzipSource source = new GzipSource(new HookedChannel(channel) {
+                    @Override
+                    void beforeRead() {
+                        if (reading.getCount() == 0) {
+                            return;
+                        }
+                        reading.countDown();
+                        boolean interrupted = false;
+                        while (true) {
+                            try {
+                                resume.await();
+                                break;
+                            } catch (InterruptedException e) {
+                                interrupted = true;
+                            }
+                        }
+                        if (interrupted) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+
+                    @Override
+                    public int read(final ByteBuffer dst) throws IOException {
+                        try {
+                            return super.read(dst);
+                        } finally {
+                            read.countDown();
+                        }
+                    }
+                }, 0L);
+                Assertions.assertTrue(reading.await(10, TimeUnit.SECONDS));
+                source.close();
+                resume.countDown();
+                Assertions.assertTrue(read.await(10, TimeUnit.SECONDS));
+                // an interrupt during the read used to close the caller's channel
+                Assertions.assertTrue(channel.isOpen());
+                Assertions.assertEquals(2, channel.read(ByteBuffer.allocate(2), 0L));
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testResumeFromCheckpoint() throws IOException, CsvException {
+        final List<List<String>> expected = expected();
+        for (byte[] bytes : Arrays.asList(gzip(CONTENTS.getBytes(StandardCharsets.UTF_8)),
+                bgzf(CONTENTS.getBytes(StandardCharsets.UTF_8), 65536))) {
+            final Path file = write(bytes);
+            try {
+                final CsvCheckpoint checkpoint;
+                try (CsvCursor cursor = CsvCursor.open(file)) {
+                    for (int i = 0; i < 12345; i++) {
+                        Assertions.assertTrue(cursor.next());
+                    }
+                    checkpoint = cursor.checkpoint();
+                }
+                final List<List<String>> rows = new ArrayList<>();
+                try (CsvCursor cursor = CsvCursor.open(file, checkpoint)) {
+                    while (cursor.next()) {
+                        rows.add(cursor.row());
+                    }
+                }
+                Assertions.assertEquals(expected.subList(12345, expected.size()), rows);
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @NotNull
+    private static byte[] gzip(@NotNull final byte[] bytes) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the bytes as BGZF members of {@code memberSize} bytes each before compression, with the empty member that
+     * ends a BGZF file
+     */
+    @NotNull
+    private static byte[] bgzf(@NotNull final byte[] bytes, final int memberSize) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        final byte[] compressed = new byte[2 * memberSize + 64];
+        for (int from = 0; from <= bytes.length; from += memberSize) {
+            final int length = Math.min(memberSize, bytes.length - from);
+            deflater.reset();
+            deflater.setInput(bytes, from, length);
+            deflater.finish();
+            final int compressedLength = deflater.deflate(compressed);
+            final CRC32 crc = new CRC32();
+            crc.update(bytes, from, length);
+
+            out.write(new byte[]{0x1F, (byte) 0x8B, 8, 4, 0, 0, 0, 0, 0, (byte) 0xFF, 6, 0, 'B', 'C', 2, 0}, 0, 16);
+            writeShort(out, 16 + 2 + compressedLength + 8 - 1);
+            out.write(compressed, 0, compressedLength);
+            writeShort(out, (int) crc.getValue());
+            writeShort(out, (int) (crc.getValue() >>> 16));
+            writeShort(out, length);
+            writeShort(out, length >>> 16);
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    private static void writeShort(@NotNull final ByteArrayOutputStream out, final int value) {
+        out.write(value & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+    }
+
+    /**
+     * A file channel that calls {@link #beforeRead()} ahead of each read from its current position, which is how the
+     * compressed bytes are read.
+     */
+    private static class HookedChannel extends FileChannel {
+        private final FileChannel channel;
+
+        HookedChannel(@NotNull final FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void beforeRead() {
+        }
+
+        @Override
+        public int read(final ByteBuffer dst) throws IOException {
+            beforeRead();
+            return channel.read(dst);
+        }
+
+        @Override
+        public long read(final ByteBuffer[] dsts, final int offset, final int length) throws IOException {
+            beforeRead();
+            return channel.read(dsts, offset, length);
+        }
+
+        @Override
+        public int read(final ByteBuffer dst, final long position) throws IOException {
+            return channel.read(dst, position);
+        }
+
+        @Override
+        public int write(final ByteBuffer src) throws IOException {
+            return channel.write(src);
+        }
+
+        @Override
+        public long write(final ByteBuffer[] srcs, final int offset, final int length) throws IOException {
+            return channel.write(srcs, offset, length);
+        }
+
+        @Override
+        public int write(final ByteBuffer src, final long position) throws IOException {
+            return channel.write(src, position);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public FileChannel position(final long newPosition) throws IOException {
+            channel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public FileChannel truncate(final long size) throws IOException {
+            channel.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(final boolean metaData) throws IOException {
+            channel.force(metaData);
+        }
+
+        @Override
+        public long transferTo(final long position, final long count, final WritableByteChannel target)
+                throws IOException {
+            return channel.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(final ReadableByteChannel src, final long position, final long count)
+                throws IOException {
+            return channel.transferFrom(src, position, count);
+        }
+
+        @Override
+        public MappedByteBuffer map(final MapMode mode, final long position, final long size) throws IOException {
+            return channel.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(final long position, final long size, final boolean shared) throws IOException {
+            return channel.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(final long position, final long size, final boolean shared) throws IOException {
+            return channel.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            channel.close();
+        }
+    }
+
+    @NotNull
+    private static Path write(@NotNull final byte[] bytes) throws IOException {
+        final Path file = Files.createTempFile("csv-reader-", ".csv.gz");
+        Files.write(file, bytes);
+        return file;
+    }
+}
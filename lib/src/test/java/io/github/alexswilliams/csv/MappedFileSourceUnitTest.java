@@ -0,0 +1,84 @@
+package io.github.alexswilliams.csv;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class MappedFileSourceUnitTest {
+    private static final String CONTENTS = "юникода,\"aꜬb\nꜢd\",𐜢e∛f\n"
+            + "\"xЬx\",xТx,xЊx\r\n"
+            + "# comment ∛\n"
+            + "“Cell 1,Cell 2”\n";
+
+    @Test
+    public void testRowsAreUnaffectedByChunkBoundaries() throws IOException, CsvException {
+        final List<List<String>> expected;
+        try (CsvReader csvReader = new CsvReader(new StringReader(CONTENTS))) {
+            expected = csvReader.readFile(false);
+        }
+
+        final Path file = Files.createTempFile("csv-reader-", ".csv");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Files.write(file, CONTENTS.getBytes(StandardCharsets.UTF_8));
+            for (int chunkSize = 1; chunkSize <= 8; chunkSize++) {
+                final CsvLexer lexer = new CsvLexer(new MappedFileSource(channel, 0L, chunkSize), 0L, 4);
+                final List<List<String>> rows = new ArrayList<>();
+                while (lexer.nextRow()) {
+                    rows.add(lexer.rowAsList());
+                }
+                Assertions.assertEquals(expected, rows, "Chunk size " + chunkSize);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testErrorOnSupplementaryCharacterSkipsAllOfIt() throws IOException, CsvException {
+        // the emoji after each closing quote is in error, and the row resumes after it as a new one
+        final String contents = "a,\"stray\"😀b,c\n"
+                + "\"😀\"😀\n"
+                + "x\"😀y\n"
+                + "\"q\"𐜢\n";
+        final Path file = Files.createTempFile("csv-reader-", ".csv");
+        try {
+            Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+            final List<List<String>> expected;
+            try (CsvReader csvReader = new CsvReader(new StringReader(contents))) {
+                expected = csvReader.readFile(true);
+            }
+            Assertions.assertEquals(Arrays.asList(Arrays.asList("b", "c"), Collections.<String>emptyList(),
+                    Collections.singletonList("😀y"), Collections.<String>emptyList()), expected);
+            Assertions.assertEquals(expected, CsvReader.readFile(file, true));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testMalformedUtf8IsReplaced() throws IOException, CsvException {
+        final byte[] contents = {'a', (byte) 0xC3, ',', (byte) 0xE2, (byte) 0x88, ',', (byte) 0xFF, 'b', '\n'};
+        final Path file = Files.createTempFile("csv-reader-", ".csv");
+        try {
+            Files.write(file, contents);
+            final List<List<String>> expected;
+            try (CsvReader csvReader = new CsvReader(new StringReader(new String(contents, StandardCharsets.UTF_8)))) {
+                expected = csvReader.readFile(false);
+            }
+            Assertions.assertEquals(expected, CsvReader.readFile(file, false));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
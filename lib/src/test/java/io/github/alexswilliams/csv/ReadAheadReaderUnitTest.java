@@ -0,0 +1,163 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ReadAheadReaderUnitTest {
+
+    @NotNull
+    private static String rows(final int count) {
+        final StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            stringBuilder.append(i).append(",\"quoted, ").append(i).append("\",юникода\n");
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Delivers a few chars at a time, slowly.
+     */
+    private static final class SlowReader extends FilterReader {
+        SlowReader(@NotNull final Reader in) {
+            super(in);
+        }
+
+        @Override
+        public int read(@NotNull final char[] buf, final int off, final int len) throws IOException {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return super.read(buf, off, Math.min(len, 100));
+        }
+    }
+
+    @Test
+    public void testRowsAreTheSameAsWithoutReadAhead() throws IOException, CsvException {
+        final String contents = rows(2000);
+        final List<List<String>> expected;
+        try (CsvReader csvReader = new CsvReader(new StringReader(contents))) {
+            expected = csvReader.readFile(false);
+        }
+        try (ReadAheadReader readAhead = new ReadAheadReader(new StringReader(contents), 7, 3);
+             CsvReader csvReader = new CsvReader(readAhead)) {
+            Assertions.assertEquals(expected, csvReader.readFile(false));
+            Assertions.assertTrue(readAhead.blocksRead() >= contents.length() / 7);
+        }
+    }
+
+    @Test
+    public void testSlowInputShowsAsConsumerWaiting() throws IOException, CsvException {
+        final String contents = rows(200);
+        try (ReadAheadReader readAhead = new ReadAheadReader(new SlowReader(new StringReader(contents)));
+             CsvReader csvReader = new CsvReader(readAhead)) {
+            Assertions.assertEquals(200, csvReader.readFile(false).size());
+            Assertions.assertTrue(readAhead.consumerWaitNanos() > readAhead.producerWaitNanos());
+        }
+    }
+
+    @Test
+    public void testErrorsAreRethrownByTheConsumer() throws IOException {
+        final Reader failing = new Reader() {
+            @Override
+            public int read(@NotNull final char[] buf, final int off, final int len) throws IOException {
+                throw new IOException("disk on fire");
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        try (ReadAheadReader readAhead = new ReadAheadReader(failing)) {
+            final IOException e = Assertions.assertThrows(IOException.class, () -> readAhead.read(new char[10], 0, 10));
+            Assertions.assertEquals("disk on fire", e.getCause().getMessage());
+            Assertions.assertThrows(IOException.class, () -> readAhead.read(new char[10], 0, 10));
+        }
+    }
+
+    @Test
+    public void testUncheckedErrorsAreRethrownByTheConsumer() throws IOException {
+        final Reader failing = new Reader() {
+            private int reads = 0;
+
+            @Override
+            public int read(@NotNull final char[] buf, final int off, final int len) {
+                if (reads++ > 0) {
+                    throw new IllegalStateException("not a reader after all");
+                }
+                buf[off] = 'a';
+                return 1;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        try (ReadAheadReader readAhead = new ReadAheadReader(failing)) {
+            Assertions.assertEquals(1, readAhead.read(new char[10], 0, 10));
+            // the consumer used to wait forever for the dead producer
+            final IllegalStateException e = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> Assertions.assertThrows(IllegalStateException.class,
+                            () -> readAhead.read(new char[10], 0, 10)));
+            Assertions.assertEquals("not a reader after all", e.getMessage());
+            Assertions.assertThrows(IllegalStateException.class, () -> readAhead.read(new char[10], 0, 10));
+        }
+    }
+
+    @Test
+    public void testClosingStopsTheProducer() throws IOException {
+        final ReadAheadReader readAhead = new ReadAheadReader(new StringReader(rows(10000)), 16, 2);
+        Assertions.assertEquals(10, readAhead.read(new char[10], 0, 10));
+        readAhead.close();
+        Assertions.assertThrows(IOException.class, () -> readAhead.read(new char[100], 0, 100));
+    }
+
+    @Test
+    public void testSourceIsNotClosedUnderARead() throws IOException, InterruptedException {
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CountDownLatch returned = new CountDownLatch(1);
+        final AtomicBoolean closedUnderRead = new AtomicBoolean(false);
+        final Reader slow = new Reader() {
+            private volatile boolean closed = false;
+            private int reads = 0;
+
+            @Override
+            public int read(@NotNull final char[] buf, final int off, final int len) {
+                if (reads++ > 0) {
+                    reading.countDown();
+                    final long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300);
+                    while (System.nanoTime() < until) {
+                        // a read that an interrupt does not cut short
+                    }
+                    closedUnderRead.set(closed);
+                    returned.countDown();
+                }
+                buf[off] = 'a';
+                return 1;
+            }
+
+            @Override
+            public void close() {
+                closed = true;
+            }
+        };
+        final ReadAheadReader readAhead = new ReadAheadReader(slow, 16, 2);
+        Assertions.assertEquals(1, readAhead.read(new char[10], 0, 10));
+        Assertions.assertTrue(reading.await(10, TimeUnit.SECONDS));
+        readAhead.close();
+        Assertions.assertTrue(returned.await(10, TimeUnit.SECONDS));
+        Assertions.assertFalse(closedUnderRead.get());
+    }
+}
@@ -0,0 +1,266 @@
+package io.github.alexswilliams.csv;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class StructuralIndexUnitTest {
+    private static final CsvDialect OLD_MAC = CsvDialect.builder().bareCarriageReturnEndsLine(true).build();
+    private static final CsvDialect SEMICOLONS = CsvDialect.builder().delimiter(';').quote('\'').build();
+    private static final CsvDialect PIPES = CsvDialect.builder().delimiter('|').escape('\\').build();
+    private static final CsvDialect UNQUOTED_TSV = CsvDialect.builder().delimiter('\t').noQuote().build();
+
+    @Test
+    public void testSwarMatchesEveryByteExactly() {
+        final Random random = new Random(17L);
+        final byte[] specials = {'\n', '\r', ',', '\"', 0x00, 0x01, (byte) 0x80, (byte) 0x8A, (byte) 0xFF};
+        for (int round = 0; round < 100000; round++) {
+            long word = 0L;
+            for (int i = 0; i < 8; i++) {
+                final int b = random.nextBoolean() ? specials[random.nextInt(specials.length)] : random.nextInt(256);
+                word |= (b & 0xFFL) << (8 * i);
+            }
+            final int target = specials[random.nextInt(specials.length)] & 0xFF;
+            int expected = 0;
+            for (int i = 0; i < 8; i++) {
+                if (((word >>> (8 * i)) & 0xFF) == target) expected |= 1 << i;
+            }
+            Assertions.assertEquals(expected, Swar.movemask(Swar.equalBytes(word, Swar.broadcast(target))),
+                    Long.toHexString(word) + " for " + target);
+
+            long parity = 0L;
+            boolean inside = false;
+            for (int i = 0; i < 64; i++) {
+                inside ^= ((word >>> i) & 1L) != 0L;
+                if (inside) parity |= 1L << i;
+            }
+            Assertions.assertEquals(parity, Swar.prefixXor(word));
+        }
+    }
+
+    @Test
+    public void testBlocksAreIndexed() {
+        final String contents = "a,\"b\nc\",d\r\n\"e\"\"f\",g,h\n,,\"\",юникода\r\r\n\"i\",\"j,k\"\n" + "l,m\n";
+        final byte[] bytes = contents.getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 64).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(bytes);
+        final StructuralIndex index = new StructuralIndex(CsvDialect.RFC_4180);
+        for (int at = 0; at < bytes.length; at++) {
+            final int length = Math.min(64, bytes.length - at);
+            index.scan(buffer, at, length);
+            Assertions.assertEquals(bitsOf(bytes, at, length, '\"'), index.quotes);
+            Assertions.assertEquals(bitsOf(bytes, at, length, ','), index.delimiters);
+            Assertions.assertEquals(bitsOf(bytes, at, length, '\n'), index.lineFeeds);
+            Assertions.assertEquals(bitsOf(bytes, at, length, '\r'), index.carriageReturns);
+        }
+
+        index.scan(buffer, 0, 64);
+        final long inQuotes = index.inQuotes(0L);
+        final String asBytes = new String(bytes, StandardCharsets.ISO_8859_1);
+        Assertions.assertEquals(0L, inQuotes & (1L << asBytes.indexOf('\r')));
+        Assertions.assertNotEquals(0L, inQuotes & (1L << asBytes.indexOf('\n')));
+        Assertions.assertNotEquals(0L, inQuotes & (1L << asBytes.indexOf("j,k") + 1));
+        Assertions.assertEquals(0L, inQuotes & (1L << asBytes.indexOf("\"\n") + 1));
+    }
+
+    @Test
+    public void testStopsAreMarked() {
+        final CsvDialect[] dialects = {CsvDialect.DEFAULT, CsvDialect.RFC_4180, PIPES, UNQUOTED_TSV};
+        final Random random = new Random(19L);
+        final byte[] specials = {'\n', '\r', ',', '\"', '#', '|', '\\', '\t', (byte) 0x8A, (byte) 0xA2};
+        for (int round = 0; round < 2000; round++) {
+            final CsvDialect dialect = dialects[round % dialects.length];
+            final byte[] bytes = new byte[1 + random.nextInt(300)];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = random.nextBoolean() ? specials[random.nextInt(specials.length)] : (byte) random.nextInt();
+            }
+            // the buffer ends where the bytes do, so some are read whole words at a time and the rest one at a time
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            final int at = random.nextInt(bytes.length);
+            final int length = random.nextInt(bytes.length - at + 1);
+            final long[] marks = new long[(length + 63) / 64 + 1];
+            Arrays.fill(marks, -1L);
+            new StructuralIndex(dialect).markStops(buffer, at, length, marks);
+            // dialects whose stops all come before '0' may have any byte up to the highest marked, bar spaces
+            int highest = 0;
+            for (int c = 0; c < 0x80; c++) {
+                if (dialect.unquotedStops[c]) highest = c;
+            }
+            final int loosest = highest < '0' ? highest : -1;
+            for (int word = 0; word * 64 < length; word++) {
+                long stops = 0L;
+                long allowed = 0L;
+                for (int i = 0; i < 64 && word * 64 + i < length; i++) {
+                    final int b = bytes[at + word * 64 + i] & 0xFF;
+                    if (b < 0x80 && dialect.unquotedStops[b]) stops |= 1L << i;
+                    if (b <= loosest && b != ' ') allowed |= 1L << i;
+                }
+                final String where = dialect + " at " + at + " for " + length;
+                Assertions.assertEquals(stops, marks[word] & stops, where);
+                Assertions.assertEquals(0L, marks[word] & ~(stops | allowed), where);
+            }
+        }
+    }
+
+    /**
+     * However the file is split into blocks, and whatever the dialect, a lexer that jumps between the marks of the
+     * index must find the same rows and errors as one that tests every character.
+     */
+    @Test
+    public void testIndexedLexingFindsTheSameRows() throws IOException {
+        final CsvDialect[] dialects = {CsvDialect.DEFAULT, CsvDialect.RFC_4180, OLD_MAC, SEMICOLONS, PIPES,
+                UNQUOTED_TSV, CsvDialect.builder().trimWhitespace(true).commentPrefix('#').build()};
+        final String[] parts = {"", "a", "bc d", "юникода", "𐜢", ",", ";", "|", "\t", "\"", "'", "\\", "#", " ",
+                "\n", "\r", "\r\n", "\"\"", String.join("", Collections.nCopies(150, "x"))};
+        final Random random = new Random(20L);
+        for (int round = 0; round < 140; round++) {
+            final CsvDialect dialect = dialects[round % dialects.length];
+            final StringBuilder contents = new StringBuilder();
+            for (int i = random.nextInt(round % 10 == 0 ? 20000 : 500); i > 0; i--) {
+                contents.append(parts[random.nextInt(parts.length)]);
+            }
+            final Path file = Files.createTempFile("csv-reader-", ".csv");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                Files.write(file, contents.toString().getBytes(StandardCharsets.UTF_8));
+                final long chunkSize = 1 + random.nextInt(5000);
+                final int windowSize = 16 + random.nextInt(1000);
+                final int[] columns = random.nextBoolean() ? null : new int[]{random.nextInt(3)};
+                Assertions.assertEquals(lexAll(channel, dialect, chunkSize, windowSize, columns, false),
+                        lexAll(channel, dialect, chunkSize, windowSize, columns, true),
+                        dialect + " in chunks of " + chunkSize + ": " + contents);
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @NotNull
+    private static List<String> lexAll(@NotNull final FileChannel channel, @NotNull final CsvDialect dialect,
+                                       final long chunkSize, final int windowSize, final int[] columns,
+                                       final boolean indexed) throws IOException {
+        final CsvLexer lexer = new CsvLexer(new MappedFileSource(channel, 0L, chunkSize), dialect, 0L, 1, windowSize);
+        Assertions.assertTrue(!indexed || lexer.indexStructure());
+        lexer.project(columns);
+        final List<String> lexed = new ArrayList<>();
+        lexer.errorSink = (code, line, field, offset) -> lexed.add(code + " on line " + line + " at " + offset);
+        while (true) {
+            try {
+                if (!lexer.nextRow()) return lexed;
+            } catch (CsvException e) {
+                Assertions.fail(e);
+            }
+            lexed.add(lexer.rowAsList() + " on line " + lexer.lineNum);
+        }
+    }
+
+    private static long bitsOf(@NotNull final byte[] bytes, final int at, final int length, final char c) {
+        long bits = 0L;
+        for (int i = 0; i < length; i++) {
+            if (bytes[at + i] == c) bits |= 1L << i;
+        }
+        return bits;
+    }
+
+    /**
+     * Wherever record boundaries are found from the quote parity, they must be where lexing from the start would put
+     * them; and on well-formed input, that is everywhere.
+     */
+    @Test
+    public void testParityFindsTheSameBoundariesAsLexing() throws IOException {
+        final CsvDialect[] dialects = {CsvDialect.RFC_4180, OLD_MAC, SEMICOLONS};
+        final Random random = new Random(18L);
+        for (int round = 0; round < 300; round++) {
+            final CsvDialect dialect = dialects[round % dialects.length];
+            final boolean wellFormed = round % 2 == 0;
+            final String contents = generate(random, dialect, wellFormed, round % 10 == 0 ? 200 : 20);
+            final Path file = Files.createTempFile("csv-reader-", ".csv");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+                final long size = channel.size();
+                for (int i = 0; i < 20; i++) {
+                    final long from = size == 0 ? 0L : 1L + random.nextInt((int) size);
+                    final long rangeEnd = from + random.nextInt((int) (size - from) + 1);
+                    final long found = RecordBoundaries.byParity(channel, dialect, 0L, from, rangeEnd);
+                    if (wellFormed) {
+                        Assertions.assertNotEquals(RecordBoundaries.UNKNOWN, found, contents);
+                    }
+                    if (found != RecordBoundaries.UNKNOWN) {
+                        Assertions.assertEquals(byLexing(channel, dialect, from, rangeEnd), found,
+                                "From " + from + " to " + rangeEnd + " of " + contents);
+                    }
+                }
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @NotNull
+    private static String generate(@NotNull final Random random, @NotNull final CsvDialect dialect,
+                                   final boolean wellFormed, final int rows) {
+        final char quote = (char) dialect.quote;
+        final String[] lineEnds = dialect.bareCarriageReturnEndsLine ? new String[]{"\n", "\r\n", "\r"}
+                : new String[]{"\n", "\r\n"};
+        final String[] values = {"", "a", "bc d", "юникода", "\r", "x" + quote + "y"};
+        final StringBuilder stringBuilder = new StringBuilder();
+        for (int row = 0; row < rows; row++) {
+            for (int field = random.nextInt(4); field >= 0; field--) {
+                if (random.nextBoolean()) {
+                    stringBuilder.append(quote);
+                    for (int part = random.nextInt(3); part >= 0; part--) {
+                        switch (random.nextInt(5)) {
+                            case 0:
+                                stringBuilder.append(quote).append(quote);
+                                break;
+                            case 1:
+                                stringBuilder.append(lineEnds[random.nextInt(lineEnds.length)]);
+                                break;
+                            case 2:
+                                stringBuilder.append(dialect.delimiter);
+                                break;
+                            default:
+                                stringBuilder.append(values[random.nextInt(4)]);
+                                break;
+                        }
+                    }
+                    stringBuilder.append(quote);
+                } else {
+                    stringBuilder.append(values[random.nextInt(wellFormed ? 4 : values.length)]);
+                }
+                if (field > 0) stringBuilder.append(dialect.delimiter);
+            }
+            if (row < rows - 1 || random.nextBoolean()) {
+                stringBuilder.append(lineEnds[random.nextInt(lineEnds.length)]);
+            }
+        }
+        return stringBuilder.toString();
+    }
+
+    private static long byLexing(@NotNull final FileChannel channel, @NotNull final CsvDialect dialect,
+                                 final long from, final long rangeEnd) throws IOException {
+        final CsvLexer lexer = new CsvLexer(new MappedFileSource(channel, 0L), dialect);
+        lexer.logging = false;
+        while (lexer.position() < from) {
+            try {
+                if (!lexer.nextRow()) return RecordBoundaries.NOT_FOUND;
+            } catch (CsvException e) {
+                // resumes straight after the error
+            }
+        }
+        return lexer.position() < rangeEnd ? lexer.position() : RecordBoundaries.NOT_FOUND;
+    }
+}
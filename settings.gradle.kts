@@ -8,6 +8,7 @@ plugins {
 rootProject.name = "csv-reader-java"
 
 include("lib")
+include("bench")
 
 refreshVersions {
     rejectVersionIf {